@@ -20,9 +20,15 @@ package org.xnio;
 
 import static java.lang.Math.max;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.wildfly.common.Assert;
 import org.wildfly.common.cpu.CacheInfo;
@@ -36,6 +42,14 @@ import org.wildfly.common.function.Functions;
 
 /**
  * A fast source of pooled buffers.
+ * <p>
+ * Each thread caches free buffers in two fixed-size magazines.  When both magazines are empty or full, a whole
+ * magazine is exchanged with a lock-free depot shared by all threads, so in steady state neither allocating nor
+ * freeing a buffer allocates any memory, and threads only touch shared state once per magazine of buffers.  The
+ * magazines of a thread which has exited are handed to the depot the next time another thread finds it empty.
+ * <p>
+ * Buffers larger than a magazine's worth of bytes are not cached per thread at all; free buffers of such a pool are
+ * kept in a queue shared by all threads, so that no thread holds on to them.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
@@ -47,11 +61,18 @@ public abstract class ByteBufferPool {
         sliceLargeBuffers = Boolean.parseBoolean(System.getProperty("xnio.buffer.slice-large-buffers", "true"));
     }
 
-    private final ConcurrentLinkedQueue<ByteBuffer> masterQueue = new ConcurrentLinkedQueue<>();
+    private final Depot fullMagazines = new Depot(DEPOT_SIZE);
+    private final Depot emptyMagazines = new Depot(DEPOT_SIZE);
+    // the outermost caches of all threads, so that the magazines of exited threads can be reclaimed
+    private final ConcurrentLinkedQueue<DefaultCache> threadCaches = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean reclaiming = new AtomicBoolean();
     private final ThreadLocal<Cache> threadLocalCache = ThreadLocal.withInitial(this::getDefaultCache);
-    private final ByteBufferPool.Cache defaultCache = new DefaultCache();
     private final int size;
+    // 0 if buffers are too large to be cached per thread
+    private final int magazineSize;
     private final boolean direct;
+    // the cache shared by all threads, if buffers are not cached per thread
+    private final SharedCache sharedCache;
 
     ByteBufferPool(final int size, final boolean direct) {
         assert Integer.bitCount(size) == 1;
@@ -59,6 +80,8 @@ public abstract class ByteBufferPool {
         assert size <= 0x4000_0000;
         this.size = size;
         this.direct = direct;
+        magazineSize = Math.min(MAX_MAGAZINE_SIZE, MAGAZINE_BYTES / size);
+        sharedCache = magazineSize == 0 ? new SharedCache() : null;
     }
 
     // buffer pool size constants
@@ -78,6 +101,22 @@ public abstract class ByteBufferPool {
 
     static final int CACHE_LINE_SIZE = max(64, CacheInfo.getSmallestDataCacheLineSize());
 
+    // magazine constants
+
+    /**
+     * The number of bytes of buffers a magazine is sized for, bounding the memory cached by each thread.  Buffers
+     * larger than this are not cached per thread.
+     */
+    static final int MAGAZINE_BYTES = 0x40000;
+    /**
+     * The largest number of buffers held by a magazine.
+     */
+    static final int MAX_MAGAZINE_SIZE = 32;
+    /**
+     * The number of magazines each depot can hold; a full magazine that does not fit is left to the garbage collector.
+     */
+    static final int DEPOT_SIZE = 256;
+
     /**
      * The large direct buffer pool.  This pool produces buffers of {@link #LARGE_SIZE}.
      */
@@ -490,19 +529,41 @@ public abstract class ByteBufferPool {
     // private
 
     Cache getDefaultCache() {
-        return defaultCache;
+        return magazineSize == 0 ? sharedCache : new DefaultCache();
     }
 
-    ConcurrentLinkedQueue<ByteBuffer> getMasterQueue() {
-        return masterQueue;
+    /**
+     * Hand the magazines of threads which have exited to the depot, since nothing else would ever return their
+     * buffers.  Only one thread reclaims at a time; the others carry on without waiting.
+     */
+    void reclaimExitedThreads() {
+        final AtomicBoolean reclaiming = this.reclaiming;
+        if (! reclaiming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final Iterator<DefaultCache> iterator = threadCaches.iterator();
+            while (iterator.hasNext()) {
+                final DefaultCache cache = iterator.next();
+                final Thread owner = cache.owner.get();
+                // isAlive() returning false makes the exited thread's writes to its cache visible
+                if (owner == null || ! owner.isAlive()) {
+                    iterator.remove();
+                    cache.flush();
+                }
+            }
+        } finally {
+            reclaiming.set(false);
+        }
     }
 
-    private ByteBuffer allocateMaster() {
-        ByteBuffer byteBuffer = masterQueue.poll();
-        if (byteBuffer == null) {
-            byteBuffer = createBuffer();
-        }
-        return byteBuffer;
+    /**
+     * Get the number of buffers held by each magazine of this pool.
+     *
+     * @return the magazine size, or 0 if buffers are not cached per thread
+     */
+    int getMagazineSize() {
+        return magazineSize;
     }
 
     static ByteBufferPool create(final int size, final boolean direct) {
@@ -528,10 +589,6 @@ public abstract class ByteBufferPool {
             ByteBuffer createBuffer() {
                 synchronized (this) {
                     // avoid a storm of mass-population by only allowing one thread to split a parent buffer at a time
-                    ByteBuffer appearing = getMasterQueue().poll();
-                    if (appearing != null) {
-                        return appearing;
-                    }
                     ByteBuffer parentBuffer = parent.allocate();
                     final int size = getSize();
                     ByteBuffer result = Buffers.slice(parentBuffer, size);
@@ -550,10 +607,6 @@ public abstract class ByteBufferPool {
 
     abstract ByteBuffer createBuffer();
 
-    final void freeMaster(ByteBuffer buffer) {
-        masterQueue.add(buffer);
-    }
-
     final void doFree(final ByteBuffer buffer) {
         assert buffer.capacity() == size;
         assert buffer.isDirect() == direct;
@@ -691,13 +744,14 @@ public abstract class ByteBufferPool {
         private final Cache parent;
         private final ByteBuffer[] cache;
         private final long mask;
+        /** One bit per slot of {@link #cache} which holds a buffer that is available to be allocated. */
         private long availableBits;
 
         MultiCache(final Cache parent, final int size) {
             this.parent = parent;
             assert 0 < size && size <= 64;
             cache = new ByteBuffer[size];
-            mask = availableBits = size == 64 ? ~0L : (1L << size) - 1;
+            mask = size == 64 ? ~0L : (1L << size) - 1;
         }
 
         public void free(final ByteBuffer bb) {
@@ -736,7 +790,7 @@ public abstract class ByteBufferPool {
         public void destroy() {
             final ByteBuffer[] cache = this.cache;
             final Cache parent = this.parent;
-            long bits = ~availableBits & mask;
+            long bits = availableBits;
             try {
                 while (bits != 0L) {
                     long posn = Long.lowestOneBit(bits);
@@ -754,7 +808,7 @@ public abstract class ByteBufferPool {
         public void flush() {
             final ByteBuffer[] cache = this.cache;
             final Cache parent = this.parent;
-            long bits = ~availableBits & mask;
+            long bits = availableBits;
             try {
                 while (bits != 0L) {
                     long posn = Long.lowestOneBit(bits);
@@ -771,19 +825,106 @@ public abstract class ByteBufferPool {
         }
     }
 
+    /**
+     * The outermost cache of each thread, which holds a loaded and a previous magazine and exchanges them with the
+     * depots of the pool.
+     */
     final class DefaultCache implements Cache {
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private Magazine loaded = new Magazine(magazineSize);
+        private Magazine previous = new Magazine(magazineSize);
+
+        DefaultCache() {
+            threadCaches.add(this);
+        }
+
         public void free(final ByteBuffer bb) {
-            freeMaster(bb);
+            assert bb != null;
+            if (loaded.isFull()) {
+                if (previous.isFull()) {
+                    // hand the full magazine to the depot, or drop its buffers if the depot is full
+                    final Magazine full = previous;
+                    if (fullMagazines.offer(full)) {
+                        previous = takeEmptyMagazine();
+                    } else {
+                        full.clear();
+                    }
+                }
+                swap();
+            }
+            loaded.push(bb);
         }
 
         public ByteBuffer allocate() {
-            return allocateMaster();
+            if (loaded.isEmpty()) {
+                if (previous.isEmpty()) {
+                    Magazine full = fullMagazines.poll();
+                    if (full == null) {
+                        reclaimExitedThreads();
+                        full = fullMagazines.poll();
+                        if (full == null) {
+                            return createBuffer();
+                        }
+                    }
+                    emptyMagazines.offer(previous);
+                    previous = full;
+                }
+                swap();
+            }
+            return loaded.pop();
+        }
+
+        public void flushBuffer(final ByteBuffer bb) {
+            // cache locally; the following flush will publish the magazines
+            free(bb);
+        }
+
+        public void destroy() {
+            // no operation
+        }
+
+        public void flush() {
+            if (! loaded.isEmpty() && fullMagazines.offer(loaded)) {
+                loaded = takeEmptyMagazine();
+            }
+            if (! previous.isEmpty() && fullMagazines.offer(previous)) {
+                previous = takeEmptyMagazine();
+            }
+        }
+
+        private void swap() {
+            final Magazine loaded = this.loaded;
+            this.loaded = previous;
+            previous = loaded;
+        }
+
+        private Magazine takeEmptyMagazine() {
+            final Magazine magazine = emptyMagazines.poll();
+            return magazine == null ? new Magazine(magazineSize) : magazine;
+        }
+    }
+
+    /**
+     * The cache of a pool whose buffers are too large to be cached per thread, which keeps free buffers in a queue
+     * shared by all threads.
+     */
+    final class SharedCache implements Cache {
+        private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+        public void free(final ByteBuffer bb) {
+            assert bb != null;
+            buffers.add(bb);
         }
 
         public void flushBuffer(final ByteBuffer bb) {
             free(bb);
         }
 
+        public ByteBuffer allocate() {
+            final ByteBuffer buffer = buffers.poll();
+            return buffer == null ? createBuffer() : buffer;
+        }
+
         public void destroy() {
             // no operation
         }
@@ -792,4 +933,103 @@ public abstract class ByteBufferPool {
             // no operation
         }
     }
+
+    /**
+     * A fixed-size stack of free buffers, which is owned by a single thread while it is not in a depot.
+     */
+    static final class Magazine {
+        private final ByteBuffer[] buffers;
+        private int count;
+
+        Magazine(final int size) {
+            buffers = new ByteBuffer[size];
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        boolean isFull() {
+            return count == buffers.length;
+        }
+
+        void push(final ByteBuffer buffer) {
+            buffers[count ++] = buffer;
+        }
+
+        ByteBuffer pop() {
+            final ByteBuffer buffer = buffers[-- count];
+            buffers[count] = null;
+            return buffer;
+        }
+
+        void clear() {
+            while (count > 0) {
+                buffers[-- count] = null;
+            }
+        }
+    }
+
+    /**
+     * A bounded lock-free queue of magazines.  Each slot carries a sequence number which tells producers and consumers
+     * whether it is free for the current lap, so that neither offering nor polling allocates memory.
+     */
+    static final class Depot {
+        private final AtomicReferenceArray<Magazine> slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Depot(final int capacity) {
+            assert Integer.bitCount(capacity) == 1;
+            slots = new AtomicReferenceArray<>(capacity);
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i ++) {
+                sequences.set(i, i);
+            }
+            mask = capacity - 1;
+        }
+
+        boolean offer(final Magazine magazine) {
+            long pos = tail.get();
+            for (;;) {
+                final int idx = (int) pos & mask;
+                final long diff = sequences.get(idx) - pos;
+                if (diff == 0L) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        slots.set(idx, magazine);
+                        // publish the slot to consumers
+                        sequences.set(idx, pos + 1);
+                        return true;
+                    }
+                } else if (diff < 0L) {
+                    // the slot of the previous lap has not been consumed: full
+                    return false;
+                }
+                pos = tail.get();
+            }
+        }
+
+        Magazine poll() {
+            long pos = head.get();
+            for (;;) {
+                final int idx = (int) pos & mask;
+                final long diff = sequences.get(idx) - (pos + 1);
+                if (diff == 0L) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        final Magazine magazine = slots.get(idx);
+                        slots.set(idx, null);
+                        // release the slot to producers of the next lap
+                        sequences.set(idx, pos + mask + 1);
+                        return magazine;
+                    }
+                } else if (diff < 0L) {
+                    // the slot has not been produced yet: empty
+                    return null;
+                }
+                pos = head.get();
+            }
+        }
+    }
 }
@@ -27,6 +27,9 @@ import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static org.xnio._private.Messages.msg;
 
@@ -34,13 +37,19 @@ import static org.xnio._private.Messages.msg;
  * A buffer pooled allocator.  This pool uses a series of buffer regions to back the
  * returned pooled buffers.  When the buffer is no longer needed, it should be freed back into the pool; failure
  * to do so will cause the corresponding buffer area to be unavailable until the buffer is garbage-collected.
+ * <p>
+ * A pool may be given a memory limit, in which case no more than that many bytes of backing regions are ever
+ * allocated, and an {@link ExhaustedAction} determines what happens to allocations beyond the limit.  To help track
+ * down buffers which are never freed, the {@code xnio.bufferpool.leak-detection.percent} system property may be set to
+ * the percentage of allocations whose allocation site is recorded; when such a buffer is garbage-collected without
+ * having been freed or discarded, the allocation site is logged and the buffer area is reclaimed.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  * @deprecated See {@link ByteBufferPool}.
  */
 public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
 
-    private static final int LOCAL_LENGTH;
+    static final int LOCAL_LENGTH;
 
     static {
         String value = AccessController.doPrivileged(new ReadPropertyAction("xnio.bufferpool.threadlocal.size", "12"));
@@ -51,14 +60,33 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
             val = 12;
         }
         LOCAL_LENGTH = val;
+        value = AccessController.doPrivileged(new ReadPropertyAction("xnio.bufferpool.leak-detection.percent", "0"));
+        try {
+            val = Math.max(0, Math.min(100, Integer.parseInt(value)));
+        } catch (NumberFormatException ignored) {
+            val = 0;
+        }
+        LEAK_DETECTION_PERCENT = val;
     }
 
+    static final int LEAK_DETECTION_PERCENT;
+
     private final Set<Ref> refSet = Collections.synchronizedSet(new HashSet<Ref>());
     private final Queue<Slice> sliceQueue;
     private final BufferAllocator<ByteBuffer> allocator;
     private final int bufferSize;
     private final int buffersPerRegion;
     private final int threadLocalQueueSize;
+    private final long maxMemory;
+    private final ExhaustedAction exhaustedAction;
+    private final long maxWaitNanos;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+    // written under the sliceQueue lock
+    private volatile long allocatedMemory;
+    // written under the sliceQueue lock
+    private volatile int waiters;
     private final ThreadLocal<ThreadLocalCache> localQueueHolder = new ThreadLocal<ThreadLocalCache>() {
         protected ThreadLocalCache initialValue() {
             //noinspection serial
@@ -77,14 +105,19 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
     };
 
     /**
-     * Construct a new instance.
+     * Construct a new instance with a memory limit.
      *
      * @param allocator the buffer allocator to use
      * @param bufferSize the size of each buffer
      * @param maxRegionSize the maximum region size for each backing buffer
      * @param threadLocalQueueSize the number of buffers to cache on each thread
+     * @param maxMemory the maximum number of bytes of backing buffers to allocate, which must be at least one region
+     * @param exhaustedAction the action to take when a buffer cannot be allocated within {@code maxMemory}
+     * @param maxWait the maximum time to wait for a buffer to be freed, if {@code exhaustedAction} is
+     *      {@link ExhaustedAction#WAIT WAIT}; I/O threads never wait
+     * @param unit the time unit of {@code maxWait}
      */
-    public ByteBufferSlicePool(final BufferAllocator<ByteBuffer> allocator, final int bufferSize, final int maxRegionSize, final int threadLocalQueueSize) {
+    public ByteBufferSlicePool(final BufferAllocator<ByteBuffer> allocator, final int bufferSize, final int maxRegionSize, final int threadLocalQueueSize, final long maxMemory, final ExhaustedAction exhaustedAction, final long maxWait, final TimeUnit unit) {
         if (bufferSize <= 0) {
             throw msg.parameterOutOfRange("bufferSize");
         }
@@ -92,10 +125,34 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
             throw msg.parameterOutOfRange("bufferSize");
         }
         buffersPerRegion = maxRegionSize / bufferSize;
+        if (maxMemory < (long) buffersPerRegion * bufferSize) {
+            throw msg.parameterOutOfRange("maxMemory");
+        }
+        if (exhaustedAction == null) {
+            throw msg.nullParameter("exhaustedAction");
+        }
+        if (maxWait < 0) {
+            throw msg.parameterOutOfRange("maxWait");
+        }
         this.bufferSize = bufferSize;
         this.allocator = allocator;
         sliceQueue = new ConcurrentLinkedQueue<Slice>();
         this.threadLocalQueueSize = threadLocalQueueSize;
+        this.maxMemory = maxMemory;
+        this.exhaustedAction = exhaustedAction;
+        maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param allocator the buffer allocator to use
+     * @param bufferSize the size of each buffer
+     * @param maxRegionSize the maximum region size for each backing buffer
+     * @param threadLocalQueueSize the number of buffers to cache on each thread
+     */
+    public ByteBufferSlicePool(final BufferAllocator<ByteBuffer> allocator, final int bufferSize, final int maxRegionSize, final int threadLocalQueueSize) {
+        this(allocator, bufferSize, maxRegionSize, threadLocalQueueSize, Long.MAX_VALUE, ExhaustedAction.FAIL, 0L, TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -129,29 +186,86 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
             }
             slice = localCache.queue.poll();
             if (slice != null) {
-                return new PooledByteBuffer(slice, slice.slice());
+                hitCount.increment();
+                return pooled(slice);
             }
         }
+        missCount.increment();
         final Queue<Slice> sliceQueue = this.sliceQueue;
         slice = sliceQueue.poll();
         if (slice != null) {
-            return new PooledByteBuffer(slice, slice.slice());
+            return pooled(slice);
         }
         synchronized (sliceQueue) {
             slice = sliceQueue.poll();
             if (slice != null) {
-                return new PooledByteBuffer(slice, slice.slice());
+                return pooled(slice);
             }
             final int bufferSize = this.bufferSize;
             final int buffersPerRegion = this.buffersPerRegion;
+            final long regionSize = (long) buffersPerRegion * bufferSize;
+            if (allocatedMemory > maxMemory - regionSize) {
+                return exhausted();
+            }
             final ByteBuffer region = allocator.allocate(buffersPerRegion * bufferSize);
+            allocatedMemory += regionSize;
             int idx = bufferSize;
             for (int i = 1; i < buffersPerRegion; i ++) {
                 sliceQueue.add(new Slice(region, idx, bufferSize));
                 idx += bufferSize;
             }
-            final Slice newSlice = new Slice(region, 0, bufferSize);
-            return new PooledByteBuffer(newSlice, newSlice.slice());
+            return pooled(new Slice(region, 0, bufferSize));
+        }
+    }
+
+    private PooledByteBuffer pooled(final Slice slice) {
+        final PooledByteBuffer pooled = new PooledByteBuffer(slice, slice.slice());
+        if (LEAK_DETECTION_PERCENT > 0 && ThreadLocalRandom.current().nextInt(100) < LEAK_DETECTION_PERCENT) {
+            pooled.leakRef = new LeakRef(pooled.buffer, slice);
+        }
+        return pooled;
+    }
+
+    /**
+     * Take the configured action for an allocation which would exceed the memory limit.  Must be called while holding
+     * the {@code sliceQueue} lock.
+     */
+    private PooledByteBuffer exhausted() {
+        switch (exhaustedAction) {
+            case ALLOCATE_HEAP: {
+                return new PooledByteBuffer(null, ByteBuffer.allocate(bufferSize));
+            }
+            case WAIT: {
+                if (XnioIoThread.currentThread() != null) {
+                    // blocking here would stall every channel of the thread, including the ones that would free a buffer
+                    throw msg.bufferPoolExhaustedOnIoThread(maxMemory);
+                }
+                final Queue<Slice> sliceQueue = this.sliceQueue;
+                long remaining = maxWaitNanos;
+                final long start = System.nanoTime();
+                waiters ++;
+                try {
+                    Slice slice;
+                    while ((slice = sliceQueue.poll()) == null) {
+                        if (remaining <= 0L) {
+                            throw msg.bufferPoolExhausted(maxMemory);
+                        }
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(sliceQueue, remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw msg.bufferPoolExhausted(maxMemory);
+                        }
+                        remaining = maxWaitNanos - (System.nanoTime() - start);
+                    }
+                    return pooled(slice);
+                } finally {
+                    waiters --;
+                }
+            }
+            default: {
+                throw msg.bufferPoolExhausted(maxMemory);
+            }
         }
     }
 
@@ -162,6 +276,51 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
         return bufferSize;
     }
 
+    /**
+     * Get the number of allocations that were satisfied from the allocating thread's local cache.
+     *
+     * @return the number of thread-local cache hits
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Get the number of allocations that had to be satisfied from the shared queue, or by allocating a new region.
+     *
+     * @return the number of thread-local cache misses
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Get the maximum number of bytes of backing buffers that this pool will allocate.
+     *
+     * @return the memory limit, or {@link Long#MAX_VALUE} if the pool is unbounded
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Get the number of bytes of backing buffers that this pool has allocated so far.
+     *
+     * @return the allocated memory
+     */
+    public long getAllocatedMemory() {
+        return allocatedMemory;
+    }
+
+    /**
+     * Get the number of sampled buffers that were garbage-collected without having been freed or discarded.
+     *
+     * @return the number of detected leaks
+     */
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
     private void doFree(Slice region) {
         if (threadLocalQueueSize > 0) {
             final ThreadLocalCache localCache = localQueueHolder.get();
@@ -171,19 +330,52 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
                 cacheOk = true;
             }
             ArrayDeque<Slice> localQueue = localCache.queue;
-            if (localQueue.size() == threadLocalQueueSize || !cacheOk) {
-                sliceQueue.add(region);
+            // do not hide a buffer in the local cache while another thread is waiting for one
+            if (localQueue.size() == threadLocalQueueSize || !cacheOk || waiters != 0) {
+                freeShared(region);
             } else {
                 localQueue.add(region);
             }
         } else {
-            sliceQueue.add(region);
+            freeShared(region);
         }
     }
 
+    private void freeShared(Slice region) {
+        final Queue<Slice> sliceQueue = this.sliceQueue;
+        sliceQueue.add(region);
+        if (waiters != 0) {
+            synchronized (sliceQueue) {
+                sliceQueue.notify();
+            }
+        }
+    }
+
+    /**
+     * The action to take when a buffer cannot be allocated without exceeding the memory limit of the pool.
+     */
+    public enum ExhaustedAction {
+        /**
+         * Return an unpooled heap buffer, which is left to the garbage collector once it is freed.
+         */
+        ALLOCATE_HEAP,
+        /**
+         * Wait for another buffer to be freed, and throw an {@link IllegalStateException} if none is freed within
+         * the maximum wait time.  An {@link XnioIoThread} never waits; it gets the exception straight away, as with
+         * {@link #FAIL}.  Pools which are used from I/O threads should therefore use one of the other actions.
+         */
+        WAIT,
+        /**
+         * Throw an {@link IllegalStateException} immediately.
+         */
+        FAIL,
+    }
+
     private final class PooledByteBuffer implements Pooled<ByteBuffer> {
+        // null for an unpooled heap buffer
         private final Slice region;
         ByteBuffer buffer;
+        LeakRef leakRef;
 
         PooledByteBuffer(final Slice region, final ByteBuffer buffer) {
             this.region = region;
@@ -193,7 +385,8 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
         public void discard() {
             final ByteBuffer buffer = this.buffer;
             this.buffer = null;
-            if (buffer != null) {
+            if (buffer != null && region != null) {
+                released();
                 // free when GC'd, no sooner
                 refSet.add(new Ref(buffer, region));
             }
@@ -202,12 +395,21 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
         public void free() {
             ByteBuffer buffer = this.buffer;
             this.buffer = null;
-            if (buffer != null) {
+            if (buffer != null && region != null) {
+                released();
                 // trust the user, repool the buffer
                 doFree(region);
             }
         }
 
+        private void released() {
+            final LeakRef leakRef = this.leakRef;
+            if (leakRef != null) {
+                this.leakRef = null;
+                leakRef.released = true;
+            }
+        }
+
         public ByteBuffer getResource() {
             final ByteBuffer buffer = this.buffer;
             if (buffer == null) {
@@ -251,6 +453,27 @@ public final class ByteBufferSlicePool implements Pool<ByteBuffer> {
         }
     }
 
+    final class LeakRef extends AutomaticReference<ByteBuffer> {
+        private final Slice region;
+        private final Throwable allocationSite;
+        volatile boolean released;
+
+        private LeakRef(final ByteBuffer referent, final Slice region) {
+            super(referent, AutomaticReference.PERMIT);
+            this.region = region;
+            allocationSite = new Throwable("Buffer allocation site");
+        }
+
+        protected void free() {
+            if (! released) {
+                leakCount.increment();
+                msg.bufferLeaked(allocationSite);
+                // the buffer is unreachable, so its area can be reused
+                doFree(region);
+            }
+        }
+    }
+
     private final class ThreadLocalCache {
 
         final ArrayDeque<Slice> queue =  new ArrayDeque<Slice>(threadLocalQueueSize) {
@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.io.IOException;
+
+/**
+ * A block compression codec.  Codecs are discovered with {@link java.util.ServiceLoader} under this interface's
+ * name, and selected by {@linkplain #getName() name} with the {@link Options#COMPRESSION_CODEC} option.  The
+ * compressing and decompressing channels split the stream into blocks of at most {@link #MAX_BLOCK_SIZE} bytes and
+ * frame each compressed block with its lengths, so a codec only needs to handle whole blocks.  Implementations must
+ * be safe to use from several threads at once.
+ *
+ * @since 3.7
+ */
+public interface CompressionCodec {
+
+    /**
+     * The largest number of uncompressed bytes that is passed to a codec as a single block.
+     */
+    int MAX_BLOCK_SIZE = 0x10000;
+
+    /**
+     * Get the name of this codec.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Get the largest size that compressing a block of the given length can produce.
+     *
+     * @param length the uncompressed length, at most {@link #MAX_BLOCK_SIZE}
+     * @return the maximum compressed length
+     */
+    int getMaxCompressedLength(int length);
+
+    /**
+     * Compress a block.
+     *
+     * @param src the array holding the block
+     * @param srcOff the offset of the block
+     * @param srcLen the length of the block, at most {@link #MAX_BLOCK_SIZE}
+     * @param dst the array to compress into, with room for {@link #getMaxCompressedLength(int)} bytes
+     * @param dstOff the offset to compress to
+     * @param level the {@linkplain Options#COMPRESSION_LEVEL compression level}, from {@code -1} for the default to
+     *      {@code 9} for the best compression; codecs may ignore it
+     * @return the compressed length
+     */
+    int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int level);
+
+    /**
+     * Decompress a block.
+     *
+     * @param src the array holding the compressed block
+     * @param srcOff the offset of the compressed block
+     * @param srcLen the compressed length
+     * @param dst the array to decompress into
+     * @param dstOff the offset to decompress to
+     * @param dstLen the uncompressed length of the block
+     * @return the number of bytes decompressed, which is {@code dstLen} for a valid block
+     * @throws IOException if the compressed block is malformed
+     */
+    int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException;
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import static java.security.AccessController.doPrivileged;
+import static org.xnio._private.Messages.msg;
+
+import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of {@link CompressionCodec} implementations, which are looked up by name through
+ * {@link ServiceLoader}, first from XNIO's class loader and then from the thread context class loader, and cached.
+ */
+final class CompressionCodecs {
+
+    private static final ConcurrentHashMap<String, CompressionCodec> codecs = new ConcurrentHashMap<>();
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Get the codec with the given name.
+     *
+     * @param name the codec name
+     * @return the codec
+     * @throws IllegalArgumentException if no codec has the given name
+     */
+    static CompressionCodec getCodec(final String name) {
+        if (name == null) {
+            throw msg.nullParameter("name");
+        }
+        CompressionCodec codec = codecs.get(name);
+        if (codec == null) {
+            codec = load(name, Xnio.class.getClassLoader());
+            if (codec == null) {
+                codec = load(name, Thread.currentThread().getContextClassLoader());
+            }
+            if (codec == null) {
+                if (! Lz4CompressionCodec.NAME.equals(name)) {
+                    throw msg.noCompressionCodec(name);
+                }
+                // the service file may not be visible, for example in some OSGi containers
+                codec = new Lz4CompressionCodec();
+            }
+            final CompressionCodec appearing = codecs.putIfAbsent(name, codec);
+            if (appearing != null) {
+                codec = appearing;
+            }
+        }
+        return codec;
+    }
+
+    private static CompressionCodec load(final String name, final ClassLoader classLoader) {
+        final ServiceLoader<CompressionCodec> serviceLoader = doPrivileged(new PrivilegedAction<ServiceLoader<CompressionCodec>>() {
+            public ServiceLoader<CompressionCodec> run() {
+                return ServiceLoader.load(CompressionCodec.class, classLoader);
+            }
+        });
+        final Iterator<CompressionCodec> iterator = serviceLoader.iterator();
+        for (;;) {
+            try {
+                if (! iterator.hasNext()) {
+                    return null;
+                }
+                final CompressionCodec codec = iterator.next();
+                if (name.equals(codec.getName())) {
+                    return codec;
+                }
+            } catch (Throwable t) {
+                msg.debugf(t, "Skipping non-loadable compression codec");
+            }
+        }
+    }
+}
@@ -32,5 +32,17 @@ public enum CompressionType {
      * GZIP compatible compression.
      */
     GZIP,
+    /**
+     * LZ4 block compression, using the built-in {@link Lz4CompressionCodec}.
+     *
+     * @since 3.7
+     */
+    LZ4,
+    /**
+     * Block compression using the {@link CompressionCodec} named by {@link Options#COMPRESSION_CODEC}.
+     *
+     * @since 3.7
+     */
+    CODEC,
     ;
 }
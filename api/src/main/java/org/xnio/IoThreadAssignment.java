@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+/**
+ * The strategy a worker uses to assign new channels and accepted connections to its I/O threads.  The load-aware
+ * strategies are based on statistics which each I/O thread maintains cheaply and which may be slightly out of date.
+ *
+ * @since 3.7
+ */
+public enum IoThreadAssignment {
+
+    /**
+     * Outbound channels are assigned to a random thread, and accepted connections by a hash of their addresses.
+     */
+    RANDOM,
+    /**
+     * Channels and connections are assigned to each thread in turn.
+     */
+    ROUND_ROBIN,
+    /**
+     * Channels and connections are assigned to the thread with the fewest registered channels.
+     */
+    LEAST_KEYS,
+    /**
+     * Channels and connections are assigned to the thread which recently spent the least time per event loop
+     * iteration running tasks and handlers.
+     */
+    LEAST_LOOP_TIME,
+    /**
+     * Two threads are picked at random, and channels and connections are assigned to the one of them with fewer
+     * registered channels.
+     */
+    POWER_OF_TWO_CHOICES,
+}
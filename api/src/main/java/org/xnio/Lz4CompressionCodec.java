@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import static org.xnio._private.Messages.msg;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure Java codec for the LZ4 block format, which trades compression ratio for speed.  Blocks are compressed
+ * with a single-probe hash table; the compression level sets how quickly the search skips ahead through
+ * incompressible data, and from level {@code 7} every position inside a match is indexed as well, which finds more
+ * matches at some cost in speed.
+ *
+ * @since 3.7
+ */
+public final class Lz4CompressionCodec implements CompressionCodec {
+
+    /**
+     * The name of this codec.
+     */
+    public static final String NAME = "lz4";
+
+    private static final int MIN_MATCH = 4;
+    // the last match must start at least this many bytes before the end of the block
+    private static final int MF_LIMIT = 12;
+    // the last bytes of a block are always literals
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int HASH_LOG = 12;
+    private static final int RUN_MASK = 0xf;
+    private static final int INDEX_ALL_LEVEL = 7;
+
+    private static final ThreadLocal<int[]> hashTable = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    /**
+     * Construct a new instance.
+     */
+    public Lz4CompressionCodec() {
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public int getMaxCompressedLength(final int length) {
+        return length + length / 255 + 16;
+    }
+
+    public int compress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff, final int level) {
+        final int srcEnd = srcOff + srcLen;
+        int anchor = srcOff;
+        int op = dstOff;
+        if (srcLen > MF_LIMIT) {
+            final int[] table = hashTable.get();
+            Arrays.fill(table, -1);
+            final int matchLimit = srcEnd - LAST_LITERALS;
+            final int mfLimit = srcEnd - MF_LIMIT;
+            // the default level searches like level 4
+            final int skipShift = 2 + (level < 0 ? 4 : Math.min(level, 9));
+            final boolean indexAll = level >= INDEX_ALL_LEVEL;
+            int ip = srcOff;
+            int misses = 0;
+            while (ip < mfLimit) {
+                final int sequence = readInt(src, ip);
+                final int h = hash(sequence);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip += 1 + (misses ++ >>> skipShift);
+                    continue;
+                }
+                misses = 0;
+                // extend the match backwards over pending literals
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip --;
+                    ref --;
+                }
+                int matchLen = MIN_MATCH;
+                while (ip + matchLen < matchLimit && src[ref + matchLen] == src[ip + matchLen]) {
+                    matchLen ++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, matchLen);
+                final int matchEnd = ip + matchLen;
+                if (indexAll) {
+                    for (int i = ip + 1; i < matchEnd && i < mfLimit; i ++) {
+                        table[hash(readInt(src, i))] = i;
+                    }
+                } else if (matchEnd - 2 < mfLimit) {
+                    table[hash(readInt(src, matchEnd - 2))] = matchEnd - 2;
+                }
+                ip = anchor = matchEnd;
+            }
+        }
+        // the remaining bytes are literals
+        final int literals = srcEnd - anchor;
+        int token = op ++;
+        if (literals >= RUN_MASK) {
+            dst[token] = (byte) (RUN_MASK << 4);
+            op = writeLength(dst, op, literals - RUN_MASK);
+        } else {
+            dst[token] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        return op + literals - dstOff;
+    }
+
+    public int decompress(final byte[] src, final int srcOff, final int srcLen, final byte[] dst, final int dstOff, final int dstLen) throws IOException {
+        final int srcEnd = srcOff + srcLen;
+        final int dstEnd = dstOff + dstLen;
+        int ip = srcOff;
+        int op = dstOff;
+        for (;;) {
+            if (ip >= srcEnd) {
+                throw msg.invalidCompressedData();
+            }
+            final int token = src[ip ++] & 0xff;
+            int literals = token >>> 4;
+            if (literals == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw msg.invalidCompressedData();
+                    }
+                    b = src[ip ++] & 0xff;
+                    literals += b;
+                } while (b == 0xff);
+            }
+            if (literals > srcEnd - ip || literals > dstEnd - op) {
+                throw msg.invalidCompressedData();
+            }
+            System.arraycopy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == srcEnd) {
+                // the last sequence has no match
+                return op - dstOff;
+            }
+            if (srcEnd - ip < 2) {
+                throw msg.invalidCompressedData();
+            }
+            final int offset = src[ip] & 0xff | (src[ip + 1] & 0xff) << 8;
+            ip += 2;
+            if (offset == 0 || offset > op - dstOff) {
+                throw msg.invalidCompressedData();
+            }
+            int matchLen = token & RUN_MASK;
+            if (matchLen == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw msg.invalidCompressedData();
+                    }
+                    b = src[ip ++] & 0xff;
+                    matchLen += b;
+                } while (b == 0xff);
+            }
+            matchLen += MIN_MATCH;
+            if (matchLen > dstEnd - op) {
+                throw msg.invalidCompressedData();
+            }
+            final int ref = op - offset;
+            if (offset >= matchLen) {
+                System.arraycopy(dst, ref, dst, op, matchLen);
+            } else {
+                // overlapping copy, which repeats the last offset bytes
+                for (int i = 0; i < matchLen; i ++) {
+                    dst[op + i] = dst[ref + i];
+                }
+            }
+            op += matchLen;
+        }
+    }
+
+    private static int writeSequence(final byte[] src, final int literalOff, final int literals, final byte[] dst, int op, final int offset, final int matchLen) {
+        final int token = op ++;
+        final int literalsCode;
+        if (literals >= RUN_MASK) {
+            literalsCode = RUN_MASK;
+            op = writeLength(dst, op, literals - RUN_MASK);
+        } else {
+            literalsCode = literals;
+        }
+        System.arraycopy(src, literalOff, dst, op, literals);
+        op += literals;
+        dst[op ++] = (byte) offset;
+        dst[op ++] = (byte) (offset >>> 8);
+        final int matchCode = matchLen - MIN_MATCH;
+        if (matchCode >= RUN_MASK) {
+            dst[token] = (byte) (literalsCode << 4 | RUN_MASK);
+            op = writeLength(dst, op, matchCode - RUN_MASK);
+        } else {
+            dst[token] = (byte) (literalsCode << 4 | matchCode);
+        }
+        return op;
+    }
+
+    private static int writeLength(final byte[] dst, int op, int length) {
+        while (length >= 0xff) {
+            dst[op ++] = (byte) 0xff;
+            length -= 0xff;
+        }
+        dst[op ++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(final byte[] array, final int off) {
+        return array[off] & 0xff | (array[off + 1] & 0xff) << 8 | (array[off + 2] & 0xff) << 16 | array[off + 3] << 24;
+    }
+
+    private static int hash(final int sequence) {
+        return sequence * -1640531535 >>> 32 - HASH_LOG;
+    }
+}
@@ -75,6 +75,17 @@ public final class Options {
      */
     public static final Option<Boolean> REUSE_ADDRESSES = Option.simple(Options.class, "REUSE_ADDRESSES", Boolean.class);
 
+    /**
+     * Configure a TCP server to bind a separate listening socket for each I/O thread using {@code SO_REUSEPORT}, so
+     * that the operating system spreads incoming connections across the threads instead of all threads accepting from
+     * one shared socket.  Each connection is then handled by the thread which accepted it.  If the platform does not
+     * support {@code SO_REUSEPORT}, a single shared socket is used.  The value type for this option is
+     * {@code boolean}.
+     *
+     * @since 3.7
+     */
+    public static final Option<Boolean> REUSE_PORT = Option.simple(Options.class, "REUSE_PORT", Boolean.class);
+
     /**
      * The send buffer size.  The value type for this option is {@code int}.  This may be used by an XNIO provider
      * directly, or it may be passed to the underlying operating system, depending on the channel type.  Buffer
@@ -116,6 +127,25 @@ public final class Options {
      */
     public static final Option<Integer> BACKLOG = Option.simple(Options.class, "BACKLOG", Integer.class);
 
+    /**
+     * Configure the maximum number of connections a server accepts each time it is notified that connections are
+     * pending.  Connections beyond this number are left in the backlog until the next notification.  The value type
+     * for this option is {@code int}.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> ACCEPT_BATCH_SIZE = Option.simple(Options.class, "ACCEPT_BATCH_SIZE", Integer.class);
+
+    /**
+     * Configure the number of accepted connections a server may queue for each I/O thread before they are registered.
+     * While the queue of a thread is full, the server stops accepting and further connections wait in the listen
+     * backlog until that thread has taken some off its queue.  The capacity is rounded up to a power of two and cannot
+     * be changed once the server is created.  The value type for this option is {@code int}.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> ACCEPT_QUEUE_CAPACITY = Option.simple(Options.class, "ACCEPT_QUEUE_CAPACITY", Integer.class);
+
     /**
      * Configure a read timeout for a socket, in milliseconds.  If the given amount of time elapses without
      * a successful read taking place, the socket's next read will throw a {@link ReadTimeoutException}.
@@ -294,6 +324,15 @@ public final class Options {
      */
     public static final Option<Integer> SSL_APPLICATION_BUFFER_REGION_SIZE = Option.simple(Options.class, "SSL_APPLICATION_BUFFER_REGION_SIZE", Integer.class);
 
+    /**
+     * The number of SSL packet buffers each thread may cache from its worker's SSL buffer pool, or {@code 0} to
+     * disable the per-thread caches.  Like {@link #SSL_PACKET_BUFFER_SIZE} and {@link #SSL_PACKET_BUFFER_REGION_SIZE},
+     * this option is read from the worker's option map.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> SSL_PACKET_BUFFER_THREAD_CACHE_SIZE = Option.simple(Options.class, "SSL_PACKET_BUFFER_THREAD_CACHE_SIZE", Integer.class);
+
     /**
      * Specify whether to use STARTTLS mode (in which a connection starts clear and switches to TLS on demand).
      *
@@ -301,6 +340,44 @@ public final class Options {
      */
     public static final Option<Boolean> SSL_STARTTLS = Option.simple(Options.class, "SSL_STARTTLS", Boolean.class);
 
+    /**
+     * Specify whether an SSL connection should hold its packet and application buffers only while data is being wrapped
+     * or unwrapped, returning each buffer to the pool as soon as it is drained.  This saves the buffer memory of idle
+     * connections at the cost of a pool allocation for each burst of activity.  Defaults to {@code false}.
+     *
+     * @since 3.7
+     */
+    public static final Option<Boolean> SSL_LAZY_BUFFERS = Option.simple(Options.class, "SSL_LAZY_BUFFERS", Boolean.class);
+
+    /**
+     * The number of plaintext bytes an SSL connection may accumulate from small writes before wrapping them into one
+     * TLS record, or {@code 0} to wrap every write right away.  Accumulated bytes are wrapped as soon as a write would
+     * overflow them, and on {@code flush()} and {@code terminateWrites()}, so callers must flush to push them out.
+     * A value of {@code 16384}, the largest record payload, gives full records.  Defaults to {@code 0}.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> SSL_WRITE_COALESCING_SIZE = Option.simple(Options.class, "SSL_WRITE_COALESCING_SIZE", Integer.class);
+
+    /**
+     * The number of threads of the SSL provider's dedicated handshake executor, which runs the delegated tasks of the
+     * SSL engine off the I/O threads.  Defaults to {@code 0}, which runs delegated tasks inline on the I/O thread.
+     * While a connection's tasks are running, its reads and writes return {@code 0}, and its resumed listeners are
+     * woken up once the tasks are done.  This option is read from the option map given to the SSL provider.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> SSL_HANDSHAKE_THREADS = Option.simple(Options.class, "SSL_HANDSHAKE_THREADS", Integer.class);
+
+    /**
+     * The maximum number of delegated tasks that may wait for a thread of the SSL provider's handshake executor.
+     * While the queue is full, accepted connections are closed before their handshake begins.  Defaults to
+     * {@code 1024}.  This option is read from the option map given to the SSL provider.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> SSL_HANDSHAKE_QUEUE_SIZE = Option.simple(Options.class, "SSL_HANDSHAKE_QUEUE_SIZE", Integer.class);
+
     /**
      * Specify the (non-authoritative) name of the peer host to use for the purposes of session reuse, as well as
      * for the use of certain cipher suites (such as Kerberos).  If not given, defaults to the host name of the
@@ -524,6 +601,32 @@ public final class Options {
      */
     public static final Option<Integer> WORKER_TASK_LIMIT = Option.simple(Options.class, "WORKER_TASK_LIMIT", Integer.class);
 
+    /**
+     * Specify the tick duration, in milliseconds, of the timer wheel which I/O threads use to run delayed and
+     * repeating tasks.  Tasks may run up to one tick late.  Defaults to 1.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> WORKER_TIMER_TICK = Option.simple(Options.class, "WORKER_TIMER_TICK", Integer.class);
+
+    /**
+     * Specify the maximum number of times an idle I/O thread should poll its selector and task queue before blocking
+     * in a select operation.  Spinning avoids the cost of waking a blocked selector at the expense of CPU time; the
+     * number of polls actually made adapts between one and this value depending on whether recent spins found work.
+     * Defaults to 0, which disables spinning.
+     *
+     * @since 3.7
+     */
+    public static final Option<Integer> WORKER_IO_SPIN_COUNT = Option.simple(Options.class, "WORKER_IO_SPIN_COUNT", Integer.class);
+
+    /**
+     * Specify how a worker assigns new channels and accepted connections to its I/O threads.  Defaults to
+     * {@link IoThreadAssignment#RANDOM}.
+     *
+     * @since 3.7
+     */
+    public static final Option<IoThreadAssignment> WORKER_IO_THREAD_ASSIGNMENT = Option.simple(Options.class, "WORKER_IO_THREAD_ASSIGNMENT", IoThreadAssignment.class);
+
     /**
      * Specify that output should be buffered.  The exact behavior of the buffering is not specified; it may flush based
      * on buffered size or time.  An explicit {@link SuspendableWriteChannel#flush()} will still cause
@@ -553,6 +656,14 @@ public final class Options {
      */
     public static final Option<CompressionType> COMPRESSION_TYPE = Option.simple(Options.class, "COMPRESSION_TYPE", CompressionType.class);
 
+    /**
+     * The name of the {@link CompressionCodec} to apply for compressing streams and channels when the
+     * {@link #COMPRESSION_TYPE} is {@link CompressionType#CODEC CODEC}.
+     *
+     * @since 3.7
+     */
+    public static final Option<String> COMPRESSION_CODEC = Option.simple(Options.class, "COMPRESSION_CODEC", String.class);
+
     /**
      * The number of balancing tokens, if connection-balancing is enabled.  Must be less than the number of I/O threads,
      * or 0 to disable balancing and just accept opportunistically.
@@ -45,6 +45,7 @@ import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceReference;
 import org.xnio.management.XnioProviderMXBean;
+import org.xnio.management.XnioIoThreadMXBean;
 import org.xnio.management.XnioServerMXBean;
 import org.xnio.management.XnioWorkerMXBean;
 import org.xnio.ssl.JsseSslUtils;
@@ -605,6 +606,22 @@ public abstract class Xnio {
         }
     }
 
+    /**
+     * Register an MBean.  If the MBean cannot be registered, this method will simply return.
+     *
+     * @param ioThreadMXBean the I/O thread MBean to register
+     * @return a handle which may be used to remove the registration
+     */
+    protected static Closeable register(XnioIoThreadMXBean ioThreadMXBean) {
+        try {
+            final ObjectName objectName = new ObjectName("org.xnio", ObjectProperties.properties(ObjectProperties.property("type", "Xnio"), ObjectProperties.property("provider", ObjectName.quote(ioThreadMXBean.getProviderName())), ObjectProperties.property("worker", ObjectName.quote(ioThreadMXBean.getWorkerName())), ObjectProperties.property("thread", ObjectName.quote(ioThreadMXBean.getName()))));
+            MBeanHolder.MBEAN_SERVER.registerMBean(ioThreadMXBean, objectName);
+            return new MBeanCloseable(objectName);
+        } catch (Throwable ignored) {
+            return IoUtils.nullCloseable();
+        }
+    }
+
     static class MBeanCloseable extends AtomicBoolean implements Closeable {
 
         private final ObjectName objectName;
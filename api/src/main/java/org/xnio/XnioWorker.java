@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.security.PrivilegedAction;
 import java.util.Collections;
 import java.util.List;
@@ -57,8 +58,10 @@ import org.xnio.channels.MulticastMessageChannel;
 import org.xnio.channels.StreamChannel;
 import org.xnio.channels.StreamSinkChannel;
 import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.CompressingStreamSinkConduit;
 import org.xnio.conduits.ConduitStreamSinkChannel;
 import org.xnio.conduits.ConduitStreamSourceChannel;
+import org.xnio.conduits.DecompressingStreamSourceConduit;
 import org.xnio.conduits.DeflatingStreamSinkConduit;
 import org.xnio.conduits.InflatingStreamSourceConduit;
 import org.xnio.conduits.StreamSinkChannelWrappingConduit;
@@ -87,6 +90,8 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
     private final String name;
     private final Runnable terminationTask;
     private final CidrAddressTable<InetSocketAddress> bindAddressTable;
+    private final ByteBufferSlicePool sslBufferPool;
+    private final ZlibPool zlibPool = new ZlibPool();
 
     private volatile int taskSeq;
 
@@ -121,6 +126,7 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
         name = workerName;
         final boolean markThreadAsDaemon = builder.isDaemon();
         bindAddressTable = builder.getBindAddressConfigurations();
+        sslBufferPool = new ByteBufferSlicePool(BufferAllocator.DIRECT_BYTE_BUFFER_ALLOCATOR, builder.getSslPacketBufferSize(), builder.getSslPacketBufferRegionSize(), builder.getSslPacketBufferThreadCacheSize());
         final Runnable terminationTask = new Runnable() {
             public void run() {
                 try {
@@ -624,6 +630,7 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
 
     /**
      * Create a stream channel that decompresses the source data according to the configuration in the given option map.
+     * The inflater is taken from a pool owned by this worker, and returned to it when reads are terminated.
      *
      * @param delegate the compressed channel
      * @param options the configuration options for the channel
@@ -635,9 +642,11 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
         switch (options.get(Options.COMPRESSION_TYPE, CompressionType.DEFLATE)) {
             case DEFLATE: nowrap = false; break;
             case GZIP: nowrap = true; break;
+            case LZ4: return getDecompressingChannel(delegate, CompressionCodecs.getCodec(Lz4CompressionCodec.NAME));
+            case CODEC: return getDecompressingChannel(delegate, getCompressionCodec(options));
             default: throw msg.badCompressionFormat();
         }
-        return getInflatingChannel(delegate, new Inflater(nowrap));
+        return getInflatingChannel(delegate, zlibPool.getInflater(nowrap));
     }
 
     /**
@@ -654,6 +663,7 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
 
     /**
      * Create a stream channel that compresses to the destination according to the configuration in the given option map.
+     * The deflater is taken from a pool owned by this worker, and returned to it when writes are terminated and flushed.
      *
      * @param delegate the channel to compress to
      * @param options the configuration options for the channel
@@ -666,13 +676,17 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
         switch (options.get(Options.COMPRESSION_TYPE, CompressionType.DEFLATE)) {
             case DEFLATE: nowrap = false; break;
             case GZIP: nowrap = true; break;
+            case LZ4: return getCompressingChannel(delegate, CompressionCodecs.getCodec(Lz4CompressionCodec.NAME), level);
+            case CODEC: return getCompressingChannel(delegate, getCompressionCodec(options), level);
             default: throw msg.badCompressionFormat();
         }
-        return getDeflatingChannel(delegate, new Deflater(level, nowrap));
+        return getDeflatingChannel(delegate, zlibPool.getDeflater(level, nowrap));
     }
 
     /**
      * Create a stream channel that compresses to the destination according to the configuration in the given inflater.
+     * A deflater taken from the pool of this worker is returned to it once the stream is finished; any other deflater
+     * is left to the caller to end.
      *
      * @param delegate the channel to compress to
      * @param deflater the deflater to use
@@ -680,7 +694,43 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
      * @throws IOException if the channel could not be constructed
      */
     protected StreamSinkChannel getDeflatingChannel(final StreamSinkChannel delegate, final Deflater deflater) throws IOException {
-        return new ConduitStreamSinkChannel(Configurable.EMPTY, new DeflatingStreamSinkConduit(new StreamSinkChannelWrappingConduit(delegate), deflater));
+        final boolean pooled = deflater instanceof ZlibPool.PooledDeflater;
+        return new ConduitStreamSinkChannel(Configurable.EMPTY, new DeflatingStreamSinkConduit(new StreamSinkChannelWrappingConduit(delegate), deflater, pooled));
+    }
+
+    /**
+     * Create a stream channel that decompresses the source data, framed in blocks, with the given codec.
+     *
+     * @param delegate the compressed channel
+     * @param codec the codec to use
+     * @return a decompressed channel
+     * @throws IOException if the channel could not be constructed
+     * @since 3.7
+     */
+    protected StreamSourceChannel getDecompressingChannel(final StreamSourceChannel delegate, final CompressionCodec codec) throws IOException {
+        return new ConduitStreamSourceChannel(Configurable.EMPTY, new DecompressingStreamSourceConduit(new StreamSourceChannelWrappingConduit(delegate), codec));
+    }
+
+    /**
+     * Create a stream channel that compresses to the destination, framed in blocks, with the given codec.
+     *
+     * @param delegate the channel to compress to
+     * @param codec the codec to use
+     * @param level the compression level to pass to the codec
+     * @return a compressed channel
+     * @throws IOException if the channel could not be constructed
+     * @since 3.7
+     */
+    protected StreamSinkChannel getCompressingChannel(final StreamSinkChannel delegate, final CompressionCodec codec, final int level) throws IOException {
+        return new ConduitStreamSinkChannel(Configurable.EMPTY, new CompressingStreamSinkConduit(new StreamSinkChannelWrappingConduit(delegate), codec, level));
+    }
+
+    private static CompressionCodec getCompressionCodec(final OptionMap options) {
+        final String name = options.get(Options.COMPRESSION_CODEC);
+        if (name == null) {
+            throw msg.badCompressionFormat();
+        }
+        return CompressionCodecs.getCodec(name);
     }
 
     public ChannelPipe<StreamChannel, StreamChannel> createFullDuplexPipe() throws IOException {
@@ -998,6 +1048,42 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
         return bindAddressTable.get(destination);
     }
 
+    //==================================================
+    //
+    // SSL buffers
+    //
+    //==================================================
+
+    /**
+     * Get the pool from which SSL connections of this worker allocate their packet and application buffers.  The
+     * pool is sized by {@link Options#SSL_PACKET_BUFFER_SIZE}, {@link Options#SSL_PACKET_BUFFER_REGION_SIZE} and
+     * {@link Options#SSL_PACKET_BUFFER_THREAD_CACHE_SIZE} as given to the worker, and is not shared with other workers.
+     *
+     * @return the SSL buffer pool
+     * @since 3.7
+     */
+    public Pool<ByteBuffer> getSslBufferPool() {
+        return sslBufferPool;
+    }
+
+    /**
+     * Get the number of SSL buffer allocations that were satisfied from the allocating thread's cache.
+     *
+     * @return the SSL buffer pool hit count
+     */
+    protected final long getSslBufferPoolHitCount() {
+        return sslBufferPool.getHitCount();
+    }
+
+    /**
+     * Get the number of SSL buffer allocations that had to fall back to the worker's shared SSL buffer pool.
+     *
+     * @return the SSL buffer pool miss count
+     */
+    protected final long getSslBufferPoolMissCount() {
+        return sslBufferPool.getMissCount();
+    }
+
     //==================================================
     //
     // JMX
@@ -1029,6 +1115,12 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
         private int workerKeepAlive = 60_000;
         private int workerIoThreads = 1;
         private long workerStackSize = 0L;
+        private int workerTimerTick = 1;
+        private int workerIoSpinCount = 0;
+        private IoThreadAssignment ioThreadAssignment = IoThreadAssignment.RANDOM;
+        private int sslPacketBufferSize = 17 * 1024;
+        private int sslPacketBufferRegionSize = 17 * 1024 * 128;
+        private int sslPacketBufferThreadCacheSize = ByteBufferSlicePool.LOCAL_LENGTH;
         private CidrAddressTable<InetSocketAddress> bindAddressConfigurations = new CidrAddressTable<>();
 
         /**
@@ -1056,6 +1148,12 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
                 setWorkerIoThreads(max(optionMap.get(Options.WORKER_READ_THREADS, 1), optionMap.get(Options.WORKER_WRITE_THREADS, 1)));
             }
             setWorkerStackSize(optionMap.get(Options.STACK_SIZE, workerStackSize));
+            setWorkerTimerTick(optionMap.get(Options.WORKER_TIMER_TICK, workerTimerTick));
+            setWorkerIoSpinCount(optionMap.get(Options.WORKER_IO_SPIN_COUNT, workerIoSpinCount));
+            setIoThreadAssignment(optionMap.get(Options.WORKER_IO_THREAD_ASSIGNMENT, ioThreadAssignment));
+            setSslPacketBufferSize(optionMap.get(Options.SSL_PACKET_BUFFER_SIZE, sslPacketBufferSize));
+            setSslPacketBufferRegionSize(optionMap.get(Options.SSL_PACKET_BUFFER_REGION_SIZE, sslPacketBufferRegionSize));
+            setSslPacketBufferThreadCacheSize(optionMap.get(Options.SSL_PACKET_BUFFER_THREAD_CACHE_SIZE, sslPacketBufferThreadCacheSize));
             return this;
         }
 
@@ -1166,6 +1264,66 @@ public abstract class XnioWorker extends AbstractExecutorService implements Conf
             return this;
         }
 
+        public int getWorkerTimerTick() {
+            return workerTimerTick;
+        }
+
+        public Builder setWorkerTimerTick(final int workerTimerTick) {
+            Assert.checkMinimumParameter("workerTimerTick", 1, workerTimerTick);
+            this.workerTimerTick = workerTimerTick;
+            return this;
+        }
+
+        public int getWorkerIoSpinCount() {
+            return workerIoSpinCount;
+        }
+
+        public Builder setWorkerIoSpinCount(final int workerIoSpinCount) {
+            Assert.checkMinimumParameter("workerIoSpinCount", 0, workerIoSpinCount);
+            this.workerIoSpinCount = workerIoSpinCount;
+            return this;
+        }
+
+        public IoThreadAssignment getIoThreadAssignment() {
+            return ioThreadAssignment;
+        }
+
+        public Builder setIoThreadAssignment(final IoThreadAssignment ioThreadAssignment) {
+            Assert.checkNotNullParam("ioThreadAssignment", ioThreadAssignment);
+            this.ioThreadAssignment = ioThreadAssignment;
+            return this;
+        }
+
+        public int getSslPacketBufferSize() {
+            return sslPacketBufferSize;
+        }
+
+        public Builder setSslPacketBufferSize(final int sslPacketBufferSize) {
+            Assert.checkMinimumParameter("sslPacketBufferSize", 1, sslPacketBufferSize);
+            this.sslPacketBufferSize = sslPacketBufferSize;
+            return this;
+        }
+
+        public int getSslPacketBufferRegionSize() {
+            return sslPacketBufferRegionSize;
+        }
+
+        public Builder setSslPacketBufferRegionSize(final int sslPacketBufferRegionSize) {
+            Assert.checkMinimumParameter("sslPacketBufferRegionSize", 1, sslPacketBufferRegionSize);
+            this.sslPacketBufferRegionSize = sslPacketBufferRegionSize;
+            return this;
+        }
+
+        public int getSslPacketBufferThreadCacheSize() {
+            return sslPacketBufferThreadCacheSize;
+        }
+
+        public Builder setSslPacketBufferThreadCacheSize(final int sslPacketBufferThreadCacheSize) {
+            Assert.checkMinimumParameter("sslPacketBufferThreadCacheSize", 0, sslPacketBufferThreadCacheSize);
+            this.sslPacketBufferThreadCacheSize = sslPacketBufferThreadCacheSize;
+            return this;
+        }
+
         public ExecutorService getExternalExecutorService() {
             return externalExecutorService;
         }
@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of reusable {@link Inflater} and {@link Deflater} instances, which saves setting up and tearing down the
+ * native zlib state for every compressed channel.  Pooled instances are returned to the pool, reset, when they are
+ * {@linkplain Inflater#end() ended}; if the pool for their configuration is full, they are ended for real.
+ */
+final class ZlibPool {
+
+    private static final int MAX_POOLED = 16;
+    private static final int LEVELS = Deflater.BEST_COMPRESSION - Deflater.DEFAULT_COMPRESSION + 1;
+
+    // indexed by nowrap
+    private final ArrayBlockingQueue<PooledInflater>[] inflaters;
+    // indexed by (level - DEFAULT_COMPRESSION) * 2 + nowrap
+    private final ArrayBlockingQueue<PooledDeflater>[] deflaters;
+
+    @SuppressWarnings("unchecked")
+    ZlibPool() {
+        inflaters = (ArrayBlockingQueue<PooledInflater>[]) new ArrayBlockingQueue<?>[2];
+        for (int i = 0; i < inflaters.length; i ++) {
+            inflaters[i] = new ArrayBlockingQueue<>(MAX_POOLED);
+        }
+        deflaters = (ArrayBlockingQueue<PooledDeflater>[]) new ArrayBlockingQueue<?>[LEVELS * 2];
+        for (int i = 0; i < deflaters.length; i ++) {
+            deflaters[i] = new ArrayBlockingQueue<>(MAX_POOLED);
+        }
+    }
+
+    /**
+     * Get an inflater from the pool, or create one if none is available.
+     *
+     * @param nowrap {@code true} to omit the zlib header and checksum
+     * @return the inflater
+     */
+    Inflater getInflater(final boolean nowrap) {
+        final ArrayBlockingQueue<PooledInflater> queue = inflaters[nowrap ? 1 : 0];
+        PooledInflater inflater = queue.poll();
+        if (inflater == null) {
+            inflater = new PooledInflater(nowrap, queue);
+        }
+        inflater.inUse = true;
+        return inflater;
+    }
+
+    /**
+     * Get a deflater from the pool, or create one if none is available.
+     *
+     * @param level the compression level, from {@link Deflater#DEFAULT_COMPRESSION} to
+     *      {@link Deflater#BEST_COMPRESSION}
+     * @param nowrap {@code true} to omit the zlib header and checksum
+     * @return the deflater
+     */
+    Deflater getDeflater(final int level, final boolean nowrap) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            // let the deflater reject it
+            return new Deflater(level, nowrap);
+        }
+        final ArrayBlockingQueue<PooledDeflater> queue = deflaters[(level - Deflater.DEFAULT_COMPRESSION) * 2 + (nowrap ? 1 : 0)];
+        PooledDeflater deflater = queue.poll();
+        if (deflater == null) {
+            deflater = new PooledDeflater(level, nowrap, queue);
+        }
+        deflater.inUse = true;
+        return deflater;
+    }
+
+    static final class PooledInflater extends Inflater {
+        private final ArrayBlockingQueue<PooledInflater> queue;
+        boolean inUse;
+
+        PooledInflater(final boolean nowrap, final ArrayBlockingQueue<PooledInflater> queue) {
+            super(nowrap);
+            this.queue = queue;
+        }
+
+        public void end() {
+            if (inUse) {
+                inUse = false;
+                reset();
+                if (! queue.offer(this)) {
+                    super.end();
+                }
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        protected void finalize() {
+            // never resurrect into the pool
+            super.end();
+        }
+    }
+
+    static final class PooledDeflater extends Deflater {
+        private final ArrayBlockingQueue<PooledDeflater> queue;
+        boolean inUse;
+
+        PooledDeflater(final int level, final boolean nowrap, final ArrayBlockingQueue<PooledDeflater> queue) {
+            super(level, nowrap);
+            this.queue = queue;
+        }
+
+        public void end() {
+            if (inUse) {
+                inUse = false;
+                reset();
+                if (! queue.offer(this)) {
+                    super.end();
+                }
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        protected void finalize() {
+            // never resurrect into the pool
+            super.end();
+        }
+    }
+}
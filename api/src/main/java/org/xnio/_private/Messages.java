@@ -197,6 +197,15 @@ public interface Messages extends BasicLogger {
     @Message(id = 41, value = "'%s' is not a valid Strength value")
     IllegalArgumentException invalidStrength(String name);
 
+    @Message(id = 42, value = "Buffer pool memory limit of %d bytes reached")
+    IllegalStateException bufferPoolExhausted(long maxMemory);
+
+    @Message(id = 43, value = "No compression codec named '%s' was found")
+    IllegalArgumentException noCompressionCodec(String name);
+
+    @Message(id = 44, value = "Buffer pool memory limit of %d bytes reached; I/O threads may not wait for a buffer to be freed")
+    IllegalStateException bufferPoolExhaustedOnIoThread(long maxMemory);
+
     // HTTP upgrade
 
     @Message(id = 100, value = "'https' URL scheme chosen but no SSL provider given")
@@ -290,6 +299,9 @@ public interface Messages extends BasicLogger {
     @Message(id = 816, value = "Redirect encountered establishing connection")
     String redirect();
 
+    @Message(id = 817, value = "Invalid compressed data")
+    IOException invalidCompressedData();
+
     // Unsupported implementation operations - cross-check with xnio-nio
 
     @Message(id = 900, value = "Method '%s' is not supported on this implementation")
@@ -336,6 +348,10 @@ public interface Messages extends BasicLogger {
     @LogMessage(level = ERROR)
     void executorSubmitFailed(RejectedExecutionException cause, Channel channel);
 
+    @Message(id = 1011, value = "A pooled buffer was garbage-collected without being freed; it was allocated at the following location")
+    @LogMessage(level = WARN)
+    void bufferLeaked(@Cause Throwable allocationSite);
+
     // Trace
 
     @Message(value = "Closing resource %s")
@@ -24,6 +24,7 @@ import static org.xnio._private.Messages.msg;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
+import org.wildfly.common.function.ExceptionConsumer;
 import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
 import org.xnio.Option;
@@ -130,6 +131,14 @@ public class AssembledMessageChannel implements MessageChannel {
         return readable.receive(buffers, offs, len);
     }
 
+    public int receiveMessages(final ByteBuffer[] buffers, final int offs, final int len) throws IOException {
+        return readable.receiveMessages(buffers, offs, len);
+    }
+
+    public int receiveMessages(final ExceptionConsumer<ByteBuffer, IOException> handler, final int maxMessages) throws IOException {
+        return readable.receiveMessages(handler, maxMessages);
+    }
+
     // Write side
 
     public ChannelListener.Setter<? extends AssembledMessageChannel> getWriteSetter() {
@@ -27,6 +27,8 @@ import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Locale;
+import org.wildfly.common.function.ExceptionConsumer;
+import org.wildfly.common.function.ExceptionToIntFunction;
 import org.xnio.Buffers;
 
 import java.io.IOException;
@@ -454,6 +456,39 @@ public final class Channels {
         }
     }
 
+    /**
+     * Receive messages one at a time into a scratch buffer, passing each one to the given handler as a read-only view
+     * of that buffer, until no more messages are available.  This is the basic implementation of the handler variants
+     * of {@link ReadableMessageChannel#receiveMessages(ExceptionConsumer, int)} and
+     * {@link org.xnio.conduits.MessageSourceConduit#receiveMessages(ExceptionConsumer, int)}; callers which know how
+     * large their messages can be may use it directly with a buffer of their own.  The part of a message which does
+     * not fit in the buffer is discarded.
+     *
+     * @param receiver the single message receive operation, usually {@code channel::receive}
+     * @param buffer the scratch buffer to receive each message into
+     * @param handler the handler to call for each message
+     * @param maxMessages the maximum number of messages to receive
+     * @return the number of messages received, 0 if no message is available, and -1 if the source has reached an
+     *      end-of-file condition
+     * @throws IOException if an I/O error occurs, or if thrown by the handler
+     * @since 3.7
+     */
+    public static int receiveMessages(ExceptionToIntFunction<ByteBuffer, IOException> receiver, ByteBuffer buffer, ExceptionConsumer<ByteBuffer, IOException> handler, int maxMessages) throws IOException {
+        final ByteBuffer view = buffer.asReadOnlyBuffer();
+        for (int i = 0; i < maxMessages; i ++) {
+            buffer.clear();
+            final int res = receiver.apply(buffer);
+            if (res == -1) {
+                return i == 0 ? -1 : i;
+            } else if (res == 0) {
+                return i;
+            }
+            view.limit(buffer.position()).position(0);
+            handler.accept(view);
+        }
+        return maxMessages;
+    }
+
     /**
      * Simple utility method to execute a blocking accept on an accepting channel.  This method blocks until
      * an accept is possible, and then returns the accepted connection.
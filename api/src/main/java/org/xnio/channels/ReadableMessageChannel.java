@@ -20,7 +20,11 @@ package org.xnio.channels;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.wildfly.common.function.ExceptionConsumer;
+import org.wildfly.common.function.ExceptionToIntFunction;
+import org.xnio.ByteBufferPool;
 import org.xnio.ChannelListener;
+import org.xnio.Options;
 
 /**
  * A channel that can receive messages.  Such a channel receives whole messages only.
@@ -55,6 +59,62 @@ public interface ReadableMessageChannel extends SuspendableReadChannel, Configur
      */
     long receive(ByteBuffer[] buffers, int offs, int len) throws IOException;
 
+    /**
+     * Receive as many messages as are available, one into each buffer, stopping when the buffers run out.  As with
+     * {@link #receive(ByteBuffer)}, the part of a message which does not fit in its buffer is discarded.
+     *
+     * @param buffers the buffers that will hold the messages, one message per buffer
+     * @param offs the offset into the array of buffers of the first buffer to receive into
+     * @param len the maximum number of messages to receive
+     * @return the number of messages received, 0 if no message is available, and -1 if the message channel has
+     *      reached an end-of-file condition
+     * @throws IOException if an I/O error occurs
+     * @since 3.7
+     */
+    default int receiveMessages(ByteBuffer[] buffers, int offs, int len) throws IOException {
+        for (int i = 0; i < len; i ++) {
+            final int res = receive(buffers[offs + i]);
+            if (res == -1) {
+                return i == 0 ? -1 : i;
+            } else if (res == 0) {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Receive as many messages as are available, passing each one to the given handler.  The buffer passed to the
+     * handler holds exactly one message, is read-only, and is only valid until the handler returns.  Channels backed by
+     * a conduit which frames messages over a stream pass each message in place, without copying it.
+     * <p>
+     * By default, each message is received with {@link #receive(ByteBuffer)}, using
+     * {@link Channels#receiveMessages(ExceptionToIntFunction, ByteBuffer, ExceptionConsumer, int) Channels.receiveMessages},
+     * into a buffer as large as the channel's {@link Options#RECEIVE_BUFFER RECEIVE_BUFFER}, which no message can
+     * exceed.  A pooled buffer of {@link ByteBufferPool#MEDIUM_SIZE} bytes is used if the receive buffer is no larger
+     * or its size is not known.  As with {@link #receive(ByteBuffer)}, the part of a larger message which does not fit
+     * is discarded, and an empty message cannot be told apart from no message.
+     *
+     * @param handler the handler to call for each message
+     * @param maxMessages the maximum number of messages to receive
+     * @return the number of messages received, 0 if no message is available, and -1 if the message channel has
+     *      reached an end-of-file condition
+     * @throws IOException if an I/O error occurs, or if thrown by the handler
+     * @since 3.7
+     */
+    default int receiveMessages(ExceptionConsumer<ByteBuffer, IOException> handler, int maxMessages) throws IOException {
+        final int size = Channels.getOption(this, Options.RECEIVE_BUFFER, 0);
+        if (size > ByteBufferPool.MEDIUM_SIZE) {
+            return Channels.receiveMessages(this::receive, ByteBuffer.allocate(size), handler, maxMessages);
+        }
+        final ByteBuffer buffer = ByteBufferPool.MEDIUM_HEAP.allocate();
+        try {
+            return Channels.receiveMessages(this::receive, buffer, handler, maxMessages);
+        } finally {
+            ByteBufferPool.free(buffer);
+        }
+    }
+
     /** {@inheritDoc} */
     ChannelListener.Setter<? extends ReadableMessageChannel> getReadSetter();
 
@@ -20,6 +20,7 @@ package org.xnio.conduits;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.wildfly.common.function.ExceptionConsumer;
 
 /**
  * An abstract base class for filtering message source conduits.
@@ -44,4 +45,12 @@ public abstract class AbstractMessageSourceConduit<D extends MessageSourceCondui
     public long receive(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
         return next.receive(dsts, offs, len);
     }
+
+    public int receiveMessages(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
+        return next.receiveMessages(dsts, offs, len);
+    }
+
+    public int receiveMessages(final ExceptionConsumer<ByteBuffer, IOException> handler, final int maxMessages) throws IOException {
+        return next.receiveMessages(handler, maxMessages);
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import org.xnio.Buffers;
+import org.xnio.ByteBufferPool;
+import org.xnio.CompressionCodec;
+import org.xnio.channels.StreamSourceChannel;
+
+/**
+ * A filtering stream sink conduit which compresses the written data with a {@link CompressionCodec}.  The data is
+ * gathered into blocks of up to {@link CompressionCodec#MAX_BLOCK_SIZE} bytes, and each block is written as a frame
+ * made of its compressed length and its uncompressed length, as big-endian 32-bit integers, followed by the
+ * compressed block.  A partial block is compressed when the conduit is flushed, so callers should flush at message
+ * boundaries.
+ * <p>
+ * The block and the compressed frame are kept in a buffer from {@link ByteBufferPool#LARGE_HEAP}, which is only held
+ * while data is pending; it is returned to the pool once a flush has written everything out, and when writes are
+ * truncated.
+ *
+ * @since 3.7
+ */
+public final class CompressingStreamSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> implements StreamSinkConduit {
+
+    static final int HEADER_SIZE = 8;
+
+    private final CompressionCodec codec;
+    private final int level;
+    private final int outLength;
+    // the pooled buffer holding the block and the output buffer, or null while no data is pending
+    private ByteBuffer buffer;
+    // the uncompressed data of the current block
+    private ByteBuffer block;
+    private int blockLength;
+    // the framed compressed block not yet written to the next conduit
+    private ByteBuffer outBuffer;
+    private boolean terminated;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param next the delegate conduit to set
+     * @param codec the codec to compress with
+     * @param level the compression level to pass to the codec
+     */
+    public CompressingStreamSinkConduit(final StreamSinkConduit next, final CompressionCodec codec, final int level) {
+        super(next);
+        this.codec = codec;
+        this.level = level;
+        outLength = HEADER_SIZE + codec.getMaxCompressedLength(CompressionCodec.MAX_BLOCK_SIZE);
+    }
+
+    public long transferFrom(final FileChannel src, final long position, final long count) throws IOException {
+        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+    }
+
+    public long transferFrom(final StreamSourceChannel source, final long count, final ByteBuffer throughBuffer) throws IOException {
+        return Conduits.transfer(source, count, throughBuffer, this);
+    }
+
+    public int write(final ByteBuffer src) throws IOException {
+        if (terminated) {
+            throw new ClosedChannelException();
+        }
+        if (! src.hasRemaining()) {
+            return 0;
+        }
+        if (buffer == null) {
+            allocateBuffers();
+        }
+        final ByteBuffer block = this.block;
+        final int blockSize = block.capacity();
+        int cnt = 0;
+        int rem;
+        while ((rem = src.remaining()) > 0) {
+            if (blockLength == blockSize) {
+                if (! writeOut()) {
+                    return cnt;
+                }
+                compressBlock();
+            }
+            final int len = Math.min(rem, blockSize - blockLength);
+            src.get(block.array(), block.arrayOffset() + blockLength, len);
+            blockLength += len;
+            cnt += len;
+        }
+        return cnt;
+    }
+
+    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        if (terminated) {
+            throw new ClosedChannelException();
+        }
+        long cnt = 0L;
+        for (int i = 0; i < length; i ++) {
+            final ByteBuffer src = srcs[i + offset];
+            cnt += write(src);
+            if (src.hasRemaining()) {
+                break;
+            }
+        }
+        return cnt;
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return Conduits.writeFinalBasic(this, src);
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return Conduits.writeFinalBasic(this, srcs, offset, length);
+    }
+
+    public boolean flush() throws IOException {
+        if (buffer != null) {
+            if (! writeOut()) {
+                return false;
+            }
+            if (blockLength > 0) {
+                compressBlock();
+                if (! writeOut()) {
+                    return false;
+                }
+            }
+            freeBuffers();
+        }
+        if (terminated) {
+            // idempotent
+            next.terminateWrites();
+        }
+        return next.flush();
+    }
+
+    public void terminateWrites() throws IOException {
+        terminated = true;
+    }
+
+    public void truncateWrites() throws IOException {
+        terminated = true;
+        if (buffer != null) {
+            freeBuffers();
+        }
+        next.truncateWrites();
+    }
+
+    private void allocateBuffers() {
+        final int size = CompressionCodec.MAX_BLOCK_SIZE + outLength;
+        // a codec with a large worst case does not fit in a pooled buffer; free() ignores a buffer of such a size
+        final ByteBuffer buffer = size <= ByteBufferPool.LARGE_SIZE ? ByteBufferPool.LARGE_HEAP.allocate() : ByteBuffer.allocate(size);
+        block = Buffers.slice(buffer, CompressionCodec.MAX_BLOCK_SIZE);
+        outBuffer = Buffers.slice(buffer, outLength);
+        this.buffer = buffer;
+    }
+
+    private void freeBuffers() {
+        final ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        block = null;
+        outBuffer = null;
+        blockLength = 0;
+        ByteBufferPool.free(buffer);
+    }
+
+    /**
+     * Compress the current block into the empty output buffer.
+     */
+    private void compressBlock() {
+        final ByteBuffer outBuffer = this.outBuffer;
+        assert outBuffer.position() == 0;
+        final ByteBuffer block = this.block;
+        final int compressed = codec.compress(block.array(), block.arrayOffset(), blockLength, outBuffer.array(), outBuffer.arrayOffset() + HEADER_SIZE, level);
+        outBuffer.putInt(compressed);
+        outBuffer.putInt(blockLength);
+        outBuffer.position(HEADER_SIZE + compressed);
+        blockLength = 0;
+    }
+
+    /**
+     * Write out the pending compressed data.
+     *
+     * @return {@code true} if all of it was written
+     */
+    private boolean writeOut() throws IOException {
+        final ByteBuffer outBuffer = this.outBuffer;
+        if (outBuffer.position() == 0) {
+            return true;
+        }
+        outBuffer.flip();
+        try {
+            while (outBuffer.hasRemaining()) {
+                if (next.write(outBuffer) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            outBuffer.compact();
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.xnio.conduits;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
+import org.wildfly.common.function.ExceptionConsumer;
 import org.xnio.ChannelListener;
 import org.xnio.Option;
 import org.xnio.XnioExecutor;
@@ -117,6 +118,14 @@ public final class ConduitReadableMessageChannel implements ReadableMessageChann
         return conduit.receive(dst);
     }
 
+    public int receiveMessages(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
+        return conduit.receiveMessages(dsts, offs, len);
+    }
+
+    public int receiveMessages(final ExceptionConsumer<ByteBuffer, IOException> handler, final int maxMessages) throws IOException {
+        return conduit.receiveMessages(handler, maxMessages);
+    }
+
     public void suspendReads() {
         conduit.suspendReads();
     }
@@ -0,0 +1,233 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.xnio._private.Messages.msg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import org.xnio.Buffers;
+import org.xnio.ByteBufferPool;
+import org.xnio.CompressionCodec;
+import org.xnio.channels.StreamSinkChannel;
+
+/**
+ * A filtering stream source conduit which decompresses data framed by a {@link CompressingStreamSinkConduit} with the
+ * same {@link CompressionCodec}.
+ * <p>
+ * Frames are read into and decompressed in a buffer from {@link ByteBufferPool#LARGE_HEAP}, which is only held while
+ * data is buffered; it is returned to the pool whenever everything buffered has been read, and when reads are
+ * terminated.
+ *
+ * @since 3.7
+ */
+public final class DecompressingStreamSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> implements StreamSourceConduit {
+
+    private static final int HEADER_SIZE = CompressingStreamSinkConduit.HEADER_SIZE;
+
+    private final CompressionCodec codec;
+    private final int maxCompressedLength;
+    // the pooled buffer holding the input and output buffers, or null while nothing is buffered
+    private ByteBuffer buffer;
+    // compressed frames read from the next conduit, in fill mode
+    private ByteBuffer inBuffer;
+    // the decompressed block not yet read, in drain mode
+    private ByteBuffer outBuffer;
+    private boolean terminated;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param next the underlying conduit for this channel
+     * @param codec the codec to decompress with
+     */
+    public DecompressingStreamSourceConduit(final StreamSourceConduit next, final CompressionCodec codec) {
+        super(next);
+        this.codec = codec;
+        maxCompressedLength = codec.getMaxCompressedLength(CompressionCodec.MAX_BLOCK_SIZE);
+    }
+
+    public long transferTo(final long position, final long count, final FileChannel target) throws IOException {
+        return target.transferFrom(new ConduitReadableByteChannel(this), position, count);
+    }
+
+    public long transferTo(final long count, final ByteBuffer throughBuffer, final StreamSinkChannel target) throws IOException {
+        return Conduits.transfer(this, count, throughBuffer, target);
+    }
+
+    public int read(final ByteBuffer dst) throws IOException {
+        if (terminated) {
+            throw new ClosedChannelException();
+        }
+        if (buffer == null) {
+            allocateBuffers();
+        }
+        final ByteBuffer outBuffer = this.outBuffer;
+        if (outBuffer.hasRemaining()) {
+            return drain(dst);
+        }
+        final ByteBuffer inBuffer = this.inBuffer;
+        for (;;) {
+            while (decompressFrame()) {
+                if (outBuffer.hasRemaining()) {
+                    return drain(dst);
+                }
+            }
+            final int res = next.read(inBuffer);
+            if (res == -1) {
+                if (inBuffer.position() > 0) {
+                    throw msg.connectionClosedEarly();
+                }
+                freeBuffers();
+                return -1;
+            } else if (res == 0) {
+                if (inBuffer.position() == 0) {
+                    freeBuffers();
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Copy decompressed data to the caller, returning the buffers to the pool if nothing else is buffered.
+     */
+    private int drain(final ByteBuffer dst) {
+        final int res = Buffers.copy(dst, outBuffer);
+        if (! outBuffer.hasRemaining() && inBuffer.position() == 0) {
+            freeBuffers();
+        }
+        return res;
+    }
+
+    private void allocateBuffers() {
+        final int inLength = HEADER_SIZE + maxCompressedLength;
+        final int size = inLength + CompressionCodec.MAX_BLOCK_SIZE;
+        // a codec with a large worst case does not fit in a pooled buffer; free() ignores a buffer of such a size
+        final ByteBuffer buffer = size <= ByteBufferPool.LARGE_SIZE ? ByteBufferPool.LARGE_HEAP.allocate() : ByteBuffer.allocate(size);
+        inBuffer = Buffers.slice(buffer, inLength);
+        outBuffer = Buffers.slice(buffer, CompressionCodec.MAX_BLOCK_SIZE);
+        outBuffer.flip();
+        this.buffer = buffer;
+    }
+
+    private void freeBuffers() {
+        final ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        inBuffer = null;
+        outBuffer = null;
+        ByteBufferPool.free(buffer);
+    }
+
+    public void terminateReads() throws IOException {
+        if (! terminated) {
+            terminated = true;
+            if (buffer != null) {
+                freeBuffers();
+            }
+        }
+        next.terminateReads();
+    }
+
+    public long read(final ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        for (int i = 0; i < length; i ++) {
+            final ByteBuffer buffer = dsts[i + offset];
+            if (buffer.hasRemaining()) {
+                return read(buffer);
+            }
+        }
+        return 0L;
+    }
+
+    public void awaitReadable() throws IOException {
+        if (terminated) {
+            throw new ClosedChannelException();
+        }
+        if (buffer != null && (outBuffer.hasRemaining() || isFrameBuffered())) {
+            return;
+        }
+        next.awaitReadable();
+    }
+
+    public void awaitReadable(final long time, final TimeUnit timeUnit) throws IOException {
+        if (terminated) {
+            throw new ClosedChannelException();
+        }
+        if (buffer != null && (outBuffer.hasRemaining() || isFrameBuffered())) {
+            return;
+        }
+        next.awaitReadable(time, timeUnit);
+    }
+
+    /**
+     * Determine whether the next frame has been read in full, so that reading can proceed without the next conduit.
+     * A frame with an invalid header also counts, so that the next read reports it.
+     *
+     * @return {@code true} if a whole frame is buffered
+     */
+    private boolean isFrameBuffered() {
+        final ByteBuffer inBuffer = this.inBuffer;
+        final int available = inBuffer.position();
+        if (available < HEADER_SIZE) {
+            return false;
+        }
+        final int compressedLength = inBuffer.getInt(0);
+        return compressedLength < 0 || compressedLength > maxCompressedLength || available >= HEADER_SIZE + compressedLength;
+    }
+
+    /**
+     * Decompress the next frame into the empty output buffer, if it has been read in full.
+     *
+     * @return {@code true} if a frame was decompressed
+     */
+    private boolean decompressFrame() throws IOException {
+        final ByteBuffer inBuffer = this.inBuffer;
+        final int available = inBuffer.position();
+        if (available < HEADER_SIZE) {
+            return false;
+        }
+        final int compressedLength = inBuffer.getInt(0);
+        final int length = inBuffer.getInt(4);
+        if (compressedLength < 0 || compressedLength > maxCompressedLength || length < 0 || length > CompressionCodec.MAX_BLOCK_SIZE) {
+            throw msg.invalidCompressedData();
+        }
+        final int frameLength = HEADER_SIZE + compressedLength;
+        if (available < frameLength) {
+            return false;
+        }
+        final ByteBuffer outBuffer = this.outBuffer;
+        outBuffer.clear();
+        if (codec.decompress(inBuffer.array(), inBuffer.arrayOffset() + HEADER_SIZE, compressedLength, outBuffer.array(), outBuffer.arrayOffset(), length) != length) {
+            throw msg.invalidCompressedData();
+        }
+        outBuffer.limit(length);
+        inBuffer.flip();
+        inBuffer.position(frameLength);
+        inBuffer.compact();
+        return true;
+    }
+}
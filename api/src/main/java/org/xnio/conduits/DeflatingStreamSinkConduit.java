@@ -22,9 +22,10 @@ import static org.xnio._private.Messages.msg;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.zip.Deflater;
-import org.xnio.Buffers;
+import org.xnio.ByteBufferPool;
 import org.xnio.channels.StreamSourceChannel;
 
 /**
@@ -36,18 +37,34 @@ public final class DeflatingStreamSinkConduit extends AbstractStreamSinkConduit<
 
     private static final byte[] NO_BYTES = new byte[0];
     private final Deflater deflater;
-    private final ByteBuffer outBuffer;
+    private final boolean endDeflater;
+    // the compressed output not yet written to the next conduit; only held while it is not empty
+    private ByteBuffer outBuffer;
+    // the stream is finished; if the deflater was ended, it may already be in use elsewhere
+    private boolean ended;
 
     /**
-     * Construct a new instance.
+     * Construct a new instance.  The deflater is not ended by this conduit.
      *
      * @param next the delegate conduit to set
      * @param deflater the initialized deflater to use
      */
     public DeflatingStreamSinkConduit(final StreamSinkConduit next, final Deflater deflater) {
+        this(next, deflater, false);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param next the delegate conduit to set
+     * @param deflater the initialized deflater to use
+     * @param endDeflater {@code true} to {@linkplain Deflater#end() end} the deflater once the compressed stream is
+     *      written out or writes are truncated, {@code false} to leave it to the caller
+     */
+    public DeflatingStreamSinkConduit(final StreamSinkConduit next, final Deflater deflater, final boolean endDeflater) {
         super(next);
         this.deflater = deflater;
-        outBuffer = ByteBuffer.allocate(16384);
+        this.endDeflater = endDeflater;
     }
 
     public long transferFrom(final FileChannel src, final long position, final long count) throws IOException {
@@ -59,62 +76,13 @@ public final class DeflatingStreamSinkConduit extends AbstractStreamSinkConduit<
     }
 
     public int write(final ByteBuffer src) throws IOException {
-        final ByteBuffer outBuffer = this.outBuffer;
-        final byte[] outArray = outBuffer.array();
-        final Deflater deflater = this.deflater;
-        assert outBuffer.arrayOffset() == 0;
-        int cnt = 0;
-        int rem;
-        int c1, t;
-        int pos;
-        while ((rem = src.remaining()) > 0) {
-            if (! outBuffer.hasRemaining()) {
-                outBuffer.flip();
-                try {
-                    if (next.write(outBuffer) == 0) {
-                        return cnt;
-                    }
-                } finally {
-                    outBuffer.compact();
-                }
-            }
-            pos = src.position();
-            if (src.hasArray()) {
-                final byte[] array = src.array();
-                final int arrayOffset = src.arrayOffset();
-                deflater.setInput(array, arrayOffset + pos, rem);
-                c1 = deflater.getTotalIn();
-                final int dc = deflater.deflate(outArray, outBuffer.position(), outBuffer.remaining());
-                outBuffer.position(outBuffer.position() + dc);
-                t = deflater.getTotalIn() - c1;
-                src.position(pos + t);
-                cnt += t;
-            } else {
-                final byte[] bytes = Buffers.take(src);
-                deflater.setInput(bytes);
-                c1 = deflater.getTotalIn();
-                final int dc = deflater.deflate(outArray, outBuffer.position(), outBuffer.remaining());
-                outBuffer.position(outBuffer.position() + dc);
-                t = deflater.getTotalIn() - c1;
-                src.position(pos + t);
-                cnt += t;
-            }
+        if (ended) {
+            throw new ClosedChannelException();
         }
-        return cnt;
-    }
-
-    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
-        final ByteBuffer outBuffer = this.outBuffer;
-        final byte[] outArray = outBuffer.array();
-        final Deflater deflater = this.deflater;
-        assert outBuffer.arrayOffset() == 0;
-        long cnt = 0;
-        int rem;
-        int c1, t;
-        int pos;
-        for (int i = 0; i < length; i ++) {
-            final ByteBuffer src = srcs[i + offset];
-            while ((rem = src.remaining()) > 0) {
+        final ByteBuffer outBuffer = getOutBuffer();
+        int cnt = 0;
+        try {
+            while (src.hasRemaining()) {
                 if (! outBuffer.hasRemaining()) {
                     outBuffer.flip();
                     try {
@@ -125,50 +93,96 @@ public final class DeflatingStreamSinkConduit extends AbstractStreamSinkConduit<
                         outBuffer.compact();
                     }
                 }
-                pos = src.position();
-                if (src.hasArray()) {
-                    final byte[] array = src.array();
-                    final int arrayOffset = src.arrayOffset();
-                    deflater.setInput(array, arrayOffset + pos, rem);
-                    c1 = deflater.getTotalIn();
-                    final int dc = deflater.deflate(outArray, outBuffer.position(), outBuffer.remaining());
-                    outBuffer.position(outBuffer.position() + dc);
-                    t = deflater.getTotalIn() - c1;
-                    src.position(pos + t);
-                    cnt += t;
-                } else {
-                    final byte[] bytes = Buffers.take(src);
-                    deflater.setInput(bytes);
-                    c1 = deflater.getTotalIn();
-                    final int dc = deflater.deflate(outArray, outBuffer.position(), outBuffer.remaining());
-                    outBuffer.position(outBuffer.position() + dc);
-                    t = deflater.getTotalIn() - c1;
-                    src.position(pos + t);
-                    cnt += t;
+                cnt += deflate(src, outBuffer);
+            }
+            return cnt;
+        } finally {
+            releaseOutBuffer();
+        }
+    }
+
+    public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        if (ended) {
+            throw new ClosedChannelException();
+        }
+        final ByteBuffer outBuffer = getOutBuffer();
+        long cnt = 0;
+        try {
+            for (int i = 0; i < length; i ++) {
+                final ByteBuffer src = srcs[i + offset];
+                while (src.hasRemaining()) {
+                    if (! outBuffer.hasRemaining()) {
+                        outBuffer.flip();
+                        try {
+                            if (next.write(outBuffer) == 0) {
+                                return cnt;
+                            }
+                        } finally {
+                            outBuffer.compact();
+                        }
+                    }
+                    cnt += deflate(src, outBuffer);
                 }
             }
+            return cnt;
+        } finally {
+            releaseOutBuffer();
+        }
+    }
+
+    /**
+     * Compress as much of {@code src} as fits into {@code outBuffer}.  A heap source is given to the deflater
+     * directly, and a direct one is copied through a pooled array.
+     *
+     * @return the number of bytes consumed from {@code src}
+     */
+    private int deflate(final ByteBuffer src, final ByteBuffer outBuffer) {
+        final Deflater deflater = this.deflater;
+        final int pos = src.position();
+        ByteBuffer space = null;
+        if (src.hasArray()) {
+            deflater.setInput(src.array(), src.arrayOffset() + pos, src.remaining());
+        } else {
+            space = ByteBufferPool.MEDIUM_HEAP.allocate();
+            final int len = Math.min(src.remaining(), space.capacity());
+            src.get(space.array(), space.arrayOffset(), len);
+            src.position(pos);
+            deflater.setInput(space.array(), space.arrayOffset(), len);
+        }
+        try {
+            final int c1 = deflater.getTotalIn();
+            final int dc = deflater.deflate(outBuffer.array(), outBuffer.arrayOffset() + outBuffer.position(), outBuffer.remaining());
+            outBuffer.position(outBuffer.position() + dc);
+            final int t = deflater.getTotalIn() - c1;
+            src.position(pos + t);
+            return t;
+        } finally {
+            if (space != null) {
+                // drop the reference to the pooled array before it is reused
+                deflater.setInput(NO_BYTES);
+                ByteBufferPool.free(space);
+            }
         }
-        return cnt;
     }
 
     public boolean flush() throws IOException {
-        final ByteBuffer outBuffer = this.outBuffer;
+        if (ended) {
+            return next.flush();
+        }
+        final ByteBuffer outBuffer = getOutBuffer();
         final byte[] outArray = outBuffer.array();
+        final int outOffset = outBuffer.arrayOffset();
         final Deflater deflater = this.deflater;
-        assert outBuffer.arrayOffset() == 0;
         int res;
-        int rem;
         int pos;
         deflater.setInput(NO_BYTES);
-        for (;;) {
-            rem = outBuffer.remaining();
-            pos = outBuffer.position();
-            res = deflater.deflate(outArray, pos, rem, Deflater.SYNC_FLUSH);
-            if (pos == 0 && res == rem) {
-                // hmm, we're stuck (shouldn't be possible)
-                throw msg.flushSmallBuffer();
-            } else {
-                if (res > 0) {
+        try {
+            for (;;) {
+                pos = outBuffer.position();
+                res = deflater.deflate(outArray, outOffset + pos, outBuffer.remaining(), Deflater.SYNC_FLUSH);
+                if (pos + res > 0) {
+                    // the output may not fit in the buffer at once, so write it out and go around again
+                    outBuffer.position(pos + res);
                     outBuffer.flip();
                     try {
                         if (next.write(outBuffer) == 0) {
@@ -177,16 +191,20 @@ public final class DeflatingStreamSinkConduit extends AbstractStreamSinkConduit<
                     } finally {
                         outBuffer.compact();
                     }
-                } else if (deflater.needsInput() && pos == 0) {
+                } else if (deflater.needsInput()) {
                     if (deflater.finished()) {
                         // idempotent
                         next.terminateWrites();
+                        // all output is written, so the deflater is no longer needed
+                        end();
                     }
                     return next.flush();
                 } else {
                     throw msg.deflaterState();
                 }
             }
+        } finally {
+            releaseOutBuffer();
         }
     }
 
@@ -203,11 +221,44 @@ public final class DeflatingStreamSinkConduit extends AbstractStreamSinkConduit<
     }
 
     public void terminateWrites() throws IOException {
-        deflater.finish();
+        if (! ended) {
+            deflater.finish();
+        }
     }
 
     public void truncateWrites() throws IOException {
-        deflater.finish();
+        if (! ended) {
+            deflater.finish();
+            end();
+        }
+        final ByteBuffer outBuffer = this.outBuffer;
+        if (outBuffer != null) {
+            this.outBuffer = null;
+            ByteBufferPool.free(outBuffer);
+        }
         next.truncateWrites();
     }
+
+    private ByteBuffer getOutBuffer() {
+        ByteBuffer outBuffer = this.outBuffer;
+        if (outBuffer == null) {
+            outBuffer = this.outBuffer = ByteBufferPool.MEDIUM_HEAP.allocate();
+        }
+        return outBuffer;
+    }
+
+    private void releaseOutBuffer() {
+        final ByteBuffer outBuffer = this.outBuffer;
+        if (outBuffer != null && outBuffer.position() == 0) {
+            this.outBuffer = null;
+            ByteBufferPool.free(outBuffer);
+        }
+    }
+
+    private void end() {
+        ended = true;
+        if (endDeflater) {
+            deflater.end();
+        }
+    }
 }
@@ -22,18 +22,57 @@ import static org.xnio._private.Messages.msg;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import org.xnio.Buffers;
 import org.xnio.Pooled;
+import org.xnio.XnioExecutor;
 
 /**
  * A message sink conduit which implements a simple message framing protocol over a stream conduit.
+ * <p>
+ * By default each message is copied into the transmit buffer behind its length field, so it may be no larger than
+ * the buffer.  With gathering writes, messages larger than 512 bytes are instead written
+ * together with their length field, and any bytes still pending in the transmit buffer, by a single gathering write;
+ * only the part of a message which the next conduit does not accept is copied, and message sizes are no longer
+ * limited by the transmit buffer.
+ * <p>
+ * Each message is normally written out as soon as it is sent.  With coalescing, copied messages are held in the
+ * transmit buffer until a given number of bytes or of messages is pending, until the conduit is flushed, or until a
+ * delay has passed since the first pending message; the delay is timed by the conduit's write thread, so the
+ * messages must be sent from that thread.  Delays shorter than the thread's timer resolution flush the messages once
+ * the thread has finished handling its current events.  Coalescing does not change the need to flush the conduit
+ * to be sure that messages are written.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamSinkConduit> implements MessageSinkConduit {
 
+    /**
+     * The largest message which is copied rather than gathered when gathering writes are enabled.
+     */
+    static final int COPY_THRESHOLD = 512;
+
     private final boolean longLengths;
     private final Pooled<ByteBuffer> transmitBuffer;
+    private final boolean gatheringWrites;
+    // the unwritten tail of a gathered message which did not fit in the transmit buffer, written after it
+    private ByteBuffer overflow;
+    private ByteBuffer[] gatherBuffers;
+    private final ByteBuffer[] singleBuffer = new ByteBuffer[1];
+    // 0 if coalescing is disabled
+    private final int coalesceBytes;
+    private final int coalesceMessages;
+    private final long coalesceDelayNanos;
+    private final Runnable flushTask = this::timedFlush;
+    private XnioExecutor.Key flushKey;
+    // the messages sent but not yet written in full
+    private int pendingMessages;
+    private long pendingSince;
+    private volatile long batchCount;
+    private volatile long savedWriteCount;
+    private volatile long totalCoalescingDelay;
+    private volatile long maxCoalescingDelay;
 
     /**
      * Construct a new instance.
@@ -43,9 +82,60 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
      * @param transmitBuffer the transmit buffer to use
      */
     public FramingMessageSinkConduit(final StreamSinkConduit next, final boolean longLengths, final Pooled<ByteBuffer> transmitBuffer) {
+        this(next, longLengths, transmitBuffer, false);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param next the delegate conduit to set
+     * @param longLengths {@code true} to use 4-byte lengths, {@code false} to use 2-byte lengths
+     * @param transmitBuffer the transmit buffer to use
+     * @param gatheringWrites {@code true} to write large messages from the caller's buffers with gathering writes,
+     *      {@code false} to always copy messages into the transmit buffer
+     * @since 3.7
+     */
+    public FramingMessageSinkConduit(final StreamSinkConduit next, final boolean longLengths, final Pooled<ByteBuffer> transmitBuffer, final boolean gatheringWrites) {
         super(next);
         this.longLengths = longLengths;
         this.transmitBuffer = transmitBuffer;
+        this.gatheringWrites = gatheringWrites;
+        coalesceBytes = 0;
+        coalesceMessages = 0;
+        coalesceDelayNanos = 0L;
+    }
+
+    /**
+     * Construct a new instance which coalesces messages.
+     *
+     * @param next the delegate conduit to set
+     * @param longLengths {@code true} to use 4-byte lengths, {@code false} to use 2-byte lengths
+     * @param transmitBuffer the transmit buffer to use
+     * @param gatheringWrites {@code true} to write large messages from the caller's buffers with gathering writes,
+     *      {@code false} to always copy messages into the transmit buffer
+     * @param coalesceBytes the number of pending bytes at which messages are written out
+     * @param coalesceMessages the number of pending messages at which messages are written out
+     * @param coalesceDelay the longest time for which a message is held back
+     * @param coalesceDelayUnit the unit of {@code coalesceDelay}
+     * @since 3.7
+     */
+    public FramingMessageSinkConduit(final StreamSinkConduit next, final boolean longLengths, final Pooled<ByteBuffer> transmitBuffer, final boolean gatheringWrites, final int coalesceBytes, final int coalesceMessages, final long coalesceDelay, final TimeUnit coalesceDelayUnit) {
+        super(next);
+        if (coalesceBytes <= 0) {
+            throw msg.minRange("coalesceBytes", 0);
+        }
+        if (coalesceMessages <= 0) {
+            throw msg.minRange("coalesceMessages", 0);
+        }
+        if (coalesceDelay < 0L) {
+            throw msg.parameterOutOfRange("coalesceDelay");
+        }
+        this.longLengths = longLengths;
+        this.transmitBuffer = transmitBuffer;
+        this.gatheringWrites = gatheringWrites;
+        this.coalesceBytes = coalesceBytes;
+        this.coalesceMessages = coalesceMessages;
+        coalesceDelayNanos = coalesceDelayUnit.toNanos(coalesceDelay);
     }
 
     public boolean send(final ByteBuffer src) throws IOException {
@@ -57,10 +147,20 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
         final int remaining = src.remaining();
         final boolean longLengths = this.longLengths;
         final int lengthFieldSize = longLengths ? 4 : 2;
-        if (remaining > transmitBuffer.capacity() - lengthFieldSize || ! longLengths && remaining > 65535) {
+        final boolean tooLargeToCopy = remaining > transmitBuffer.capacity() - lengthFieldSize;
+        if (tooLargeToCopy && ! gatheringWrites || ! longLengths && remaining > 65535) {
             throw msg.txMsgTooLarge();
         }
-        if (transmitBuffer.remaining() < lengthFieldSize + remaining && ! writeBuffer()) {
+        if (gatheringWrites && (tooLargeToCopy || remaining > COPY_THRESHOLD)) {
+            final ByteBuffer[] singleBuffer = this.singleBuffer;
+            singleBuffer[0] = src;
+            try {
+                return sendGathering(singleBuffer, 0, 1, remaining);
+            } finally {
+                singleBuffer[0] = null;
+            }
+        }
+        if ((overflow != null || transmitBuffer.remaining() < lengthFieldSize + remaining) && ! writeBuffer()) {
             return false;
         }
         if (longLengths) {
@@ -69,7 +169,7 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
             transmitBuffer.putShort((short) remaining);
         }
         transmitBuffer.put(src);
-        writeBuffer();
+        messageBuffered();
         return true;
     }
 
@@ -83,10 +183,14 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
         final long remaining = Buffers.remaining(srcs, offs, len);
         final boolean longLengths = this.longLengths;
         final int lengthFieldSize = longLengths ? 4 : 2;
-        if (remaining > transmitBuffer.capacity() - lengthFieldSize || ! longLengths && remaining > 65535) {
+        final boolean tooLargeToCopy = remaining > transmitBuffer.capacity() - lengthFieldSize;
+        if (tooLargeToCopy && ! gatheringWrites || remaining > (longLengths ? Integer.MAX_VALUE : 65535)) {
             throw msg.txMsgTooLarge();
         }
-        if (transmitBuffer.remaining() < lengthFieldSize + remaining && ! writeBuffer()) {
+        if (gatheringWrites && (tooLargeToCopy || remaining > COPY_THRESHOLD)) {
+            return sendGathering(srcs, offs, len, (int) remaining);
+        }
+        if ((overflow != null || transmitBuffer.remaining() < lengthFieldSize + remaining) && ! writeBuffer()) {
             return false;
         }
         if (longLengths) {
@@ -95,7 +199,63 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
             transmitBuffer.putShort((short) remaining);
         }
         Buffers.copy(transmitBuffer, srcs, offs, len);
-        writeBuffer();
+        messageBuffered();
+        return true;
+    }
+
+    /**
+     * Write a message from the caller's buffers, preceded by the pending bytes and the length field in the transmit
+     * buffer.
+     */
+    private boolean sendGathering(final ByteBuffer[] srcs, final int offs, final int len, final int length) throws IOException {
+        final ByteBuffer transmitBuffer = this.transmitBuffer.getResource();
+        final int lengthFieldSize = longLengths ? 4 : 2;
+        if ((overflow != null || transmitBuffer.remaining() < lengthFieldSize) && ! writeBuffer()) {
+            return false;
+        }
+        if (longLengths) {
+            transmitBuffer.putInt(length);
+        } else {
+            transmitBuffer.putShort((short) length);
+        }
+        final int cnt = len + 1;
+        ByteBuffer[] buffers = gatherBuffers;
+        if (buffers == null || buffers.length < cnt) {
+            gatherBuffers = buffers = new ByteBuffer[cnt];
+        }
+        buffers[0] = transmitBuffer;
+        System.arraycopy(srcs, offs, buffers, 1, len);
+        transmitBuffer.flip();
+        try {
+            long res;
+            do {
+                res = next.write(buffers, 0, cnt);
+            } while (res > 0 && Buffers.hasRemaining(buffers, 0, cnt));
+        } finally {
+            transmitBuffer.compact();
+            // do not retain the caller's buffers
+            Arrays.fill(buffers, 0, cnt, null);
+        }
+        if (transmitBuffer.position() >= lengthFieldSize) {
+            // the length field was not written, so neither was any of the message; take it back
+            transmitBuffer.position(transmitBuffer.position() - lengthFieldSize);
+            return false;
+        }
+        messageAdded();
+        if (! Buffers.hasRemaining(srcs, offs, len)) {
+            // the pending messages went out with this one
+            batchWritten();
+        } else {
+            // partial write; keep a copy of the rest
+            Buffers.copy(transmitBuffer, srcs, offs, len);
+            final long rest = Buffers.remaining(srcs, offs, len);
+            if (rest > 0L) {
+                final ByteBuffer overflow = ByteBuffer.allocate((int) rest);
+                Buffers.copy(overflow, srcs, offs, len);
+                overflow.flip();
+                this.overflow = overflow;
+            }
+        }
         return true;
     }
 
@@ -112,7 +272,7 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
 
     private boolean writeBuffer() throws IOException {
         final ByteBuffer buffer = transmitBuffer.getResource();
-        if (buffer.position() > 0) buffer.flip();
+        buffer.flip();
         try {
             while (buffer.hasRemaining()) {
                 final int res = next.write(buffer);
@@ -120,10 +280,115 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
                     return false;
                 }
             }
-            return true;
         } finally {
             buffer.compact();
         }
+        final ByteBuffer overflow = this.overflow;
+        if (overflow != null) {
+            while (overflow.hasRemaining()) {
+                if (next.write(overflow) == 0) {
+                    return false;
+                }
+            }
+            this.overflow = null;
+        }
+        batchWritten();
+        return true;
+    }
+
+    private void messageAdded() {
+        if (pendingMessages ++ == 0 && coalesceBytes != 0) {
+            pendingSince = System.nanoTime();
+        }
+    }
+
+    /**
+     * Write out the transmit buffer after a message was copied into it, unless the message can be coalesced with
+     * later ones.
+     */
+    private void messageBuffered() throws IOException {
+        messageAdded();
+        final int coalesceBytes = this.coalesceBytes;
+        if (coalesceBytes == 0 || pendingMessages >= coalesceMessages || transmitBuffer.getResource().position() >= coalesceBytes) {
+            writeBuffer();
+        } else if (flushKey == null) {
+            flushKey = getWriteThread().executeAfter(flushTask, coalesceDelayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Account for the pending messages, which have now been written in full.
+     */
+    private void batchWritten() {
+        final int pendingMessages = this.pendingMessages;
+        if (pendingMessages == 0) {
+            return;
+        }
+        this.pendingMessages = 0;
+        batchCount ++;
+        savedWriteCount += pendingMessages - 1;
+        if (coalesceBytes != 0) {
+            final long delay = System.nanoTime() - pendingSince;
+            totalCoalescingDelay += delay;
+            if (delay > maxCoalescingDelay) {
+                maxCoalescingDelay = delay;
+            }
+            cancelFlush();
+        }
+    }
+
+    private void timedFlush() {
+        flushKey = null;
+        try {
+            if (! writeBuffer()) {
+                // the next conduit is full; try again after another delay rather than holding the messages back
+                flushKey = getWriteThread().executeAfter(flushTask, coalesceDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (IOException e) {
+            // the next conduit reports it again on the next send or flush
+            msg.debugf(e, "Failed to write coalesced messages on %s", this);
+        }
+    }
+
+    /**
+     * Get the number of batches of messages which were each written out together.
+     *
+     * @return the number of batches
+     * @since 3.7
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Get the number of writes saved by writing several messages out together, compared with writing each one out
+     * on its own.
+     *
+     * @return the number of writes saved
+     * @since 3.7
+     */
+    public long getSavedWriteCount() {
+        return savedWriteCount;
+    }
+
+    /**
+     * Get the total time for which coalescing held back the first message of each batch.
+     *
+     * @return the total delay in nanoseconds
+     * @since 3.7
+     */
+    public long getTotalCoalescingDelay() {
+        return totalCoalescingDelay;
+    }
+
+    /**
+     * Get the longest time for which coalescing held back a message.
+     *
+     * @return the longest delay in nanoseconds
+     * @since 3.7
+     */
+    public long getMaxCoalescingDelay() {
+        return maxCoalescingDelay;
     }
 
     public boolean flush() throws IOException {
@@ -131,12 +396,24 @@ public final class FramingMessageSinkConduit extends AbstractSinkConduit<StreamS
     }
 
     public void terminateWrites() throws IOException {
+        cancelFlush();
+        overflow = null;
         transmitBuffer.free();
         next.terminateWrites();
     }
 
     public void truncateWrites() throws IOException {
+        cancelFlush();
+        overflow = null;
         transmitBuffer.free();
         next.truncateWrites();
     }
+
+    private void cancelFlush() {
+        final XnioExecutor.Key flushKey = this.flushKey;
+        if (flushKey != null) {
+            this.flushKey = null;
+            flushKey.remove();
+        }
+    }
 }
@@ -23,11 +23,15 @@ import static org.xnio._private.Messages.msg;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
+import org.wildfly.common.function.ExceptionConsumer;
 import org.xnio.Buffers;
 import org.xnio.Pooled;
 
 /**
  * A message source conduit which implements a simple message framing protocol over a stream conduit.
+ * <p>
+ * The batch {@code receiveMessages} methods make a single read from the stream conduit, and then return every
+ * complete message in the receive buffer, so a burst of small messages can be handled in one call.
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
@@ -85,7 +89,8 @@ public final class FramingMessageSourceConduit extends AbstractSourceConduit<Str
             }
             if (receiveBuffer.remaining() < length) {
                 if (res == -1) {
-                    receiveBuffer.clear();
+                    // discard the incomplete message
+                    Buffers.skip(receiveBuffer, receiveBuffer.remaining());
                 } else {
                     Buffers.unget(receiveBuffer, 4);
                 }
@@ -100,12 +105,11 @@ public final class FramingMessageSourceConduit extends AbstractSourceConduit<Str
                 return 0;
             }
         } finally {
-            if (res != -1) {
-                receiveBuffer.compact();
-                if (receiveBuffer.position() >= 4 && receiveBuffer.position() >= 4 + receiveBuffer.getInt(0)) {
-                    // there's another packet ready to go
-                    ready = true;
-                }
+            // compact at end of file too, so that the messages still buffered are received once each
+            receiveBuffer.compact();
+            if (receiveBuffer.position() >= 4 && receiveBuffer.position() >= 4 + receiveBuffer.getInt(0)) {
+                // there's another packet ready to go
+                ready = true;
             }
         }
     }
@@ -132,7 +136,8 @@ public final class FramingMessageSourceConduit extends AbstractSourceConduit<Str
             }
             if (receiveBuffer.remaining() < length) {
                 if (res == -1) {
-                    receiveBuffer.clear();
+                    // discard the incomplete message
+                    Buffers.skip(receiveBuffer, receiveBuffer.remaining());
                 } else {
                     Buffers.unget(receiveBuffer, 4);
                 }
@@ -147,13 +152,68 @@ public final class FramingMessageSourceConduit extends AbstractSourceConduit<Str
                 return 0;
             }
         } finally {
-            if (res != -1) {
-                receiveBuffer.compact();
-                if (receiveBuffer.position() >= 4 && receiveBuffer.position() >= 4 + receiveBuffer.getInt(0)) {
-                    // there's another packet ready to go
-                    ready = true;
+            // compact at end of file too, so that the messages still buffered are received once each
+            receiveBuffer.compact();
+            if (receiveBuffer.position() >= 4 && receiveBuffer.position() >= 4 + receiveBuffer.getInt(0)) {
+                // there's another packet ready to go
+                ready = true;
+            }
+        }
+    }
+
+    public int receiveMessages(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
+        return receiveMessages(dsts, offs, null, len);
+    }
+
+    public int receiveMessages(final ExceptionConsumer<ByteBuffer, IOException> handler, final int maxMessages) throws IOException {
+        return receiveMessages(null, 0, handler, maxMessages);
+    }
+
+    private int receiveMessages(final ByteBuffer[] dsts, final int offs, final ExceptionConsumer<ByteBuffer, IOException> handler, final int maxMessages) throws IOException {
+        final ByteBuffer receiveBuffer = this.receiveBuffer.getResource();
+        // one read per batch
+        final int res = receiveBuffer.hasRemaining() ? next.read(receiveBuffer) : 0;
+        receiveBuffer.flip();
+        ByteBuffer view = null;
+        int cnt = 0;
+        try {
+            while (cnt < maxMessages && receiveBuffer.remaining() >= 4) {
+                final int start = receiveBuffer.position();
+                final int length = receiveBuffer.getInt(start);
+                if (length < 0 || length > receiveBuffer.capacity() - 4) {
+                    throw msg.recvInvalidMsgLength(length);
+                }
+                final int end = start + 4 + length;
+                if (end > receiveBuffer.limit()) {
+                    break;
+                }
+                receiveBuffer.position(start + 4);
+                if (handler == null) {
+                    Buffers.copy(length, dsts[offs + cnt], receiveBuffer);
+                    receiveBuffer.position(end);
+                    cnt ++;
+                } else {
+                    if (view == null) {
+                        view = receiveBuffer.asReadOnlyBuffer();
+                    }
+                    view.limit(end);
+                    view.position(start + 4);
+                    // consume the message first, so that it is not received again if the handler fails
+                    receiveBuffer.position(end);
+                    cnt ++;
+                    handler.accept(view);
                 }
             }
+        } finally {
+            receiveBuffer.compact();
+            // is there another packet ready to go?
+            ready = receiveBuffer.position() >= 4 && receiveBuffer.position() >= 4 + receiveBuffer.getInt(0);
+        }
+        if (cnt == 0 && res == -1) {
+            receiveBuffer.clear();
+            ready = false;
+            return -1;
         }
+        return cnt;
     }
 }
@@ -22,10 +22,12 @@ import static org.xnio._private.Messages.msg;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
+import org.xnio.ByteBufferPool;
 import org.xnio.channels.StreamSinkChannel;
 
 /**
@@ -36,7 +38,10 @@ import org.xnio.channels.StreamSinkChannel;
 public final class InflatingStreamSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> implements StreamSourceConduit {
 
     private final Inflater inflater;
-    private final ByteBuffer buffer;
+    // the compressed input given to the inflater; only held while the inflater has input left
+    private ByteBuffer buffer;
+    // the inflater has been ended, and may already be in use elsewhere if it was pooled
+    private boolean ended;
 
     /**
      * Construct a new instance.
@@ -47,7 +52,6 @@ public final class InflatingStreamSourceConduit extends AbstractStreamSourceCond
     public InflatingStreamSourceConduit(final StreamSourceConduit next, final Inflater inflater) {
         super(next);
         this.inflater = inflater;
-        buffer = ByteBuffer.allocate(16384);
     }
 
     public long transferTo(final long position, final long count, final FileChannel target) throws IOException {
@@ -60,51 +64,50 @@ public final class InflatingStreamSourceConduit extends AbstractStreamSourceCond
 
     public int read(final ByteBuffer dst) throws IOException {
         final int remaining = dst.remaining();
-        final int position = dst.position();
+        if (ended) {
+            throw new ClosedChannelException();
+        }
+        if (remaining == 0) {
+            return 0;
+        }
         final Inflater inflater = this.inflater;
+        // inflate directly into a heap destination, or through a pooled array into a direct one
+        final ByteBuffer space = dst.hasArray() ? null : ByteBufferPool.MEDIUM_HEAP.allocate();
+        final byte[] array;
+        final int off;
+        final int len;
+        if (space == null) {
+            array = dst.array();
+            off = dst.arrayOffset() + dst.position();
+            len = remaining;
+        } else {
+            array = space.array();
+            off = space.arrayOffset();
+            len = Math.min(remaining, space.capacity());
+        }
         int res;
-        if (dst.hasArray()) {
-            // fast path
-            final byte[] array = dst.array();
-            final int off = dst.arrayOffset();
+        try {
             for (;;) {
                 try {
-                    res = inflater.inflate(array, off + position, remaining);
+                    res = inflater.inflate(array, off, len);
                 } catch (DataFormatException e) {
                     throw new IOException(e);
                 }
                 if (res > 0) {
-                    dst.position(position + res);
+                    if (space == null) {
+                        dst.position(dst.position() + res);
+                    } else {
+                        dst.put(array, off, res);
+                    }
                     return res;
                 }
                 if (inflater.needsDictionary()) {
                     throw msg.inflaterNeedsDictionary();
                 }
-                final ByteBuffer buffer = this.buffer;
-                buffer.clear();
-                res = next.read(buffer);
-                if (res > 0) {
-                    inflater.setInput(buffer.array(), buffer.arrayOffset(), res);
-                } else {
-                    return res;
+                ByteBuffer buffer = this.buffer;
+                if (buffer == null) {
+                    buffer = this.buffer = ByteBufferPool.MEDIUM_HEAP.allocate();
                 }
-            }
-        } else {
-            final byte[] space = new byte[remaining];
-            for (;;) {
-                try {
-                    res = inflater.inflate(space);
-                } catch (DataFormatException e) {
-                    throw new IOException(e);
-                }
-                if (res > 0) {
-                    dst.put(space, 0, res);
-                    return res;
-                }
-                if (inflater.needsDictionary()) {
-                    throw msg.inflaterNeedsDictionary();
-                }
-                final ByteBuffer buffer = this.buffer;
                 buffer.clear();
                 res = next.read(buffer);
                 if (res > 0) {
@@ -113,6 +116,13 @@ public final class InflatingStreamSourceConduit extends AbstractStreamSourceCond
                     return res;
                 }
             }
+        } finally {
+            if (space != null) {
+                ByteBufferPool.free(space);
+            }
+            if (inflater.needsInput()) {
+                releaseBuffer();
+            }
         }
     }
 
@@ -131,11 +141,18 @@ public final class InflatingStreamSourceConduit extends AbstractStreamSourceCond
     }
 
     public void terminateReads() throws IOException {
-        inflater.end();
+        if (! ended) {
+            ended = true;
+            releaseBuffer();
+            inflater.end();
+        }
         next.terminateReads();
     }
 
     public void awaitReadable() throws IOException {
+        if (ended) {
+            throw new ClosedChannelException();
+        }
         if (! inflater.needsInput()) {
             return;
         }
@@ -143,9 +160,20 @@ public final class InflatingStreamSourceConduit extends AbstractStreamSourceCond
     }
 
     public void awaitReadable(final long time, final TimeUnit timeUnit) throws IOException {
+        if (ended) {
+            throw new ClosedChannelException();
+        }
         if (! inflater.needsInput()) {
             return;
         }
         next.awaitReadable(time, timeUnit);
     }
+
+    private void releaseBuffer() {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer != null) {
+            this.buffer = null;
+            ByteBufferPool.free(buffer);
+        }
+    }
 }
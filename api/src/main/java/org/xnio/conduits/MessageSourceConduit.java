@@ -20,6 +20,10 @@ package org.xnio.conduits;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.wildfly.common.function.ExceptionConsumer;
+import org.wildfly.common.function.ExceptionToIntFunction;
+import org.xnio.ByteBufferPool;
+import org.xnio.channels.Channels;
 
 /**
  * A message source conduit.
@@ -47,4 +51,57 @@ public interface MessageSourceConduit extends SourceConduit {
      * @throws IOException if an I/O error occurs
      */
     long receive(ByteBuffer[] dsts, int offs, int len) throws IOException;
+
+    /**
+     * Receive as many messages as are available, one into each buffer, stopping when the buffers run out.  As with
+     * {@link #receive(ByteBuffer)}, the part of a message which does not fit in its buffer is discarded.  Conduits
+     * which frame messages over a stream receive every complete message already buffered with a single read from the
+     * underlying conduit.
+     *
+     * @param dsts the buffers that will hold the messages, one message per buffer
+     * @param offs the offset into the array of buffers of the first buffer to receive into
+     * @param len the maximum number of messages to receive
+     * @return the number of messages received, 0 if no message is available, and -1 if the message channel has
+     *      reached an end-of-file condition
+     * @throws IOException if an I/O error occurs
+     * @since 3.7
+     */
+    default int receiveMessages(ByteBuffer[] dsts, int offs, int len) throws IOException {
+        for (int i = 0; i < len; i ++) {
+            final int res = receive(dsts[offs + i]);
+            if (res == -1) {
+                return i == 0 ? -1 : i;
+            } else if (res == 0) {
+                return i;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Receive as many messages as are available, passing each one to the given handler.  The buffer passed to the
+     * handler holds exactly one message, is read-only, and is only valid until the handler returns.  Conduits which
+     * frame messages over a stream pass each message in place, without copying it.
+     * <p>
+     * By default, each message is received with {@link #receive(ByteBuffer)} into a pooled buffer of
+     * {@link ByteBufferPool#MEDIUM_SIZE} bytes, using {@link Channels#receiveMessages(ExceptionToIntFunction, ByteBuffer, ExceptionConsumer, int) Channels.receiveMessages}.
+     * As with {@link #receive(ByteBuffer)}, the part of a larger message which does not fit is discarded, and an
+     * empty message cannot be told apart from no message.  Callers expecting larger messages should call
+     * {@code Channels.receiveMessages} with a buffer of their own.
+     *
+     * @param handler the handler to call for each message
+     * @param maxMessages the maximum number of messages to receive
+     * @return the number of messages received, 0 if no message is available, and -1 if the message channel has
+     *      reached an end-of-file condition
+     * @throws IOException if an I/O error occurs, or if thrown by the handler
+     * @since 3.7
+     */
+    default int receiveMessages(ExceptionConsumer<ByteBuffer, IOException> handler, int maxMessages) throws IOException {
+        final ByteBuffer buffer = ByteBufferPool.MEDIUM_HEAP.allocate();
+        try {
+            return Channels.receiveMessages(this::receive, buffer, handler, maxMessages);
+        } finally {
+            ByteBufferPool.free(buffer);
+        }
+    }
 }
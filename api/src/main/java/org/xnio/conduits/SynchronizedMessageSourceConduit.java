@@ -20,6 +20,7 @@ package org.xnio.conduits;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import org.wildfly.common.function.ExceptionConsumer;
 
 /**
  * A synchronized message source conduit.  All conduit operations are wrapped in synchronization blocks for simplified
@@ -59,4 +60,16 @@ public final class SynchronizedMessageSourceConduit extends AbstractSynchronized
             return next.receive(dsts, offs, len);
         }
     }
+
+    public int receiveMessages(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
+        synchronized (lock) {
+            return next.receiveMessages(dsts, offs, len);
+        }
+    }
+
+    public int receiveMessages(final ExceptionConsumer<ByteBuffer, IOException> handler, final int maxMessages) throws IOException {
+        synchronized (lock) {
+            return next.receiveMessages(handler, maxMessages);
+        }
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.management;
+
+/**
+ * Handshake metrics of a single SSL provider instance.  All times are in nanoseconds.  Values are sampled without
+ * synchronization, so they may be slightly stale and not mutually consistent.
+ */
+public interface SslHandshakeMXBean {
+
+    /**
+     * Get the number of handshakes that completed successfully.
+     *
+     * @return the handshake count
+     */
+    long getHandshakeCount();
+
+    /**
+     * Get the number of successful handshakes which negotiated a new session.
+     *
+     * @return the full handshake count
+     */
+    long getFullHandshakeCount();
+
+    /**
+     * Get the number of successful handshakes which resumed a cached session.
+     *
+     * @return the resumed handshake count
+     */
+    long getResumedHandshakeCount();
+
+    /**
+     * Get the ratio of resumed handshakes to all successful handshakes, which is the hit ratio of the session caches.
+     *
+     * @return the resumption ratio, between {@code 0} and {@code 1}
+     */
+    double getResumptionRatio();
+
+    /**
+     * Get the number of sessions in the client session cache.  The cache is sized by
+     * {@link org.xnio.Options#SSL_CLIENT_SESSION_CACHE_SIZE} and {@link org.xnio.Options#SSL_CLIENT_SESSION_TIMEOUT}.
+     *
+     * @return the client session count
+     */
+    int getClientSessionCount();
+
+    /**
+     * Get the number of sessions in the server session cache.  The cache is sized by
+     * {@link org.xnio.Options#SSL_SERVER_SESSION_CACHE_SIZE} and {@link org.xnio.Options#SSL_SERVER_SESSION_TIMEOUT}.
+     *
+     * @return the server session count
+     */
+    int getServerSessionCount();
+
+    /**
+     * Get the number of handshakes that failed, including those whose delegated tasks failed or were rejected.
+     *
+     * @return the failed handshake count
+     */
+    long getFailedHandshakeCount();
+
+    /**
+     * Get the number of connections that were shed before their handshake began because the handshake executor
+     * was saturated.
+     *
+     * @return the rejected handshake count
+     */
+    long getRejectedHandshakeCount();
+
+    /**
+     * Get the number of SSL engine delegated tasks that were run.
+     *
+     * @return the delegated task count
+     */
+    long getDelegatedTaskCount();
+
+    /**
+     * Get the total time spent running SSL engine delegated tasks.
+     *
+     * @return the total delegated task time
+     */
+    long getDelegatedTaskTime();
+
+    /**
+     * Get the total time that delegated tasks spent waiting in the handshake executor queue.  Tasks run inline do
+     * not wait.
+     *
+     * @return the total queue wait time
+     */
+    long getDelegatedTaskQueueWaitTime();
+
+    /**
+     * Get the number of delegated tasks waiting in the handshake executor queue.
+     *
+     * @return the queue size, or {@code 0} if delegated tasks are run inline
+     */
+    int getDelegatedTaskQueueSize();
+
+    /**
+     * Get the capacity of the handshake executor queue.
+     *
+     * @return the queue capacity, or {@code 0} if delegated tasks are run inline
+     */
+    int getMaxDelegatedTaskQueueSize();
+
+    /**
+     * Get the number of threads of the handshake executor.
+     *
+     * @return the thread count, or {@code 0} if delegated tasks are run inline
+     */
+    int getHandshakeThreadCount();
+}
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.management;
+
+/**
+ * Metrics of a single I/O thread.  All times are in nanoseconds.  Values are sampled without synchronization with the
+ * I/O thread, so they may be slightly stale and not mutually consistent.
+ * <p>
+ * Latency histograms have logarithmic buckets, each of which is split into linear sub-buckets; the lower bound of each
+ * bucket is given by {@link #getHistogramBucketBounds()}.
+ */
+public interface XnioIoThreadMXBean {
+
+    /**
+     * Get the name of the provider.
+     *
+     * @return the name of the provider
+     */
+    String getProviderName();
+
+    /**
+     * Get the name of the worker which owns this thread.
+     *
+     * @return the worker's name
+     */
+    String getWorkerName();
+
+    /**
+     * Get the name of the thread.
+     *
+     * @return the thread's name
+     */
+    String getName();
+
+    /**
+     * Get the number of times the thread has gone around its event loop.
+     *
+     * @return the loop count
+     */
+    long getLoopCount();
+
+    /**
+     * Get the number of tasks the thread has run.
+     *
+     * @return the task count
+     */
+    long getTaskCount();
+
+    /**
+     * Get the average number of tasks run per event loop iteration.
+     *
+     * @return the average number of tasks per loop
+     */
+    double getTasksPerLoop();
+
+    /**
+     * Get an estimate of the number of tasks waiting to be run.
+     *
+     * @return the task queue size estimate
+     */
+    int getTaskQueueSize();
+
+    /**
+     * Get the number of selection keys the thread has processed.
+     *
+     * @return the selected key count
+     */
+    long getSelectedKeyCount();
+
+    /**
+     * Get the rate at which selection keys were processed since this value was last read, averaged over at least
+     * one second.
+     *
+     * @return the number of selected keys per second
+     */
+    double getSelectedKeysPerSecond();
+
+    /**
+     * Get the total time the thread has spent in select operations.
+     *
+     * @return the total select time
+     */
+    long getSelectTime();
+
+    /**
+     * Get the total time the thread has spent in handlers of selected keys.
+     *
+     * @return the total handler time
+     */
+    long getHandlerTime();
+
+    /**
+     * Get the total time the thread has spent running tasks.
+     *
+     * @return the total task time
+     */
+    long getTaskTime();
+
+    /**
+     * Get the lower bound of each histogram bucket.
+     *
+     * @return the bucket lower bounds
+     */
+    long[] getHistogramBucketBounds();
+
+    /**
+     * Get the histogram of task execution times.
+     *
+     * @return the count of each bucket
+     */
+    long[] getTaskExecutionTimeHistogram();
+
+    /**
+     * Get the median task execution time.
+     *
+     * @return the median task execution time
+     */
+    long getTaskExecutionTimeMedian();
+
+    /**
+     * Get the 99th percentile of task execution time.
+     *
+     * @return the 99th percentile of task execution time
+     */
+    long getTaskExecutionTime99thPercentile();
+
+    /**
+     * Get the longest task execution time.
+     *
+     * @return the longest task execution time
+     */
+    long getTaskExecutionTimeMax();
+
+    /**
+     * Get the histogram of scheduling delays, which are the times between a task being submitted and it starting to
+     * run.  Scheduling delays cost a clock read per submitted task, so they are only recorded when the
+     * {@code xnio.nio.scheduling-delay-metrics} system property is {@code true}; otherwise every bucket stays empty.
+     *
+     * @return the count of each bucket
+     */
+    long[] getSchedulingDelayHistogram();
+
+    /**
+     * Get the median scheduling delay.
+     *
+     * @return the median scheduling delay
+     */
+    long getSchedulingDelayMedian();
+
+    /**
+     * Get the 99th percentile of scheduling delay.
+     *
+     * @return the 99th percentile of scheduling delay
+     */
+    long getSchedulingDelay99thPercentile();
+
+    /**
+     * Get the longest scheduling delay.
+     *
+     * @return the longest scheduling delay
+     */
+    long getSchedulingDelayMax();
+}
@@ -66,4 +66,124 @@ public interface XnioServerMXBean {
      */
     int getConnectionLimitLowWater();
 
+    /**
+     * Get the total number of connections accepted by this server.
+     *
+     * @return the number of accepted connections, or -1 if the provider does not track it
+     */
+    default long getAcceptedConnectionCount() {
+        return -1L;
+    }
+
+    /**
+     * Get the number of batches in which connections were accepted.  Each batch is drained in response to one
+     * notification that connections are pending.
+     *
+     * @return the number of accept batches, or -1 if the provider does not track it
+     */
+    default long getAcceptBatchCount() {
+        return -1L;
+    }
+
+    /**
+     * Get the largest number of connections accepted in a single batch.
+     *
+     * @return the largest batch size, or -1 if the provider does not track it
+     */
+    default int getMaxAcceptBatchSize() {
+        return -1;
+    }
+
+    /**
+     * Get an estimate of the median accept latency, in nanoseconds.  The accept latency is the time from a connection
+     * being accepted from the backlog to it being handed to the application.
+     *
+     * @return the median accept latency, or -1 if the provider does not track it
+     */
+    default long getAcceptLatencyMedian() {
+        return -1L;
+    }
+
+    /**
+     * Get an estimate of the 99th percentile accept latency, in nanoseconds.
+     *
+     * @return the 99th percentile accept latency, or -1 if the provider does not track it
+     */
+    default long getAcceptLatency99thPercentile() {
+        return -1L;
+    }
+
+    /**
+     * Get the maximum accept latency, in nanoseconds.
+     *
+     * @return the maximum accept latency, or -1 if the provider does not track it
+     */
+    default long getAcceptLatencyMax() {
+        return -1L;
+    }
+
+    /**
+     * Get the capacity of each of the queues holding accepted connections until an I/O thread takes them.  A
+     * connection accepted while its queue is full is closed.
+     *
+     * @return the capacity of each accept queue, or -1 if the provider does not use bounded accept queues
+     */
+    default int getAcceptQueueCapacity() {
+        return -1;
+    }
+
+    /**
+     * Get the number of accepted connections currently waiting in accept queues.
+     *
+     * @return the number of queued connections, or -1 if the provider does not track it
+     */
+    default int getAcceptQueueSize() {
+        return -1;
+    }
+
+    /**
+     * Get the largest number of connections seen waiting in a single accept queue.
+     *
+     * @return the peak accept queue size, or -1 if the provider does not track it
+     */
+    default int getAcceptQueuePeakSize() {
+        return -1;
+    }
+
+    /**
+     * Get the number of times accepting was suspended because an accept queue was full.
+     *
+     * @return the number of times accepting was suspended, or -1 if the provider does not track it
+     */
+    default long getAcceptQueueFullCount() {
+        return -1L;
+    }
+
+    /**
+     * Get an estimate of the median hand-off latency, in nanoseconds.  The hand-off latency is the time from an
+     * accepted connection being published to its I/O thread to it being handed to the application.
+     *
+     * @return the median hand-off latency, or -1 if the provider does not track it
+     */
+    default long getAcceptHandOffLatencyMedian() {
+        return -1L;
+    }
+
+    /**
+     * Get an estimate of the 99th percentile hand-off latency, in nanoseconds.
+     *
+     * @return the 99th percentile hand-off latency, or -1 if the provider does not track it
+     */
+    default long getAcceptHandOffLatency99thPercentile() {
+        return -1L;
+    }
+
+    /**
+     * Get the maximum hand-off latency, in nanoseconds.
+     *
+     * @return the maximum hand-off latency, or -1 if the provider does not track it
+     */
+    default long getAcceptHandOffLatencyMax() {
+        return -1L;
+    }
 }
@@ -18,6 +18,7 @@
 
 package org.xnio.management;
 
+import java.util.Collections;
 import java.util.Set;
 
 
@@ -82,9 +83,65 @@ public interface XnioWorkerMXBean {
      */
     int getWorkerQueueSize();
 
+    /**
+     * Get the total number of times the I/O threads of this worker polled their selector and task queue while spinning
+     * before a blocking select.
+     *
+     * @return the spin count, or {@code -1} if the provider does not track it
+     */
+    default long getIoThreadSpinCount() {
+        return -1L;
+    }
+
+    /**
+     * Get the total number of times the I/O threads of this worker returned from a blocking select.
+     *
+     * @return the select wakeup count, or {@code -1} if the provider does not track it
+     */
+    default long getIoThreadSelectWakeupCount() {
+        return -1L;
+    }
+
+    /**
+     * Get the total number of times the I/O threads of this worker returned from a blocking select without any
+     * ready keys, due to a task being submitted, a timeout expiring, or a spurious wakeup.
+     *
+     * @return the empty select count, or {@code -1} if the provider does not track it
+     */
+    default long getIoThreadEmptySelectCount() {
+        return -1L;
+    }
+
+    /**
+     * Get the number of SSL buffer allocations of this worker that were satisfied from the allocating thread's cache.
+     *
+     * @return the SSL buffer pool hit count, or {@code -1} if the provider does not track it
+     */
+    default long getSslBufferPoolHitCount() {
+        return -1L;
+    }
+
+    /**
+     * Get the number of SSL buffer allocations of this worker that had to fall back to the worker's shared SSL buffer
+     * pool.
+     *
+     * @return the SSL buffer pool miss count, or {@code -1} if the provider does not track it
+     */
+    default long getSslBufferPoolMissCount() {
+        return -1L;
+    }
+
     /**
      * Get servers that are opened under this worker.
      * @return set of {@link XnioServerMXBean}
      */
     Set<XnioServerMXBean> getServerMXBeans();
+
+    /**
+     * Get the I/O threads of this worker.
+     * @return set of {@link XnioIoThreadMXBean}, empty if the provider does not track I/O thread metrics
+     */
+    default Set<XnioIoThreadMXBean> getIoThreadMXBeans() {
+        return Collections.emptySet();
+    }
 }
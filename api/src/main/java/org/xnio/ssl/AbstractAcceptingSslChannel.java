@@ -38,6 +38,7 @@ import javax.net.ssl.SSLEngine;
 
 import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
+import org.xnio.IoUtils;
 import org.xnio.Option;
 import org.xnio.OptionMap;
 import org.xnio.Options;
@@ -80,16 +81,22 @@ abstract class AbstractAcceptingSslChannel<C extends ConnectedChannel, S extends
     private final ChannelListener.Setter<AcceptingChannel<C>> closeSetter;
     private final ChannelListener.Setter<AcceptingChannel<C>> acceptSetter;
     protected final boolean startTls;
+    protected final boolean lazyBuffers;
+    protected final int writeCoalescingSize;
     protected final Pool<ByteBuffer> socketBufferPool;
     protected final Pool<ByteBuffer> applicationBufferPool;
+    protected final SslHandshakeExecutor handshakeExecutor;
 
 
-    AbstractAcceptingSslChannel(final SSLContext sslContext, final AcceptingChannel<? extends S> tcpServer, final OptionMap optionMap, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls) {
+    AbstractAcceptingSslChannel(final SSLContext sslContext, final AcceptingChannel<? extends S> tcpServer, final OptionMap optionMap, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls, final SslHandshakeExecutor handshakeExecutor) {
         this.tcpServer = tcpServer;
+        this.handshakeExecutor = handshakeExecutor;
         this.sslContext = sslContext;
         this.socketBufferPool = socketBufferPool;
         this.applicationBufferPool = applicationBufferPool;
         this.startTls = startTls;
+        lazyBuffers = optionMap.get(Options.SSL_LAZY_BUFFERS, false);
+        writeCoalescingSize = optionMap.get(Options.SSL_WRITE_COALESCING_SIZE, 0);
         clientAuthMode = optionMap.get(Options.SSL_CLIENT_AUTH_MODE);
         useClientMode = optionMap.get(Options.SSL_USE_CLIENT_MODE, false) ? 1 : 0;
         enableSessionCreation = optionMap.get(Options.SSL_ENABLE_SESSION_CREATION, true) ? 1 : 0;
@@ -141,6 +148,11 @@ abstract class AbstractAcceptingSslChannel<C extends ConnectedChannel, S extends
         if (tcpConnection == null) {
             return null;
         }
+        if (! startTls && ! handshakeExecutor.admitHandshake()) {
+            // shed the connection rather than queue another handshake behind a saturated executor
+            IoUtils.safeClose(tcpConnection);
+            return null;
+        }
         final InetSocketAddress peerAddress = tcpConnection.getPeerAddress(InetSocketAddress.class);
         final SSLEngine engine = sslContext.createSSLEngine(peerAddress.getHostString(), peerAddress.getPort());
         final boolean clientMode = useClientMode != 0;
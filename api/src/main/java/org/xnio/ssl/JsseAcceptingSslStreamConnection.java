@@ -38,16 +38,16 @@ import org.xnio.channels.AcceptingChannel;
  */
 final class JsseAcceptingSslStreamConnection extends AbstractAcceptingSslChannel<SslConnection, StreamConnection> {
 
-    JsseAcceptingSslStreamConnection(final SSLContext sslContext, final AcceptingChannel<? extends StreamConnection> tcpServer, final OptionMap optionMap, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls) {
-        super(sslContext, tcpServer, optionMap, socketBufferPool, applicationBufferPool, startTls);
+    JsseAcceptingSslStreamConnection(final SSLContext sslContext, final AcceptingChannel<? extends StreamConnection> tcpServer, final OptionMap optionMap, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls, final SslHandshakeExecutor handshakeExecutor) {
+        super(sslContext, tcpServer, optionMap, socketBufferPool, applicationBufferPool, startTls, handshakeExecutor);
     }
 
     @Override
     public SslConnection accept(StreamConnection tcpConnection, SSLEngine engine) throws IOException {
         if (! JsseXnioSsl.NEW_IMPL) {
-            return new JsseSslStreamConnection(tcpConnection, engine, socketBufferPool, applicationBufferPool, startTls);
+            return new JsseSslStreamConnection(tcpConnection, engine, socketBufferPool, applicationBufferPool, startTls, lazyBuffers, handshakeExecutor, writeCoalescingSize);
         }
-        JsseSslConnection connection = new JsseSslConnection(tcpConnection, engine, socketBufferPool, applicationBufferPool);
+        JsseSslConnection connection = new JsseSslConnection(tcpConnection, engine, socketBufferPool, applicationBufferPool, lazyBuffers, handshakeExecutor);
         if (!startTls) {
             try {
                 connection.startHandshake();
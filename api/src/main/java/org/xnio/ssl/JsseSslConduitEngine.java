@@ -32,6 +32,8 @@ import static org.xnio._private.Messages.msg;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
@@ -46,7 +48,6 @@ import javax.net.ssl.SSLSession;
 import org.jboss.logging.Logger;
 import org.xnio.Buffers;
 import org.xnio.Pool;
-import org.xnio.Pooled;
 import org.xnio.conduits.StreamSinkConduit;
 import org.xnio.conduits.StreamSourceConduit;
 
@@ -64,15 +65,19 @@ final class JsseSslConduitEngine {
     private static final int NEED_WRAP              = 1 << 0x00; // conduit cannot be read due to pending wrap
     private static final int READ_SHUT_DOWN         = 1 << 0x01; // user shut down reads
     private static final int BUFFER_UNDERFLOW         = 1 << 0x02; // even though there is data in the buffer there is not enough to form a complete packet
+    private static final int READS_HELD             = 1 << 0x03; // reads were suspended while the handshake executor runs the delegated tasks
     @SuppressWarnings("unused")
     private static final int READ_FLAGS             = intBitMask(0x00, 0x0F);
     // write-side
     private static final int NEED_UNWRAP            = 1 << 0x10; // conduit cannot be written to due to pending unwrap
     private static final int WRITE_SHUT_DOWN        = 1 << 0x11; // user requested shut down of writes
     private static final int WRITE_COMPLETE         = 1 << 0x12; // flush acknowledged full write shutdown
+    private static final int WRITES_HELD            = 1 << 0x13; // writes were suspended while the handshake executor runs the delegated tasks
 
     private static final int FIRST_HANDSHAKE          = 1 << 0x16; // first handshake has not been performed
     private static final int ENGINE_CLOSED          = 1 << 0x17;  // engine is fully closed
+    private static final int ENGINE_TASKS           = 1 << 0x18;  // a thread owns and is running the delegated tasks
+    private static final int ENGINE_TASKS_DONE      = 1 << 0x19;  // the handshake executor ran the delegated tasks, handshake must be resumed
      // engine is fully closed
     @SuppressWarnings("unused")
     private static final int WRITE_FLAGS            = intBitMask(0x10, 0x1F);
@@ -83,11 +88,13 @@ final class JsseSslConduitEngine {
     /** The SSL engine. */
     private final SSLEngine engine;
     /** The buffer into which incoming SSL data is written. */
-    private final Pooled<ByteBuffer> receiveBuffer;
+    private final PooledSslBuffer receiveBuffer;
     /** The buffer from which outbound SSL data is sent. */
-    private final Pooled<ByteBuffer> sendBuffer;
+    private final PooledSslBuffer sendBuffer;
     /** The buffer into which inbound clear data is written. */
-    private final Pooled<ByteBuffer> readBuffer;
+    private final PooledSslBuffer readBuffer;
+    /** {@code true} if the buffers are returned to their pools whenever they are drained. */
+    private final boolean lazyBuffers;
 
     // the next conduits
     private final StreamSinkConduit sinkConduit;
@@ -103,8 +110,11 @@ final class JsseSslConduitEngine {
     private volatile Thread readWaiter;
     @SuppressWarnings("unused")
     private volatile Thread writeWaiter;
+    @SuppressWarnings("unused")
+    private volatile Thread taskWaiter;
     private static final AtomicReferenceFieldUpdater<JsseSslConduitEngine, Thread> readWaiterUpdater = AtomicReferenceFieldUpdater.newUpdater(JsseSslConduitEngine.class, Thread.class, "readWaiter");
     private static final AtomicReferenceFieldUpdater<JsseSslConduitEngine, Thread> writeWaiterUpdater = AtomicReferenceFieldUpdater.newUpdater(JsseSslConduitEngine.class, Thread.class, "writeWaiter");
+    private static final AtomicReferenceFieldUpdater<JsseSslConduitEngine, Thread> taskWaiterUpdater = AtomicReferenceFieldUpdater.newUpdater(JsseSslConduitEngine.class, Thread.class, "taskWaiter");
 
     /**
      * Construct a new instance.
@@ -115,8 +125,9 @@ final class JsseSslConduitEngine {
      * @param engine                the SSL engine to use
      * @param socketBufferPool      the socket buffer pool
      * @param applicationBufferPool the application buffer pool
+     * @param lazyBuffers           {@code true} to hold the buffers only while data is being wrapped or unwrapped
      */
-    JsseSslConduitEngine(final JsseSslStreamConnection connection, final StreamSinkConduit sinkConduit, final StreamSourceConduit sourceConduit, final SSLEngine engine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool) {
+    JsseSslConduitEngine(final JsseSslStreamConnection connection, final StreamSinkConduit sinkConduit, final StreamSourceConduit sourceConduit, final SSLEngine engine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean lazyBuffers) {
         if (connection == null) {
             throw msg.nullParameter("connection");
         }
@@ -140,23 +151,27 @@ final class JsseSslConduitEngine {
         this.sourceConduit = sourceConduit;
         this.engine = engine;
         this.state = FIRST_HANDSHAKE;
+        this.lazyBuffers = lazyBuffers;
         final SSLSession session = engine.getSession();
         final int packetBufferSize = session.getPacketBufferSize();
         boolean ok = false;
-        receiveBuffer = socketBufferPool.allocate();
+        receiveBuffer = new PooledSslBuffer(socketBufferPool, true, lazyBuffers);
         try {
-            receiveBuffer.getResource().flip();
-            sendBuffer = socketBufferPool.allocate();
+            sendBuffer = new PooledSslBuffer(socketBufferPool, false, lazyBuffers);
             try {
-                if (receiveBuffer.getResource().capacity() < packetBufferSize || sendBuffer.getResource().capacity() < packetBufferSize) {
+                if (receiveBuffer.get().capacity() < packetBufferSize || sendBuffer.get().capacity() < packetBufferSize) {
                     throw msg.socketBufferTooSmall();
                 }
                 final int applicationBufferSize = session.getApplicationBufferSize();
-                readBuffer = applicationBufferPool.allocate();
+                readBuffer = new PooledSslBuffer(applicationBufferPool, false, lazyBuffers);
                 try {
-                    if (readBuffer.getResource().capacity() < applicationBufferSize) {
+                    if (readBuffer.get().capacity() < applicationBufferSize) {
                         throw msg.appBufferTooSmall();
                     }
+                    // the buffers are only needed once there is something to wrap or unwrap
+                    readBuffer.release();
+                    sendBuffer.release();
+                    receiveBuffer.release();
                     ok = true;
                 } finally {
                     if (! ok) readBuffer.free();
@@ -231,27 +246,32 @@ final class JsseSslConduitEngine {
             // a workaround for a bug found in SSLEngine
             throw new ClosedChannelException();
         }
-        final ByteBuffer buffer = sendBuffer.getResource();
         long bytesConsumed = 0;
         boolean run;
         try {
+            resumeHandshake();
+            if (isAwaitingEngineTasks()) {
+                return 0;
+            }
             do {
                 final SSLEngineResult result;
                 synchronized (getWrapLock()) {
-                    run = handleWrapResult(result = engineWrap(srcs, offset, length, buffer), false);
+                    run = handleWrapResult(result = engineWrap(srcs, offset, length, sendBuffer.get()), false);
                     bytesConsumed += (long) result.bytesConsumed();
                 }
                 // handshake will tell us whether to keep the loop
-                run = run && (handleHandshake(result, true) || (!isUnwrapNeeded() && Buffers.hasRemaining(srcs, offset, length)));
+                run = run && (handleHandshake(result, true) || (!isUnwrapNeeded() && !isAwaitingEngineTasks() && Buffers.hasRemaining(srcs, offset, length)));
             } while (run);
         } catch (SSLHandshakeException e) {
             try {
                 synchronized (getWrapLock()) {
-                    engine.wrap(EMPTY_BUFFER, sendBuffer.getResource());
+                    engine.wrap(EMPTY_BUFFER, sendBuffer.get());
                     doFlush();
                 }
             } catch (IOException ignore) {}
             throw e;
+        } finally {
+            releaseIdleWrapBuffers();
         }
         return bytesConsumed;
     }
@@ -266,7 +286,7 @@ final class JsseSslConduitEngine {
     public ByteBuffer getWrappedBuffer() {
         assert Thread.holdsLock(getWrapLock());
         assert ! Thread.holdsLock(getUnwrapLock());
-        return allAreSet(stateUpdater.get(this), ENGINE_CLOSED)? Buffers.EMPTY_BYTE_BUFFER: sendBuffer.getResource();
+        return allAreSet(stateUpdater.get(this), ENGINE_CLOSED)? Buffers.EMPTY_BYTE_BUFFER: sendBuffer.get();
     }
 
     /**
@@ -300,27 +320,32 @@ final class JsseSslConduitEngine {
             throw new ClosedChannelException();
         }
         clearFlags(FIRST_HANDSHAKE);
-        final ByteBuffer buffer = sendBuffer.getResource();
         int bytesConsumed = 0;
         boolean run;
         try {
+            resumeHandshake();
+            if (isAwaitingEngineTasks()) {
+                return 0;
+            }
             do {
                 final SSLEngineResult result;
                 synchronized (getWrapLock()) {
-                    run = handleWrapResult(result = engineWrap(src, buffer), isCloseExpected);
+                    run = handleWrapResult(result = engineWrap(src, sendBuffer.get()), isCloseExpected);
                     bytesConsumed += result.bytesConsumed();
                 }
                 // handshake will tell us whether to keep the loop
-                run = run && bytesConsumed == 0 && (handleHandshake(result, true) || (!isUnwrapNeeded() && src.hasRemaining()));
+                run = run && bytesConsumed == 0 && (handleHandshake(result, true) || (!isUnwrapNeeded() && !isAwaitingEngineTasks() && src.hasRemaining()));
             } while (run);
         } catch (SSLHandshakeException e) {
             try {
                 synchronized (getWrapLock()) {
-                    engine.wrap(EMPTY_BUFFER, sendBuffer.getResource());
+                    engine.wrap(EMPTY_BUFFER, sendBuffer.get());
                     doFlush();
                 }
             } catch (IOException ignore) {}
             throw e;
+        } finally {
+            releaseIdleWrapBuffers();
         }
         return bytesConsumed;
     }
@@ -376,7 +401,7 @@ final class JsseSslConduitEngine {
             case BUFFER_OVERFLOW: {
                 assert result.bytesConsumed() == 0;
                 assert result.bytesProduced() == 0;
-                final ByteBuffer buffer = sendBuffer.getResource();
+                final ByteBuffer buffer = sendBuffer.get();
                 if (buffer.position() == 0) {
                     throw msg.wrongBufferExpansion();
                 } else {
@@ -462,14 +487,13 @@ final class JsseSslConduitEngine {
                     if (write) {
                         return true;
                     }
-                    final ByteBuffer buffer = sendBuffer.getResource();
                     // else, trigger a write call
                     // Needs wrap, so we wrap (if possible)...
                     synchronized (getWrapLock()) {
                         // given caller is reading, tell it to continue only if we can move away from  NEED_WRAP
                         // and flush any wrapped data we may have left
                         if (doFlush()) {
-                            if (!handleWrapResult(result = engineWrap(Buffers.EMPTY_BYTE_BUFFER, buffer), true) || !doFlush()) {
+                            if (!handleWrapResult(result = engineWrap(Buffers.EMPTY_BYTE_BUFFER, sendBuffer.get()), true) || !doFlush()) {
                                 needWrap();
                                 return false;
                             }
@@ -494,11 +518,10 @@ final class JsseSslConduitEngine {
                         // there could be unflushed data from a previous wrap, make sure everything is flushed at this point
                         doFlush();
                     }
-                    final ByteBuffer buffer = receiveBuffer.getResource();
-                    final ByteBuffer unwrappedBuffer = readBuffer.getResource();
                     // FIXME this if block is a workaround for a bug in SSLEngine
                    if (result.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP && engine.isOutboundDone()) {
                         synchronized (getUnwrapLock()) {
+                            final ByteBuffer buffer = receiveBuffer.get();
                             buffer.compact();
                             sourceConduit.read(buffer);
                             buffer.flip();
@@ -510,8 +533,8 @@ final class JsseSslConduitEngine {
                     }
                     synchronized (getUnwrapLock()) {
                         // attempt to unwrap
-                        int unwrapResult = handleUnwrapResult(result = engineUnwrap(buffer, unwrappedBuffer));
-                        if (buffer.hasRemaining() && sourceConduit.isReadResumed()) {
+                        int unwrapResult = handleUnwrapResult(result = engineUnwrap(receiveBuffer.get(), readBuffer.get()));
+                        if (receiveBuffer.hasRemaining() && sourceConduit.isReadResumed()) {
                             sourceConduit.wakeupReads();
                         }
                         if (unwrapResult >= 0) {
@@ -535,16 +558,31 @@ final class JsseSslConduitEngine {
                     continue;
                 }
                 case NEED_TASK: {
-                    Runnable task;
-                    synchronized (engine) {
-                        // run the tasks needed for handshaking
+                    final SslHandshakeExecutor handshakeExecutor = connection.getHandshakeExecutor();
+                    // only one side runs the tasks needed for handshaking; the other one waits for them to finish
+                    if (allAreSet(setFlags(ENGINE_TASKS), ENGINE_TASKS)) {
+                        if (! handshakeExecutor.isInline()) {
+                            // the handshake executor wakes up both sides once the tasks are done
+                            return false;
+                        }
+                        awaitEngineTasks();
+                        // caller should try to wrap/unwrap again
+                        return true;
+                    }
+                    if (! handshakeExecutor.isInline()) {
+                        return submitEngineTasks(handshakeExecutor);
+                    }
+                    try {
+                        Runnable task;
                         while ((task = engine.getDelegatedTask()) != null) {
                             try {
-                                task.run();
+                                handshakeExecutor.runInline(task);
                             } catch (Exception e) {
                                 throw new IOException(e);
                             }
                         }
+                    } finally {
+                        engineTasksDone();
                     }
                     // caller should try to wrap/unwrap again
                     return true;
@@ -555,6 +593,149 @@ final class JsseSslConduitEngine {
         }
     }
 
+    /**
+     * Hand the delegated tasks of the engine over to the handshake executor, so that the I/O thread does not run them.
+     * Once they have all run, any thread blocked on them is unparked and the resumed sides of the connection are woken
+     * up to retry.
+     *
+     * @param handshakeExecutor the handshake executor
+     * @return {@code true} if the engine had no tasks after all and the caller should try to wrap/unwrap again,
+     *         {@code false} if the tasks were handed over
+     * @throws SSLException if the handshake executor is saturated
+     */
+    private boolean submitEngineTasks(final SslHandshakeExecutor handshakeExecutor) throws SSLException {
+        final ArrayList<Runnable> tasks = new ArrayList<>(2);
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            tasks.add(task);
+        }
+        if (tasks.isEmpty()) {
+            engineTasksDone();
+            return true;
+        }
+        // nothing can be wrapped or unwrapped until the tasks are done, so do not spin on a ready channel meanwhile
+        if (sourceConduit.isReadResumed()) {
+            setFlags(READS_HELD);
+            sourceConduit.suspendReads();
+        }
+        if (sinkConduit.isWriteResumed()) {
+            setFlags(WRITES_HELD);
+            sinkConduit.suspendWrites();
+        }
+        try {
+            handshakeExecutor.execute(() -> {
+                try {
+                    for (Runnable delegated : tasks) {
+                        delegated.run();
+                    }
+                } finally {
+                    setFlags(ENGINE_TASKS_DONE);
+                    engineTasksDone();
+                    try {
+                        sourceConduit.getReadThread().execute(resumeAfterEngineTasks);
+                    } catch (RejectedExecutionException ignored) {
+                        // the I/O thread is shutting down
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            engineTasksDone();
+            resumeAfterEngineTasks.run();
+            throw new SSLException("Handshake executor is saturated", e);
+        }
+        return false;
+    }
+
+    /**
+     * Run on the read thread once the handshake executor has run the delegated tasks of the engine, to retry the I/O
+     * which was waiting for them.
+     */
+    private final Runnable resumeAfterEngineTasks = new Runnable() {
+        public void run() {
+            final int oldState = clearFlags(READS_HELD | WRITES_HELD);
+            if (allAreSet(oldState, READS_HELD) || sourceConduit.isReadResumed()) {
+                sourceConduit.wakeupReads();
+            }
+            if (allAreSet(oldState, WRITES_HELD) || sinkConduit.isWriteResumed()) {
+                sinkConduit.wakeupWrites();
+            }
+        }
+    };
+
+    /**
+     * Clear the {@code ENGINE_TASKS} flag and unpark the thread waiting for the delegated tasks, if any.
+     */
+    private void engineTasksDone() {
+        clearFlags(ENGINE_TASKS);
+        final Thread waiter = taskWaiterUpdater.getAndSet(this, null);
+        if (waiter != null) unpark(waiter);
+    }
+
+    /**
+     * Block until the thread that owns the delegated tasks of the engine has run them all.
+     *
+     * @throws IOException if the wait is interrupted
+     */
+    private void awaitEngineTasks() throws IOException {
+        final Thread thread = currentThread();
+        final Thread next = taskWaiterUpdater.getAndSet(this, thread);
+        try {
+            while (allAreSet(state, ENGINE_TASKS)) {
+                park(this);
+                if (thread.isInterrupted()) {
+                    throw msg.interruptedIO();
+                }
+                if (allAreSet(state, ENGINE_TASKS)) {
+                    // spurious wakeup, or a waiter was replaced; register again before parking
+                    taskWaiterUpdater.compareAndSet(this, null, thread);
+                }
+            }
+        } finally {
+            // always unpark because we cannot know if our awaken was spurious
+            if (next != null) unpark(next);
+        }
+    }
+
+    /**
+     * Block until the handshake executor has run the delegated tasks of the engine, or until the given time elapses.
+     *
+     * @param nanos the maximum time to wait, in nanoseconds
+     * @throws IOException if the wait is interrupted
+     */
+    private void awaitEngineTasks(long nanos) throws IOException {
+        final Thread thread = currentThread();
+        final Thread next = taskWaiterUpdater.getAndSet(this, thread);
+        final long deadline = System.nanoTime() + nanos;
+        try {
+            while (allAreSet(state, ENGINE_TASKS) && nanos > 0L) {
+                parkNanos(this, nanos);
+                if (thread.isInterrupted()) {
+                    throw msg.interruptedIO();
+                }
+                if (allAreSet(state, ENGINE_TASKS)) {
+                    // spurious wakeup, or a waiter was replaced; register again before parking
+                    taskWaiterUpdater.compareAndSet(this, null, thread);
+                }
+                nanos = deadline - System.nanoTime();
+            }
+        } finally {
+            // always unpark because we cannot know if our awaken was spurious
+            if (next != null) unpark(next);
+        }
+    }
+
+    /**
+     * Carry on with a handshake whose delegated tasks the handshake executor has run, before any more data is wrapped
+     * or unwrapped, just as if the tasks had been run inline.
+     *
+     * @throws IOException if an IO exception occurs while handling the handshake
+     */
+    private void resumeHandshake() throws IOException {
+        if (allAreSet(state, ENGINE_TASKS_DONE) && allAreSet(clearFlags(ENGINE_TASKS_DONE), ENGINE_TASKS_DONE)) {
+            handleHandshake(new SSLEngineResult(SSLEngineResult.Status.OK, engine.getHandshakeStatus(), 0, 0), false);
+        }
+    }
+
     /**
      * Unwraps the bytes contained in {@link #getUnwrapBuffer()}, copying the resulting unwrapped bytes into
      * {@code dst}.
@@ -578,6 +759,9 @@ final class JsseSslConduitEngine {
      * Unwraps the bytes contained in {@link #getUnwrapBuffer()}, copying the resulting unwrapped bytes into
      * {@code dsts}.
      * <p>
+     * Outside of a handshake, as many records as fit into {@code dsts} are unwrapped in a single call, reading more
+     * bytes from the underlying conduit whenever the unwrap buffer is exhausted.
+     * <p>
      * If the engine is performing handshake during this request, not all bytes could be unwrapped. In this case, a
      * later call can be performed to attempt to unwrap more bytes.
      * <p>
@@ -598,41 +782,54 @@ final class JsseSslConduitEngine {
             return 0L;
         }
         clearFlags(FIRST_HANDSHAKE | BUFFER_UNDERFLOW);
-        final ByteBuffer buffer = receiveBuffer.getResource();
-        final ByteBuffer unwrappedBuffer = readBuffer.getResource();
         long total = 0;
         SSLEngineResult result;
         synchronized(getUnwrapLock()) {
-            if (unwrappedBuffer.position() > 0) {
-                total += (long) copyUnwrappedData(dsts, offset, length, unwrappedBuffer);
+            if (! readBuffer.isEmpty()) {
+                total += (long) copyUnwrappedData(dsts, offset, length, readBuffer.get());
             }
         }
         int res = 0;
         try {
+            resumeHandshake();
+            if (isAwaitingEngineTasks()) {
+                return total;
+            }
             do {
                 synchronized (getUnwrapLock()) {
                     if (! Buffers.hasRemaining(dsts, offset, length)) {
-                        if (unwrappedBuffer.hasRemaining() && sourceConduit.isReadResumed()) {
+                        if (readBuffer.hasRemaining() && sourceConduit.isReadResumed()) {
                             sourceConduit.wakeupReads();
                         }
                         return total;
                     }
-                    res = handleUnwrapResult(result = engineUnwrap(buffer, unwrappedBuffer));
+                    final ByteBuffer unwrappedBuffer = readBuffer.get();
+                    res = handleUnwrapResult(result = engineUnwrap(receiveBuffer.get(), unwrappedBuffer));
                     if (unwrappedBuffer.position() > 0) { // test the position of the buffer instead of the
                         // the amount of produced bytes, because in a concurrent scenario, during this loop,
                         // another thread could read more bytes as a side effect of a need unwrap
                         total += (long) copyUnwrappedData(dsts, offset, length, unwrappedBuffer);
                     }
+                    // outside of a handshake, keep on unwrapping the records that are already buffered, reading
+                    // ahead from the source conduit whenever the receive buffer runs out, while there is room in dsts
+                    while (res > 0 && result.getStatus() == SSLEngineResult.Status.OK && result.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING && Buffers.hasRemaining(dsts, offset, length)) {
+                        res = handleUnwrapResult(result = engineUnwrap(receiveBuffer.get(), unwrappedBuffer));
+                        if (unwrappedBuffer.position() > 0) {
+                            total += (long) copyUnwrappedData(dsts, offset, length, unwrappedBuffer);
+                        }
+                    }
                 }
-            } while ((handleHandshake(result, false) || res > 0));
+            } while (handleHandshake(result, false) || (res > 0 && ! isAwaitingEngineTasks()));
         } catch (SSLHandshakeException e) {
             try {
                 synchronized (getWrapLock()) {
-                    engine.wrap(EMPTY_BUFFER, sendBuffer.getResource());
+                    engine.wrap(EMPTY_BUFFER, sendBuffer.get());
                     doFlush();
                 }
             } catch (IOException ignore) {}
             throw e;
+        } finally {
+            releaseIdleUnwrapBuffers();
         }
         if (total == 0L) {
             if (res == -1) {
@@ -658,7 +855,20 @@ final class JsseSslConduitEngine {
     public ByteBuffer getUnwrapBuffer() {
         assert Thread.holdsLock(getUnwrapLock());
         assert ! Thread.holdsLock(getWrapLock());
-        return receiveBuffer.getResource();
+        return receiveBuffer.get();
+    }
+
+    /**
+     * Indicates if the {@link #getUnwrapBuffer() unwrap buffer} contains data, without allocating the buffer if it is
+     * currently returned to the pool.
+     * <p>
+     * This method should always be invoked inside the {@link #getUnwrapLock() unwrap lock}.
+     *
+     * @return {@code true} if there are bytes waiting to be unwrapped
+     */
+    public boolean hasUnwrapData() {
+        assert Thread.holdsLock(getUnwrapLock());
+        return receiveBuffer.hasRemaining();
     }
 
     /**
@@ -730,8 +940,8 @@ final class JsseSslConduitEngine {
                 assert result.bytesConsumed() == 0;
                 assert result.bytesProduced() == 0;
                 // fill the rest of the buffer, then retry!
-                final ByteBuffer buffer = receiveBuffer.getResource();
                 synchronized (getUnwrapLock()) {
+                    final ByteBuffer buffer = receiveBuffer.get();
                     buffer.compact();
                     try {
                         return sourceConduit.read(buffer);
@@ -823,15 +1033,14 @@ final class JsseSslConduitEngine {
         if (sinkConduit.isWriteShutdown()) {
             return true;
         }
-        final ByteBuffer buffer = sendBuffer.getResource();
         if (!engine.isOutboundDone() || !engine.isInboundDone()) {
             SSLEngineResult result;
             do {
-                if (!handleWrapResult(result = engineWrap(Buffers.EMPTY_BYTE_BUFFER, buffer), true)) {
+                if (!handleWrapResult(result = engineWrap(Buffers.EMPTY_BYTE_BUFFER, sendBuffer.get()), true)) {
                     return false;
                 }
             } while (handleHandshake(result, true) && (result.getHandshakeStatus() != HandshakeStatus.NEED_UNWRAP || !engine.isOutboundDone()));
-            handleWrapResult(result = engineWrap(Buffers.EMPTY_BYTE_BUFFER, buffer), true);
+            handleWrapResult(result = engineWrap(Buffers.EMPTY_BYTE_BUFFER, sendBuffer.get()), true);
             if (!engine.isOutboundDone() || (result.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING &&
                     result.getHandshakeStatus() != HandshakeStatus.NEED_UNWRAP)) {
                 return false;
@@ -851,7 +1060,7 @@ final class JsseSslConduitEngine {
         assert Thread.holdsLock(getWrapLock());
         assert ! Thread.holdsLock(getUnwrapLock());
         final ByteBuffer buffer;
-        buffer = sendBuffer.getResource();
+        buffer = sendBuffer.get();
         buffer.flip();
         try {
             while (buffer.hasRemaining()) {
@@ -866,6 +1075,41 @@ final class JsseSslConduitEngine {
         return sinkConduit.flush();
     }
 
+    /**
+     * Returns the drained send buffer to its pool, if this engine holds its buffers lazily.  A buffer that still
+     * contains data is kept until a later call finds it drained.  Only the {@link #getWrapLock() wrap lock} is taken,
+     * so that a writer does not contend with a concurrent reader.
+     * <p>
+     * This method does nothing if invoked inside the {@link #getWrapLock() wrap lock} or the
+     * {@link #getUnwrapLock() unwrap lock}, as the caller might still be using a buffer.
+     */
+    void releaseIdleWrapBuffers() {
+        if (! lazyBuffers || Thread.holdsLock(getWrapLock()) || Thread.holdsLock(getUnwrapLock())) {
+            return;
+        }
+        synchronized (getWrapLock()) {
+            sendBuffer.release();
+        }
+    }
+
+    /**
+     * Returns the drained receive and read buffers to their pools, if this engine holds its buffers lazily.  Buffers
+     * that still contain data are kept until a later call finds them drained.  Only the
+     * {@link #getUnwrapLock() unwrap lock} is taken, so that a reader does not contend with a concurrent writer.
+     * <p>
+     * This method does nothing if invoked inside the {@link #getWrapLock() wrap lock} or the
+     * {@link #getUnwrapLock() unwrap lock}, as the caller might still be using a buffer.
+     */
+    void releaseIdleUnwrapBuffers() {
+        if (! lazyBuffers || Thread.holdsLock(getWrapLock()) || Thread.holdsLock(getUnwrapLock())) {
+            return;
+        }
+        synchronized (getUnwrapLock()) {
+            receiveBuffer.release();
+            readBuffer.release();
+        }
+    }
+
     /**
      * Closes this engine for both inbound and outbound, clearing the buffers.
      * 
@@ -937,6 +1181,11 @@ final class JsseSslConduitEngine {
      * @throws IOException if an IO exception occurs during await
      */
     public void awaitCanWrap() throws IOException {
+        if (isAwaitingEngineTasks()) {
+            // the handshake executor is running the delegated tasks of the engine; the caller retries once they are done
+            awaitEngineTasks();
+            return;
+        }
         int oldState = state;
         if (anyAreSet(oldState, WRITE_SHUT_DOWN) || !allAreSet(oldState, NEED_UNWRAP)) {
             return;
@@ -971,6 +1220,11 @@ final class JsseSslConduitEngine {
      * @throws IOException if an IO exception occurs during await
      */
     public void awaitCanWrap(long time, TimeUnit timeUnit) throws IOException {
+        if (isAwaitingEngineTasks()) {
+            // the handshake executor is running the delegated tasks of the engine; the caller retries once they are done
+            awaitEngineTasks(timeUnit.toNanos(time));
+            return;
+        }
         int oldState = state;
         if (anyAreSet(oldState, WRITE_SHUT_DOWN) || !allAreSet(oldState, NEED_UNWRAP)) {
             return;
@@ -1050,6 +1304,15 @@ final class JsseSslConduitEngine {
      * @throws IOException if an IO exception occurs during await
      */
     public void awaitCanUnwrap() throws IOException {
+        if (isAwaitingEngineTasks()) {
+            // the handshake executor is running the delegated tasks of the engine; once they are done, send whatever
+            // the handshake produces next, as the caller is about to block until the peer answers it
+            do {
+                awaitEngineTasks();
+                resumeHandshake();
+            } while (isAwaitingEngineTasks());
+            return;
+        }
         int oldState = state;
         if (anyAreSet(oldState, READ_SHUT_DOWN) || ! anyAreSet(oldState, NEED_WRAP)) {
             return;
@@ -1081,6 +1344,13 @@ final class JsseSslConduitEngine {
      * @throws IOException if an IO exception occurs during await
      */
     public void awaitCanUnwrap(long time, TimeUnit timeUnit) throws IOException {
+        if (isAwaitingEngineTasks()) {
+            // the handshake executor is running the delegated tasks of the engine; once they are done, send whatever
+            // the handshake produces next, as the caller is about to block until the peer answers it
+            awaitEngineTasks(timeUnit.toNanos(time));
+            resumeHandshake();
+            return;
+        }
         int oldState = state;
         if (anyAreSet(oldState, READ_SHUT_DOWN) || ! anyAreSet(oldState, NEED_WRAP)) {
             return;
@@ -1105,10 +1375,40 @@ final class JsseSslConduitEngine {
         }
     }
 
+    /**
+     * Indicate whether the handshake executor is running the delegated tasks of the engine.  Until they are done, the
+     * engine can neither wrap nor unwrap.
+     *
+     * @return {@code true} if delegated tasks are running on the handshake executor, {@code false} otherwise
+     */
+    boolean isAwaitingEngineTasks() {
+        return allAreSet(state, ENGINE_TASKS) && ! connection.getHandshakeExecutor().isInline();
+    }
+
+    /**
+     * Indicate whether the handshake executor has run the delegated tasks of the engine, and the handshake has not
+     * been resumed yet by the next wrap or unwrap.
+     *
+     * @return {@code true} if the handshake is waiting to be resumed, {@code false} otherwise
+     */
+    boolean isResumingHandshake() {
+        return allAreSet(state, ENGINE_TASKS_DONE);
+    }
+
     public boolean isFirstHandshake() {
         return allAreSet(state, FIRST_HANDSHAKE);
     }
 
+    /**
+     * Indicate whether a handshake is in progress.  Until the first wrap or unwrap kicks it off, the first handshake
+     * is not reported by this method; see {@link #isFirstHandshake()}.
+     *
+     * @return {@code true} if the engine is handshaking, {@code false} if application data can be wrapped right away
+     */
+    public boolean isHandshaking() {
+        return engine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING;
+    }
+
     SSLEngine getEngine() {
         return engine;
     }
@@ -1187,7 +1487,7 @@ final class JsseSslConduitEngine {
     public boolean isDataAvailable() {
         synchronized (getUnwrapLock()) {
             try {
-                return readBuffer.getResource().hasRemaining() || (receiveBuffer.getResource().hasRemaining() && !isUnderflow());
+                return readBuffer.hasRemaining() || (receiveBuffer.hasRemaining() && !isUnderflow());
             } catch (IllegalStateException ignored) {
                 return false;
             }
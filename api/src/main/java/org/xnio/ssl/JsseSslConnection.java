@@ -26,9 +26,17 @@ public final class JsseSslConnection extends SslConnection {
     }
 
     JsseSslConnection(final StreamConnection streamConnection, final SSLEngine engine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool) {
+        this(streamConnection, engine, socketBufferPool, applicationBufferPool, false);
+    }
+
+    JsseSslConnection(final StreamConnection streamConnection, final SSLEngine engine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean lazyBuffers) {
+        this(streamConnection, engine, socketBufferPool, applicationBufferPool, lazyBuffers, SslHandshakeExecutor.INLINE);
+    }
+
+    JsseSslConnection(final StreamConnection streamConnection, final SSLEngine engine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean lazyBuffers, final SslHandshakeExecutor handshakeExecutor) {
         super(streamConnection.getIoThread());
         this.streamConnection = streamConnection;
-        conduit = new JsseStreamConduit(this, engine, streamConnection.getSourceChannel().getConduit(), streamConnection.getSinkChannel().getConduit(), socketBufferPool, applicationBufferPool);
+        conduit = new JsseStreamConduit(this, engine, streamConnection.getSourceChannel().getConduit(), streamConnection.getSinkChannel().getConduit(), socketBufferPool, applicationBufferPool, lazyBuffers, handshakeExecutor);
         setSourceConduit(conduit);
         setSinkConduit(conduit);
     }
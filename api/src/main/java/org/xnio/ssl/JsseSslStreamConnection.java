@@ -53,6 +53,14 @@ public final class JsseSslStreamConnection extends SslConnection {
      * The conduit SSl engine.
      */
     private final JsseSslConduitEngine sslConduitEngine;
+    /**
+     * The executor which runs delegated tasks and keeps handshake metrics.
+     */
+    private final SslHandshakeExecutor handshakeExecutor;
+    /**
+     * The time at which the current handshake started.
+     */
+    private long handshakeStart = System.currentTimeMillis();
     /**
      * Indicates if tls is enabled.
      */
@@ -67,13 +75,22 @@ public final class JsseSslStreamConnection extends SslConnection {
     }
 
     JsseSslStreamConnection(StreamConnection connection, SSLEngine sslEngine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls) {
+        this(connection, sslEngine, socketBufferPool, applicationBufferPool, startTls, false);
+    }
+
+    JsseSslStreamConnection(StreamConnection connection, SSLEngine sslEngine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls, final boolean lazyBuffers) {
+        this(connection, sslEngine, socketBufferPool, applicationBufferPool, startTls, lazyBuffers, SslHandshakeExecutor.INLINE, 0);
+    }
+
+    JsseSslStreamConnection(StreamConnection connection, SSLEngine sslEngine, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean startTls, final boolean lazyBuffers, final SslHandshakeExecutor handshakeExecutor, final int writeCoalescingSize) {
         super(connection.getIoThread());
         this.connection = connection;
+        this.handshakeExecutor = handshakeExecutor;
         final StreamSinkConduit sinkConduit = connection.getSinkChannel().getConduit();
         final StreamSourceConduit sourceConduit = connection.getSourceChannel().getConduit();
-        sslConduitEngine = new JsseSslConduitEngine(this, sinkConduit, sourceConduit, sslEngine, socketBufferPool, applicationBufferPool);
+        sslConduitEngine = new JsseSslConduitEngine(this, sinkConduit, sourceConduit, sslEngine, socketBufferPool, applicationBufferPool, lazyBuffers);
         tls = ! startTls;
-        setSinkConduit(new JsseSslStreamSinkConduit(sinkConduit, sslConduitEngine, tls));
+        setSinkConduit(new JsseSslStreamSinkConduit(sinkConduit, sslConduitEngine, tls, writeCoalescingSize));
         setSourceConduit(new JsseSslStreamSourceConduit(sourceConduit, sslConduitEngine, tls));
     }
 
@@ -193,10 +210,16 @@ public final class JsseSslStreamConnection extends SslConnection {
         return super.writeClosed();
     }
 
+    SslHandshakeExecutor getHandshakeExecutor() {
+        return handshakeExecutor;
+    }
+
     /**
      * Callback method for notification of handshake finished.
      */
     protected void handleHandshakeFinished() {
+        handshakeExecutor.handshakeFinished(sslConduitEngine.getSession(), handshakeStart);
+        handshakeStart = System.currentTimeMillis();
         final ChannelListener<? super SslConnection> listener = handshakeSetter.get();
         if (listener == null) {
             return;
@@ -24,9 +24,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.TimeUnit;
 
+import org.xnio.Buffers;
 import org.xnio.channels.StreamSourceChannel;
 import org.xnio.conduits.AbstractStreamSinkConduit;
-import org.xnio.conduits.ConduitWritableByteChannel;
 import org.xnio.conduits.Conduits;
 import org.xnio.conduits.StreamSinkConduit;
 
@@ -40,14 +40,25 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
 
     private final JsseSslConduitEngine sslEngine;
     private volatile boolean tls;
+    /** The number of plaintext bytes to accumulate before wrapping, or {@code 0} to wrap every write right away. */
+    private final int coalescingSize;
+    /** The accumulated plaintext, in write mode; allocated on the first coalesced write. */
+    private ByteBuffer coalescingBuffer;
+    /** Indicates that outbound must be closed once the accumulated plaintext has been wrapped. */
+    private boolean closePending;
 
     protected JsseSslStreamSinkConduit(StreamSinkConduit next, JsseSslConduitEngine sslEngine, boolean tls) {
+        this(next, sslEngine, tls, 0);
+    }
+
+    JsseSslStreamSinkConduit(StreamSinkConduit next, JsseSslConduitEngine sslEngine, boolean tls, int coalescingSize) {
         super(next);
         if (sslEngine == null) {
             throw msg.nullParameter("sslEngine");
         }
         this.sslEngine = sslEngine;
         this.tls = tls;
+        this.coalescingSize = coalescingSize;
     }
 
     public void enableTls() {
@@ -59,7 +70,11 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
 
     @Override
     public long transferFrom(final FileChannel src, final long position, final long count) throws IOException {
-        return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+        if (!tls) {
+            // let the next conduit send the file without copying it
+            return super.transferFrom(src, position, count);
+        }
+        return JsseSslUtils.transferFrom(src, position, count, this);
     }
 
     @Override
@@ -95,6 +110,18 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
                 return next.write(src);
             }
         }
+        if (coalescingSize > 0) {
+            final int remaining = src.remaining();
+            if (! writeFinal && fitsCoalescingBuffer(remaining)) {
+                if (remaining > 0) {
+                    getCoalescingBuffer().put(src);
+                }
+                return remaining;
+            }
+            if (! wrapCoalesced()) {
+                return 0;
+            }
+        }
         final int wrappedBytes = sslEngine.wrap(src);
         if (wrappedBytes > 0) {
                 writeWrappedBuffer(writeFinal);
@@ -110,6 +137,18 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
                 return super.write(srcs, offs, len);
             }
         }
+        if (coalescingSize > 0) {
+            final long remaining = Buffers.remaining(srcs, offs, len);
+            if (! writeFinal && fitsCoalescingBuffer(remaining)) {
+                if (remaining > 0) {
+                    Buffers.copy(getCoalescingBuffer(), srcs, offs, len);
+                }
+                return remaining;
+            }
+            if (! wrapCoalesced()) {
+                return 0L;
+            }
+        }
         final long wrappedBytes = sslEngine.wrap(srcs, offs, len);
         if (wrappedBytes > 0) {
             writeWrappedBuffer(writeFinal);
@@ -117,6 +156,52 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
         return wrappedBytes;
     }
 
+    /**
+     * Determine whether a write should be accumulated rather than wrapped, which is the case if it fits in the space
+     * left in the coalescing buffer.  Writes which would fill a whole record are wrapped right away, and so are writes
+     * made before the first handshake is complete or while a later one is in progress, so that they are held back
+     * until the engine is able to wrap them.
+     */
+    private boolean fitsCoalescingBuffer(long remaining) {
+        if (sslEngine.isFirstHandshake() || sslEngine.isHandshaking()) {
+            return false;
+        }
+        return remaining < coalescingSize - (coalescingBuffer == null ? 0 : coalescingBuffer.position());
+    }
+
+    private ByteBuffer getCoalescingBuffer() {
+        ByteBuffer buffer = coalescingBuffer;
+        if (buffer == null) {
+            coalescingBuffer = buffer = ByteBuffer.allocate(coalescingSize);
+        }
+        return buffer;
+    }
+
+    /**
+     * Wrap and write the accumulated plaintext, so that it is sent ahead of anything written later.
+     *
+     * @return {@code true} if no accumulated plaintext is left, {@code false} if the engine or the socket could not
+     *         take all of it
+     */
+    private boolean wrapCoalesced() throws IOException {
+        final ByteBuffer buffer = coalescingBuffer;
+        if (buffer == null || buffer.position() == 0) {
+            return true;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                final int wrappedBytes = sslEngine.wrap(buffer);
+                if (! writeWrappedBuffer(false) || wrappedBytes == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buffer.compact();
+        }
+    }
+
     @Override
     public void resumeWrites() {
         if (tls && sslEngine.isFirstHandshake()) {
@@ -133,7 +218,12 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
             return;
         }
         try {
-            sslEngine.closeOutbound();
+            if (wrapCoalesced()) {
+                sslEngine.closeOutbound();
+            } else {
+                // close once the accumulated plaintext is out of the way
+                closePending = true;
+            }
             flush();
         } catch (IOException e) {
             try {
@@ -172,7 +262,14 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
 
     @Override
     public void truncateWrites() throws IOException {
+        closePending = false;
         if (tls) try {
+            // the accumulated plaintext was reported as written, so send it ahead of the close if possible
+            try {
+                wrapCoalesced();
+            } catch (IOException ignored) {
+            }
+            coalescingBuffer = null;
             sslEngine.closeOutbound();
         } finally {
             try {
@@ -188,6 +285,13 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
         if (!tls) {
             return super.flush();
         }
+        if (! wrapCoalesced()) {
+            return false;
+        }
+        if (closePending) {
+            closePending = false;
+            sslEngine.closeOutbound();
+        }
         if (sslEngine.isOutboundClosed()) {
             if (sslEngine.flush() && writeWrappedBuffer(false) && super.flush()) {
                 super.terminateWrites();
@@ -200,29 +304,34 @@ final class JsseSslStreamSinkConduit extends AbstractStreamSinkConduit<StreamSin
     }
 
     private boolean writeWrappedBuffer(boolean writeFinal) throws IOException {
-        synchronized (sslEngine.getWrapLock()) {
-            final ByteBuffer wrapBuffer = sslEngine.getWrappedBuffer();
-            for (;;) {
-                try {
-                    if (!wrapBuffer.flip().hasRemaining()) {
-                        if (writeFinal) {
-                            terminateWrites();
-                        }
-                        return true;
-                    }
-                    if(writeFinal) {
-                        if (super.writeFinal(wrapBuffer) == 0) {
-                            return false;
+        try {
+            synchronized (sslEngine.getWrapLock()) {
+                final ByteBuffer wrapBuffer = sslEngine.getWrappedBuffer();
+                for (;;) {
+                    try {
+                        if (!wrapBuffer.flip().hasRemaining()) {
+                            if (writeFinal) {
+                                terminateWrites();
+                            }
+                            return true;
                         }
-                    } else {
-                        if (super.write(wrapBuffer) == 0) {
-                            return false;
+                        if(writeFinal) {
+                            if (super.writeFinal(wrapBuffer) == 0) {
+                                return false;
+                            }
+                        } else {
+                            if (super.write(wrapBuffer) == 0) {
+                                return false;
+                            }
                         }
+                    } finally {
+                        wrapBuffer.compact();
                     }
-                } finally {
-                    wrapBuffer.compact();
                 }
             }
+        } finally {
+            // hand the send buffer back to the pool once it has been drained
+            sslEngine.releaseIdleWrapBuffers();
         }
     }
 
@@ -79,18 +79,25 @@ final class JsseSslStreamSourceConduit extends AbstractStreamSourceConduit<Strea
         if ((!sslEngine.isDataAvailable() && sslEngine.isInboundClosed()) || sslEngine.isClosed()) {
             return -1;
         }
-        final int readResult;
+        if (sslEngine.isAwaitingEngineTasks()) {
+            // nothing can be unwrapped until the delegated tasks are done
+            return 0;
+        }
+        int readResult = 0;
         final int unwrapResult;
-        synchronized(sslEngine.getUnwrapLock()) {
-            final ByteBuffer unwrapBuffer = sslEngine.getUnwrapBuffer().compact();
-            try {
-                readResult = super.read(unwrapBuffer);
-            } finally {
-                unwrapBuffer.flip();
+        // the records read before the delegated tasks of a handshake ran go first, as if the tasks had run inline
+        if (! sslEngine.isResumingHandshake()) {
+            synchronized(sslEngine.getUnwrapLock()) {
+                final ByteBuffer unwrapBuffer = sslEngine.getUnwrapBuffer().compact();
+                try {
+                    readResult = super.read(unwrapBuffer);
+                } finally {
+                    unwrapBuffer.flip();
+                }
             }
         }
         unwrapResult = sslEngine.unwrap(dst);
-        if (unwrapResult == 0 && readResult == -1) {
+        if (unwrapResult == 0 && readResult == -1 && ! sslEngine.isAwaitingEngineTasks()) {
             terminateReads();
             return -1;
         }
@@ -112,19 +119,26 @@ final class JsseSslStreamSourceConduit extends AbstractStreamSourceConduit<Strea
         if ((!sslEngine.isDataAvailable() && sslEngine.isInboundClosed()) || sslEngine.isClosed()) {
             return -1;
         }
-        final int readResult;
+        if (sslEngine.isAwaitingEngineTasks()) {
+            // nothing can be unwrapped until the delegated tasks are done
+            return 0;
+        }
+        int readResult = 0;
         final long unwrapResult;
-        synchronized (sslEngine.getUnwrapLock()) {
-            // retrieve buffer from sslEngine, to save some memory space
-            final ByteBuffer unwrapBuffer = sslEngine.getUnwrapBuffer().compact();
-            try {
-                readResult = super.read(unwrapBuffer);
-            } finally {
-                unwrapBuffer.flip();
+        // the records read before the delegated tasks of a handshake ran go first, as if the tasks had run inline
+        if (! sslEngine.isResumingHandshake()) {
+            synchronized (sslEngine.getUnwrapLock()) {
+                // retrieve buffer from sslEngine, to save some memory space
+                final ByteBuffer unwrapBuffer = sslEngine.getUnwrapBuffer().compact();
+                try {
+                    readResult = super.read(unwrapBuffer);
+                } finally {
+                    unwrapBuffer.flip();
+                }
             }
         }
         unwrapResult = sslEngine.unwrap(dsts, offs, len);
-        if (unwrapResult == 0 && readResult == -1) {
+        if (unwrapResult == 0 && readResult == -1 && ! sslEngine.isAwaitingEngineTasks()) {
             terminateReads();
             return -1;
         }
@@ -176,7 +190,7 @@ final class JsseSslStreamSourceConduit extends AbstractStreamSourceConduit<Strea
             return;
         }
         synchronized (sslEngine.getUnwrapLock()) {
-            if(sslEngine.getUnwrapBuffer().hasRemaining()) {
+            if(sslEngine.hasUnwrapData()) {
                 return;
             }
         }
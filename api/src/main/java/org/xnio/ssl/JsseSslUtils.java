@@ -21,8 +21,11 @@ package org.xnio.ssl;
 
 import static org.xnio._private.Messages.msg;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -38,9 +41,11 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.TrustManager;
 
+import org.xnio.ByteBufferPool;
 import org.xnio.OptionMap;
 import org.xnio.Options;
 import org.xnio.Sequence;
+import org.xnio.conduits.StreamSinkConduit;
 
 /**
  * Utility methods for creating JSSE constructs and configuring them via XNIO option maps.
@@ -49,6 +54,15 @@ import org.xnio.Sequence;
  */
 public final class JsseSslUtils {
 
+    /**
+     * The maximum amount of plaintext in a TLS record.
+     */
+    private static final int MAX_RECORD_PLAINTEXT = 16384;
+    /**
+     * The number of medium buffers that hold the plaintext of one full TLS record.
+     */
+    private static final int RECORD_BUFFER_COUNT = (MAX_RECORD_PLAINTEXT + ByteBufferPool.MEDIUM_SIZE - 1) / ByteBufferPool.MEDIUM_SIZE;
+
     private JsseSslUtils() {
     }
 
@@ -171,4 +185,62 @@ public final class JsseSslUtils {
         }
         return engine;
     }
+
+    /**
+     * Transfer bytes from a file into a sink conduit which encrypts them.  The file is read with positional reads
+     * into pooled direct buffers that together hold a full TLS record, and those buffers are written with one gathering
+     * write, so that the engine produces full records.  A generic {@link FileChannel#transferTo} into a channel
+     * wrapper would instead hand the conduit a small temporary buffer at a time, each of which becomes a small record.
+     * <p>
+     * Bytes that are read from the file but not accepted by the sink are not counted, so the caller can resume the
+     * transfer from {@code position} plus the returned amount.
+     *
+     * @param src the file to read from
+     * @param position the position in the file to start reading from
+     * @param count the number of bytes to transfer
+     * @param sink the conduit to write to
+     * @return the number of bytes transferred (possibly 0)
+     * @throws IOException if an I/O error occurs
+     */
+    static long transferFrom(final FileChannel src, final long position, final long count, final StreamSinkConduit sink) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[RECORD_BUFFER_COUNT];
+        ByteBufferPool.MEDIUM_DIRECT.allocate(buffers, 0);
+        try {
+            long total = 0L;
+            while (total < count) {
+                int filled = 0;
+                long read = 0L;
+                while (filled < buffers.length && total + read < count) {
+                    final ByteBuffer buffer = buffers[filled];
+                    buffer.clear();
+                    if (count - total - read < (long) buffer.remaining()) {
+                        buffer.limit((int) (count - total - read));
+                    }
+                    final int res = src.read(buffer, position + total + read);
+                    if (res > 0) {
+                        read += res;
+                    }
+                    buffer.flip();
+                    if (buffer.hasRemaining()) {
+                        filled ++;
+                    }
+                    if (res <= 0 || buffer.limit() < buffer.capacity()) {
+                        // end of file, or a short read
+                        break;
+                    }
+                }
+                if (read == 0L) {
+                    return total;
+                }
+                final long res = sink.write(buffers, 0, filled);
+                total += res;
+                if (res < read) {
+                    return total;
+                }
+            }
+            return total;
+        } finally {
+            ByteBufferPool.free(buffers, 0, buffers.length);
+        }
+    }
 }
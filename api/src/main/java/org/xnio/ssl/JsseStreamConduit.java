@@ -34,23 +34,23 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLSession;
 
 import org.xnio.Buffers;
 import org.xnio.Pool;
-import org.xnio.Pooled;
 import org.xnio.XnioIoThread;
 import org.xnio.XnioWorker;
 import org.xnio.channels.StreamSinkChannel;
 import org.xnio.channels.StreamSourceChannel;
 import org.xnio.conduits.ConduitReadableByteChannel;
-import org.xnio.conduits.ConduitWritableByteChannel;
 import org.xnio.conduits.Conduits;
 import org.xnio.conduits.ReadReadyHandler;
 import org.xnio.conduits.StreamSinkConduit;
@@ -72,11 +72,13 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
     private final StreamSourceConduit sourceConduit;
     private final StreamSinkConduit sinkConduit;
     /** The buffer into which incoming SSL data is written. */
-    private final Pooled<ByteBuffer> receiveBuffer;
+    private final PooledSslBuffer receiveBuffer;
     /** The buffer from which outbound SSL data is sent. */
-    private final Pooled<ByteBuffer> sendBuffer;
+    private final PooledSslBuffer sendBuffer;
     /** The buffer into which inbound clear data is written. */
-    private final Pooled<ByteBuffer> readBuffer;
+    private final PooledSslBuffer readBuffer;
+    /** The executor which runs the delegated tasks of the engine. */
+    private final SslHandshakeExecutor handshakeExecutor;
 
     //================================================================
     //
@@ -84,12 +86,17 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
     //
     //================================================================
 
-    // always inline tasks, for now
-    private int state = FLAG_INLINE_TASKS;
+    private int state;
 
     // tasks counter - protected by {@code this}
     private int tasks;
 
+    // time at which the current handshake started, to tell resumed handshakes apart
+    private long handshakeStart = System.currentTimeMillis();
+
+    // nesting depth of performIO, which can be reentered from the handshake listener
+    private int ioDepth;
+
     private ReadReadyHandler readReadyHandler;
     private WriteReadyHandler writeReadyHandler;
 
@@ -99,25 +106,24 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
     //
     //================================================================
 
-    JsseStreamConduit(final JsseSslConnection connection, final SSLEngine engine, final StreamSourceConduit sourceConduit, final StreamSinkConduit sinkConduit, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool) {
-        Pooled<ByteBuffer> receiveBuffer;
-        Pooled<ByteBuffer> sendBuffer;
-        Pooled<ByteBuffer> readBuffer;
+    JsseStreamConduit(final JsseSslConnection connection, final SSLEngine engine, final StreamSourceConduit sourceConduit, final StreamSinkConduit sinkConduit, final Pool<ByteBuffer> socketBufferPool, final Pool<ByteBuffer> applicationBufferPool, final boolean lazyBuffers, final SslHandshakeExecutor handshakeExecutor) {
+        PooledSslBuffer receiveBuffer;
+        PooledSslBuffer sendBuffer;
+        PooledSslBuffer readBuffer;
         boolean ok = false;
         final SSLSession session = engine.getSession();
         final int packetBufferSize = session.getPacketBufferSize();
-        receiveBuffer = socketBufferPool.allocate();
+        receiveBuffer = new PooledSslBuffer(socketBufferPool, true, lazyBuffers);
         try {
-            receiveBuffer.getResource().flip();
-            sendBuffer = socketBufferPool.allocate();
+            sendBuffer = new PooledSslBuffer(socketBufferPool, false, lazyBuffers);
             try {
-                if (receiveBuffer.getResource().capacity() < packetBufferSize || sendBuffer.getResource().capacity() < packetBufferSize) {
+                if (receiveBuffer.get().capacity() < packetBufferSize || sendBuffer.get().capacity() < packetBufferSize) {
                     throw msg.socketBufferTooSmall();
                 }
                 final int applicationBufferSize = session.getApplicationBufferSize();
-                readBuffer = applicationBufferPool.allocate();
+                readBuffer = new PooledSslBuffer(applicationBufferPool, false, lazyBuffers);
                 try {
-                    if (readBuffer.getResource().capacity() < applicationBufferSize) {
+                    if (readBuffer.get().capacity() < applicationBufferSize) {
                         throw msg.appBufferTooSmall();
                     }
                     ok = true;
@@ -133,7 +139,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         this.receiveBuffer = receiveBuffer;
         this.sendBuffer = sendBuffer;
         this.readBuffer = readBuffer;
-        receiveBuffer.getResource().clear().limit(0);
+        // the buffers are only needed once there is something to wrap or unwrap
+        releaseIdleBuffers();
         if (sourceConduit.getReadThread() != sinkConduit.getWriteThread()) {
             throw new IllegalArgumentException("Source and sink thread mismatch");
         }
@@ -141,6 +148,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         this.engine = engine;
         this.sourceConduit = sourceConduit;
         this.sinkConduit = sinkConduit;
+        this.handshakeExecutor = handshakeExecutor;
+        state = handshakeExecutor.isInline() ? FLAG_INLINE_TASKS : 0;
         sourceConduit.setReadReadyHandler(readReady);
         sinkConduit.setWriteReadyHandler(writeReady);
     }
@@ -345,6 +354,15 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         return allAreSet(state, FLAG_TLS);
     }
 
+    /**
+     * Return the drained buffers to their pools, if they are held lazily.
+     */
+    private void releaseIdleBuffers() {
+        sendBuffer.release();
+        receiveBuffer.release();
+        readBuffer.release();
+    }
+
     boolean markTerminated() {
         readBuffer.free();
         receiveBuffer.free();
@@ -373,7 +391,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         try {
             // task(s)
             if (allAreSet(state, FLAG_NEED_ENGINE_TASK)) {
-                throw new UnsupportedOperationException();
+                // nothing can progress until the engine tasks are done; their completion wakes up the handlers
+                return;
             }
             // write side
             if (anyAreSet(state, WRITE_FLAG_WAKEUP) || allAreSet(state, WRITE_FLAG_RESUMED | WRITE_FLAG_READY)) {
@@ -840,7 +859,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                         this.state |= READ_FLAG_EOF;
                     }
                 }
-                if (allAreClear(this.state, READ_FLAG_EOF) || this.receiveBuffer.getResource().hasRemaining()) {
+                if (allAreClear(this.state, READ_FLAG_EOF) || this.receiveBuffer.hasRemaining()) {
                     // potentially unread data :(
                     final EOFException exception = msg.connectionClosedEarly();
                     try {
@@ -939,8 +958,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         }
         if (anyAreSet(state, READ_FLAG_EOF)) {
             // read data
-            if (readBuffer.getResource().position() > 0) {
-                final ByteBuffer readBufferResource = readBuffer.getResource();
+            if (! readBuffer.isEmpty()) {
+                final ByteBuffer readBufferResource = readBuffer.get();
                 readBufferResource.flip();
                 try {
                     if (TRACE_SSL) msg.tracef("TLS copy unwrapped data from %s to %s", Buffers.debugString(readBufferResource), Buffers.debugString(dst));
@@ -978,8 +997,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         if (anyAreSet(state, READ_FLAG_SHUTDOWN)) {
             return -1;
         } else if (anyAreSet(state, READ_FLAG_EOF)){
-            if (readBuffer.getResource().position() > 0) {
-                final ByteBuffer readBufferResource = readBuffer.getResource();
+            if (! readBuffer.isEmpty()) {
+                final ByteBuffer readBufferResource = readBuffer.get();
                 readBufferResource.flip();
                 try {
                     if (TRACE_SSL) msg.tracef("TLS copy unwrapped data from %s to %s", Buffers.debugString(readBufferResource), Buffers.debugString(dsts, offs, len));
@@ -1121,7 +1140,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         if (allAreClear(state, FLAG_TLS)) {
             return sinkConduit.transferFrom(src, position, count);
         } else {
-            return src.transferTo(position, count, new ConduitWritableByteChannel(this));
+            return JsseSslUtils.transferFrom(src, position, count, this);
         }
     }
 
@@ -1174,9 +1193,9 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
             return 0L;
         }
         final SSLEngine engine = this.engine;
-        final ByteBuffer sendBuffer = this.sendBuffer.getResource();
-        final ByteBuffer receiveBuffer = this.receiveBuffer.getResource();
-        final ByteBuffer readBuffer = this.readBuffer.getResource();
+        final ByteBuffer sendBuffer = this.sendBuffer.get();
+        final ByteBuffer receiveBuffer = this.receiveBuffer.get();
+        final ByteBuffer readBuffer = this.readBuffer.get();
         // unwrap into our read buffer if necessary to avoid underflow problems
         final ByteBuffer[] realDsts = Arrays.copyOfRange(dsts, dstOff, dstLen + 1);
         realDsts[dstLen] = readBuffer;
@@ -1196,6 +1215,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         // amount of data moved to/from the user buffers (remember only zero or one of srcs/dsts can be given)
         long xfer = 0L;
         if (TRACE_SSL) msg.trace("TLS perform IO");
+        ioDepth ++;
         try {
             for (;;) {
                 if (TRACE_SSL) msg.trace("TLS begin IO operation");
@@ -1509,6 +1529,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
 
                         case FINISHED: {
                             if (TRACE_SSL) msg.trace("TLS handshake FINISHED");
+                            handshakeExecutor.handshakeFinished(engine.getSession(), handshakeStart);
+                            handshakeStart = System.currentTimeMillis();
                             connection.invokeHandshakeListener();
                             // try original op again
                             // fall thru!
@@ -1534,7 +1556,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                                         break;
                                     }
                                     try {
-                                        task.run();
+                                        handshakeExecutor.runInline(task);
                                     } catch (Throwable cause) {
                                         throw new SSLException("Delegated task threw an exception", cause);
                                     }
@@ -1557,13 +1579,28 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                                     }
                                 }
                                 final int size = tasks.size();
+                                if (size == 0) {
+                                    // nothing to wait for; retry handshake evaluation
+                                    state &= ~FLAG_NEED_ENGINE_TASK;
+                                    handshakeStatus = engine.getHandshakeStatus();
+                                    break;
+                                }
                                 synchronized (JsseStreamConduit.this) {
                                     this.tasks = size;
                                 }
                                 // use indexes to avoid iterator creation (which does the same thing anyway)
                                 //noinspection ForLoopReplaceableByForEach
                                 for (int i = 0; i < size; i ++) {
-                                    getWorker().execute(new TaskWrapper(tasks.get(i)));
+                                    try {
+                                        handshakeExecutor.execute(new TaskWrapper(tasks.get(i)));
+                                    } catch (RejectedExecutionException cause) {
+                                        // the tasks which were not submitted will never complete
+                                        synchronized (JsseStreamConduit.this) {
+                                            if ((this.tasks -= size - i) == 0) JsseStreamConduit.this.notifyAll();
+                                        }
+                                        state &= ~FLAG_NEED_ENGINE_TASK;
+                                        throw new SSLException("Handshake executor is saturated", cause);
+                                    }
                                 }
                                 return actualIOResult(xfer, goal, flushed, eof);
                             }
@@ -1599,8 +1636,15 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                     }
                 }
             }
+        } catch (SSLHandshakeException e) {
+            handshakeExecutor.handshakeFailed();
+            throw e;
         } finally {
             this.state = state;
+            if (-- ioDepth == 0) {
+                // nested calls must leave the buffers to the outermost one, which is still using them
+                releaseIdleBuffers();
+            }
             if (wakeupReads) {
                 wakeupReads();
             }
@@ -1619,9 +1663,32 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                 task.run();
             } finally {
                 synchronized (JsseStreamConduit.this) {
-                    if (tasks -- == 1) JsseStreamConduit.this.notifyAll();
+                    if (tasks -- == 1) {
+                        JsseStreamConduit.this.notifyAll();
+                        getReadThread().execute(engineTasksDone);
+                    }
                 }
             }
         }
     }
+
+    /**
+     * Run on the read thread once all delegated tasks have completed, to retry the I/O which was waiting for them.
+     */
+    private final Runnable engineTasksDone = new Runnable() {
+        public void run() {
+            final int state = JsseStreamConduit.this.state;
+            if (allAreClear(state, FLAG_NEED_ENGINE_TASK)) {
+                // an await method has already picked up the completion
+                return;
+            }
+            JsseStreamConduit.this.state = state & ~FLAG_NEED_ENGINE_TASK;
+            if (allAreSet(state, READ_FLAG_RESUMED)) {
+                wakeupReads();
+            }
+            if (allAreSet(state, WRITE_FLAG_RESUMED)) {
+                wakeupWrites();
+            }
+        }
+    };
 }
@@ -56,6 +56,7 @@ import org.xnio.channels.AssembledConnectedSslStreamChannel;
 import org.xnio.channels.BoundChannel;
 import org.xnio.channels.ConnectedSslStreamChannel;
 import org.xnio.channels.ConnectedStreamChannel;
+import org.xnio.management.SslHandshakeMXBean;
 
 /**
  * An XNIO SSL provider based on JSSE.  Works with any XNIO provider.
@@ -66,8 +67,13 @@ import org.xnio.channels.ConnectedStreamChannel;
 public final class JsseXnioSsl extends XnioSsl {
     public static final boolean NEW_IMPL = doPrivileged((PrivilegedAction<Boolean>) () -> Boolean.valueOf(Boolean.parseBoolean(System.getProperty("org.xnio.ssl.new", "false")))).booleanValue();
 
+    /**
+     * The buffer pool for connections that are constructed without one; connections opened through this provider use
+     * the pool of their {@link XnioWorker} instead.
+     */
     static final Pool<ByteBuffer> bufferPool = new ByteBufferSlicePool(BufferAllocator.DIRECT_BYTE_BUFFER_ALLOCATOR, 17 * 1024, 17 * 1024 * 128);
     private final SSLContext sslContext;
+    private final SslHandshakeExecutor handshakeExecutor;
 
     /**
      * Construct a new instance.
@@ -92,6 +98,7 @@ public final class JsseXnioSsl extends XnioSsl {
     public JsseXnioSsl(final Xnio xnio, final OptionMap optionMap, final SSLContext sslContext) {
         super(xnio, sslContext, optionMap);
         this.sslContext = sslContext;
+        handshakeExecutor = new SslHandshakeExecutor(sslContext, "XNIO SSL", optionMap.get(Options.SSL_HANDSHAKE_THREADS, 0), optionMap.get(Options.SSL_HANDSHAKE_QUEUE_SIZE, 1024));
     }
 
     /**
@@ -104,6 +111,17 @@ public final class JsseXnioSsl extends XnioSsl {
         return sslContext;
     }
 
+    /**
+     * Get the handshake metrics of this provider instance.  The handshake executor is configured by
+     * {@link Options#SSL_HANDSHAKE_THREADS} and {@link Options#SSL_HANDSHAKE_QUEUE_SIZE}.
+     *
+     * @return the handshake metrics
+     * @since 3.7
+     */
+    public SslHandshakeMXBean getHandshakeMXBean() {
+        return handshakeExecutor;
+    }
+
     /**
      * Get the SSL engine for a given connection.
      *
@@ -155,11 +173,13 @@ public final class JsseXnioSsl extends XnioSsl {
 
     public IoFuture<SslConnection> openSslConnection(final XnioIoThread ioThread, final InetSocketAddress bindAddress, final InetSocketAddress destination, final ChannelListener<? super SslConnection> openListener, final ChannelListener<? super BoundChannel> bindListener, final OptionMap optionMap) {
         final FutureResult<SslConnection> futureResult = new FutureResult<>(ioThread);
+        final Pool<ByteBuffer> sslBufferPool = ioThread.getWorker().getSslBufferPool();
         final IoFuture<StreamConnection> connection = ioThread.openStreamConnection(bindAddress, destination, new ChannelListener<StreamConnection>() {
             public void handleEvent(final StreamConnection connection) {
                 final SSLEngine sslEngine = JsseSslUtils.createSSLEngine(sslContext, optionMap, destination);
                 final boolean startTls = optionMap.get(Options.SSL_STARTTLS, false);
-                final SslConnection wrappedConnection = NEW_IMPL ? new JsseSslConnection(connection, sslEngine, bufferPool, bufferPool) : new JsseSslStreamConnection(connection, sslEngine, bufferPool, bufferPool, startTls);
+                final boolean lazyBuffers = optionMap.get(Options.SSL_LAZY_BUFFERS, false);
+                final SslConnection wrappedConnection = NEW_IMPL ? new JsseSslConnection(connection, sslEngine, sslBufferPool, sslBufferPool, lazyBuffers, handshakeExecutor) : new JsseSslStreamConnection(connection, sslEngine, sslBufferPool, sslBufferPool, startTls, lazyBuffers, handshakeExecutor, optionMap.get(Options.SSL_WRITE_COALESCING_SIZE, 0));
                 if (NEW_IMPL && ! startTls) {
                     try {
                         wrappedConnection.startHandshake();
@@ -276,7 +296,7 @@ public final class JsseXnioSsl extends XnioSsl {
     }
 
     public AcceptingChannel<SslConnection> createSslConnectionServer(final XnioWorker worker, final InetSocketAddress bindAddress, final ChannelListener<? super AcceptingChannel<SslConnection>> acceptListener, final OptionMap optionMap) throws IOException {
-       final JsseAcceptingSslStreamConnection server = new JsseAcceptingSslStreamConnection(sslContext, worker.createStreamConnectionServer(bindAddress,  null,  optionMap), optionMap, bufferPool, bufferPool, optionMap.get(Options.SSL_STARTTLS, false));
+       final JsseAcceptingSslStreamConnection server = new JsseAcceptingSslStreamConnection(sslContext, worker.createStreamConnectionServer(bindAddress,  null,  optionMap), optionMap, worker.getSslBufferPool(), worker.getSslBufferPool(), optionMap.get(Options.SSL_STARTTLS, false), handshakeExecutor);
         if (acceptListener != null) server.getAcceptSetter().set(acceptListener);
         return server;
     }
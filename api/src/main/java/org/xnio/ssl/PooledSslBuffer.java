@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.ssl;
+
+import static org.xnio._private.Messages.msg;
+
+import java.nio.ByteBuffer;
+
+import org.xnio.Pool;
+import org.xnio.Pooled;
+
+/**
+ * A pooled buffer owned by an SSL connection, which is allocated on first use and, in lazy mode, handed back to the
+ * pool whenever it is {@link #release() released} while empty.
+ * <p>
+ * A buffer is either kept in read mode (flipped, with the unconsumed bytes between position and limit) or in write
+ * mode (with the pending bytes between zero and position); emptiness is judged accordingly.
+ * <p>
+ * {@link #free()} may be called from any thread, for instance when the connection is closed, so it synchronizes with
+ * {@link #get()} and {@link #release()}, the methods which allocate and return the pooled buffer; otherwise a buffer
+ * allocated by a racing {@code get()} would never be freed, or a buffer would be freed twice.  The contents of the
+ * buffer are not guarded, and its users must protect them with a lock of their own.
+ */
+final class PooledSslBuffer {
+
+    private final Pool<ByteBuffer> pool;
+    private final boolean readMode;
+    private final boolean lazy;
+    private Pooled<ByteBuffer> pooled;
+    private boolean freed;
+
+    /**
+     * Construct a new instance.  The buffer is allocated right away, so that its capacity can be validated.
+     *
+     * @param pool     the pool to allocate the buffer from
+     * @param readMode {@code true} if the buffer is kept in read mode, {@code false} if it is kept in write mode
+     * @param lazy     {@code true} to return the buffer to the pool whenever it is released while empty
+     */
+    PooledSslBuffer(final Pool<ByteBuffer> pool, final boolean readMode, final boolean lazy) {
+        this.pool = pool;
+        this.readMode = readMode;
+        this.lazy = lazy;
+        get();
+    }
+
+    /**
+     * Get the buffer, allocating it from the pool if needed.
+     *
+     * @return the buffer
+     * @throws IllegalStateException if this buffer has been freed
+     */
+    synchronized ByteBuffer get() {
+        Pooled<ByteBuffer> pooled = this.pooled;
+        if (pooled == null) {
+            if (freed) {
+                throw msg.bufferFreed();
+            }
+            this.pooled = pooled = pool.allocate();
+            if (readMode) {
+                pooled.getResource().clear().limit(0);
+            }
+        }
+        return pooled.getResource();
+    }
+
+    /**
+     * Determine whether the buffer has any bytes remaining, without allocating it.  A buffer that is not allocated
+     * behaves like a freshly allocated one: it has space remaining in write mode, and no data remaining in read mode.
+     *
+     * @return {@code true} if the buffer has any bytes remaining
+     * @throws IllegalStateException if this buffer has been freed
+     */
+    boolean hasRemaining() {
+        final Pooled<ByteBuffer> pooled = this.pooled;
+        if (pooled == null) {
+            if (freed) {
+                throw msg.bufferFreed();
+            }
+            return ! readMode;
+        }
+        return pooled.getResource().hasRemaining();
+    }
+
+    /**
+     * Determine whether the buffer holds no data, without allocating it.
+     *
+     * @return {@code true} if the buffer is not allocated or holds no data
+     */
+    boolean isEmpty() {
+        final Pooled<ByteBuffer> pooled = this.pooled;
+        if (pooled == null) {
+            return true;
+        }
+        final ByteBuffer buffer = pooled.getResource();
+        return readMode ? ! buffer.hasRemaining() : buffer.position() == 0;
+    }
+
+    /**
+     * Determine whether the buffer is currently allocated.
+     *
+     * @return {@code true} if the buffer is allocated
+     */
+    boolean isAllocated() {
+        return pooled != null;
+    }
+
+    /**
+     * Return the buffer to the pool if this is a lazy buffer and it holds no data.  The next call to {@link #get()}
+     * will allocate a new buffer.  No reference to the buffer must be retained by the caller.
+     */
+    synchronized void release() {
+        final Pooled<ByteBuffer> pooled = this.pooled;
+        if (lazy && pooled != null && isEmpty()) {
+            this.pooled = null;
+            pooled.free();
+        }
+    }
+
+    /**
+     * Free the buffer permanently.  This method is idempotent.
+     */
+    synchronized void free() {
+        freed = true;
+        final Pooled<ByteBuffer> pooled = this.pooled;
+        if (pooled != null) {
+            this.pooled = null;
+            pooled.free();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.ssl;
+
+import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+import org.xnio.management.SslHandshakeMXBean;
+
+/**
+ * The executor which runs the delegated tasks of the SSL engines of one SSL provider instance, and which keeps the
+ * handshake metrics of that instance.
+ * <p>
+ * If it has no threads, delegated tasks are run inline by the caller and only timed.  Otherwise, they are run by a
+ * dedicated pool of daemon threads fed from a bounded queue, so that expensive key exchange computations neither stall
+ * the I/O threads nor flood the worker task pool.  While that queue is full the executor is
+ * {@link #admitHandshake() saturated}, and new handshakes should be shed.
+ */
+final class SslHandshakeExecutor implements SslHandshakeMXBean {
+
+    /**
+     * The executor of connections that were not created through an SSL provider.
+     */
+    static final SslHandshakeExecutor INLINE = new SslHandshakeExecutor(null, "inline", 0, 0);
+
+    private final SSLContext sslContext;
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int queueSize;
+    private final LongAdder handshakeCount = new LongAdder();
+    private final LongAdder resumedHandshakeCount = new LongAdder();
+    private final LongAdder failedHandshakeCount = new LongAdder();
+    private final LongAdder rejectedHandshakeCount = new LongAdder();
+    private final LongAdder delegatedTaskCount = new LongAdder();
+    private final LongAdder delegatedTaskTime = new LongAdder();
+    private final LongAdder queueWaitTime = new LongAdder();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param sslContext the SSL context whose session caches are reported, or {@code null} for none
+     * @param name the name prefix of the executor threads
+     * @param threads the number of executor threads, or {@code 0} to run delegated tasks inline
+     * @param queueSize the capacity of the executor queue
+     */
+    SslHandshakeExecutor(final SSLContext sslContext, final String name, final int threads, final int queueSize) {
+        this.sslContext = sslContext;
+        this.threads = threads;
+        if (threads > 0) {
+            this.queueSize = queueSize;
+            final AtomicInteger threadSeq = new AtomicInteger(1);
+            executor = new ThreadPoolExecutor(threads, threads, 30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), task -> {
+                final Thread thread = new Thread(task, name + " handshake-" + threadSeq.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            // the provider has no lifecycle, so let an idle executor release its threads
+            executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.queueSize = 0;
+            executor = null;
+        }
+    }
+
+    /**
+     * Determine whether delegated tasks are run inline by the caller.
+     *
+     * @return {@code true} if delegated tasks are run inline, {@code false} if they are run by this executor
+     */
+    boolean isInline() {
+        return executor == null;
+    }
+
+    /**
+     * Determine whether a new handshake may begin.  If the executor is saturated, the handshake is counted as
+     * rejected.
+     *
+     * @return {@code true} if the handshake may begin, {@code false} if it should be shed
+     */
+    boolean admitHandshake() {
+        if (executor != null && executor.getQueue().remainingCapacity() == 0) {
+            rejectedHandshakeCount.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Run a delegated task on the calling thread.
+     *
+     * @param task the delegated task
+     */
+    void runInline(final Runnable task) {
+        final long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            failedHandshakeCount.increment();
+            throw t;
+        } finally {
+            delegatedTaskTime.add(System.nanoTime() - start);
+            delegatedTaskCount.increment();
+        }
+    }
+
+    /**
+     * Run a delegated task on a thread of this executor.  If the executor is inline, the task is run by the caller.
+     *
+     * @param task the delegated task
+     * @throws RejectedExecutionException if the executor queue is full
+     */
+    void execute(final Runnable task) throws RejectedExecutionException {
+        if (executor == null) {
+            runInline(task);
+            return;
+        }
+        final long queued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueWaitTime.add(System.nanoTime() - queued);
+                runInline(task);
+            });
+        } catch (RejectedExecutionException e) {
+            failedHandshakeCount.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Record a successfully completed handshake.  The handshake is deemed to have resumed a cached session if that
+     * session was created before the handshake started.
+     *
+     * @param session the negotiated session
+     * @param handshakeStart the {@link System#currentTimeMillis() time} at which the handshake started
+     */
+    void handshakeFinished(final SSLSession session, final long handshakeStart) {
+        handshakeCount.increment();
+        if (session != null && session.getCreationTime() < handshakeStart) {
+            resumedHandshakeCount.increment();
+        }
+    }
+
+    /**
+     * Record a failed handshake.
+     */
+    void handshakeFailed() {
+        failedHandshakeCount.increment();
+    }
+
+    public long getHandshakeCount() {
+        return handshakeCount.sum();
+    }
+
+    public long getFullHandshakeCount() {
+        // read the resumed count first so that the difference cannot go negative
+        final long resumed = resumedHandshakeCount.sum();
+        return handshakeCount.sum() - resumed;
+    }
+
+    public long getResumedHandshakeCount() {
+        return resumedHandshakeCount.sum();
+    }
+
+    public double getResumptionRatio() {
+        final long resumed = resumedHandshakeCount.sum();
+        final long total = handshakeCount.sum();
+        return total == 0 ? 0.0 : (double) resumed / total;
+    }
+
+    public int getClientSessionCount() {
+        return sslContext == null ? 0 : countSessions(sslContext.getClientSessionContext());
+    }
+
+    public int getServerSessionCount() {
+        return sslContext == null ? 0 : countSessions(sslContext.getServerSessionContext());
+    }
+
+    private static int countSessions(final SSLSessionContext sessionContext) {
+        if (sessionContext == null) {
+            return 0;
+        }
+        int count = 0;
+        final Enumeration<byte[]> ids = sessionContext.getIds();
+        while (ids.hasMoreElements()) {
+            ids.nextElement();
+            count ++;
+        }
+        return count;
+    }
+
+    public long getFailedHandshakeCount() {
+        return failedHandshakeCount.sum();
+    }
+
+    public long getRejectedHandshakeCount() {
+        return rejectedHandshakeCount.sum();
+    }
+
+    public long getDelegatedTaskCount() {
+        return delegatedTaskCount.sum();
+    }
+
+    public long getDelegatedTaskTime() {
+        return delegatedTaskTime.sum();
+    }
+
+    public long getDelegatedTaskQueueWaitTime() {
+        return queueWaitTime.sum();
+    }
+
+    public int getDelegatedTaskQueueSize() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public int getMaxDelegatedTaskQueueSize() {
+        return queueSize;
+    }
+
+    public int getHandshakeThreadCount() {
+        return threads;
+    }
+}
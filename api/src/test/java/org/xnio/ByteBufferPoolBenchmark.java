@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the cost of allocating and freeing {@link ByteBufferPool} buffers with the per-thread magazines alone, and
+ * with an additional {@link ByteBufferPool#runWithCache(int, Runnable) nested} one-buffer, two-buffer and multi-buffer
+ * cache; not run as part of the test suite.  Each variant is measured with one thread that frees what it allocates,
+ * and with threads that each cycle a working set of buffers larger than their magazines, so that magazines travel
+ * between the threads and the depot.
+ * <p>
+ * Usage: {@code ByteBufferPoolBenchmark [operations] [threads]}
+ */
+public final class ByteBufferPoolBenchmark {
+
+    private static final int[] CACHE_SIZES = { 0, 1, 2, 16 };
+    private static final int WORKING_SET = 100;
+
+    private ByteBufferPoolBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final ByteBufferPool pool = ByteBufferPool.MEDIUM_HEAP;
+        // warm up
+        for (int cacheSize : CACHE_SIZES) {
+            run(pool, cacheSize, 1, operations / 4);
+            run(pool, cacheSize, threads, operations / 4);
+        }
+        for (int cacheSize : CACHE_SIZES) {
+            final String name = cacheSize == 0 ? "magazines only" : "nested cache of " + cacheSize;
+            System.out.printf("%-18s 1 thread:  %6.1f ns per allocate and free%n", name, (double) run(pool, cacheSize, 1, operations) / operations);
+            System.out.printf("%-18s %d threads: %6.1f ns per allocate and free%n", name, threads, (double) run(pool, cacheSize, threads, operations) / operations);
+        }
+    }
+
+    /**
+     * Allocate and free buffers on the given number of threads.
+     *
+     * @return the elapsed time, in nanoseconds
+     */
+    private static long run(final ByteBufferPool pool, final int cacheSize, final int threads, final int operations) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i ++) {
+            final Runnable task = threads == 1 ? () -> allocateAndFree(pool, operations) : () -> cycleWorkingSet(pool, operations / threads);
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                pool.runWithCache(cacheSize, task);
+                pool.flushCaches();
+            });
+            workers[i].start();
+        }
+        final long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static void allocateAndFree(final ByteBufferPool pool, final int operations) {
+        for (int i = 0; i < operations; i ++) {
+            ByteBufferPool.free(pool.allocate());
+        }
+    }
+
+    /**
+     * Repeatedly free and reallocate a working set larger than two magazines, so that every round overflows into the
+     * depot and refills from it.
+     */
+    private static void cycleWorkingSet(final ByteBufferPool pool, final int operations) {
+        final ByteBuffer[] buffers = new ByteBuffer[WORKING_SET];
+        for (int i = 0; i < operations; i += WORKING_SET) {
+            pool.allocate(buffers, 0);
+            ByteBufferPool.free(buffers, 0, WORKING_SET);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link ByteBufferPool}.
+ */
+public class ByteBufferPoolTestCase {
+
+    @Test
+    public void reuseOnSameThread() {
+        final ByteBufferPool pool = ByteBufferPool.create(ByteBufferPool.MEDIUM_SIZE, false);
+        final ByteBuffer buffer = pool.allocate();
+        assertEquals(ByteBufferPool.MEDIUM_SIZE, buffer.capacity());
+        buffer.put((byte) 1);
+        pool.doFree(buffer);
+        final ByteBuffer reused = pool.allocate();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+    }
+
+    @Test
+    public void exchangeThroughDepot() throws InterruptedException {
+        final ByteBufferPool pool = ByteBufferPool.create(ByteBufferPool.MEDIUM_SIZE, false);
+        // three magazines' worth, so that at least one full magazine must reach the depot
+        final int count = pool.getMagazineSize() * 3;
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+        final Thread producer = new Thread(() -> {
+            pool.allocate(buffers, 0);
+            for (ByteBuffer buffer : buffers) {
+                pool.doFree(buffer);
+            }
+        });
+        producer.start();
+        producer.join();
+        final Set<ByteBuffer> freed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(freed, buffers);
+        final Set<ByteBuffer> allocated = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < pool.getMagazineSize(); i ++) {
+            allocated.add(pool.allocate());
+        }
+        assertEquals(pool.getMagazineSize(), allocated.size());
+        allocated.retainAll(freed);
+        assertEquals("buffers should come from a magazine of the other thread", pool.getMagazineSize(), allocated.size());
+    }
+
+    @Test
+    public void flushCaches() throws InterruptedException {
+        final ByteBufferPool pool = ByteBufferPool.create(ByteBufferPool.MEDIUM_SIZE, false);
+        final ByteBuffer[] buffer = new ByteBuffer[1];
+        final Thread thread = new Thread(() -> {
+            buffer[0] = pool.allocate();
+            pool.doFree(buffer[0]);
+            pool.flushCaches();
+        });
+        thread.start();
+        thread.join();
+        assertSame(buffer[0], pool.allocate());
+    }
+
+    @Test
+    public void reclaimExitedThread() throws InterruptedException {
+        final ByteBufferPool pool = ByteBufferPool.create(ByteBufferPool.MEDIUM_SIZE, false);
+        final ByteBuffer[] buffers = new ByteBuffer[3];
+        // fewer than a magazine, so nothing reaches the depot before the thread exits
+        final Thread thread = new Thread(() -> {
+            pool.allocate(buffers, 0);
+            for (ByteBuffer buffer : buffers) {
+                pool.doFree(buffer);
+            }
+        });
+        thread.start();
+        thread.join();
+        final Set<ByteBuffer> freed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(freed, buffers);
+        for (int i = 0; i < buffers.length; i ++) {
+            assertTrue("buffers should come from the cache of the exited thread", freed.remove(pool.allocate()));
+        }
+    }
+
+    @Test
+    public void largeBuffersNotCachedPerThread() throws InterruptedException {
+        final ByteBufferPool pool = ByteBufferPool.create(ByteBufferPool.LARGE_SIZE, false);
+        assertEquals(0, pool.getMagazineSize());
+        final ByteBuffer[] buffer = new ByteBuffer[1];
+        final Thread thread = new Thread(() -> {
+            buffer[0] = pool.allocate();
+            pool.doFree(buffer[0]);
+        });
+        thread.start();
+        thread.join();
+        assertSame(buffer[0], pool.allocate());
+    }
+
+    @Test
+    public void nestedCache() {
+        final ByteBufferPool pool = ByteBufferPool.create(ByteBufferPool.MEDIUM_SIZE, false);
+        pool.runWithCache(16, () -> {
+            final ByteBuffer buffer = pool.allocate();
+            assertNotNull(buffer);
+            pool.doFree(buffer);
+            assertSame(buffer, pool.allocate());
+            // leave the nested cache partly filled
+            final ByteBuffer[] buffers = new ByteBuffer[4];
+            for (int i = 0; i < buffers.length; i ++) {
+                buffers[i] = pool.allocate();
+            }
+            for (ByteBuffer b : buffers) {
+                pool.doFree(b);
+            }
+        });
+        // the buffers left in the nested cache were handed back to the outer one when it was destroyed
+        final Set<ByteBuffer> allocated = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 20; i ++) {
+            final ByteBuffer buffer = pool.allocate();
+            assertNotNull(buffer);
+            assertTrue(allocated.add(buffer));
+        }
+    }
+
+    @Test
+    public void depot() {
+        final ByteBufferPool.Depot depot = new ByteBufferPool.Depot(2);
+        final ByteBufferPool.Magazine magazine1 = new ByteBufferPool.Magazine(2);
+        final ByteBufferPool.Magazine magazine2 = new ByteBufferPool.Magazine(2);
+        assertNull(depot.poll());
+        assertTrue(depot.offer(magazine1));
+        assertTrue(depot.offer(magazine2));
+        assertFalse(depot.offer(new ByteBufferPool.Magazine(2)));
+        assertSame(magazine1, depot.poll());
+        assertTrue(depot.offer(magazine1));
+        assertSame(magazine2, depot.poll());
+        assertSame(magazine1, depot.poll());
+        assertNull(depot.poll());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.xnio.mock.XnioIoThreadMock;
+
+/**
+ * Test for a {@link ByteBufferSlicePool} with a memory limit.
+ */
+@SuppressWarnings("deprecation")
+public class ByteBufferSlicePoolTestCase {
+
+    private static ByteBufferSlicePool boundedPool(ByteBufferSlicePool.ExhaustedAction action, long maxWaitMillis) {
+        // two regions of two buffers each
+        return new ByteBufferSlicePool(BufferAllocator.DIRECT_BYTE_BUFFER_ALLOCATOR, 1024, 2048, 0, 4096, action, maxWaitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void failWhenExhausted() {
+        final ByteBufferSlicePool pool = boundedPool(ByteBufferSlicePool.ExhaustedAction.FAIL, 0L);
+        for (int i = 0; i < 4; i ++) {
+            pool.allocate();
+        }
+        assertEquals(4096, pool.getAllocatedMemory());
+        try {
+            pool.allocate();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void reuseWithinLimit() {
+        final ByteBufferSlicePool pool = boundedPool(ByteBufferSlicePool.ExhaustedAction.FAIL, 0L);
+        for (int i = 0; i < 100; i ++) {
+            pool.allocate().free();
+        }
+        assertEquals(2048, pool.getAllocatedMemory());
+    }
+
+    @Test
+    public void allocateHeapWhenExhausted() {
+        final ByteBufferSlicePool pool = boundedPool(ByteBufferSlicePool.ExhaustedAction.ALLOCATE_HEAP, 0L);
+        for (int i = 0; i < 4; i ++) {
+            assertTrue(pool.allocate().getResource().isDirect());
+        }
+        final Pooled<ByteBuffer> pooled = pool.allocate();
+        final ByteBuffer buffer = pooled.getResource();
+        assertFalse(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+        pooled.free();
+        assertEquals(4096, pool.getAllocatedMemory());
+    }
+
+    @Test
+    public void waitWhenExhausted() throws Exception {
+        final ByteBufferSlicePool pool = boundedPool(ByteBufferSlicePool.ExhaustedAction.WAIT, 10000L);
+        final Pooled<ByteBuffer> first = pool.allocate();
+        for (int i = 0; i < 3; i ++) {
+            pool.allocate();
+        }
+        final Thread freer = new Thread(() -> {
+            try {
+                Thread.sleep(100L);
+            } catch (InterruptedException ignored) {
+            }
+            first.free();
+        });
+        freer.start();
+        final ByteBuffer buffer = pool.allocate().getResource();
+        assertTrue(buffer.isDirect());
+        freer.join();
+        assertEquals(4096, pool.getAllocatedMemory());
+    }
+
+    @Test
+    public void waitTimesOut() {
+        final ByteBufferSlicePool pool = boundedPool(ByteBufferSlicePool.ExhaustedAction.WAIT, 50L);
+        for (int i = 0; i < 4; i ++) {
+            pool.allocate();
+        }
+        try {
+            pool.allocate();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void ioThreadDoesNotWait() throws Exception {
+        final ByteBufferSlicePool pool = boundedPool(ByteBufferSlicePool.ExhaustedAction.WAIT, 10000L);
+        for (int i = 0; i < 4; i ++) {
+            pool.allocate();
+        }
+        final XnioIoThreadMock thread = new XnioIoThreadMock(null);
+        thread.start();
+        try {
+            final AtomicReference<Throwable> thrown = new AtomicReference<>();
+            final long start = System.nanoTime();
+            thread.execute(() -> {
+                try {
+                    pool.allocate();
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            });
+            assertTrue(thrown.get() instanceof IllegalStateException);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5L));
+        } finally {
+            thread.closeIoThread();
+        }
+    }
+}
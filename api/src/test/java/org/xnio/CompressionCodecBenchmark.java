@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compares the throughput and the compression ratio of {@link Lz4CompressionCodec} with those of {@link Deflater}
+ * at each {@linkplain Options#COMPRESSION_LEVEL compression level}, on text-like blocks of
+ * {@link CompressionCodec#MAX_BLOCK_SIZE} bytes; not run as part of the test suite.
+ * <p>
+ * Usage: {@code CompressionCodecBenchmark [runs]}
+ */
+public final class CompressionCodecBenchmark {
+
+    private static final String[] WORDS = { "the", "channel", "buffer", "worker", "of", "and", "connection", "to", "read", "write", "a", "thread", "option", "is", "stream" };
+
+    private CompressionCodecBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        final byte[] data = textData(CompressionCodec.MAX_BLOCK_SIZE);
+        final Lz4CompressionCodec codec = new Lz4CompressionCodec();
+        // warm up
+        runLz4(codec, data, -1, runs / 4);
+        runDeflate(data, -1, runs / 4);
+        for (int level = -1; level <= 9; level ++) {
+            report("lz4", level, data.length, runs, runLz4(codec, data, level, runs));
+            report("deflate", level, data.length, runs, runDeflate(data, level, runs));
+        }
+    }
+
+    private static void report(final String name, final int level, final int length, final int runs, final long[] results) {
+        final double megabytes = (double) runs * length / (1024 * 1024);
+        System.out.printf("%-7s level %2d: compress %7.1f MB/s, decompress %7.1f MB/s, ratio %5.2f%n", name, level, megabytes / (results[0] / 1e9), megabytes / (results[1] / 1e9), (double) length / results[2]);
+    }
+
+    /**
+     * Compress and decompress the data with the codec the given number of times.
+     *
+     * @return the compress time and the decompress time in nanoseconds, and the compressed length
+     */
+    private static long[] runLz4(final CompressionCodec codec, final byte[] data, final int level, final int runs) throws IOException {
+        final byte[] compressed = new byte[codec.getMaxCompressedLength(data.length)];
+        final byte[] decompressed = new byte[data.length];
+        long compressTime = 0L;
+        long decompressTime = 0L;
+        int length = 0;
+        for (int i = 0; i < runs; i ++) {
+            long start = System.nanoTime();
+            length = codec.compress(data, 0, data.length, compressed, 0, level);
+            compressTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            if (codec.decompress(compressed, 0, length, decompressed, 0, decompressed.length) != data.length) {
+                throw new IllegalStateException("short block");
+            }
+            decompressTime += System.nanoTime() - start;
+        }
+        return new long[] { compressTime, decompressTime, length };
+    }
+
+    /**
+     * Compress and decompress the data with zlib the given number of times.
+     *
+     * @return the compress time and the decompress time in nanoseconds, and the compressed length
+     */
+    private static long[] runDeflate(final byte[] data, final int level, final int runs) throws DataFormatException {
+        final Deflater deflater = new Deflater(level, true);
+        final Inflater inflater = new Inflater(true);
+        final byte[] compressed = new byte[data.length * 2];
+        final byte[] decompressed = new byte[data.length];
+        long compressTime = 0L;
+        long decompressTime = 0L;
+        int length = 0;
+        try {
+            for (int i = 0; i < runs; i ++) {
+                deflater.reset();
+                inflater.reset();
+                long start = System.nanoTime();
+                deflater.setInput(data);
+                deflater.finish();
+                length = deflater.deflate(compressed);
+                compressTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                inflater.setInput(compressed, 0, length);
+                if (inflater.inflate(decompressed) != data.length) {
+                    throw new IllegalStateException("short block");
+                }
+                decompressTime += System.nanoTime() - start;
+            }
+        } finally {
+            deflater.end();
+            inflater.end();
+        }
+        return new long[] { compressTime, decompressTime, length };
+    }
+
+    private static byte[] textData(final int length) {
+        final Random random = new Random(42);
+        final StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+            builder.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i ++) {
+            data[i] = (byte) builder.charAt(i);
+        }
+        return data;
+    }
+}
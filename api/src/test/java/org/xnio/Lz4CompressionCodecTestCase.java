@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link Lz4CompressionCodec} and the lookup of codecs by name.
+ */
+public class Lz4CompressionCodecTestCase {
+
+    private final Lz4CompressionCodec codec = new Lz4CompressionCodec();
+
+    @Test
+    public void emptyBlock() throws IOException {
+        assertArrayEquals(new byte[0], roundTrip(new byte[0], -1));
+    }
+
+    @Test
+    public void smallBlocks() throws IOException {
+        final Random random = new Random(1);
+        for (int length = 1; length < 40; length ++) {
+            final byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertArrayEquals(data, roundTrip(data, -1));
+            Arrays.fill(data, (byte) 'x');
+            assertArrayEquals(data, roundTrip(data, -1));
+        }
+    }
+
+    @Test
+    public void compressibleBlock() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < CompressionCodec.MAX_BLOCK_SIZE) {
+            builder.append("The quick brown fox jumps over the lazy dog ").append(builder.length() % 97).append('\n');
+        }
+        final byte[] data = Arrays.copyOf(builder.toString().getBytes(StandardCharsets.US_ASCII), CompressionCodec.MAX_BLOCK_SIZE);
+        for (int level = -1; level <= 9; level ++) {
+            final byte[] compressed = compress(data, level);
+            assertTrue(compressed.length < data.length / 4);
+            assertArrayEquals(data, decompress(compressed, data.length));
+        }
+    }
+
+    @Test
+    public void incompressibleBlock() throws IOException {
+        final byte[] data = new byte[CompressionCodec.MAX_BLOCK_SIZE];
+        new Random(2).nextBytes(data);
+        for (int level = -1; level <= 9; level ++) {
+            final byte[] compressed = compress(data, level);
+            assertTrue(compressed.length <= codec.getMaxCompressedLength(data.length));
+            assertArrayEquals(data, decompress(compressed, data.length));
+        }
+    }
+
+    @Test
+    public void malformedBlock() {
+        final byte[] data = new byte[1000];
+        Arrays.fill(data, (byte) 'y');
+        final byte[] compressed = compress(data, -1);
+        // truncated
+        assertInvalid(Arrays.copyOf(compressed, compressed.length - 1), data.length);
+        // longer than the destination
+        assertInvalid(compressed, data.length - 1);
+        // a match before the start of the block
+        assertInvalid(new byte[] { 0x10, 'a', 0x05, 0x00, 0x00 }, 100);
+    }
+
+    @Test
+    public void lookupByName() {
+        final CompressionCodec lz4 = CompressionCodecs.getCodec(Lz4CompressionCodec.NAME);
+        assertEquals(Lz4CompressionCodec.NAME, lz4.getName());
+        assertSame(lz4, CompressionCodecs.getCodec(Lz4CompressionCodec.NAME));
+        try {
+            CompressionCodecs.getCodec("no-such-codec");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private byte[] roundTrip(final byte[] data, final int level) throws IOException {
+        return decompress(compress(data, level), data.length);
+    }
+
+    private byte[] compress(final byte[] data, final int level) {
+        // offsets which are not zero, to check that they are respected
+        final byte[] src = new byte[data.length + 3];
+        System.arraycopy(data, 0, src, 3, data.length);
+        final byte[] dst = new byte[codec.getMaxCompressedLength(data.length) + 5];
+        final int length = codec.compress(src, 3, data.length, dst, 5, level);
+        return Arrays.copyOfRange(dst, 5, 5 + length);
+    }
+
+    private byte[] decompress(final byte[] compressed, final int length) throws IOException {
+        final byte[] dst = new byte[length + 7];
+        assertEquals(length, codec.decompress(compressed, 0, compressed.length, dst, 7, length));
+        return Arrays.copyOfRange(dst, 7, 7 + length);
+    }
+
+    private void assertInvalid(final byte[] compressed, final int length) {
+        try {
+            codec.decompress(compressed, 0, compressed.length, new byte[length], 0, length);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+}
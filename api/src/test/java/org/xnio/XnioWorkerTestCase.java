@@ -22,6 +22,7 @@ package org.xnio;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -30,6 +31,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.util.List;
 import java.util.concurrent.CancellationException;
@@ -892,6 +894,29 @@ public class XnioWorkerTestCase {
         }
     }
 
+    @Test
+    public void sslBufferPool() throws IOException {
+        final XnioWorker sslWorker = Xnio.getInstance().createWorker(OptionMap.builder().set(Options.THREAD_DAEMON, true)
+                .set(Options.SSL_PACKET_BUFFER_SIZE, 4096).set(Options.SSL_PACKET_BUFFER_REGION_SIZE, 4096 * 4).getMap());
+        try {
+            final Pool<ByteBuffer> pool = sslWorker.getSslBufferPool();
+            assertNotNull(pool);
+            assertNotSame(pool, xnioWorker.getSslBufferPool());
+            final Pooled<ByteBuffer> first = pool.allocate();
+            assertEquals(4096, first.getResource().capacity());
+            assertEquals(0L, sslWorker.getSslBufferPoolHitCount());
+            assertEquals(1L, sslWorker.getSslBufferPoolMissCount());
+            first.free();
+            // the freed buffer went to this thread's cache
+            final Pooled<ByteBuffer> second = pool.allocate();
+            assertEquals(1L, sslWorker.getSslBufferPoolHitCount());
+            assertEquals(1L, sslWorker.getSslBufferPoolMissCount());
+            second.free();
+        } finally {
+            sslWorker.shutdown();
+        }
+    }
+
     private static final Field connectedChannelField;
     private static final Field connectionField;
 
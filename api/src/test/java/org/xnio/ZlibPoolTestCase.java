@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link ZlibPool}.
+ */
+public class ZlibPoolTestCase {
+
+    @Test
+    public void reuseInflater() {
+        final ZlibPool pool = new ZlibPool();
+        final Inflater inflater = pool.getInflater(false);
+        assertNotSame(inflater, pool.getInflater(false));
+        inflater.setInput(new byte[] { 1, 2, 3 });
+        inflater.end();
+        // ending twice must not pool it twice
+        inflater.end();
+        final Inflater reused = pool.getInflater(false);
+        assertSame(inflater, reused);
+        assertTrue("a reused inflater is reset", reused.needsInput());
+        assertNotSame(inflater, pool.getInflater(false));
+        assertNotSame(inflater, pool.getInflater(true));
+    }
+
+    @Test
+    public void reuseDeflater() {
+        final ZlibPool pool = new ZlibPool();
+        final Deflater deflater = pool.getDeflater(Deflater.BEST_SPEED, true);
+        deflater.setInput(new byte[] { 1, 2, 3 });
+        deflater.finish();
+        deflater.end();
+        assertNotSame(deflater, pool.getDeflater(Deflater.BEST_COMPRESSION, true));
+        assertNotSame(deflater, pool.getDeflater(Deflater.BEST_SPEED, false));
+        final Deflater reused = pool.getDeflater(Deflater.BEST_SPEED, true);
+        assertSame(deflater, reused);
+        assertEquals(0L, reused.getBytesRead());
+    }
+}
@@ -33,10 +33,15 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.wildfly.common.function.ExceptionToIntFunction;
 import org.xnio.Buffers;
 import org.xnio.ChannelListener;
 import org.xnio.Option;
@@ -414,6 +419,32 @@ public class ChannelsTestCase {
         assertReadMessage(receiveBuffer[3], "out");
     }
 
+    @Test
+    public void receiveMessages() throws IOException {
+        final ArrayDeque<String> messages = new ArrayDeque<>(Arrays.asList("first", "second message", "third"));
+        final ExceptionToIntFunction<ByteBuffer, IOException> receiver = buffer -> {
+            final String message = messages.poll();
+            if (message == null) {
+                return -1;
+            }
+            final byte[] bytes = message.getBytes("UTF-8");
+            // the part which does not fit is discarded
+            buffer.put(bytes, 0, Math.min(bytes.length, buffer.remaining()));
+            return bytes.length;
+        };
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        final List<String> received = new ArrayList<>();
+        assertEquals(2, Channels.receiveMessages(receiver, buffer, view -> {
+            assertTrue(view.isReadOnly());
+            received.add(Buffers.getModifiedUtf8(view));
+        }, 2));
+        assertEquals(Arrays.asList("first", "second m"), received);
+        assertEquals(1, Channels.receiveMessages(receiver, buffer, view -> received.add(Buffers.getModifiedUtf8(view)), 2));
+        assertEquals("third", received.get(2));
+        assertEquals(-1, Channels.receiveMessages(receiver, buffer, view -> received.add(Buffers.getModifiedUtf8(view)), 2));
+        assertEquals(3, received.size());
+    }
+
     @Test
     public void acceptBlocking() throws IOException, InterruptedException {
         final AcceptingChannelMock acceptingChannelMock = new AcceptingChannelMock();
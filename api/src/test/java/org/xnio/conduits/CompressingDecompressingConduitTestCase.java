@@ -0,0 +1,288 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.Buffers;
+import org.xnio.CompressionCodec;
+import org.xnio.Lz4CompressionCodec;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Test for {@link CompressingStreamSinkConduit} and {@link DecompressingStreamSourceConduit}, with heap and direct
+ * buffers and with an underlying conduit that only accepts or returns part of the data at a time.
+ */
+public class CompressingDecompressingConduitTestCase {
+
+    private final CompressionCodec codec = new Lz4CompressionCodec();
+    private ConduitMock conduitMock;
+    private byte[] data;
+
+    @Before
+    public void init() {
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        conduitMock = new ConduitMock(worker, worker.chooseThread());
+        // compressible, and several blocks long
+        data = new byte[200000];
+        final Random random = new Random(42);
+        for (int i = 0; i < data.length; i ++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+    }
+
+    @Test
+    public void heapBuffers() throws IOException {
+        assertArrayEquals(data, decompress(compress(false), false));
+    }
+
+    @Test
+    public void directBuffers() throws IOException {
+        assertArrayEquals(data, decompress(compress(true), true));
+    }
+
+    @Test
+    public void terminateAndFlush() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final CompressingStreamSinkConduit conduit = new CompressingStreamSinkConduit(sink, codec, -1);
+        conduit.terminateWrites();
+        while (! conduit.flush()) {
+            // retry
+        }
+        assertTrue(sink.terminated);
+        assertEquals(0, sink.bytes.size());
+    }
+
+    @Test
+    public void writeAfterTerminate() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final CompressingStreamSinkConduit conduit = new CompressingStreamSinkConduit(sink, codec, -1);
+        conduit.terminateWrites();
+        try {
+            conduit.write(ByteBuffer.wrap(data, 0, 10));
+            fail("Expected ClosedChannelException");
+        } catch (ClosedChannelException expected) {
+        }
+    }
+
+    @Test
+    public void readAfterTerminate() throws IOException {
+        final DecompressingStreamSourceConduit conduit = new DecompressingStreamSourceConduit(new ChunkedSourceConduit(conduitMock, compress(false)), codec);
+        assertTrue(conduit.read(ByteBuffer.allocate(100)) > 0);
+        conduit.terminateReads();
+        try {
+            conduit.read(ByteBuffer.allocate(100));
+            fail("Expected ClosedChannelException");
+        } catch (ClosedChannelException expected) {
+        }
+    }
+
+    @Test
+    public void truncatedStream() throws IOException {
+        final byte[] compressed = compress(false);
+        try {
+            decompress(Arrays.copyOf(compressed, compressed.length - 1), false);
+            fail("Expected EOFException");
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void corruptFrameHeader() throws IOException {
+        final byte[] compressed = compress(false);
+        // an uncompressed length larger than a block
+        compressed[4] = 0x7f;
+        try {
+            decompress(compressed, false);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void awaitBufferedFrame() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final CompressingStreamSinkConduit compressing = new CompressingStreamSinkConduit(sink, codec, -1);
+        // two frames
+        for (int i = 0; i < 2; i ++) {
+            final ByteBuffer buffer = ByteBuffer.wrap(data, i * 1000, 1000);
+            while (buffer.hasRemaining()) {
+                compressing.write(buffer);
+            }
+            while (! compressing.flush()) {
+                // retry
+            }
+        }
+        // both arrive in one read, after which the peer sends nothing more
+        final DecompressingStreamSourceConduit conduit = new DecompressingStreamSourceConduit(new OneShotSourceConduit(conduitMock, sink.bytes.toByteArray()), codec);
+        final ByteBuffer buffer = ByteBuffer.allocate(2000);
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        while (decompressed.size() < 2000) {
+            // a blocking reader waits before each read
+            conduit.awaitReadable();
+            assertTrue(conduit.read(buffer) > 0);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                decompressed.write(buffer.get());
+            }
+            buffer.clear();
+        }
+        assertArrayEquals(Arrays.copyOf(data, 2000), decompressed.toByteArray());
+    }
+
+    private byte[] compress(final boolean direct) throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final CompressingStreamSinkConduit conduit = new CompressingStreamSinkConduit(sink, codec, -1);
+        final Random random = new Random(7);
+        int offset = 0;
+        while (offset < data.length) {
+            final int length = Math.min(data.length - offset, 1 + random.nextInt(20000));
+            final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+            buffer.put(data, offset, length).flip();
+            while (buffer.hasRemaining()) {
+                conduit.write(buffer);
+            }
+            offset += length;
+            if (random.nextBoolean()) {
+                while (! conduit.flush()) {
+                    // retry
+                }
+            }
+        }
+        conduit.terminateWrites();
+        while (! conduit.flush()) {
+            // retry
+        }
+        assertTrue(sink.terminated);
+        return sink.bytes.toByteArray();
+    }
+
+    private byte[] decompress(final byte[] compressed, final boolean direct) throws IOException {
+        final DecompressingStreamSourceConduit conduit = new DecompressingStreamSourceConduit(new ChunkedSourceConduit(conduitMock, compressed), codec);
+        final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(10000) : ByteBuffer.allocate(10000);
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        while (conduit.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                decompressed.write(buffer.get());
+            }
+            buffer.clear();
+        }
+        conduit.terminateReads();
+        return decompressed.toByteArray();
+    }
+
+    /**
+     * A sink which accepts a varying number of bytes per write, sometimes none.
+     */
+    private static final class ChunkedSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Random random = new Random(1);
+        private boolean terminated;
+
+        ChunkedSinkConduit(final StreamSinkConduit next) {
+            super(next);
+        }
+
+        public int write(final ByteBuffer src) {
+            final int count = random.nextInt(3) == 0 ? 0 : Math.min(src.remaining(), 1 + random.nextInt(5000));
+            for (int i = 0; i < count; i ++) {
+                bytes.write(src.get());
+            }
+            return count;
+        }
+
+        public boolean flush() {
+            return true;
+        }
+
+        public void terminateWrites() {
+            terminated = true;
+        }
+    }
+
+    /**
+     * A source which returns all of the given bytes in its first read, and which has nothing more to wait for.
+     */
+    private static final class OneShotSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private final ByteBuffer bytes;
+        private boolean read;
+
+        OneShotSourceConduit(final StreamSourceConduit next, final byte[] bytes) {
+            super(next);
+            this.bytes = ByteBuffer.wrap(bytes);
+        }
+
+        public int read(final ByteBuffer dst) {
+            return Buffers.copy(dst, bytes);
+        }
+
+        public void awaitReadable() {
+            if (read) {
+                fail("Waited for data which was already buffered");
+            }
+            read = true;
+        }
+
+        public void terminateReads() {
+        }
+    }
+
+    /**
+     * A source which returns the given bytes a varying number at a time.
+     */
+    private static final class ChunkedSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private final ByteBuffer bytes;
+        private final Random random = new Random(2);
+
+        ChunkedSourceConduit(final StreamSourceConduit next, final byte[] bytes) {
+            super(next);
+            this.bytes = ByteBuffer.wrap(bytes);
+        }
+
+        public int read(final ByteBuffer dst) {
+            if (! bytes.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(Math.min(dst.remaining(), bytes.remaining()), 1 + random.nextInt(3000));
+            for (int i = 0; i < count; i ++) {
+                dst.put(bytes.get());
+            }
+            return count;
+        }
+
+        public void terminateReads() {
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Measures the throughput and the heap allocation of {@link DeflatingStreamSinkConduit} and
+ * {@link InflatingStreamSourceConduit} with heap and direct application buffers; not run as part of the test suite.
+ * Each run compresses a block of data through a deflating conduit into memory, and decompresses it again through an
+ * inflating conduit, a buffer at a time.
+ * <p>
+ * Usage: {@code CompressionConduitBenchmark [runs]}
+ */
+public final class CompressionConduitBenchmark {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int BUFFER_SIZE = 16384;
+
+    private CompressionConduitBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        final ConduitMock conduitMock = new ConduitMock(worker, worker.chooseThread());
+        final byte[] data = new byte[BLOCK_SIZE];
+        final Random random = new Random(42);
+        for (int i = 0; i < data.length; i ++) {
+            data[i] = (byte) ('a' + random.nextInt(16));
+        }
+        // warm up
+        run(conduitMock, data, false, runs / 4);
+        run(conduitMock, data, true, runs / 4);
+        for (boolean direct : new boolean[] { false, true }) {
+            final long[] results = run(conduitMock, data, direct, runs);
+            final double megabytes = (double) runs * BLOCK_SIZE / (1024 * 1024);
+            System.out.printf("%-6s buffers: deflate %7.1f MB/s, inflate %7.1f MB/s, %8.1f bytes allocated per MB%n", direct ? "direct" : "heap", megabytes / (results[0] / 1e9), megabytes / (results[1] / 1e9), results[2] / megabytes);
+        }
+    }
+
+    /**
+     * Compress and decompress the data the given number of times.
+     *
+     * @return the deflate time and the inflate time in nanoseconds, and the number of bytes allocated
+     */
+    private static long[] run(final ConduitMock conduitMock, final byte[] data, final boolean direct, final int runs) throws IOException {
+        final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+        final MemorySinkConduit sink = new MemorySinkConduit(conduitMock, data.length * 2);
+        final Deflater deflater = new Deflater();
+        final Inflater inflater = new Inflater();
+        long deflateTime = 0L;
+        long inflateTime = 0L;
+        final long allocatedStart = getAllocatedBytes();
+        for (int i = 0; i < runs; i ++) {
+            deflater.reset();
+            inflater.reset();
+            sink.bytes.clear();
+            long start = System.nanoTime();
+            final DeflatingStreamSinkConduit deflating = new DeflatingStreamSinkConduit(sink, deflater);
+            for (int offset = 0; offset < data.length; offset += BUFFER_SIZE) {
+                buffer.clear();
+                buffer.put(data, offset, Math.min(BUFFER_SIZE, data.length - offset)).flip();
+                while (buffer.hasRemaining()) {
+                    deflating.write(buffer);
+                }
+            }
+            while (! deflating.flush()) {
+                // the sink never blocks
+            }
+            deflateTime += System.nanoTime() - start;
+            sink.bytes.flip();
+            start = System.nanoTime();
+            final InflatingStreamSourceConduit inflating = new InflatingStreamSourceConduit(new MemorySourceConduit(conduitMock, sink.bytes), inflater);
+            long total = 0L;
+            buffer.clear();
+            int res;
+            while (total < data.length && (res = inflating.read(buffer)) > 0) {
+                total += res;
+                buffer.clear();
+            }
+            inflateTime += System.nanoTime() - start;
+            if (total != data.length) {
+                throw new IllegalStateException("only " + total + " of " + data.length + " bytes inflated");
+            }
+        }
+        return new long[] { deflateTime, inflateTime, getAllocatedBytes() - allocatedStart };
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final class MemorySinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+        private final ByteBuffer bytes;
+
+        MemorySinkConduit(final StreamSinkConduit next, final int capacity) {
+            super(next);
+            bytes = ByteBuffer.allocate(capacity);
+        }
+
+        public int write(final ByteBuffer src) {
+            final int count = src.remaining();
+            bytes.put(src);
+            return count;
+        }
+
+        public boolean flush() {
+            return true;
+        }
+    }
+
+    private static final class MemorySourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private final ByteBuffer bytes;
+
+        MemorySourceConduit(final StreamSourceConduit next, final ByteBuffer bytes) {
+            super(next);
+            this.bytes = bytes;
+        }
+
+        public int read(final ByteBuffer dst) {
+            if (! bytes.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(dst.remaining(), bytes.remaining());
+            final int limit = bytes.limit();
+            bytes.limit(bytes.position() + count);
+            dst.put(bytes);
+            bytes.limit(limit);
+            return count;
+        }
+    }
+}
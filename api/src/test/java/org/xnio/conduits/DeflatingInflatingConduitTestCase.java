@@ -0,0 +1,228 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Test for {@link DeflatingStreamSinkConduit} and {@link InflatingStreamSourceConduit}, with heap and direct
+ * buffers and with an underlying conduit that only accepts or returns part of the data at a time.
+ */
+public class DeflatingInflatingConduitTestCase {
+
+    private ConduitMock conduitMock;
+    private byte[] data;
+
+    @Before
+    public void init() {
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        conduitMock = new ConduitMock(worker, worker.chooseThread());
+        // compressible, and much larger than the staging buffers
+        data = new byte[200000];
+        final Random random = new Random(42);
+        for (int i = 0; i < data.length; i ++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+    }
+
+    @Test
+    public void heapBuffers() throws IOException {
+        assertArrayEquals(data, inflate(deflate(false), false));
+    }
+
+    @Test
+    public void directBuffers() throws IOException {
+        assertArrayEquals(data, inflate(deflate(true), true));
+    }
+
+    @Test
+    public void terminateAndFlush() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final DeflatingStreamSinkConduit conduit = new DeflatingStreamSinkConduit(sink, new Deflater());
+        conduit.terminateWrites();
+        while (! conduit.flush()) {
+            // retry
+        }
+        assertTrue(sink.terminated);
+        // flushing again after the deflater was released is harmless
+        assertTrue(conduit.flush());
+    }
+
+    @Test
+    public void writeAfterEnd() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final DeflatingStreamSinkConduit conduit = new DeflatingStreamSinkConduit(sink, new Deflater(), true);
+        conduit.terminateWrites();
+        while (! conduit.flush()) {
+            // retry
+        }
+        boolean failed = false;
+        try {
+            conduit.write(ByteBuffer.wrap(data));
+        } catch (ClosedChannelException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+    }
+
+    @Test
+    public void readAfterTerminate() throws IOException {
+        final InflatingStreamSourceConduit conduit = new InflatingStreamSourceConduit(new ChunkedSourceConduit(conduitMock, deflate(false)), new Inflater());
+        conduit.terminateReads();
+        // terminating again must not end the inflater twice
+        conduit.terminateReads();
+        boolean failed = false;
+        try {
+            conduit.read(ByteBuffer.allocate(100));
+        } catch (ClosedChannelException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+    }
+
+    @Test
+    public void callerOwnsDeflater() throws IOException {
+        final Deflater deflater = new Deflater();
+        final DeflatingStreamSinkConduit conduit = new DeflatingStreamSinkConduit(new ChunkedSinkConduit(conduitMock), deflater);
+        conduit.terminateWrites();
+        while (! conduit.flush()) {
+            // retry
+        }
+        conduit.truncateWrites();
+        // the deflater was not ended, so it can be reused
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        assertTrue(deflater.deflate(new byte[data.length]) > 0);
+        deflater.end();
+    }
+
+    private byte[] deflate(final boolean direct) throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final DeflatingStreamSinkConduit conduit = new DeflatingStreamSinkConduit(sink, new Deflater());
+        final Random random = new Random(7);
+        int offset = 0;
+        while (offset < data.length) {
+            final int length = Math.min(data.length - offset, 1 + random.nextInt(20000));
+            final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+            buffer.put(data, offset, length).flip();
+            while (buffer.hasRemaining()) {
+                conduit.write(buffer);
+            }
+            offset += length;
+            if (random.nextBoolean()) {
+                while (! conduit.flush()) {
+                    // retry
+                }
+            }
+        }
+        conduit.terminateWrites();
+        while (! conduit.flush()) {
+            // retry
+        }
+        assertTrue(sink.terminated);
+        return sink.bytes.toByteArray();
+    }
+
+    private byte[] inflate(final byte[] compressed, final boolean direct) throws IOException {
+        final InflatingStreamSourceConduit conduit = new InflatingStreamSourceConduit(new ChunkedSourceConduit(conduitMock, compressed), new Inflater());
+        final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(10000) : ByteBuffer.allocate(10000);
+        final ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        while (conduit.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                inflated.write(buffer.get());
+            }
+            buffer.clear();
+        }
+        conduit.terminateReads();
+        return inflated.toByteArray();
+    }
+
+    /**
+     * A sink which accepts a varying number of bytes per write, sometimes none.
+     */
+    private static final class ChunkedSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Random random = new Random(1);
+        private boolean terminated;
+
+        ChunkedSinkConduit(final StreamSinkConduit next) {
+            super(next);
+        }
+
+        public int write(final ByteBuffer src) {
+            final int count = random.nextInt(3) == 0 ? 0 : Math.min(src.remaining(), 1 + random.nextInt(5000));
+            for (int i = 0; i < count; i ++) {
+                bytes.write(src.get());
+            }
+            return count;
+        }
+
+        public boolean flush() {
+            return true;
+        }
+
+        public void terminateWrites() {
+            terminated = true;
+        }
+    }
+
+    /**
+     * A source which returns the given bytes a varying number at a time.
+     */
+    private static final class ChunkedSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private final ByteBuffer bytes;
+        private final Random random = new Random(2);
+
+        ChunkedSourceConduit(final StreamSourceConduit next, final byte[] bytes) {
+            super(next);
+            this.bytes = ByteBuffer.wrap(bytes);
+        }
+
+        public int read(final ByteBuffer dst) {
+            if (! bytes.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(Math.min(dst.remaining(), bytes.remaining()), 1 + random.nextInt(3000));
+            for (int i = 0; i < count; i ++) {
+                dst.put(bytes.get());
+            }
+            return count;
+        }
+
+        public void terminateReads() {
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.xnio.Buffers;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Compares receiving framed messages one at a time from a {@link FramingMessageSourceConduit} with the batch
+ * receive methods, for streams of messages from 32 bytes to 4 KB; not run as part of the test suite.  The
+ * underlying conduit returns at most 64 KB per read, like a socket, and the number of reads is reported along with
+ * the throughput.
+ * <p>
+ * Usage: {@code FramingMessageReceiveBenchmark [runs]}
+ */
+public final class FramingMessageReceiveBenchmark {
+
+    private static final int[] MESSAGE_SIZES = { 32, 256, 1024, 4096 };
+    private static final int STREAM_SIZE = 1 << 22;
+    private static final int RECEIVE_BUFFER_SIZE = 65536;
+    private static final int BATCH_SIZE = 64;
+
+    private FramingMessageReceiveBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        final ConduitMock conduitMock = new ConduitMock(worker, worker.chooseThread());
+        for (int messageSize : MESSAGE_SIZES) {
+            final byte[] stream = framedStream(messageSize);
+            final int messages = stream.length / (messageSize + 4);
+            for (int mode = 0; mode < 3; mode ++) {
+                // warm up
+                run(conduitMock, stream, messages, messageSize, mode, runs / 4);
+                final long[] results = run(conduitMock, stream, messages, messageSize, mode, runs);
+                System.out.printf("%4d byte messages, %-8s: %10.0f messages/s, %7.1f reads per 1000 messages%n", messageSize, mode == 0 ? "single" : mode == 1 ? "buffers" : "handler", (double) messages * runs / (results[0] / 1e9), results[1] * 1000.0 / ((double) messages * runs));
+            }
+        }
+    }
+
+    /**
+     * Receive all the messages of the stream the given number of times.  The stream is not read to its end, so that
+     * every mode stops after the same number of messages.
+     *
+     * @return the time in nanoseconds and the number of reads from the underlying conduit
+     */
+    private static long[] run(final ConduitMock conduitMock, final byte[] stream, final int messages, final int messageSize, final int mode, final int runs) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[BATCH_SIZE];
+        for (int i = 0; i < buffers.length; i ++) {
+            buffers[i] = ByteBuffer.allocate(messageSize);
+        }
+        final long[] received = new long[1];
+        long time = 0L;
+        long reads = 0L;
+        for (int i = 0; i < runs; i ++) {
+            final MemorySourceConduit source = new MemorySourceConduit(conduitMock, stream);
+            final FramingMessageSourceConduit conduit = new FramingMessageSourceConduit(source, Buffers.pooledWrapper(ByteBuffer.allocate(RECEIVE_BUFFER_SIZE)));
+            final long start = System.nanoTime();
+            int count = 0;
+            switch (mode) {
+                case 0: {
+                    while (count < messages) {
+                        if (conduit.receive(buffers[0]) > 0) {
+                            count ++;
+                        }
+                        buffers[0].clear();
+                    }
+                    break;
+                }
+                case 1: {
+                    while (count < messages) {
+                        final int res = conduit.receiveMessages(buffers, 0, buffers.length);
+                        for (int j = 0; j < res; j ++) {
+                            buffers[j].clear();
+                        }
+                        count += res;
+                    }
+                    break;
+                }
+                default: {
+                    while (count < messages) {
+                        count += conduit.receiveMessages(buffer -> received[0] += buffer.remaining(), Integer.MAX_VALUE);
+                    }
+                    break;
+                }
+            }
+            time += System.nanoTime() - start;
+            reads += source.reads;
+        }
+        return new long[] { time, reads };
+    }
+
+    private static byte[] framedStream(final int messageSize) {
+        final int messages = STREAM_SIZE / (messageSize + 4);
+        final ByteBuffer buffer = ByteBuffer.allocate(messages * (messageSize + 4));
+        final byte[] message = new byte[messageSize];
+        new Random(42).nextBytes(message);
+        for (int i = 0; i < messages; i ++) {
+            buffer.putInt(messageSize).put(message);
+        }
+        return buffer.array();
+    }
+
+    private static final class MemorySourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private final ByteBuffer bytes;
+        private long reads;
+
+        MemorySourceConduit(final StreamSourceConduit next, final byte[] bytes) {
+            super(next);
+            this.bytes = ByteBuffer.wrap(bytes);
+        }
+
+        public int read(final ByteBuffer dst) {
+            reads ++;
+            if (! bytes.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(Math.min(dst.remaining(), bytes.remaining()), RECEIVE_BUFFER_SIZE);
+            final int limit = bytes.limit();
+            bytes.limit(bytes.position() + count);
+            dst.put(bytes);
+            bytes.limit(limit);
+            return count;
+        }
+
+        public void terminateReads() {
+        }
+    }
+}
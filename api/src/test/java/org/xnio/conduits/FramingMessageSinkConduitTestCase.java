@@ -0,0 +1,301 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.Buffers;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioIoThreadMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Test for {@link FramingMessageSinkConduit}, with and without gathering writes, over an underlying conduit that
+ * only accepts part of the data at a time, and with coalescing.
+ */
+public class FramingMessageSinkConduitTestCase {
+
+    private ConduitMock conduitMock;
+    private List<byte[]> messages;
+
+    @Before
+    public void init() {
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        conduitMock = new ConduitMock(worker, worker.chooseThread());
+        messages = new ArrayList<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 200; i ++) {
+            final byte[] message = new byte[1 + random.nextInt(i % 4 == 0 ? 20000 : 1000)];
+            random.nextBytes(message);
+            messages.add(message);
+        }
+    }
+
+    @Test
+    public void copiedMessages() throws IOException {
+        send(false, 32768, true, false);
+    }
+
+    @Test
+    public void gatheredMessages() throws IOException {
+        // most messages are larger than the transmit buffer
+        send(true, 1024, true, false);
+        send(true, 1024, true, true);
+    }
+
+    @Test
+    public void gatheredMessagesWithShortLengths() throws IOException {
+        send(true, 1024, false, false);
+    }
+
+    @Test
+    public void copiedMessageTooLarge() throws IOException {
+        final FramingMessageSinkConduit conduit = new FramingMessageSinkConduit(new ChunkedSinkConduit(conduitMock), true, Buffers.pooledWrapper(ByteBuffer.allocate(1024)));
+        try {
+            conduit.send(ByteBuffer.allocate(2000));
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void flushWithoutMessages() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final FramingMessageSinkConduit conduit = new FramingMessageSinkConduit(sink, true, Buffers.pooledWrapper(ByteBuffer.allocate(1024)), true);
+        while (! conduit.flush()) {
+            // retry
+        }
+        assertEquals(0, sink.bytes.size());
+        assertFalse(conduit.send(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void coalesceByMessageCount() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 65536, 10);
+        for (int i = 0; i < 100; i ++) {
+            assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        }
+        assertEquals(10, sink.writes);
+        assertEquals(1400, sink.bytes.size());
+        assertEquals(10, conduit.getBatchCount());
+        assertEquals(90, conduit.getSavedWriteCount());
+        assertTrue(conduit.getMaxCoalescingDelay() <= conduit.getTotalCoalescingDelay());
+    }
+
+    @Test
+    public void coalesceByBytes() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 1000, 1000);
+        for (int i = 0; i < 100; i ++) {
+            assertTrue(conduit.send(ByteBuffer.allocate(100)));
+        }
+        // each batch is written once it holds 10 messages of 104 bytes
+        assertEquals(10, sink.writes);
+        assertEquals(90, conduit.getSavedWriteCount());
+    }
+
+    @Test
+    public void coalesceUntilTimer() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 65536, 1000);
+        for (int i = 0; i < 3; i ++) {
+            assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        }
+        assertEquals(0, sink.writes);
+        assertEquals(1, ((XnioIoThreadMock) conduit.getWriteThread()).runDelayedCommands());
+        assertEquals(1, sink.writes);
+        assertEquals(42, sink.bytes.size());
+        assertEquals(2, conduit.getSavedWriteCount());
+    }
+
+    @Test
+    public void flushCancelsTimer() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 65536, 1000);
+        for (int i = 0; i < 3; i ++) {
+            assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        }
+        assertTrue(conduit.flush());
+        assertEquals(1, sink.writes);
+        assertEquals(0, ((XnioIoThreadMock) conduit.getWriteThread()).runDelayedCommands());
+    }
+
+    @Test
+    public void timerRetriesWhenBlocked() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 65536, 1000);
+        final XnioIoThreadMock thread = (XnioIoThreadMock) conduit.getWriteThread();
+        for (int i = 0; i < 3; i ++) {
+            assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        }
+        sink.blocked = true;
+        assertEquals(1, thread.runDelayedCommands());
+        assertEquals(0, sink.bytes.size());
+        sink.blocked = false;
+        // the timer was set again
+        assertEquals(1, thread.runDelayedCommands());
+        assertEquals(42, sink.bytes.size());
+        assertEquals(0, thread.runDelayedCommands());
+    }
+
+    @Test
+    public void timerStopsOnFailure() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 65536, 1000);
+        final XnioIoThreadMock thread = (XnioIoThreadMock) conduit.getWriteThread();
+        assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        sink.failing = true;
+        assertEquals(1, thread.runDelayedCommands());
+        assertEquals(0, thread.runDelayedCommands());
+        try {
+            conduit.flush();
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void coalesceWithGatheredMessage() throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock, false);
+        final FramingMessageSinkConduit conduit = coalescingConduit(sink, 65536, 1000);
+        assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        assertTrue(conduit.send(ByteBuffer.allocate(10)));
+        // a large message takes the pending ones with it
+        assertTrue(conduit.send(ByteBuffer.allocate(5000)));
+        assertEquals(1, sink.writes);
+        assertEquals(5032, sink.bytes.size());
+        assertEquals(2, conduit.getSavedWriteCount());
+        assertEquals(0, ((XnioIoThreadMock) conduit.getWriteThread()).runDelayedCommands());
+    }
+
+    private static FramingMessageSinkConduit coalescingConduit(final StreamSinkConduit sink, final int coalesceBytes, final int coalesceMessages) {
+        return new FramingMessageSinkConduit(sink, true, Buffers.pooledWrapper(ByteBuffer.allocate(8192)), true, coalesceBytes, coalesceMessages, 100L, TimeUnit.MICROSECONDS);
+    }
+
+    private void send(final boolean gatheringWrites, final int bufferSize, final boolean longLengths, final boolean split) throws IOException {
+        final ChunkedSinkConduit sink = new ChunkedSinkConduit(conduitMock);
+        final FramingMessageSinkConduit conduit = new FramingMessageSinkConduit(sink, longLengths, Buffers.pooledWrapper(ByteBuffer.allocate(bufferSize)), gatheringWrites);
+        for (byte[] message : messages) {
+            if (split) {
+                final int half = message.length / 2;
+                final ByteBuffer[] buffers = { ByteBuffer.wrap(message, 0, half), ByteBuffer.allocateDirect(message.length - half) };
+                buffers[1].put(message, half, message.length - half).flip();
+                while (! conduit.send(buffers, 0, buffers.length)) {
+                    // retry
+                }
+                assertFalse(Buffers.hasRemaining(buffers));
+            } else {
+                final ByteBuffer buffer = ByteBuffer.wrap(message);
+                while (! conduit.send(buffer)) {
+                    // retry
+                }
+                assertFalse(buffer.hasRemaining());
+            }
+        }
+        while (! conduit.flush()) {
+            // retry
+        }
+        final ByteBuffer framed = ByteBuffer.wrap(sink.bytes.toByteArray());
+        for (byte[] message : messages) {
+            final int length = longLengths ? framed.getInt() : framed.getShort() & 0xffff;
+            assertEquals(message.length, length);
+            final byte[] received = new byte[length];
+            framed.get(received);
+            assertArrayEquals(message, received);
+        }
+        assertFalse(framed.hasRemaining());
+        assertTrue(sink.gatheringWrites > 0 == gatheringWrites);
+    }
+
+    /**
+     * A sink which accepts a varying number of bytes per write, sometimes none.
+     */
+    private static final class ChunkedSinkConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Random random = new Random(1);
+        private final boolean partial;
+        private int gatheringWrites;
+        private int writes;
+        // accept no bytes
+        private boolean blocked;
+        // fail every write
+        private boolean failing;
+
+        ChunkedSinkConduit(final StreamSinkConduit next) {
+            this(next, true);
+        }
+
+        ChunkedSinkConduit(final StreamSinkConduit next, final boolean partial) {
+            super(next);
+            this.partial = partial;
+        }
+
+        public int write(final ByteBuffer src) throws IOException {
+            if (failing) {
+                throw new IOException("write failed");
+            }
+            writes ++;
+            final int count = blocked ? 0 : ! partial ? src.remaining() : random.nextInt(3) == 0 ? 0 : Math.min(src.remaining(), 1 + random.nextInt(5000));
+            for (int i = 0; i < count; i ++) {
+                bytes.write(src.get());
+            }
+            return count;
+        }
+
+        public long write(final ByteBuffer[] srcs, final int offs, final int len) throws IOException {
+            if (failing) {
+                throw new IOException("write failed");
+            }
+            if (len > 1) {
+                gatheringWrites ++;
+            }
+            writes ++;
+            long count = blocked ? 0L : ! partial ? Buffers.remaining(srcs, offs, len) : random.nextInt(3) == 0 ? 0 : Math.min(Buffers.remaining(srcs, offs, len), 1 + random.nextInt(50000));
+            final long written = count;
+            for (int i = 0; i < len && count > 0; i ++) {
+                final ByteBuffer src = srcs[offs + i];
+                while (src.hasRemaining() && count > 0) {
+                    bytes.write(src.get());
+                    count --;
+                }
+            }
+            return written;
+        }
+
+        public boolean flush() {
+            return true;
+        }
+    }
+}
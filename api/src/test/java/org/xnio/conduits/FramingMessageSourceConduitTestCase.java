@@ -0,0 +1,219 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.Buffers;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Test for the batch receive methods of {@link FramingMessageSourceConduit}, and for their defaults in
+ * {@link MessageSourceConduit}.
+ */
+public class FramingMessageSourceConduitTestCase {
+
+    private ConduitMock conduitMock;
+    private List<byte[]> messages;
+    private byte[] framed;
+
+    @Before
+    public void init() {
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        conduitMock = new ConduitMock(worker, worker.chooseThread());
+        messages = new ArrayList<>();
+        final Random random = new Random(42);
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        for (int i = 0; i < 1000; i ++) {
+            final byte[] message = new byte[random.nextInt(500)];
+            random.nextBytes(message);
+            messages.add(message);
+            buffer.putInt(message.length).put(message);
+        }
+        framed = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(framed);
+    }
+
+    @Test
+    public void receiveIntoBuffers() throws IOException {
+        final ChunkedSourceConduit source = new ChunkedSourceConduit(conduitMock, framed);
+        final FramingMessageSourceConduit conduit = new FramingMessageSourceConduit(source, Buffers.pooledWrapper(ByteBuffer.allocate(8192)));
+        final ByteBuffer[] buffers = new ByteBuffer[16];
+        final List<byte[]> received = new ArrayList<>();
+        int batches = 0;
+        int res;
+        do {
+            for (int i = 0; i < buffers.length; i ++) {
+                buffers[i] = ByteBuffer.allocate(500);
+            }
+            res = conduit.receiveMessages(buffers, 0, buffers.length);
+            for (int i = 0; i < res; i ++) {
+                buffers[i].flip();
+                final byte[] message = new byte[buffers[i].remaining()];
+                buffers[i].get(message);
+                received.add(message);
+            }
+            batches ++;
+        } while (res != -1);
+        assertMessages(received);
+        assertTrue(source.reads <= batches);
+        assertTrue(batches < messages.size() / 2);
+    }
+
+    @Test
+    public void receiveToHandler() throws IOException {
+        final ChunkedSourceConduit source = new ChunkedSourceConduit(conduitMock, framed);
+        final FramingMessageSourceConduit conduit = new FramingMessageSourceConduit(source, Buffers.pooledWrapper(ByteBuffer.allocate(8192)));
+        final List<byte[]> received = new ArrayList<>();
+        int res;
+        do {
+            res = conduit.receiveMessages(buffer -> {
+                assertTrue(buffer.isReadOnly());
+                final byte[] message = new byte[buffer.remaining()];
+                buffer.get(message);
+                received.add(message);
+            }, Integer.MAX_VALUE);
+        } while (res != -1);
+        assertMessages(received);
+    }
+
+    @Test
+    public void defaultReceiveToHandler() throws IOException {
+        final FramingMessageSourceConduit framing = new FramingMessageSourceConduit(new ChunkedSourceConduit(conduitMock, framed), Buffers.pooledWrapper(ByteBuffer.allocate(8192)));
+        final MessageSourceConduit conduit = new SingleMessageSourceConduit(framing);
+        final List<byte[]> received = new ArrayList<>();
+        int res;
+        do {
+            res = conduit.receiveMessages(buffer -> {
+                assertTrue(buffer.isReadOnly());
+                final byte[] message = new byte[buffer.remaining()];
+                buffer.get(message);
+                received.add(message);
+            }, 7);
+            assertTrue(res <= 7);
+        } while (res != -1);
+        // an empty message cannot be told apart from no message by receive(ByteBuffer), so it is skipped
+        final List<byte[]> expected = new ArrayList<>();
+        for (byte[] message : messages) {
+            if (message.length > 0) {
+                expected.add(message);
+            }
+        }
+        assertEquals(expected.size(), received.size());
+        for (int i = 0; i < expected.size(); i ++) {
+            assertArrayEquals(expected.get(i), received.get(i));
+        }
+    }
+
+    @Test
+    public void truncateLongMessages() throws IOException {
+        final FramingMessageSourceConduit conduit = new FramingMessageSourceConduit(new ChunkedSourceConduit(conduitMock, framed), Buffers.pooledWrapper(ByteBuffer.allocate(8192)));
+        final ByteBuffer[] buffers = { ByteBuffer.allocate(3), ByteBuffer.allocate(500) };
+        int res;
+        while ((res = conduit.receiveMessages(buffers, 0, 2)) != 2) {
+            assertEquals(0, res);
+        }
+        buffers[0].flip();
+        buffers[1].flip();
+        assertEquals(Math.min(3, messages.get(0).length), buffers[0].remaining());
+        final byte[] second = new byte[buffers[1].remaining()];
+        buffers[1].get(second);
+        assertArrayEquals(messages.get(1), second);
+    }
+
+    @Test
+    public void invalidLength() throws IOException {
+        final FramingMessageSourceConduit conduit = new FramingMessageSourceConduit(new ChunkedSourceConduit(conduitMock, new byte[] { 0x7f, 0, 0, 0, 1, 2 }), Buffers.pooledWrapper(ByteBuffer.allocate(8192)));
+        try {
+            while (conduit.receiveMessages(new ByteBuffer[] { ByteBuffer.allocate(10) }, 0, 1) == 0) {
+                // retry
+            }
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    private void assertMessages(final List<byte[]> received) {
+        assertEquals(messages.size(), received.size());
+        for (int i = 0; i < messages.size(); i ++) {
+            assertArrayEquals(messages.get(i), received.get(i));
+        }
+    }
+
+    /**
+     * A message source which only implements the single message receive methods, so that the defaults apply.
+     */
+    private static final class SingleMessageSourceConduit extends AbstractSourceConduit<MessageSourceConduit> implements MessageSourceConduit {
+
+        SingleMessageSourceConduit(final MessageSourceConduit next) {
+            super(next);
+        }
+
+        public int receive(final ByteBuffer dst) throws IOException {
+            return next.receive(dst);
+        }
+
+        public long receive(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
+            return next.receive(dsts, offs, len);
+        }
+    }
+
+    /**
+     * A source which returns the given bytes a varying number at a time, and counts the reads.
+     */
+    private static final class ChunkedSourceConduit extends AbstractStreamSourceConduit<StreamSourceConduit> {
+        private final ByteBuffer bytes;
+        private final Random random = new Random(2);
+        private int reads;
+
+        ChunkedSourceConduit(final StreamSourceConduit next, final byte[] bytes) {
+            super(next);
+            this.bytes = ByteBuffer.wrap(bytes);
+        }
+
+        public int read(final ByteBuffer dst) {
+            reads ++;
+            if (! bytes.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(Math.min(dst.remaining(), bytes.remaining()), random.nextInt(6000));
+            for (int i = 0; i < count; i ++) {
+                dst.put(bytes.get());
+            }
+            return count;
+        }
+
+        public void terminateReads() {
+        }
+    }
+}
@@ -22,6 +22,8 @@ package org.xnio.mock;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -54,6 +56,7 @@ import org.xnio.channels.StreamSourceChannel;
 public class XnioIoThreadMock extends XnioIoThread implements XnioExecutor {
 
     private Runnable command;
+    private final List<Runnable> delayedCommands = new ArrayList<Runnable>();
     private static final Runnable CLOSE_THREAD = new Runnable() {public void run() {}};
 
     public XnioIoThreadMock(final XnioWorker worker) {
@@ -120,8 +123,35 @@ public class XnioIoThreadMock extends XnioIoThread implements XnioExecutor {
     }
 
     @Override
-    public Key executeAfter(Runnable command, long time, TimeUnit unit) {
-        throw new RuntimeException("Not implemented");
+    public Key executeAfter(final Runnable command, long time, TimeUnit unit) {
+        synchronized (delayedCommands) {
+            delayedCommands.add(command);
+        }
+        return new Key() {
+            public boolean remove() {
+                synchronized (delayedCommands) {
+                    return delayedCommands.remove(command);
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs the commands scheduled with {@link #executeAfter(Runnable, long, TimeUnit)} in the calling thread, as if
+     * their delays had passed.
+     *
+     * @return the number of commands run
+     */
+    public int runDelayedCommands() {
+        final Runnable[] commands;
+        synchronized (delayedCommands) {
+            commands = delayedCommands.toArray(new Runnable[delayedCommands.size()]);
+            delayedCommands.clear();
+        }
+        for (Runnable command : commands) {
+            command.run();
+        }
+        return commands.length;
     }
 
     @Override
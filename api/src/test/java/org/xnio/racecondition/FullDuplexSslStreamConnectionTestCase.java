@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.racecondition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.ssl.mock.SSLEngineMock.HANDSHAKE_MSG;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.FINISH;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_TASK;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_UNWRAP;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_WRAP;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.AssertReadWrite;
+import org.xnio.conduits.StreamSinkConduit;
+import org.xnio.conduits.StreamSourceConduit;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.StreamConnectionMock;
+import org.xnio.mock.XnioIoThreadMock;
+import org.xnio.mock.XnioWorkerMock;
+import org.xnio.ssl.JsseSslStreamConnection;
+import org.xnio.ssl.mock.SSLEngineMock;
+
+/**
+ * Stress a {@link JsseSslStreamConnection} with a read thread and a write thread that run a handshake with delegated
+ * tasks concurrently, and then transfer data in both directions.  Both threads race for the delegated tasks, which
+ * must be run exactly once, and neither direction may lose or reorder data.
+ */
+public class FullDuplexSslStreamConnectionTestCase {
+
+    private static final int ROUNDS = 200;
+    private static final int MESSAGES = 50;
+
+    private XnioIoThreadMock threadMock;
+    private XnioWorkerMock worker;
+    private ExecutorService executor;
+
+    @Before
+    public void init() {
+        worker = new XnioWorkerMock();
+        threadMock = worker.chooseThread();
+        threadMock.start();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+        threadMock.closeIoThread();
+    }
+
+    @Test
+    public void test() throws Exception {
+        final String[] messages = new String[MESSAGES];
+        int messagesLength = 0;
+        for (int i = 0; i < MESSAGES; i ++) {
+            messages[i] = "message #" + i + ";";
+            messagesLength += messages[i].length();
+        }
+        final String[] readData = new String[MESSAGES + 1];
+        readData[0] = HANDSHAKE_MSG;
+        System.arraycopy(messages, 0, readData, 1, MESSAGES);
+        for (int round = 0; round < ROUNDS; round ++) {
+            final Mockery context = new JUnit4Mockery() {{
+                setThreadingPolicy(new Synchroniser());
+            }};
+            final SSLEngineMock engineMock = new SSLEngineMock(context);
+            engineMock.setHandshakeActions(NEED_WRAP, NEED_TASK, NEED_UNWRAP, NEED_TASK, FINISH);
+            final ConduitMock conduitMock = new ConduitMock(worker, threadMock);
+            conduitMock.setReadData(readData);
+            conduitMock.enableReads(true);
+            final JsseSslStreamConnection connection = new JsseSslStreamConnection(new StreamConnectionMock(conduitMock), engineMock, false);
+            connection.startHandshake();
+            final CountDownLatch start = new CountDownLatch(2);
+            final Future<String> read = executor.submit(new Read(connection.getSourceChannel().getConduit(), messagesLength, start));
+            final Future<Void> write = executor.submit(new Write(connection.getSinkChannel().getConduit(), messages, start));
+            write.get(10L, TimeUnit.SECONDS);
+            final String received = read.get(10L, TimeUnit.SECONDS);
+            final StringBuilder expected = new StringBuilder();
+            for (String message : messages) {
+                expected.append(message);
+            }
+            assertEquals("round " + round, expected.toString(), received);
+            // the engine mock neither maps the messages nor the handshake, so both sides see the same text
+            AssertReadWrite.assertWrittenMessage(conduitMock, readData);
+            // every delegated task was run exactly once
+            context.assertIsSatisfied();
+        }
+    }
+
+    private static class Read implements Callable<String> {
+        private final StreamSourceConduit conduit;
+        private final int length;
+        private final CountDownLatch start;
+
+        Read(StreamSourceConduit conduit, int length, CountDownLatch start) {
+            this.conduit = conduit;
+            this.length = length;
+            this.start = start;
+        }
+
+        public String call() throws IOException, InterruptedException {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            start.countDown();
+            start.await();
+            while (buffer.hasRemaining()) {
+                final int res = conduit.read(buffer);
+                assertTrue(res >= 0);
+                if (res == 0) {
+                    Thread.yield();
+                }
+            }
+            buffer.flip();
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+    }
+
+    private static class Write implements Callable<Void> {
+        private final StreamSinkConduit conduit;
+        private final String[] messages;
+        private final CountDownLatch start;
+
+        Write(StreamSinkConduit conduit, String[] messages, CountDownLatch start) {
+            this.conduit = conduit;
+            this.messages = messages;
+            this.start = start;
+        }
+
+        public Void call() throws IOException, InterruptedException {
+            start.countDown();
+            start.await();
+            for (String message : messages) {
+                final ByteBuffer buffer = ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    if (conduit.write(buffer) == 0) {
+                        Thread.yield();
+                    }
+                }
+            }
+            while (! conduit.flush()) {
+                Thread.yield();
+            }
+            return null;
+        }
+    }
+}
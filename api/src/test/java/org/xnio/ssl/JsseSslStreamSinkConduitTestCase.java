@@ -34,8 +34,11 @@ import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_WRAP;
 import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.PERFORM_REQUESTED_ACTION;
 
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 
@@ -438,4 +441,24 @@ public class JsseSslStreamSinkConduitTestCase extends AbstractSslConnectionTest
         sourceConduit.terminateReads();
         assertWrittenMessage("abc", CLOSE_MSG);
     }
+
+    @Test
+    public void transferFromFile() throws IOException {
+        final File file = File.createTempFile("test", ".txt");
+        file.deleteOnExit();
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        final FileChannel fileChannel = randomAccessFile.getChannel();
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(50);
+            buffer.put("file contents to be transferred".getBytes("UTF-8")).flip();
+            assertEquals(31, fileChannel.write(buffer));
+            // transfer all but the first word; asking for more than the file holds stops at the end of the file
+            assertEquals(26, sinkConduit.transferFrom(fileChannel, 5, 100));
+            assertEquals(0, sinkConduit.transferFrom(fileChannel, 31, 100));
+        } finally {
+            randomAccessFile.close();
+        }
+        assertTrue(sinkConduit.flush());
+        assertWrittenMessage("contents to be transferred");
+    }
 }
@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.ssl.mock.SSLEngineMock.CLOSE_MSG;
+import static org.xnio.ssl.mock.SSLEngineMock.HANDSHAKE_MSG;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.FINISH;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_TASK;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_UNWRAP;
+import static org.xnio.ssl.mock.SSLEngineMock.HandshakeAction.NEED_WRAP;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xnio.BufferAllocator;
+import org.xnio.ByteBufferSlicePool;
+import org.xnio.Pool;
+import org.xnio.Pooled;
+import org.xnio.mock.StreamConnectionMock;
+
+/**
+ * Test for SSL connections that hold their buffers lazily.
+ */
+public class LazyBuffersSslConnectionTestCase extends AbstractSslConnectionTest {
+
+    private CountingPool socketBufferPool;
+    private CountingPool applicationBufferPool;
+
+    @Override
+    protected SslConnection createSslConnection() {
+        socketBufferPool = new CountingPool(new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, 17000, 17000 * 16));
+        applicationBufferPool = new CountingPool(new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, 17000, 17000 * 16));
+        final StreamConnectionMock connectionMock = new StreamConnectionMock(conduitMock);
+        final SslConnection connection = new JsseSslConnection(connectionMock, engineMock, socketBufferPool, applicationBufferPool, true);
+        try {
+            connection.startHandshake();
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        return connection;
+    }
+
+    @Test
+    public void idleConnectionHoldsNoBuffers() throws IOException {
+        assertEquals(0, socketBufferPool.getOutstanding());
+        assertEquals(0, applicationBufferPool.getOutstanding());
+        conduitMock.setReadData("read data");
+        conduitMock.enableReads(true);
+        final ByteBuffer readBuffer = ByteBuffer.allocate(20);
+        int total = 0;
+        for (int i = 0; i < 10 && total < 9; i ++) {
+            total += sourceConduit.read(readBuffer);
+        }
+        assertEquals(9, total);
+        assertEquals(0, socketBufferPool.getOutstanding());
+        assertEquals(0, applicationBufferPool.getOutstanding());
+        final ByteBuffer writeBuffer = ByteBuffer.wrap("write data".getBytes("UTF-8"));
+        while (writeBuffer.hasRemaining()) {
+            sinkConduit.write(writeBuffer);
+        }
+        assertTrue(sinkConduit.flush());
+        assertEquals(0, socketBufferPool.getOutstanding());
+        assertEquals(0, applicationBufferPool.getOutstanding());
+        assertReadMessage(readBuffer, "read data");
+        assertWrittenMessage("write data");
+        // the buffers are borrowed again for the next burst of activity
+        assertTrue(socketBufferPool.getAllocations() > 2);
+    }
+
+    @Test
+    public void buffersReleasedAfterHandshake() throws IOException {
+        engineMock.addWrapEntry(HANDSHAKE_MSG, "handshake");
+        engineMock.addWrapEntry("MockTest", "mock test works!");
+        engineMock.addWrapEntry(CLOSE_MSG, "channel closed");
+        engineMock.setHandshakeActions(NEED_WRAP, NEED_UNWRAP, NEED_TASK, FINISH);
+        conduitMock.setReadData("handshake", "mock test works!");
+        conduitMock.enableReads(true);
+        final ByteBuffer writeBuffer = ByteBuffer.wrap("MockTest".getBytes("UTF-8"));
+        for (int i = 0; i < 10 && writeBuffer.hasRemaining(); i ++) {
+            sinkConduit.write(writeBuffer);
+        }
+        assertFalse(writeBuffer.hasRemaining());
+        assertTrue(sinkConduit.flush());
+        final ByteBuffer readBuffer = ByteBuffer.allocate(20);
+        int total = 0;
+        for (int i = 0; i < 10 && total < 8; i ++) {
+            total += sourceConduit.read(readBuffer);
+        }
+        assertEquals(8, total);
+        // the handshake is over and all data has been consumed
+        assertEquals(0, socketBufferPool.getOutstanding());
+        assertEquals(0, applicationBufferPool.getOutstanding());
+        assertReadMessage(readBuffer, "MockTest");
+        conduitMock.setReadData("channel closed");
+        sourceConduit.terminateReads();
+        sinkConduit.terminateWrites();
+        assertTrue(sinkConduit.flush());
+        assertWrittenMessage("handshake", "mock test works!", "channel closed");
+        connection.close();
+        assertEquals(0, socketBufferPool.getOutstanding());
+        assertEquals(0, applicationBufferPool.getOutstanding());
+    }
+
+    private static final class CountingPool implements Pool<ByteBuffer> {
+        private final Pool<ByteBuffer> delegate;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger allocations = new AtomicInteger();
+
+        CountingPool(final Pool<ByteBuffer> delegate) {
+            this.delegate = delegate;
+        }
+
+        int getOutstanding() {
+            return outstanding.get();
+        }
+
+        int getAllocations() {
+            return allocations.get();
+        }
+
+        public Pooled<ByteBuffer> allocate() {
+            final Pooled<ByteBuffer> pooled = delegate.allocate();
+            outstanding.incrementAndGet();
+            allocations.incrementAndGet();
+            return new Pooled<ByteBuffer>() {
+                private boolean freed;
+
+                public void discard() {
+                    free();
+                }
+
+                public void free() {
+                    if (! freed) {
+                        freed = true;
+                        outstanding.decrementAndGet();
+                        pooled.free();
+                    }
+                }
+
+                public ByteBuffer getResource() throws IllegalStateException {
+                    return pooled.getResource();
+                }
+
+                public void close() {
+                    free();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link SslHandshakeExecutor}.
+ */
+public class SslHandshakeExecutorTestCase {
+
+    @Test
+    public void inline() {
+        final SslHandshakeExecutor executor = new SslHandshakeExecutor(null, "test", 0, 0);
+        assertTrue(executor.isInline());
+        final AtomicReference<Thread> runner = new AtomicReference<>();
+        executor.execute(() -> runner.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), runner.get());
+        assertTrue(executor.admitHandshake());
+        assertEquals(1L, executor.getDelegatedTaskCount());
+        assertEquals(0L, executor.getDelegatedTaskQueueWaitTime());
+        assertEquals(0, executor.getHandshakeThreadCount());
+        try {
+            executor.runInline(() -> {
+                throw new IllegalStateException();
+            });
+            fail("task failure expected");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(2L, executor.getDelegatedTaskCount());
+        assertEquals(1L, executor.getFailedHandshakeCount());
+    }
+
+    @Test
+    public void dedicatedThreads() throws InterruptedException {
+        final SslHandshakeExecutor executor = new SslHandshakeExecutor(null, "test", 1, 4);
+        assertFalse(executor.isInline());
+        final AtomicReference<Thread> runner = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(() -> {
+            runner.set(Thread.currentThread());
+            done.countDown();
+        });
+        assertTrue(done.await(10L, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), runner.get());
+        assertTrue(runner.get().isDaemon());
+        assertEquals(1, executor.getHandshakeThreadCount());
+        assertEquals(4, executor.getMaxDelegatedTaskQueueSize());
+        executor.handshakeFinished(null, System.currentTimeMillis());
+        assertEquals(1L, executor.getHandshakeCount());
+    }
+
+    @Test
+    public void resumption() throws Exception {
+        final SslHandshakeExecutor executor = new SslHandshakeExecutor(null, "test", 0, 0);
+        final SSLSession session = SSLContext.getDefault().createSSLEngine().getSession();
+        // a session created while the handshake ran is a full handshake
+        executor.handshakeFinished(session, session.getCreationTime());
+        // a session older than the handshake was resumed
+        executor.handshakeFinished(session, session.getCreationTime() + 1);
+        executor.handshakeFinished(session, session.getCreationTime() + 1);
+        assertEquals(3L, executor.getHandshakeCount());
+        assertEquals(1L, executor.getFullHandshakeCount());
+        assertEquals(2L, executor.getResumedHandshakeCount());
+        assertEquals(2.0 / 3.0, executor.getResumptionRatio(), 0.0001);
+        assertEquals(0, executor.getServerSessionCount());
+    }
+
+    @Test
+    public void saturation() throws InterruptedException {
+        final SslHandshakeExecutor executor = new SslHandshakeExecutor(null, "test", 1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(10L, TimeUnit.SECONDS));
+        // the single thread is busy, so this one fills the queue
+        executor.execute(() -> {});
+        assertEquals(1, executor.getDelegatedTaskQueueSize());
+        assertFalse(executor.admitHandshake());
+        assertEquals(1L, executor.getRejectedHandshakeCount());
+        try {
+            executor.execute(() -> {});
+            fail("rejection expected");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1L, executor.getFailedHandshakeCount());
+        release.countDown();
+    }
+}
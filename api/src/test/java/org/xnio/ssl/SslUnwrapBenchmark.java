@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.ssl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+import org.jmock.Mockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.xnio.BufferAllocator;
+import org.xnio.ByteBufferSlicePool;
+import org.xnio.conduits.StreamSourceConduit;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.StreamConnectionMock;
+import org.xnio.mock.XnioIoThreadMock;
+import org.xnio.mock.XnioWorkerMock;
+import org.xnio.ssl.mock.SSLEngineMock;
+
+/**
+ * Measures the cost of reading bulk data through the {@link JsseSslStreamSourceConduit}, with an
+ * {@link SSLEngineMock} in place of a real engine so that only the conduit overhead is measured; not run as part of the
+ * test suite.  Each round feeds a batch of records to the underlying conduit mock and reads them back with
+ * destination buffers of different sizes, reporting the time and the number of {@code read} calls per record.
+ * <p>
+ * Usage: {@code SslUnwrapBenchmark [rounds]}
+ */
+public final class SslUnwrapBenchmark {
+
+    private static final int RECORD_SIZE = 1024;
+    // the conduit mock holds up to 10000 bytes of read data
+    private static final int RECORDS_PER_ROUND = 9;
+    private static final int[] DESTINATION_SIZES = { RECORD_SIZE, 4 * RECORD_SIZE, RECORDS_PER_ROUND * RECORD_SIZE };
+
+    private SslUnwrapBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        final XnioIoThreadMock threadMock = worker.chooseThread();
+        threadMock.start();
+        try {
+            // warm up
+            for (int size : DESTINATION_SIZES) {
+                run(worker, threadMock, size, rounds / 4);
+            }
+            for (int size : DESTINATION_SIZES) {
+                final long[] results = run(worker, threadMock, size, rounds);
+                final long records = (long) rounds * RECORDS_PER_ROUND;
+                System.out.printf("%5d byte reads: %8.1f ns per record, %5.2f reads per record%n", size, (double) results[0] / records, (double) results[1] / records);
+            }
+        } finally {
+            threadMock.closeIoThread();
+        }
+    }
+
+    /**
+     * Read the given number of rounds of records.
+     *
+     * @return the elapsed time in nanoseconds and the number of read calls
+     */
+    private static long[] run(final XnioWorkerMock worker, final XnioIoThreadMock threadMock, final int destinationSize, final int rounds) throws IOException {
+        final Mockery context = new Mockery() {{
+            setThreadingPolicy(new Synchroniser());
+        }};
+        final String[] records = new String[RECORDS_PER_ROUND];
+        final SSLEngineMock engineMock = new RecordEngineMock(context);
+        for (int i = 0; i < RECORDS_PER_ROUND; i ++) {
+            final char[] chars = new char[RECORD_SIZE];
+            Arrays.fill(chars, (char) ('a' + i));
+            final String record = new String(chars);
+            records[i] = record.toUpperCase();
+            engineMock.addWrapEntry(record, records[i]);
+        }
+        final ConduitMock conduitMock = new ConduitMock(worker, threadMock);
+        conduitMock.enableReads(true);
+        final ByteBufferSlicePool socketBufferPool = new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, 17000, 17000 * 16);
+        final ByteBufferSlicePool applicationBufferPool = new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, 17000, 17000 * 16);
+        final JsseSslStreamConnection connection = new JsseSslStreamConnection(new StreamConnectionMock(conduitMock), engineMock, socketBufferPool, applicationBufferPool, false);
+        connection.startHandshake();
+        final StreamSourceConduit sourceConduit = connection.getSourceChannel().getConduit();
+        final ByteBuffer dst = ByteBuffer.allocate(destinationSize);
+        final long roundSize = (long) RECORDS_PER_ROUND * RECORD_SIZE;
+        long reads = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < rounds; i ++) {
+            conduitMock.setReadData(records);
+            long received = 0;
+            while (received < roundSize) {
+                final int res = sourceConduit.read(dst);
+                reads ++;
+                if (res <= 0) {
+                    throw new IllegalStateException("only " + received + " of " + roundSize + " bytes read");
+                }
+                received += res;
+                dst.clear();
+            }
+        }
+        return new long[] { System.nanoTime() - start, reads };
+    }
+
+    /**
+     * An engine mock that, like a real engine, consumes at most one record from the source buffer per unwrap.
+     */
+    private static final class RecordEngineMock extends SSLEngineMock {
+
+        RecordEngineMock(final Mockery mockery) {
+            super(mockery);
+        }
+
+        @Override
+        public synchronized SSLEngineResult unwrap(final ByteBuffer src, final ByteBuffer[] dsts, final int offset, final int length) throws SSLException {
+            final int limit = src.limit();
+            src.limit(Math.min(limit, src.position() + RECORD_SIZE));
+            try {
+                return super.unwrap(src, dsts, offset, length);
+            } finally {
+                src.limit(limit);
+            }
+        }
+    }
+}
@@ -258,6 +258,8 @@ public class SSLEngineMock extends SSLEngine {
                     will(returnValue(16916));
                     oneOf(sessionMock).getApplicationBufferSize();
                     will(returnValue(16921));
+                    allowing(sessionMock).getCreationTime();
+                    will(returnValue(0L));
                 }});
             }
             else {
@@ -266,6 +268,8 @@ public class SSLEngineMock extends SSLEngine {
                     will(returnValue(16916));
                     allowing(sessionMock).getApplicationBufferSize();
                     will(returnValue(16921));
+                    allowing(sessionMock).getCreationTime();
+                    will(returnValue(0L));
                 }});
             }
             return sessionMock;
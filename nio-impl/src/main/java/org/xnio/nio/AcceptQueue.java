@@ -0,0 +1,201 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A bounded lock-free single-producer, single-consumer queue of accepted channels, carrying the time each channel was
+ * accepted and published.  The accept thread is the only producer and one I/O thread is the only consumer.
+ * <p>
+ * The producer {@link #stage(SocketChannel, long) stages} any number of channels into free slots without making them
+ * visible, and then {@link #publish(long) publishes} the whole batch with a single ordered write of the tail index.
+ * Each side caches the other side's index and only re-reads it when the cached value says the queue is full or empty.
+ * <p>
+ * A scheduled flag lets the producer notify the consumer once per batch rather than once per channel: the producer
+ * only wakes the consumer if it wins {@link #markScheduled()}, and the consumer {@link #clearScheduled() clears} the
+ * flag before it starts draining.
+ */
+final class AcceptQueue {
+
+    private final SocketChannel[] channels;
+    private final long[] acceptTimes;
+    private final long[] publishTimes;
+    private final int mask;
+
+    // written by the consumer, read by the producer
+    @SuppressWarnings("unused")
+    private volatile long head;
+    // written by the producer, read by the consumer
+    @SuppressWarnings("unused")
+    private volatile long tail;
+    private volatile int scheduled;
+
+    private static final AtomicLongFieldUpdater<AcceptQueue> headUpdater = AtomicLongFieldUpdater.newUpdater(AcceptQueue.class, "head");
+    private static final AtomicLongFieldUpdater<AcceptQueue> tailUpdater = AtomicLongFieldUpdater.newUpdater(AcceptQueue.class, "tail");
+    private static final AtomicIntegerFieldUpdater<AcceptQueue> scheduledUpdater = AtomicIntegerFieldUpdater.newUpdater(AcceptQueue.class, "scheduled");
+
+    // producer-only state
+    private long headCache;
+    private int staged;
+
+    // consumer-only state
+    private long tailCache;
+    private long lastAcceptTime;
+    private long lastPublishTime;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param capacity the capacity, which is rounded up to a power of two
+     */
+    AcceptQueue(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        channels = new SocketChannel[size];
+        acceptTimes = new long[size];
+        publishTimes = new long[size];
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return channels.length;
+    }
+
+    /**
+     * Stage a channel for the next {@link #publish(long)}.  Must only be called by the producer.
+     *
+     * @param channel the channel
+     * @param acceptTime the {@link System#nanoTime()} at which the channel was accepted
+     * @return {@code true} if the channel was staged, {@code false} if the queue is full
+     */
+    boolean stage(final SocketChannel channel, final long acceptTime) {
+        final long index = tail + staged;
+        if (index - headCache == channels.length) {
+            headCache = head;
+            if (index - headCache == channels.length) {
+                return false;
+            }
+        }
+        final int slot = (int) index & mask;
+        channels[slot] = channel;
+        acceptTimes[slot] = acceptTime;
+        staged ++;
+        return true;
+    }
+
+    /**
+     * Make all staged channels visible to the consumer.  Must only be called by the producer.
+     *
+     * @param publishTime the current {@link System#nanoTime()}
+     * @return the number of channels published
+     */
+    int publish(final long publishTime) {
+        final int staged = this.staged;
+        if (staged == 0) {
+            return 0;
+        }
+        final long tail = this.tail;
+        for (long i = tail; i < tail + staged; i ++) {
+            publishTimes[(int) i & mask] = publishTime;
+        }
+        this.staged = 0;
+        tailUpdater.lazySet(this, tail + staged);
+        return staged;
+    }
+
+    /**
+     * Remove the next published channel.  Must only be called by the consumer.
+     *
+     * @return the channel, or {@code null} if none is published
+     */
+    SocketChannel poll() {
+        final long head = this.head;
+        if (head == tailCache) {
+            tailCache = tail;
+            if (head == tailCache) {
+                return null;
+            }
+        }
+        final int slot = (int) head & mask;
+        final SocketChannel channel = channels[slot];
+        channels[slot] = null;
+        lastAcceptTime = acceptTimes[slot];
+        lastPublishTime = publishTimes[slot];
+        headUpdater.lazySet(this, head + 1);
+        return channel;
+    }
+
+    /**
+     * Mark the consumer as scheduled to drain the queue.  Called by the producer after {@link #publish(long)}, and by
+     * the consumer when it reschedules itself.
+     *
+     * @return {@code true} if the consumer was not already scheduled, in which case the caller must schedule it
+     */
+    boolean markScheduled() {
+        // a full fence, so that either the consumer sees the new tail or we see the flag cleared
+        return scheduledUpdater.getAndSet(this, 1) == 0;
+    }
+
+    /**
+     * Clear the scheduled flag.  Must only be called by the consumer, before it drains the queue.
+     */
+    void clearScheduled() {
+        scheduled = 0;
+    }
+
+    /**
+     * Determine whether any published channels remain.  Must only be called by the consumer.
+     *
+     * @return {@code true} if no published channels remain
+     */
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Get the accept time of the channel last returned by {@link #poll()}.  Must only be called by the consumer.
+     *
+     * @return the accept time
+     */
+    long getLastAcceptTime() {
+        return lastAcceptTime;
+    }
+
+    /**
+     * Get the publish time of the channel last returned by {@link #poll()}.  Must only be called by the consumer.
+     *
+     * @return the publish time
+     */
+    long getLastPublishTime() {
+        return lastPublishTime;
+    }
+
+    /**
+     * Get the number of published channels not yet removed.  May be called from any thread.
+     *
+     * @return the number of queued channels
+     */
+    int size() {
+        // read head first so that the result is never negative
+        final long head = this.head;
+        return (int) (tail - head);
+    }
+}
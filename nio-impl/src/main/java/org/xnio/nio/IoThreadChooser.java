@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xnio.IoThreadAssignment;
+
+/**
+ * A strategy for assigning channels to I/O threads.  Load-aware strategies use the counters maintained by each
+ * {@link WorkerThread}, and record each assignment on the chosen thread so that a burst of assignments is spread out
+ * before the threads get around to updating their counters.
+ */
+abstract class IoThreadChooser {
+
+    /**
+     * Choose a thread.
+     *
+     * @param threads the threads to choose from, of which there are at least two
+     * @return the chosen thread
+     */
+    abstract WorkerThread choose(WorkerThread[] threads);
+
+    /**
+     * Create a chooser for the given assignment strategy.
+     *
+     * @param assignment the assignment strategy
+     * @return the chooser, or {@code null} for {@link IoThreadAssignment#RANDOM}, which needs no state
+     */
+    static IoThreadChooser create(final IoThreadAssignment assignment) {
+        switch (assignment) {
+            case ROUND_ROBIN: return new RoundRobin();
+            case LEAST_KEYS: return new LeastKeys();
+            case LEAST_LOOP_TIME: return new LeastLoopTime();
+            case POWER_OF_TWO_CHOICES: return new PowerOfTwoChoices();
+            default: return null;
+        }
+    }
+
+    static final class RoundRobin extends IoThreadChooser {
+        private final AtomicInteger next = new AtomicInteger();
+
+        WorkerThread choose(final WorkerThread[] threads) {
+            return threads[(next.getAndIncrement() & Integer.MAX_VALUE) % threads.length];
+        }
+    }
+
+    static final class LeastKeys extends IoThreadChooser {
+        WorkerThread choose(final WorkerThread[] threads) {
+            final int length = threads.length;
+            // start at a random thread so that ties do not always go to the first one
+            final int start = ThreadLocalRandom.current().nextInt(length);
+            WorkerThread best = threads[start];
+            int bestLoad = best.getKeyLoad();
+            for (int i = 1; i < length && bestLoad > 0; i ++) {
+                final WorkerThread thread = threads[(start + i) % length];
+                final int load = thread.getKeyLoad();
+                if (load < bestLoad) {
+                    best = thread;
+                    bestLoad = load;
+                }
+            }
+            best.assigned();
+            return best;
+        }
+    }
+
+    static final class LeastLoopTime extends IoThreadChooser {
+        WorkerThread choose(final WorkerThread[] threads) {
+            final int length = threads.length;
+            final int start = ThreadLocalRandom.current().nextInt(length);
+            WorkerThread best = threads[start];
+            long bestTime = best.getLoopLoad();
+            int bestKeys = best.getKeyLoad();
+            for (int i = 1; i < length; i ++) {
+                final WorkerThread thread = threads[(start + i) % length];
+                final long time = thread.getLoopLoad();
+                if (time > bestTime) continue;
+                final int keys = thread.getKeyLoad();
+                // equally busy threads (typically idle ones) are told apart by their channel count
+                if (time < bestTime || keys < bestKeys) {
+                    best = thread;
+                    bestTime = time;
+                    bestKeys = keys;
+                }
+            }
+            best.assigned();
+            return best;
+        }
+    }
+
+    static final class PowerOfTwoChoices extends IoThreadChooser {
+        WorkerThread choose(final WorkerThread[] threads) {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int length = threads.length;
+            final int a = random.nextInt(length);
+            int b = random.nextInt(length - 1);
+            if (b >= a) b ++;
+            final WorkerThread first = threads[a];
+            final WorkerThread second = threads[b];
+            final WorkerThread best = second.getKeyLoad() < first.getKeyLoad() ? second : first;
+            best.assigned();
+            return best;
+        }
+    }
+}
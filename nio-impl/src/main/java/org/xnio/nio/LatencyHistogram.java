@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+/**
+ * A fixed-size log-linear histogram of non-negative values.  Each power of two is split into eight linear
+ * sub-buckets, so a recorded value is known to within 12.5%, and the whole range of {@code long} fits in under 500
+ * buckets.  Recording is a couple of bit operations and an array increment.
+ * <p>
+ * Only one thread may record values.  Other threads may read the histogram at any time, in which case they see
+ * approximate values.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SUB_MASK = SUB_COUNT - 1;
+
+    static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+    private static final long[] BUCKET_BOUNDS;
+
+    static {
+        final long[] bounds = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            bounds[i] = lowerBound(i);
+        }
+        BUCKET_BOUNDS = bounds;
+    }
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long max;
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Record a value.  Negative values, which may be caused by clock adjustments, are recorded as zero.
+     *
+     * @param value the value
+     */
+    void record(long value) {
+        if (value < 0L) value = 0L;
+        counts[index(value)] ++;
+        count ++;
+        if (value > max) max = value;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Get an estimate of the given percentile.  The estimate is the highest value of the bucket holding the
+     * percentile, but never more than the maximum recorded value.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the estimate, or 0 if nothing was recorded
+     */
+    long getPercentile(final double percentile) {
+        return getPercentile(getCounts(), max, percentile);
+    }
+
+    /**
+     * Add this histogram's bucket counts to the given array, so that several single-writer histograms can be read as
+     * one.
+     *
+     * @param target the array to add to, of length {@link #BUCKET_COUNT}
+     */
+    void addCountsTo(final long[] target) {
+        final long[] counts = this.counts;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            target[i] += counts[i];
+        }
+    }
+
+    /**
+     * Get an estimate of the given percentile of a set of bucket counts.
+     *
+     * @param counts the bucket counts
+     * @param max the maximum recorded value
+     * @param percentile the percentile, from 0 to 100
+     * @return the estimate, or 0 if nothing was recorded
+     * @see #getPercentile(double)
+     */
+    static long getPercentile(final long[] counts, final long max, final double percentile) {
+        long total = 0L;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        final long target = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            seen += counts[i];
+            if (seen >= target) {
+                final long highest = i + 1 == BUCKET_COUNT ? Long.MAX_VALUE : lowerBound(i + 1) - 1;
+                return Math.min(highest, max);
+            }
+        }
+        return max;
+    }
+
+    static long[] getBucketBounds() {
+        return BUCKET_BOUNDS.clone();
+    }
+
+    static int index(final long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        final int exp = 63 - Long.numberOfLeadingZeros(value);
+        return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exp - SUB_BITS)) & SUB_MASK);
+    }
+
+    static long lowerBound(final int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int exp = (index >> SUB_BITS) + SUB_BITS - 1;
+        return (long) (SUB_COUNT + (index & SUB_MASK)) << (exp - SUB_BITS);
+    }
+}
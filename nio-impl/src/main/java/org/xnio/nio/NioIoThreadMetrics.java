@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.management.XnioIoThreadMXBean;
+
+/**
+ * The metrics of one {@link WorkerThread}.  The recording methods must only be called by that thread.  Per-task
+ * values go straight into the histograms; loop totals are accumulated by the thread and published once per loop.
+ */
+final class NioIoThreadMetrics implements XnioIoThreadMXBean {
+
+    private static final long RATE_INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+
+    private final WorkerThread thread;
+    private final TaskQueue taskQueue;
+    private final boolean schedulingDelaysTracked;
+    private final LatencyHistogram taskTimes = new LatencyHistogram();
+    private final LatencyHistogram schedulingDelays = new LatencyHistogram();
+
+    private volatile long loopCount;
+    private volatile long taskCount;
+    private volatile long selectedKeyCount;
+    private volatile long selectTime;
+    private volatile long handlerTime;
+    private volatile long taskTime;
+
+    // guarded by this
+    private long rateSampleTime = System.nanoTime();
+    private long rateSampleCount;
+    private double rate;
+
+    NioIoThreadMetrics(final WorkerThread thread, final TaskQueue taskQueue) {
+        this.thread = thread;
+        this.taskQueue = taskQueue;
+        schedulingDelaysTracked = taskQueue.isTrackingEnqueueTime();
+    }
+
+    void recordTask(final long enqueueTime, final long start, final long end) {
+        if (schedulingDelaysTracked) {
+            schedulingDelays.record(start - enqueueTime);
+        }
+        taskTimes.record(end - start);
+    }
+
+    void recordLoop(final int tasks, final long taskTime, final long selectTime, final int selectedKeys, final long handlerTime) {
+        loopCount ++;
+        if (tasks > 0) {
+            taskCount += tasks;
+            this.taskTime += taskTime;
+        }
+        this.selectTime += selectTime;
+        if (selectedKeys > 0) {
+            selectedKeyCount += selectedKeys;
+            this.handlerTime += handlerTime;
+        }
+    }
+
+    public String getProviderName() {
+        return "nio";
+    }
+
+    public String getWorkerName() {
+        return thread.getWorker().getName();
+    }
+
+    public String getName() {
+        return thread.getName();
+    }
+
+    public long getLoopCount() {
+        return loopCount;
+    }
+
+    public long getTaskCount() {
+        return taskCount;
+    }
+
+    public double getTasksPerLoop() {
+        final long loopCount = this.loopCount;
+        return loopCount == 0L ? 0.0 : (double) taskCount / (double) loopCount;
+    }
+
+    public int getTaskQueueSize() {
+        return taskQueue.size();
+    }
+
+    public long getSelectedKeyCount() {
+        return selectedKeyCount;
+    }
+
+    public synchronized double getSelectedKeysPerSecond() {
+        final long now = System.nanoTime();
+        final long elapsed = now - rateSampleTime;
+        if (elapsed >= RATE_INTERVAL) {
+            final long count = selectedKeyCount;
+            rate = (double) (count - rateSampleCount) * (double) TimeUnit.SECONDS.toNanos(1L) / (double) elapsed;
+            rateSampleCount = count;
+            rateSampleTime = now;
+        }
+        return rate;
+    }
+
+    public long getSelectTime() {
+        return selectTime;
+    }
+
+    public long getHandlerTime() {
+        return handlerTime;
+    }
+
+    public long getTaskTime() {
+        return taskTime;
+    }
+
+    public long[] getHistogramBucketBounds() {
+        return LatencyHistogram.getBucketBounds();
+    }
+
+    public long[] getTaskExecutionTimeHistogram() {
+        return taskTimes.getCounts();
+    }
+
+    public long getTaskExecutionTimeMedian() {
+        return taskTimes.getPercentile(50.0);
+    }
+
+    public long getTaskExecutionTime99thPercentile() {
+        return taskTimes.getPercentile(99.0);
+    }
+
+    public long getTaskExecutionTimeMax() {
+        return taskTimes.getMax();
+    }
+
+    public long[] getSchedulingDelayHistogram() {
+        return schedulingDelays.getCounts();
+    }
+
+    public long getSchedulingDelayMedian() {
+        return schedulingDelays.getPercentile(50.0);
+    }
+
+    public long getSchedulingDelay99thPercentile() {
+        return schedulingDelays.getPercentile(99.0);
+    }
+
+    public long getSchedulingDelayMax() {
+        return schedulingDelays.getMax();
+    }
+}
@@ -25,7 +25,6 @@ import static org.xnio.nio.Log.tcpServerLog;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
@@ -59,12 +58,15 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
 
     private final NioTcpServerHandle[] handles;
 
-    private final ServerSocketChannel channel;
+    // either one channel shared by all threads, or one channel per thread bound with SO_REUSEPORT
+    private final ServerSocketChannel[] channels;
+    private final boolean perThreadChannels;
     private final ServerSocket socket;
     private final ManagementRegistration mbeanHandle;
 
     private static final Set<Option<?>> options = Option.setBuilder()
             .add(Options.REUSE_ADDRESSES)
+            .add(Options.REUSE_PORT)
             .add(Options.RECEIVE_BUFFER)
             .add(Options.SEND_BUFFER)
             .add(Options.KEEP_ALIVE)
@@ -84,6 +86,7 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     private volatile int tcpNoDelay;
     @SuppressWarnings("unused")
     private volatile int sendBuffer = -1;
+    private volatile SocketOptionTemplate socketTemplate = SocketOptionTemplate.DEFAULT;
     @SuppressWarnings("unused")
     private volatile long connectionStatus = CONN_LOW_MASK | CONN_HIGH_MASK;
     @SuppressWarnings("unused")
@@ -111,15 +114,20 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
 
     private static final AtomicLongFieldUpdater<NioTcpServer> connectionStatusUpdater = AtomicLongFieldUpdater.newUpdater(NioTcpServer.class, "connectionStatus");
 
-    NioTcpServer(final NioXnioWorker worker, final ServerSocketChannel channel, final OptionMap optionMap) throws IOException {
+    NioTcpServer(final NioXnioWorker worker, final ServerSocketChannel[] channels, final OptionMap optionMap) throws IOException {
         super(worker);
-        this.channel = channel;
+        this.channels = channels;
         final WorkerThread[] threads = worker.getAll();
         final int threadCount = threads.length;
         if (threadCount == 0) {
             throw log.noThreads();
         }
-        final int tokens = optionMap.get(Options.BALANCING_TOKENS, -1);
+        perThreadChannels = channels.length > 1;
+        if (perThreadChannels && channels.length != threadCount) {
+            throw new IllegalArgumentException("Expected one channel per thread");
+        }
+        // with per-thread channels the kernel does the balancing, and a thread without a token would strand connections
+        final int tokens = perThreadChannels ? -1 : optionMap.get(Options.BALANCING_TOKENS, -1);
         final int connections = optionMap.get(Options.BALANCING_CONNECTIONS, 16);
         if (tokens != -1) {
             if (tokens < 1 || tokens >= threadCount) {
@@ -130,7 +138,7 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             }
             tokenConnectionCount = connections;
         }
-        socket = channel.socket();
+        socket = channels[0].socket();
         if (optionMap.contains(Options.SEND_BUFFER)) {
             final int sendBufferSize = optionMap.get(Options.SEND_BUFFER, DEFAULT_BUFFER_SIZE);
             if (sendBufferSize < 1) {
@@ -147,6 +155,7 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         if (optionMap.contains(Options.TCP_NODELAY)) {
             tcpNoDelayUpdater.lazySet(this, optionMap.get(Options.TCP_NODELAY, false) ? 1 : 0);
         }
+        updateSocketTemplate();
         if (optionMap.contains(Options.READ_TIMEOUT)) {
             readTimeoutUpdater.lazySet(this, optionMap.get(Options.READ_TIMEOUT, 0));
         }
@@ -179,7 +188,7 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         }
         final NioTcpServerHandle[] handles = new NioTcpServerHandle[threadCount];
         for (int i = 0, length = threadCount; i < length; i++) {
-            final SelectionKey key = threads[i].registerChannel(channel);
+            final SelectionKey key = threads[i].registerChannel(channels[perThreadChannels ? i : 0]);
             handles[i] = new NioTcpServerHandle(this, key, threads[i], i < perThreadHighRem ? perThreadHigh + 1 : perThreadHigh, i < perThreadLowRem ? perThreadLow + 1 : perThreadLow);
             key.attach(handles[i]);
         }
@@ -242,8 +251,11 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
 
     public void close() throws IOException {
         try {
-            channel.close();
+            channels[0].close();
         } finally {
+            for (int i = 1; i < channels.length; i ++) {
+                safeClose(channels[i]);
+            }
             for (NioTcpServerHandle handle : handles) {
                 handle.getWorkerThread().cancelKey(handle.getSelectionKey());
             }
@@ -258,6 +270,8 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     public <T> T getOption(final Option<T> option) throws UnsupportedOptionException, IOException {
         if (option == Options.REUSE_ADDRESSES) {
             return option.cast(Boolean.valueOf(socket.getReuseAddress()));
+        } else if (option == Options.REUSE_PORT) {
+            return option.cast(Boolean.valueOf(perThreadChannels));
         } else if (option == Options.RECEIVE_BUFFER) {
             return option.cast(Integer.valueOf(socket.getReceiveBufferSize()));
         } else if (option == Options.SEND_BUFFER) {
@@ -286,14 +300,19 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         final Object old;
         if (option == Options.REUSE_ADDRESSES) {
             old = Boolean.valueOf(socket.getReuseAddress());
-            socket.setReuseAddress(Options.REUSE_ADDRESSES.cast(value, Boolean.FALSE).booleanValue());
+            final boolean newValue = Options.REUSE_ADDRESSES.cast(value, Boolean.FALSE).booleanValue();
+            for (ServerSocketChannel channel : channels) {
+                channel.socket().setReuseAddress(newValue);
+            }
         } else if (option == Options.RECEIVE_BUFFER) { 
             old = Integer.valueOf(socket.getReceiveBufferSize());
             final int newValue = Options.RECEIVE_BUFFER.cast(value, Integer.valueOf(DEFAULT_BUFFER_SIZE)).intValue();
             if (newValue < 1) {
                 throw log.optionOutOfRange("RECEIVE_BUFFER");
             }
-            socket.setReceiveBufferSize(newValue);
+            for (ServerSocketChannel channel : channels) {
+                channel.socket().setReceiveBufferSize(newValue);
+            }
         } else if (option == Options.SEND_BUFFER) {
             final int newValue = Options.SEND_BUFFER.cast(value, Integer.valueOf(DEFAULT_BUFFER_SIZE)).intValue();
             if (newValue < 1) {
@@ -301,12 +320,16 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             }
             final int oldValue = sendBufferUpdater.getAndSet(this, newValue);
             old = oldValue == -1 ? null : Integer.valueOf(oldValue);
+            updateSocketTemplate();
         } else if (option == Options.KEEP_ALIVE) {
             old = Boolean.valueOf(keepAliveUpdater.getAndSet(this, Options.KEEP_ALIVE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+            updateSocketTemplate();
         } else if (option == Options.TCP_OOB_INLINE) {
             old = Boolean.valueOf(oobInlineUpdater.getAndSet(this, Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+            updateSocketTemplate();
         } else if (option == Options.TCP_NODELAY) {
             old = Boolean.valueOf(tcpNoDelayUpdater.getAndSet(this, Options.TCP_NODELAY.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+            updateSocketTemplate();
         } else if (option == Options.READ_TIMEOUT) {
             old = Integer.valueOf(readTimeoutUpdater.getAndSet(this, Options.READ_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
         } else if (option == Options.WRITE_TIMEOUT) {
@@ -369,6 +392,10 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         return oldVal;
     }
 
+    private synchronized void updateSocketTemplate() {
+        socketTemplate = SocketOptionTemplate.of(keepAlive != 0, oobInline != 0, tcpNoDelay != 0, sendBuffer);
+    }
+
     private static int getHighWater(final long value) {
         return (int) ((value & CONN_HIGH_MASK) >> CONN_HIGH_BIT);
     }
@@ -386,35 +413,36 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         final SocketChannel accepted;
         boolean ok = false;
         try {
-            accepted = channel.accept();
+            accepted = channels[perThreadChannels ? current.getNumber() : 0].accept();
             if (accepted != null) try {
-                final SocketAddress localAddress = accepted.getLocalAddress();
-                int hash;
-                if (localAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) localAddress;
-                    hash = address.getAddress().hashCode() * 23 + address.getPort();
-                } else if (localAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) localAddress).getName().hashCode();
-                } else {
-                    hash = localAddress.hashCode();
-                }
-                final SocketAddress remoteAddress = accepted.getRemoteAddress();
-                if (remoteAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) remoteAddress;
-                    hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
-                } else if (remoteAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
+                final WorkerThread ioThread;
+                if (perThreadChannels) {
+                    // the kernel has already spread connections over the threads' sockets
+                    ioThread = current;
                 } else {
-                    hash = localAddress.hashCode() * 23 + hash;
+                    final SocketAddress localAddress = accepted.getLocalAddress();
+                    int hash;
+                    if (localAddress instanceof InetSocketAddress) {
+                        final InetSocketAddress address = (InetSocketAddress) localAddress;
+                        hash = address.getAddress().hashCode() * 23 + address.getPort();
+                    } else if (localAddress instanceof LocalSocketAddress) {
+                        hash = ((LocalSocketAddress) localAddress).getName().hashCode();
+                    } else {
+                        hash = localAddress.hashCode();
+                    }
+                    final SocketAddress remoteAddress = accepted.getRemoteAddress();
+                    if (remoteAddress instanceof InetSocketAddress) {
+                        final InetSocketAddress address = (InetSocketAddress) remoteAddress;
+                        hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
+                    } else if (remoteAddress instanceof LocalSocketAddress) {
+                        hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
+                    } else {
+                        hash = localAddress.hashCode() * 23 + hash;
+                    }
+                    ioThread = worker.chooseThread(hash);
                 }
                 accepted.configureBlocking(false);
-                final Socket socket = accepted.socket();
-                socket.setKeepAlive(keepAlive != 0);
-                socket.setOOBInline(oobInline != 0);
-                socket.setTcpNoDelay(tcpNoDelay != 0);
-                final int sendBuffer = this.sendBuffer;
-                if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
-                final WorkerThread ioThread = worker.getIoThread(hash);
+                socketTemplate.apply(accepted.socket());
                 final SelectionKey selectionKey = ioThread.registerChannel(accepted);
                 final NioSocketStreamConnection newConnection = new NioSocketStreamConnection(ioThread, selectionKey, handle);
                 newConnection.setOption(Options.READ_TIMEOUT, Integer.valueOf(readTimeout));
@@ -452,7 +480,7 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     }
 
     public boolean isOpen() {
-        return channel.isOpen();
+        return channels[0].isOpen();
     }
 
     public SocketAddress getLocalAddress() {
@@ -34,6 +34,7 @@ import org.xnio.Xnio;
 import org.xnio.OptionMap;
 import org.xnio.XnioWorker;
 import org.xnio.management.XnioProviderMXBean;
+import org.xnio.management.XnioIoThreadMXBean;
 import org.xnio.management.XnioServerMXBean;
 import org.xnio.management.XnioWorkerMXBean;
 
@@ -321,6 +322,10 @@ final class NioXnio extends Xnio {
         return Xnio.register(serverMXBean);
     }
 
+    protected static Closeable register(XnioIoThreadMXBean ioThreadMXBean) {
+        return Xnio.register(ioThreadMXBean);
+    }
+
     private static final class FinalizableSelectorHolder {
         final Selector selector;
 
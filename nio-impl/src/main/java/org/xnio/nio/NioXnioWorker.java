@@ -20,13 +20,16 @@ package org.xnio.nio;
 
 import static org.xnio.IoUtils.safeClose;
 import static org.xnio.nio.Log.log;
+import static org.xnio.nio.Log.tcpServerLog;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
 import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
@@ -46,6 +49,7 @@ import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
 import org.xnio.ManagementRegistration;
 import org.xnio.ClosedWorkerException;
+import org.xnio.IoThreadAssignment;
 import org.xnio.IoUtils;
 import org.xnio.Option;
 import org.xnio.OptionMap;
@@ -54,6 +58,7 @@ import org.xnio.StreamConnection;
 import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.channels.MulticastMessageChannel;
+import org.xnio.management.XnioIoThreadMXBean;
 import org.xnio.management.XnioServerMXBean;
 import org.xnio.management.XnioWorkerMXBean;
 
@@ -64,7 +69,26 @@ final class NioXnioWorker extends XnioWorker {
 
     private static final int CLOSE_REQ = (1 << 31);
     private static final int CLOSE_COMP = (1 << 30);
+
+    // StandardSocketOptions.SO_REUSEPORT only exists as of Java 9
+    private static final SocketOption<Boolean> SO_REUSEPORT;
+
+    static {
+        SocketOption<Boolean> reusePort;
+        try {
+            @SuppressWarnings("unchecked")
+            final SocketOption<Boolean> option = (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+            reusePort = option;
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            reusePort = null;
+        }
+        SO_REUSEPORT = reusePort;
+    }
     private final long workerStackSize;
+    private final int workerTimerTick;
+    private final int workerIoSpinCount;
+    private final IoThreadAssignment ioThreadAssignment;
+    private final IoThreadChooser threadChooser;
 
     private volatile int state;
 
@@ -88,6 +112,11 @@ final class NioXnioWorker extends XnioWorker {
         final NioXnio xnio = (NioXnio) builder.getXnio();
         final int threadCount = builder.getWorkerIoThreads();
         this.workerStackSize = builder.getWorkerStackSize();
+        this.workerTimerTick = builder.getWorkerTimerTick();
+        final long timerTickNanos = TimeUnit.MILLISECONDS.toNanos(workerTimerTick);
+        this.workerIoSpinCount = builder.getWorkerIoSpinCount();
+        this.ioThreadAssignment = builder.getIoThreadAssignment();
+        threadChooser = IoThreadChooser.create(ioThreadAssignment);
         final String workerName = getName();
         WorkerThread[] workerThreads;
         workerThreads = new WorkerThread[threadCount];
@@ -102,7 +131,7 @@ final class NioXnioWorker extends XnioWorker {
                 } catch (IOException e) {
                     throw Log.log.unexpectedSelectorOpenProblem(e);
                 }
-                final WorkerThread workerThread = new WorkerThread(this, threadSelector, String.format("%s I/O-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i);
+                final WorkerThread workerThread = new WorkerThread(this, threadSelector, String.format("%s I/O-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i, timerTickNanos, workerIoSpinCount);
                 // Mark as daemon if the Options.THREAD_DAEMON has been set
                 if (markWorkerThreadAsDaemon) {
                     workerThread.setDaemon(true);
@@ -115,7 +144,7 @@ final class NioXnioWorker extends XnioWorker {
             } catch (IOException e) {
                 throw Log.log.unexpectedSelectorOpenProblem(e);
             }
-            acceptThread = new WorkerThread(this, threadSelector, String.format("%s Accept", workerName), threadGroup, workerStackSize, threadCount);
+            acceptThread = new WorkerThread(this, threadSelector, String.format("%s Accept", workerName), threadGroup, workerStackSize, threadCount, timerTickNanos, workerIoSpinCount);
             if (markWorkerThreadAsDaemon) {
                 acceptThread.setDaemon(true);
             }
@@ -146,7 +175,37 @@ final class NioXnioWorker extends XnioWorker {
     }
 
     protected WorkerThread chooseThread() {
-        return getIoThread(ThreadLocalRandom.current().nextInt());
+        final IoThreadChooser threadChooser = this.threadChooser;
+        if (threadChooser == null) {
+            return getIoThread(ThreadLocalRandom.current().nextInt());
+        }
+        return chooseThread(threadChooser);
+    }
+
+    /**
+     * Choose the thread for a newly accepted connection.
+     *
+     * @param hashCode the hash of the connection's addresses, used by the default assignment strategy
+     * @return the thread
+     */
+    WorkerThread chooseThread(final int hashCode) {
+        final IoThreadChooser threadChooser = this.threadChooser;
+        if (threadChooser == null) {
+            return getIoThread(hashCode);
+        }
+        return chooseThread(threadChooser);
+    }
+
+    private WorkerThread chooseThread(final IoThreadChooser threadChooser) {
+        final WorkerThread[] workerThreads = this.workerThreads;
+        final int length = workerThreads.length;
+        if (length == 0) {
+            throw log.noThreads();
+        }
+        if (length == 1) {
+            return workerThreads[0];
+        }
+        return threadChooser.choose(workerThreads);
     }
 
     public WorkerThread getIoThread(final int hashCode) {
@@ -171,19 +230,29 @@ final class NioXnioWorker extends XnioWorker {
 
     protected AcceptingChannel<StreamConnection> createTcpConnectionServer(final InetSocketAddress bindAddress, final ChannelListener<? super AcceptingChannel<StreamConnection>> acceptListener, final OptionMap optionMap) throws IOException {
         checkShutdown();
+        if (optionMap.get(Options.REUSE_PORT, false) && workerThreads.length > 1) {
+            final ServerSocketChannel[] channels = openReusePortChannels(bindAddress, optionMap);
+            if (channels != null) {
+                boolean ok = false;
+                try {
+                    final NioTcpServer server = new NioTcpServer(this, channels, optionMap);
+                    server.setAcceptListener(acceptListener);
+                    ok = true;
+                    return server;
+                } finally {
+                    if (! ok) {
+                        IoUtils.safeClose(channels);
+                    }
+                }
+            }
+            tcpServerLog.debugf("SO_REUSEPORT is not supported, using a single listening socket for %s", bindAddress);
+        }
         boolean ok = false;
         final ServerSocketChannel channel = ServerSocketChannel.open();
         try {
-            if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
-            channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, true));
-            channel.configureBlocking(false);
-            if (optionMap.contains(Options.BACKLOG)) {
-                channel.socket().bind(bindAddress, optionMap.get(Options.BACKLOG, 128));
-            } else {
-                channel.socket().bind(bindAddress);
-            }
+            bindServerChannel(channel, bindAddress, optionMap);
             if (false) {
-                final NioTcpServer server = new NioTcpServer(this, channel, optionMap);
+                final NioTcpServer server = new NioTcpServer(this, new ServerSocketChannel[] { channel }, optionMap);
                 server.setAcceptListener(acceptListener);
                 ok = true;
                 return server;
@@ -200,6 +269,50 @@ final class NioXnioWorker extends XnioWorker {
         }
     }
 
+    /**
+     * Open and bind one listening channel per I/O thread, all on the same address using {@code SO_REUSEPORT}.
+     *
+     * @return the channels, or {@code null} if {@code SO_REUSEPORT} is not supported
+     */
+    private ServerSocketChannel[] openReusePortChannels(final InetSocketAddress bindAddress, final OptionMap optionMap) throws IOException {
+        if (SO_REUSEPORT == null) {
+            return null;
+        }
+        final ServerSocketChannel[] channels = new ServerSocketChannel[workerThreads.length];
+        boolean ok = false;
+        try {
+            InetSocketAddress address = bindAddress;
+            for (int i = 0; i < channels.length; i ++) {
+                final ServerSocketChannel channel = channels[i] = ServerSocketChannel.open();
+                if (! channel.supportedOptions().contains(SO_REUSEPORT)) {
+                    return null;
+                }
+                channel.setOption(SO_REUSEPORT, Boolean.TRUE);
+                bindServerChannel(channel, address, optionMap);
+                if (i == 0) {
+                    // an ephemeral port is picked by the first bind and shared by the rest
+                    address = new InetSocketAddress(bindAddress.getAddress(), channel.socket().getLocalPort());
+                }
+            }
+            ok = true;
+            return channels;
+        } finally {
+            if (! ok) {
+                IoUtils.safeClose(channels);
+            }
+        }
+    }
+
+    private static void bindServerChannel(final ServerSocketChannel channel, final InetSocketAddress bindAddress, final OptionMap optionMap) throws IOException {
+        if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
+        channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, true));
+        channel.configureBlocking(false);
+        if (optionMap.contains(Options.BACKLOG)) {
+            channel.socket().bind(bindAddress, optionMap.get(Options.BACKLOG, 128));
+        } else {
+            channel.socket().bind(bindAddress);
+        }
+    }
 
     /** {@inheritDoc} */
     public MulticastMessageChannel createUdpServer(final InetSocketAddress bindAddress, final ChannelListener<? super MulticastMessageChannel> bindListener, final OptionMap optionMap) throws IOException {
@@ -366,6 +479,12 @@ final class NioXnioWorker extends XnioWorker {
             return option.cast(workerThreads.length);
         } else if (option.equals(Options.STACK_SIZE)) {
             return option.cast(workerStackSize);
+        } else if (option.equals(Options.WORKER_TIMER_TICK)) {
+            return option.cast(workerTimerTick);
+        } else if (option.equals(Options.WORKER_IO_SPIN_COUNT)) {
+            return option.cast(workerIoSpinCount);
+        } else if (option.equals(Options.WORKER_IO_THREAD_ASSIGNMENT)) {
+            return option.cast(ioThreadAssignment);
         } else {
             return super.getOption(option);
         }
@@ -392,6 +511,8 @@ final class NioXnioWorker extends XnioWorker {
     private class NioWorkerMetrics implements XnioWorkerMXBean,Closeable {
         private final String workerName;
         private final CopyOnWriteArrayList<XnioServerMXBean> serverMetrics = new CopyOnWriteArrayList<>();
+        private final CopyOnWriteArrayList<XnioIoThreadMXBean> ioThreadMetrics = new CopyOnWriteArrayList<>();
+        private final CopyOnWriteArrayList<ManagementRegistration> ioThreadRegistrations = new CopyOnWriteArrayList<>();
         private Closeable mbeanHandle;
 
         private NioWorkerMetrics(String workerName) {
@@ -430,6 +551,38 @@ final class NioXnioWorker extends XnioWorker {
             return NioXnioWorker.this.getWorkerQueueSize();
         }
 
+        public long getIoThreadSpinCount() {
+            long total = 0L;
+            for (WorkerThread thread : workerThreads) {
+                total += thread.getSpinCount();
+            }
+            return total;
+        }
+
+        public long getIoThreadSelectWakeupCount() {
+            long total = 0L;
+            for (WorkerThread thread : workerThreads) {
+                total += thread.getSelectWakeupCount();
+            }
+            return total;
+        }
+
+        public long getIoThreadEmptySelectCount() {
+            long total = 0L;
+            for (WorkerThread thread : workerThreads) {
+                total += thread.getEmptySelectCount();
+            }
+            return total;
+        }
+
+        public long getSslBufferPoolHitCount() {
+            return NioXnioWorker.this.getSslBufferPoolHitCount();
+        }
+
+        public long getSslBufferPoolMissCount() {
+            return NioXnioWorker.this.getSslBufferPoolMissCount();
+        }
+
         private ManagementRegistration registerServerMXBean(XnioServerMXBean serverMXBean){
             serverMetrics.addIfAbsent(serverMXBean);
             final Closeable handle = NioXnio.register(serverMXBean);
@@ -439,15 +592,36 @@ final class NioXnioWorker extends XnioWorker {
             };
         }
 
+        private ManagementRegistration registerIoThreadMXBean(XnioIoThreadMXBean ioThreadMXBean){
+            ioThreadMetrics.addIfAbsent(ioThreadMXBean);
+            final Closeable handle = NioXnio.register(ioThreadMXBean);
+            return () -> {
+                ioThreadMetrics.remove(ioThreadMXBean);
+                safeClose(handle);
+            };
+        }
+
         public Set<XnioServerMXBean> getServerMXBeans() {
             return new LinkedHashSet<>(serverMetrics);
         }
+
+        public Set<XnioIoThreadMXBean> getIoThreadMXBeans() {
+            return new LinkedHashSet<>(ioThreadMetrics);
+        }
+
         private void register(){
             this.mbeanHandle = NioXnio.register(this);
+            for (WorkerThread thread : workerThreads) {
+                ioThreadRegistrations.add(registerIoThreadMXBean(thread.getMetrics()));
+            }
         }
 
         @Override
         public void close() throws IOException {
+            for (ManagementRegistration registration : ioThreadRegistrations) {
+                safeClose(registration);
+            }
+            ioThreadRegistrations.clear();
             safeClose(mbeanHandle);
             serverMetrics.clear();
         }
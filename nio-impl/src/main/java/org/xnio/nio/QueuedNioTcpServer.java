@@ -25,21 +25,18 @@ import static org.xnio.nio.Log.tcpServerLog;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.jboss.logging.Logger;
 import org.xnio.ChannelListener;
@@ -59,6 +56,9 @@ import org.xnio.management.XnioServerMXBean;
 
 final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> implements AcceptingChannel<StreamConnection>, AcceptListenerSettable<QueuedNioTcpServer> {
     private static final String FQCN = QueuedNioTcpServer.class.getName();
+    private static final int DEFAULT_ACCEPT_BATCH_SIZE = 16;
+    private static final int DEFAULT_ACCEPT_QUEUE_CAPACITY = 1024;
+    private static final int MAX_ACCEPT_QUEUE_CAPACITY = 1 << 30;
 
     private volatile ChannelListener<? super QueuedNioTcpServer> acceptListener;
 
@@ -69,7 +69,16 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     private final ServerSocket socket;
     private final ManagementRegistration mbeanHandle;
 
-    private final List<BlockingQueue<SocketChannel>> acceptQueues;
+    private final WorkerThread[] workerThreads;
+    /**
+     * One queue per I/O thread, fed by the accept thread
+     */
+    private final AcceptQueue[] acceptQueues;
+    /**
+     * Accept and hand-off latencies, one histogram per I/O thread, each recorded only by its own thread
+     */
+    private final LatencyHistogram[] acceptLatencies;
+    private final LatencyHistogram[] handOffLatencies;
 
     private static final Set<Option<?>> options = Option.setBuilder()
             .add(Options.REUSE_ADDRESSES)
@@ -82,6 +91,8 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             .add(Options.CONNECTION_LOW_WATER)
             .add(Options.READ_TIMEOUT)
             .add(Options.WRITE_TIMEOUT)
+            .add(Options.ACCEPT_BATCH_SIZE)
+            .add(Options.ACCEPT_QUEUE_CAPACITY)
             .create();
 
     @SuppressWarnings("unused")
@@ -92,12 +103,14 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     private volatile int tcpNoDelay;
     @SuppressWarnings("unused")
     private volatile int sendBuffer = -1;
+    private volatile SocketOptionTemplate socketTemplate = SocketOptionTemplate.DEFAULT;
     @SuppressWarnings("unused")
     private volatile long connectionStatus = CONN_LOW_MASK | CONN_HIGH_MASK;
     @SuppressWarnings("unused")
     private volatile int readTimeout;
     @SuppressWarnings("unused")
     private volatile int writeTimeout;
+    private volatile int acceptBatchSize = DEFAULT_ACCEPT_BATCH_SIZE;
 
     private static final long CONN_LOW_MASK     = 0x000000007FFFFFFFL;
     private static final long CONN_LOW_BIT      = 0L;
@@ -112,8 +125,28 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
      * The current number of open connections, can only be accessed by the accept thread
      */
     private int openConnections;
+    /**
+     * Accept statistics, only written by the accept thread
+     */
+    private volatile long acceptedCount;
+    private volatile long acceptBatchCount;
+    private volatile int maxAcceptBatchSize;
+    private volatile int acceptQueuePeakSize;
+    private volatile long acceptQueueFullCount;
     private volatile boolean suspendedDueToWatermark;
     private volatile boolean suspended;
+    /**
+     * A connection accepted while the queue of its thread was full, held by the accept thread until there is room;
+     * accepting is suspended meanwhile.  Volatile only so that {@link #close()} can see it.
+     */
+    private volatile SocketChannel heldChannel;
+    private AcceptQueue heldQueue;
+    private long heldAcceptTime;
+    /**
+     * The full queue whose consumer must resume accepting once it has taken a connection off it
+     */
+    @SuppressWarnings("unused")
+    private volatile AcceptQueue blockedQueue;
 
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> keepAliveUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "keepAlive");
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> oobInlineUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "oobInline");
@@ -123,18 +156,31 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> writeTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "writeTimeout");
 
     private static final AtomicLongFieldUpdater<QueuedNioTcpServer> connectionStatusUpdater = AtomicLongFieldUpdater.newUpdater(QueuedNioTcpServer.class, "connectionStatus");
+    private static final AtomicReferenceFieldUpdater<QueuedNioTcpServer, AcceptQueue> blockedQueueUpdater = AtomicReferenceFieldUpdater.newUpdater(QueuedNioTcpServer.class, AcceptQueue.class, "blockedQueue");
     private final Runnable acceptTask = new Runnable() {
         public void run() {
             final WorkerThread current = WorkerThread.getCurrent();
             assert current != null;
-            final BlockingQueue<SocketChannel> queue = acceptQueues.get(current.getNumber());
+            final AcceptQueue queue = acceptQueues[current.getNumber()];
+            queue.clearScheduled();
             ChannelListeners.invokeChannelListener(QueuedNioTcpServer.this, getAcceptListener());
-            if (! queue.isEmpty() && !suspendedDueToWatermark) {
+            if (! queue.isEmpty() && !suspendedDueToWatermark && queue.markScheduled()) {
                 current.execute(this);
             }
         }
     };
 
+    private final Runnable unblockTask = new Runnable() {
+        public void run() {
+            if (heldChannel != null && stageHeld()) {
+                dispatchBatch(1);
+                if (! suspended) {
+                    handle.resume(SelectionKey.OP_ACCEPT);
+                }
+            }
+        }
+    };
+
     private final Runnable connectionClosedTask = new Runnable() {
         @Override
         public void run() {
@@ -152,11 +198,22 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         this.channel = channel;
         this.thread = worker.getAcceptThread();
         final WorkerThread[] workerThreads = worker.getAll();
-        final List<BlockingQueue<SocketChannel>> acceptQueues = new ArrayList<>(workerThreads.length);
+        final int acceptQueueCapacity = optionMap.get(Options.ACCEPT_QUEUE_CAPACITY, DEFAULT_ACCEPT_QUEUE_CAPACITY);
+        if (acceptQueueCapacity < 1 || acceptQueueCapacity > MAX_ACCEPT_QUEUE_CAPACITY) {
+            throw log.parameterOutOfRange("acceptQueueCapacity");
+        }
+        final AcceptQueue[] acceptQueues = new AcceptQueue[workerThreads.length];
+        final LatencyHistogram[] acceptLatencies = new LatencyHistogram[workerThreads.length];
+        final LatencyHistogram[] handOffLatencies = new LatencyHistogram[workerThreads.length];
         for (int i = 0; i < workerThreads.length; i++) {
-            acceptQueues.add(i, new LinkedBlockingQueue<SocketChannel>());
+            acceptQueues[i] = new AcceptQueue(acceptQueueCapacity);
+            acceptLatencies[i] = new LatencyHistogram();
+            handOffLatencies[i] = new LatencyHistogram();
         }
+        this.workerThreads = workerThreads;
         this.acceptQueues = acceptQueues;
+        this.acceptLatencies = acceptLatencies;
+        this.handOffLatencies = handOffLatencies;
         socket = channel.socket();
         if (optionMap.contains(Options.SEND_BUFFER)) {
             final int sendBufferSize = optionMap.get(Options.SEND_BUFFER, DEFAULT_BUFFER_SIZE);
@@ -174,12 +231,20 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         if (optionMap.contains(Options.TCP_NODELAY)) {
             tcpNoDelayUpdater.lazySet(this, optionMap.get(Options.TCP_NODELAY, false) ? 1 : 0);
         }
+        updateSocketTemplate();
         if (optionMap.contains(Options.READ_TIMEOUT)) {
             readTimeoutUpdater.lazySet(this, optionMap.get(Options.READ_TIMEOUT, 0));
         }
         if (optionMap.contains(Options.WRITE_TIMEOUT)) {
             writeTimeoutUpdater.lazySet(this, optionMap.get(Options.WRITE_TIMEOUT, 0));
         }
+        if (optionMap.contains(Options.ACCEPT_BATCH_SIZE)) {
+            final int batchSize = optionMap.get(Options.ACCEPT_BATCH_SIZE, DEFAULT_ACCEPT_BATCH_SIZE);
+            if (batchSize < 1) {
+                throw log.parameterOutOfRange("acceptBatchSize");
+            }
+            acceptBatchSize = batchSize;
+        }
         final int highWater;
         final int lowWater;
         if (optionMap.contains(Options.CONNECTION_HIGH_WATER) || optionMap.contains(Options.CONNECTION_LOW_WATER)) {
@@ -233,9 +298,81 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
                     public int getConnectionLimitLowWater() {
                         return getLowWater(connectionStatus);
                     }
+
+                    public long getAcceptedConnectionCount() {
+                        return acceptedCount;
+                    }
+
+                    public long getAcceptBatchCount() {
+                        return acceptBatchCount;
+                    }
+
+                    public int getMaxAcceptBatchSize() {
+                        return maxAcceptBatchSize;
+                    }
+
+                    public long getAcceptLatencyMedian() {
+                        return getPercentile(acceptLatencies, 50.0);
+                    }
+
+                    public long getAcceptLatency99thPercentile() {
+                        return getPercentile(acceptLatencies, 99.0);
+                    }
+
+                    public long getAcceptLatencyMax() {
+                        return getMax(acceptLatencies);
+                    }
+
+                    public int getAcceptQueueCapacity() {
+                        return acceptQueues[0].capacity();
+                    }
+
+                    public int getAcceptQueueSize() {
+                        int size = 0;
+                        for (AcceptQueue queue : acceptQueues) {
+                            size += queue.size();
+                        }
+                        return size;
+                    }
+
+                    public int getAcceptQueuePeakSize() {
+                        return acceptQueuePeakSize;
+                    }
+
+                    public long getAcceptQueueFullCount() {
+                        return acceptQueueFullCount;
+                    }
+
+                    public long getAcceptHandOffLatencyMedian() {
+                        return getPercentile(handOffLatencies, 50.0);
+                    }
+
+                    public long getAcceptHandOffLatency99thPercentile() {
+                        return getPercentile(handOffLatencies, 99.0);
+                    }
+
+                    public long getAcceptHandOffLatencyMax() {
+                        return getMax(handOffLatencies);
+                    }
                 });
     }
 
+    private static long getPercentile(final LatencyHistogram[] histograms, final double percentile) {
+        final long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        for (LatencyHistogram histogram : histograms) {
+            histogram.addCountsTo(counts);
+        }
+        return LatencyHistogram.getPercentile(counts, getMax(histograms), percentile);
+    }
+
+    private static long getMax(final LatencyHistogram[] histograms) {
+        long max = 0L;
+        for (LatencyHistogram histogram : histograms) {
+            max = Math.max(max, histogram.getMax());
+        }
+        return max;
+    }
+
     private static IllegalArgumentException badLowWater(final int highWater) {
         return new IllegalArgumentException("Low water must be greater than 0 and less than or equal to high water (" + highWater + ")");
     }
@@ -249,6 +386,7 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             channel.close();
         } finally {
             handle.getWorkerThread().cancelKey(handle.getSelectionKey());
+            safeClose(heldChannel);
             safeClose(mbeanHandle);
         }
     }
@@ -279,6 +417,10 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             return option.cast(Integer.valueOf(getHighWater(connectionStatus)));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             return option.cast(Integer.valueOf(getLowWater(connectionStatus)));
+        } else if (option == Options.ACCEPT_BATCH_SIZE) {
+            return option.cast(Integer.valueOf(acceptBatchSize));
+        } else if (option == Options.ACCEPT_QUEUE_CAPACITY) {
+            return option.cast(Integer.valueOf(acceptQueues[0].capacity()));
         } else {
             return null;
         }
@@ -303,12 +445,16 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             }
             final int oldValue = sendBufferUpdater.getAndSet(this, newValue);
             old = oldValue == -1 ? null : Integer.valueOf(oldValue);
+            updateSocketTemplate();
         } else if (option == Options.KEEP_ALIVE) {
             old = Boolean.valueOf(keepAliveUpdater.getAndSet(this, Options.KEEP_ALIVE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+            updateSocketTemplate();
         } else if (option == Options.TCP_OOB_INLINE) {
             old = Boolean.valueOf(oobInlineUpdater.getAndSet(this, Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+            updateSocketTemplate();
         } else if (option == Options.TCP_NODELAY) {
             old = Boolean.valueOf(tcpNoDelayUpdater.getAndSet(this, Options.TCP_NODELAY.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+            updateSocketTemplate();
         } else if (option == Options.READ_TIMEOUT) {
             old = Integer.valueOf(readTimeoutUpdater.getAndSet(this, Options.READ_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
         } else if (option == Options.WRITE_TIMEOUT) {
@@ -317,6 +463,13 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             old = Integer.valueOf(getHighWater(updateWaterMark(-1, Options.CONNECTION_HIGH_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue())));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             old = Integer.valueOf(getLowWater(updateWaterMark(Options.CONNECTION_LOW_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue(), -1)));
+        } else if (option == Options.ACCEPT_BATCH_SIZE) {
+            final int newValue = Options.ACCEPT_BATCH_SIZE.cast(value, Integer.valueOf(DEFAULT_ACCEPT_BATCH_SIZE)).intValue();
+            if (newValue < 1) {
+                throw log.optionOutOfRange("ACCEPT_BATCH_SIZE");
+            }
+            old = Integer.valueOf(acceptBatchSize);
+            acceptBatchSize = newValue;
         } else {
             return null;
         }
@@ -367,6 +520,10 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         return oldVal;
     }
 
+    private synchronized void updateSocketTemplate() {
+        socketTemplate = SocketOptionTemplate.of(keepAlive != 0, oobInline != 0, tcpNoDelay != 0, sendBuffer);
+    }
+
     private static int getHighWater(final long value) {
         return (int) ((value & CONN_HIGH_MASK) >> CONN_HIGH_BIT);
     }
@@ -380,17 +537,27 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         if (current == null) {
             return null;
         }
-        final BlockingQueue<SocketChannel> socketChannels = acceptQueues.get(current.getNumber());
+        final int number = current.getNumber();
+        final AcceptQueue socketChannels = acceptQueues[number];
         final SocketChannel accepted;
         boolean ok = false;
         try {
             accepted = socketChannels.poll();
+            // the CAS also orders the poll before the accept thread's next look at this queue
+            if (accepted != null && blockedQueueUpdater.compareAndSet(this, socketChannels, null)) try {
+                thread.execute(unblockTask);
+            } catch (RejectedExecutionException ignored) {
+                // the accept thread is exiting, taking the server with it
+            }
             if (accepted != null) try {
                 final SelectionKey selectionKey = current.registerChannel(accepted);
                 final NioSocketStreamConnection newConnection = new NioSocketStreamConnection(current, selectionKey, handle);
                 newConnection.setOption(Options.READ_TIMEOUT, Integer.valueOf(readTimeout));
                 newConnection.setOption(Options.WRITE_TIMEOUT, Integer.valueOf(writeTimeout));
                 ok = true;
+                final long now = System.nanoTime();
+                acceptLatencies[number].record(now - socketChannels.getLastAcceptTime());
+                handOffLatencies[number].record(now - socketChannels.getLastPublishTime());
                 return newConnection;
             } finally {
                 if (! ok) {
@@ -472,66 +639,174 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     }
 
     void handleReady() {
-        final SocketChannel accepted;
+        final int batchSize = acceptBatchSize;
+        final SocketOptionTemplate template = socketTemplate;
+        int batched = 0;
         try {
-            accepted = channel.accept();
-            if(suspendedDueToWatermark) {
-                tcpServerLog.logf(FQCN, Logger.Level.DEBUG, null, "Exceeding connection high water limit (%s). Closing this new accepting request %s", getHighWater(connectionStatus), accepted);
-                IoUtils.safeClose(accepted);
-                return;
+            if (heldChannel != null) {
+                // accepts were resumed by the user while a connection was held back
+                if (! stageHeld()) {
+                    handle.suspend(SelectionKey.OP_ACCEPT);
+                    return;
+                }
+                batched ++;
             }
-        } catch (IOException e) {
-            tcpServerLog.logf(FQCN, Logger.Level.DEBUG, e, "Exception accepting request, closing server channel %s", this);
-            IoUtils.safeClose(channel);
-            return;
-        }
-        try {
-            boolean ok = false;
-            if (accepted != null) try {
-                final SocketAddress localAddress = accepted.getLocalAddress();
-                int hash;
-                if (localAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) localAddress;
-                    hash = address.getAddress().hashCode() * 23 + address.getPort();
-                } else if (localAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) localAddress).getName().hashCode();
-                } else {
-                    hash = localAddress.hashCode();
+            // every connection taken from the backlog counts against the budget, even one which could not be prepared
+            for (int attempt = 0; attempt < batchSize; attempt ++) {
+                final SocketChannel accepted;
+                try {
+                    accepted = channel.accept();
+                } catch (IOException e) {
+                    tcpServerLog.logf(FQCN, Logger.Level.DEBUG, e, "Exception accepting request, closing server channel %s", this);
+                    IoUtils.safeClose(channel);
+                    return;
                 }
-                final SocketAddress remoteAddress = accepted.getRemoteAddress();
-                if (remoteAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) remoteAddress;
-                    hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
-                } else if (remoteAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
-                } else {
-                    hash = localAddress.hashCode() * 23 + hash;
+                if (accepted == null) {
+                    return;
+                }
+                if (suspendedDueToWatermark) {
+                    tcpServerLog.logf(FQCN, Logger.Level.DEBUG, null, "Exceeding connection high water limit (%s). Closing this new accepting request %s", getHighWater(connectionStatus), accepted);
+                    IoUtils.safeClose(accepted);
+                    return;
+                }
+                final AcceptQueue queue = prepare(accepted, template);
+                if (queue == null) {
+                    continue;
                 }
-                accepted.configureBlocking(false);
-                final Socket socket = accepted.socket();
-                socket.setKeepAlive(keepAlive != 0);
-                socket.setOOBInline(oobInline != 0);
-                socket.setTcpNoDelay(tcpNoDelay != 0);
-                final int sendBuffer = this.sendBuffer;
-                if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
-                final WorkerThread ioThread = worker.getIoThread(hash);
-                ok = true;
-                final int number = ioThread.getNumber();
-                final BlockingQueue<SocketChannel> queue = acceptQueues.get(number);
-                queue.add(accepted);
-                // todo: only execute if necessary
-                ioThread.execute(acceptTask);
                 openConnections++;
+                final boolean staged = queue.stage(accepted, System.nanoTime()) || hold(accepted, queue);
+                if (staged) {
+                    batched ++;
+                }
                 if(openConnections >= getHighWater(connectionStatus)) {
                     synchronized (QueuedNioTcpServer.this) {
                         suspendedDueToWatermark = true;
                         tcpServerLog.logf(FQCN, Logger.Level.DEBUG, null, "Total open connections reach high water limit (%s) by this new accepting request %s", getHighWater(connectionStatus), accepted);
                     }
+                    return;
                 }
-            } finally {
-                if (! ok) safeClose(accepted);
+                if (! staged) {
+                    return;
+                }
+            }
+            // anything left in the backlog is picked up on the next pass through the selector
+        } finally {
+            if (batched > 0) {
+                dispatchBatch(batched);
+            }
+        }
+    }
+
+    /**
+     * Prepare a newly accepted channel and choose its target thread.
+     *
+     * @param accepted the accepted channel
+     * @param template the socket options to apply
+     * @return the accept queue of the target thread, or {@code null} if preparing the channel failed and it was closed
+     */
+    private AcceptQueue prepare(final SocketChannel accepted, final SocketOptionTemplate template) {
+        boolean ok = false;
+        try {
+            final SocketAddress localAddress = accepted.getLocalAddress();
+            int hash;
+            if (localAddress instanceof InetSocketAddress) {
+                final InetSocketAddress address = (InetSocketAddress) localAddress;
+                hash = address.getAddress().hashCode() * 23 + address.getPort();
+            } else if (localAddress instanceof LocalSocketAddress) {
+                hash = ((LocalSocketAddress) localAddress).getName().hashCode();
+            } else {
+                hash = localAddress.hashCode();
             }
+            final SocketAddress remoteAddress = accepted.getRemoteAddress();
+            if (remoteAddress instanceof InetSocketAddress) {
+                final InetSocketAddress address = (InetSocketAddress) remoteAddress;
+                hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
+            } else if (remoteAddress instanceof LocalSocketAddress) {
+                hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
+            } else {
+                hash = localAddress.hashCode() * 23 + hash;
+            }
+            accepted.configureBlocking(false);
+            template.apply(accepted.socket());
+            final AcceptQueue queue = acceptQueues[worker.chooseThread(hash).getNumber()];
+            ok = true;
+            return queue;
         } catch (IOException ignored) {
+            return null;
+        } finally {
+            if (! ok) safeClose(accepted);
+        }
+    }
+
+    /**
+     * Hold back a connection whose accept queue is full and stop accepting, so that further connections wait in the
+     * listen backlog.  Accepting resumes once the consumer of the queue has taken a connection off it.
+     *
+     * @param accepted the accepted channel
+     * @param queue the full queue
+     * @return {@code true} if the consumer made room meanwhile and the channel was staged after all
+     */
+    private boolean hold(final SocketChannel accepted, final AcceptQueue queue) {
+        heldQueue = queue;
+        heldAcceptTime = System.nanoTime();
+        heldChannel = accepted;
+        if (stageHeld()) {
+            return true;
+        }
+        acceptQueueFullCount ++;
+        tcpServerLog.logf(FQCN, Logger.Level.DEBUG, null, "Accept queue is full, suspending accepts on %s", this);
+        // the consumer resumes accepting through unblockTask, which runs on this thread and so after the suspend
+        handle.suspend(SelectionKey.OP_ACCEPT);
+        return false;
+    }
+
+    /**
+     * Try to stage the held connection, marking its queue as blocked if it is still full.
+     *
+     * @return {@code true} if the held connection was staged, {@code false} if it is still held
+     */
+    private boolean stageHeld() {
+        final AcceptQueue queue = heldQueue;
+        final SocketChannel held = heldChannel;
+        if (! queue.stage(held, heldAcceptTime)) {
+            blockedQueue = queue;
+            // re-check after publishing the flag, so that the consumer either sees the flag or we see the room it made
+            if (! queue.stage(held, heldAcceptTime)) {
+                return false;
+            }
+            blockedQueueUpdater.compareAndSet(this, queue, null);
+        }
+        heldChannel = null;
+        heldQueue = null;
+        return true;
+    }
+
+    /**
+     * Publish the current batch to the target threads, waking each thread at most once however many connections it
+     * received, and not at all if it is already scheduled to drain its queue.
+     *
+     * @param batched the number of connections in the batch
+     */
+    private void dispatchBatch(final int batched) {
+        final WorkerThread[] workerThreads = this.workerThreads;
+        final long now = System.nanoTime();
+        int peak = acceptQueuePeakSize;
+        for (int i = 0; i < workerThreads.length; i++) {
+            final AcceptQueue queue = acceptQueues[i];
+            if (queue.publish(now) > 0) {
+                peak = Math.max(peak, queue.size());
+                if (queue.markScheduled()) {
+                    workerThreads[i].execute(acceptTask);
+                }
+            }
+        }
+        if (peak > acceptQueuePeakSize) {
+            acceptQueuePeakSize = peak;
+        }
+        acceptedCount += batched;
+        acceptBatchCount ++;
+        if (batched > maxAcceptBatchSize) {
+            maxAcceptBatchSize = batched;
         }
     }
 
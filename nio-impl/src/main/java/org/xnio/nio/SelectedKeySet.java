@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.xnio.nio.Log.selectorLog;
+
+/**
+ * An array-backed selected key set which replaces the {@code HashSet} inside of the JDK selector implementation.
+ * Adding a key is a plain array store, and the selecting thread takes the whole batch by {@linkplain #flip() flipping}
+ * to a spare array, so processing the selected keys neither allocates nor locks.
+ * <p>
+ * The set is only ever touched by the thread which owns the selector.  Membership is not tracked: {@code contains}
+ * and {@code remove} always return {@code false}, so a key may appear twice in one batch, and a key which was
+ * cancelled after selection may still be present.  Both cases are harmless as readiness is only advisory.
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    private static final int INITIAL_SIZE = 256;
+
+    private SelectionKey[] keys = new SelectionKey[INITIAL_SIZE];
+    private SelectionKey[] spare = new SelectionKey[INITIAL_SIZE];
+    private int size;
+
+    SelectedKeySet() {
+    }
+
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        SelectionKey[] keys = this.keys;
+        final int size = this.size;
+        if (size == keys.length) {
+            this.keys = keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size] = key;
+        this.size = size + 1;
+        return true;
+    }
+
+    public boolean remove(final Object o) {
+        return false;
+    }
+
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Take the current batch of selected keys, leaving this set empty.  The first {@link #size()} entries of the
+     * returned array (as read before this call) are the selected keys; the caller must clear each of those entries to
+     * {@code null} once it is done with it, before flipping again.  Keys selected while the batch is being processed
+     * are collected into the other array.
+     *
+     * @return the array holding the batch
+     */
+    SelectionKey[] flip() {
+        final SelectionKey[] keys = this.keys;
+        this.keys = spare;
+        spare = keys;
+        size = 0;
+        return keys;
+    }
+
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            public SelectionKey next() {
+                if (! hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[idx++];
+            }
+        };
+    }
+
+    /**
+     * Install a new flat key set into the given selector, replacing its internal selected key sets.
+     *
+     * @param selector the selector, which must not have been used for selection yet
+     * @return the installed key set, or {@code null} if the selector implementation does not allow it
+     */
+    static SelectedKeySet install(final Selector selector) {
+        final SelectedKeySet keySet = new SelectedKeySet();
+        final Throwable problem = AccessController.doPrivileged(new PrivilegedAction<Throwable>() {
+            public Throwable run() {
+                try {
+                    final Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, null);
+                    if (! selectorImplClass.isInstance(selector)) {
+                        return new IllegalArgumentException("Unsupported selector class " + selector.getClass());
+                    }
+                    final Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+                    final Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+                    selectedKeysField.setAccessible(true);
+                    publicSelectedKeysField.setAccessible(true);
+                    selectedKeysField.set(selector, keySet);
+                    publicSelectedKeysField.set(selector, keySet);
+                    return null;
+                } catch (Throwable t) {
+                    // includes inaccessible JDK internals on Java 9 and later
+                    return t;
+                }
+            }
+        });
+        if (problem != null) {
+            selectorLog.tracef(problem, "Unable to install flat selected key set into %s", selector);
+            return null;
+        }
+        return keySet;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * The socket options a TCP server applies to each accepted socket.  A template is computed once whenever the
+ * server's options change, and applies only the settings that differ from those a freshly accepted socket already
+ * has, so that with default options accepting a connection costs no extra system calls.
+ */
+final class SocketOptionTemplate {
+
+    static final SocketOptionTemplate DEFAULT = new SocketOptionTemplate(false, false, false, -1);
+
+    private final boolean keepAlive;
+    private final boolean oobInline;
+    private final boolean tcpNoDelay;
+    private final int sendBuffer;
+
+    private SocketOptionTemplate(final boolean keepAlive, final boolean oobInline, final boolean tcpNoDelay, final int sendBuffer) {
+        this.keepAlive = keepAlive;
+        this.oobInline = oobInline;
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBuffer = sendBuffer;
+    }
+
+    /**
+     * Get a template for the given settings.
+     *
+     * @param keepAlive {@code true} to enable TCP keep-alive
+     * @param oobInline {@code true} to receive urgent data inline
+     * @param tcpNoDelay {@code true} to disable Nagle's algorithm
+     * @param sendBuffer the send buffer size, or a value less than 1 to keep the system default
+     * @return the template
+     */
+    static SocketOptionTemplate of(final boolean keepAlive, final boolean oobInline, final boolean tcpNoDelay, final int sendBuffer) {
+        if (! keepAlive && ! oobInline && ! tcpNoDelay && sendBuffer < 1) {
+            return DEFAULT;
+        }
+        return new SocketOptionTemplate(keepAlive, oobInline, tcpNoDelay, sendBuffer);
+    }
+
+    /**
+     * Apply this template to a newly accepted socket.
+     *
+     * @param socket the socket
+     * @throws SocketException if an option could not be set
+     */
+    void apply(final Socket socket) throws SocketException {
+        if (this == DEFAULT) {
+            return;
+        }
+        // accepted sockets start out with all three flags off
+        if (keepAlive) socket.setKeepAlive(true);
+        if (oobInline) socket.setOOBInline(true);
+        if (tcpNoDelay) socket.setTcpNoDelay(true);
+        if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
+    }
+}
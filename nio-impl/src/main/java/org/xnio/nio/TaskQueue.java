@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free multi-producer, single-consumer task queue.  Any thread may {@link #add(Runnable)} a task; only the
+ * owning I/O thread may {@link #poll()} or call {@link #isEmpty()}.
+ * <p>
+ * Producers push onto a shared stack with a single CAS.  The consumer takes the whole stack in one atomic swap,
+ * reverses it into FIFO order, and then runs through that batch without touching shared state again until it is
+ * exhausted.
+ * <p>
+ * Each node records how deep in the stack it was pushed, so the size is the depth of the head plus what is left of
+ * the consumer's batch, and adding a task costs nothing beyond the CAS.  Enqueue times are only taken when the queue
+ * is created to track them.
+ */
+final class TaskQueue {
+
+    @SuppressWarnings("unused")
+    private volatile Node head;
+
+    private static final AtomicReferenceFieldUpdater<TaskQueue, Node> headUpdater = AtomicReferenceFieldUpdater.newUpdater(TaskQueue.class, Node.class, "head");
+
+    // written by the consumer only, read by size()
+    @SuppressWarnings("unused")
+    private volatile int batchSize;
+
+    private static final AtomicIntegerFieldUpdater<TaskQueue> batchSizeUpdater = AtomicIntegerFieldUpdater.newUpdater(TaskQueue.class, "batchSize");
+
+    private final boolean trackEnqueueTime;
+
+    // consumer-only state
+    private Node batch;
+    private long lastEnqueueTime;
+
+    TaskQueue() {
+        this(false);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param trackEnqueueTime {@code true} to record the time each task is added, for {@link #getLastEnqueueTime()}
+     */
+    TaskQueue(final boolean trackEnqueueTime) {
+        this.trackEnqueueTime = trackEnqueueTime;
+    }
+
+    /**
+     * Add a task to the queue.  May be called from any thread.
+     *
+     * @param task the task to add (must not be {@code null})
+     */
+    void add(final Runnable task) {
+        final Node node = new Node(task, trackEnqueueTime ? System.nanoTime() : 0L);
+        Node oldHead;
+        do {
+            oldHead = head;
+            node.next = oldHead;
+            node.depth = oldHead == null ? 1 : oldHead.depth + 1;
+        } while (! headUpdater.compareAndSet(this, oldHead, node));
+    }
+
+    /**
+     * Remove the next task from the queue.  Must only be called by the consumer thread.
+     *
+     * @return the next task, or {@code null} if the queue is empty
+     */
+    Runnable poll() {
+        Node node = batch;
+        int remaining = batchSize;
+        if (node == null) {
+            final Node oldHead = head == null ? null : headUpdater.getAndSet(this, null);
+            if (oldHead == null) {
+                return null;
+            }
+            remaining = oldHead.depth;
+            node = reverse(oldHead);
+        }
+        batch = node.next;
+        lastEnqueueTime = node.enqueueTime;
+        batchSizeUpdater.lazySet(this, remaining - 1);
+        final Runnable task = node.task;
+        // help the GC; nodes may be promoted before the batch is done
+        node.next = null;
+        return task;
+    }
+
+    /**
+     * Determine whether the queue is empty.  Must only be called by the consumer thread.
+     *
+     * @return {@code true} if there are no tasks queued
+     */
+    boolean isEmpty() {
+        return batch == null && head == null;
+    }
+
+    /**
+     * Get the {@link System#nanoTime()} at which the task last returned by {@link #poll()} was added.  Must only be
+     * called by the consumer thread.
+     *
+     * @return the time the last polled task was added, or {@code 0} if this queue does not track enqueue times
+     */
+    long getLastEnqueueTime() {
+        return lastEnqueueTime;
+    }
+
+    /**
+     * Determine whether this queue records the time each task is added.
+     *
+     * @return {@code true} if enqueue times are tracked
+     */
+    boolean isTrackingEnqueueTime() {
+        return trackEnqueueTime;
+    }
+
+    /**
+     * Get an estimate of the number of queued tasks.  May be called from any thread.
+     *
+     * @return the size estimate
+     */
+    int size() {
+        final Node node = head;
+        final long size = (long) batchSize + (node == null ? 0 : node.depth);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static Node reverse(Node node) {
+        // reverse the stack into FIFO order
+        Node reversed = null;
+        while (node != null) {
+            final Node next = node.next;
+            node.next = reversed;
+            reversed = node;
+            node = next;
+        }
+        return reversed;
+    }
+
+    static final class Node {
+        final Runnable task;
+        final long enqueueTime;
+        int depth;
+        Node next;
+
+        Node(final Runnable task, final long enqueueTime) {
+            this.task = task;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2018 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+/**
+ * A hashed timing wheel holding the delayed tasks of an I/O thread.  Adding and removing a timeout are constant time
+ * operations; expiring timeouts costs one bucket visit per elapsed tick.  Timeouts never fire early, but may fire up
+ * to one tick late.
+ * <p>
+ * This class is not thread-safe; all access must be guarded by the owning thread's work lock.  Times are
+ * nanoseconds relative to an arbitrary fixed origin, and must never be negative.
+ */
+final class TimerWheel {
+
+    static final int WHEEL_SIZE = 512;
+
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final long tickNanos;
+    private final Timeout[] buckets = new Timeout[WHEEL_SIZE];
+
+    private int size;
+    // the last tick that has been fully expired
+    private long currentTick;
+    // a lower bound for the tick of the earliest timeout; only meaningful if hintValid is set
+    private long hintTick;
+    private boolean hintValid;
+
+    TimerWheel(final long tickNanos) {
+        if (tickNanos <= 0L) {
+            throw new IllegalArgumentException("tickNanos must be positive");
+        }
+        this.tickNanos = tickNanos;
+    }
+
+    /**
+     * Add a timeout to the wheel.
+     *
+     * @param timeout the timeout to add, which must not already be in a wheel
+     * @param now the current time
+     * @return {@code true} if the new timeout may be the earliest one, requiring a sleeping thread to be woken up
+     */
+    boolean add(final Timeout timeout, final long now) {
+        if (size == 0) {
+            // nothing is scheduled, so no bucket can be skipped by fast-forwarding
+            currentTick = Math.max(currentTick, now / tickNanos);
+        }
+        final long deadline = timeout.deadline;
+        // round up so that the timeout does not fire early
+        long tick = deadline / tickNanos + (deadline % tickNanos == 0L ? 0L : 1L);
+        if (tick <= currentTick) {
+            tick = currentTick + 1;
+        }
+        timeout.tick = tick;
+        final int idx = (int) tick & MASK;
+        final Timeout head = buckets[idx];
+        timeout.next = head;
+        timeout.prev = null;
+        if (head != null) head.prev = timeout;
+        buckets[idx] = timeout;
+        timeout.linked = true;
+        size ++;
+        if (! hintValid) {
+            return true;
+        }
+        if (tick < hintTick) {
+            hintTick = tick;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove a timeout from the wheel.
+     *
+     * @param timeout the timeout to remove
+     * @return {@code true} if the timeout was removed, {@code false} if it had already expired or been removed
+     */
+    boolean remove(final Timeout timeout) {
+        if (! timeout.linked) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Move the commands of all timeouts whose deadline has passed to the given task queue.
+     *
+     * @param now the current time
+     * @param queue the queue to add expired commands to
+     */
+    void expire(final long now, final TaskQueue queue) {
+        final long nowTick = now / tickNanos;
+        final long lastTick = currentTick;
+        if (nowTick <= lastTick) {
+            return;
+        }
+        if (size > 0) {
+            // visiting more than one full turn is pointless as deadlines are compared against the absolute tick
+            final long endTick = Math.min(nowTick, lastTick + WHEEL_SIZE);
+            for (long tick = lastTick + 1; tick <= endTick; tick ++) {
+                Timeout timeout = buckets[(int) tick & MASK];
+                while (timeout != null) {
+                    final Timeout next = timeout.next;
+                    if (timeout.tick <= nowTick) {
+                        unlink(timeout);
+                        queue.add(timeout.command);
+                    }
+                    timeout = next;
+                }
+                if (size == 0) break;
+            }
+        }
+        currentTick = nowTick;
+        if (hintValid && hintTick <= nowTick) {
+            hintValid = false;
+        }
+    }
+
+    /**
+     * Get the time until the wheel next needs to be expired.
+     *
+     * @param now the current time
+     * @return the delay in nanoseconds, or {@link Long#MAX_VALUE} if the wheel is empty
+     */
+    long nextDelay(final long now) {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (! hintValid) {
+            final long start = currentTick + 1;
+            long tick = start;
+            while (buckets[(int) tick & MASK] == null && tick < start + MASK) {
+                tick ++;
+            }
+            hintTick = tick;
+            hintValid = true;
+        }
+        return Math.max(0L, hintTick * tickNanos - now);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void unlink(final Timeout timeout) {
+        final Timeout prev = timeout.prev;
+        final Timeout next = timeout.next;
+        if (prev == null) {
+            buckets[(int) timeout.tick & MASK] = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        timeout.prev = timeout.next = null;
+        timeout.linked = false;
+        size --;
+    }
+
+    /**
+     * A timeout entry which can be held by a timer wheel.
+     */
+    static class Timeout {
+        final long deadline;
+        final Runnable command;
+
+        long tick;
+        Timeout prev, next;
+        boolean linked;
+
+        Timeout(final long deadline, final Runnable command) {
+            this.deadline = deadline;
+            this.command = command;
+        }
+    }
+}
@@ -31,15 +31,10 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.security.AccessController;
-import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.jboss.logging.Logger;
@@ -81,28 +76,56 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
     private static final String FQCN = WorkerThread.class.getName();
     private static final boolean OLD_LOCKING;
     private static final boolean THREAD_SAFE_SELECTION_KEYS;
+    private static final boolean FLAT_SELECTED_KEYS;
+    private static final boolean SCHEDULING_DELAY_METRICS;
     private static final long START_TIME = System.nanoTime();
 
     private final Selector selector;
+    private final SelectedKeySet selectedKeySet;
     private final Object workLock = new Object();
 
-    private final Queue<Runnable> selectorWorkQueue = new ArrayDeque<Runnable>();
-    private final TreeSet<TimeKey> delayWorkQueue = new TreeSet<TimeKey>();
+    private final TaskQueue selectorWorkQueue = new TaskQueue(SCHEDULING_DELAY_METRICS);
+    private final TimerWheel delayWorkQueue;
+    private final int spinLimit;
+    private final NioIoThreadMetrics metrics;
+
+    // adaptive spin state, only touched by this thread
+    private int spinBudget;
+    // set when a timeout which may be the earliest one is added; guarded by workLock for writes
+    private volatile boolean delayChanged;
+
+    // statistics; written only by this thread
+    private volatile long spinCount;
+    private volatile long selectWakeupCount;
+    private volatile long emptySelectCount;
+
+    // load counters for I/O thread assignment
+    private volatile int registeredKeys;
+    private volatile int pendingAssignments;
+    private volatile long loopLoad;
 
     private volatile int state;
 
     private static final int SHUTDOWN = (1 << 31);
 
     private static final AtomicIntegerFieldUpdater<WorkerThread> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "state");
+    private static final AtomicIntegerFieldUpdater<WorkerThread> pendingAssignmentsUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "pendingAssignments");
 
     static {
         OLD_LOCKING = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.old-locking", "false")));
         THREAD_SAFE_SELECTION_KEYS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.thread-safe-selection-keys", "false")));
+        FLAT_SELECTED_KEYS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.flat-selected-keys", "false")));
+        SCHEDULING_DELAY_METRICS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.scheduling-delay-metrics", "false")));
     }
 
-    WorkerThread(final NioXnioWorker worker, final Selector selector, final String name, final ThreadGroup group, final long stackSize, final int number) {
+    WorkerThread(final NioXnioWorker worker, final Selector selector, final String name, final ThreadGroup group, final long stackSize, final int number, final long timerTickNanos, final int spinLimit) {
         super(worker, number, group, name, stackSize);
         this.selector = selector;
+        selectedKeySet = FLAT_SELECTED_KEYS ? SelectedKeySet.install(selector) : null;
+        delayWorkQueue = new TimerWheel(timerTickNanos);
+        this.spinLimit = spinLimit;
+        spinBudget = spinLimit;
+        metrics = new NioIoThreadMetrics(this, selectorWorkQueue);
     }
 
     static WorkerThread getCurrent() {
@@ -439,55 +462,61 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         try {
             log.tracef("Starting worker thread %s", this);
             final Object lock = workLock;
-            final Queue<Runnable> workQueue = selectorWorkQueue;
-            final TreeSet<TimeKey> delayQueue = delayWorkQueue;
+            final TaskQueue workQueue = selectorWorkQueue;
+            final TimerWheel delayQueue = delayWorkQueue;
+            final SelectedKeySet selectedKeySet = this.selectedKeySet;
+            final NioIoThreadMetrics metrics = this.metrics;
             log.debugf("Started channel thread '%s', selector %s", currentThread().getName(), selector);
             Runnable task;
-            Iterator<TimeKey> iterator;
             long delayTime = Long.MAX_VALUE;
             Set<SelectionKey> selectedKeys;
             SelectionKey[] keys = new SelectionKey[16];
             int oldState;
             int keyCount;
+            int taskCount;
+            int selectedCount;
+            long loopStart;
+            long taskStart;
+            long selectStart;
+            long selectEnd;
             for (;;) {
                 // Run all tasks
-                do {
-                    synchronized (lock) {
-                        task = workQueue.poll();
-                        if (task == null) {
-                            iterator = delayQueue.iterator();
-                            delayTime = Long.MAX_VALUE;
-                            if (iterator.hasNext()) {
-                                final long now = nanoTime();
-                                do {
-                                    final TimeKey key = iterator.next();
-                                    if (key.deadline <= (now - START_TIME)) {
-                                        workQueue.add(key.command);
-                                        iterator.remove();
-                                    } else {
-                                        delayTime = key.deadline - (now - START_TIME);
-                                        // the rest are in the future
-                                        break;
-                                    }
-                                } while (iterator.hasNext());
+                loopStart = taskStart = nanoTime();
+                taskCount = 0;
+                for (;;) {
+                    task = workQueue.poll();
+                    if (task == null) {
+                        synchronized (lock) {
+                            delayChanged = false;
+                            if (delayQueue.isEmpty()) {
+                                delayTime = Long.MAX_VALUE;
+                            } else {
+                                final long now = nanoTime() - START_TIME;
+                                delayQueue.expire(now, workQueue);
+                                delayTime = delayQueue.nextDelay(now);
                             }
-                            task = workQueue.poll();
                         }
+                        task = workQueue.poll();
+                        if (task == null) break;
+                        taskStart = nanoTime();
                     }
                     // clear interrupt status
                     Thread.interrupted();
                     safeRun(task);
-                } while (task != null);
+                    // the end of one task is the start of the next, so each task costs a single clock read
+                    final long taskEnd = nanoTime();
+                    metrics.recordTask(workQueue.getLastEnqueueTime(), taskStart, taskEnd);
+                    taskStart = taskEnd;
+                    taskCount ++;
+                }
                 // all tasks have been run
                 oldState = state;
                 if ((oldState & SHUTDOWN) != 0) {
-                    synchronized (lock) {
-                        keyCount = selector.keys().size();
-                        state = keyCount | SHUTDOWN;
-                        if (keyCount == 0 && workQueue.isEmpty()) {
-                            // no keys or tasks left, shut down (delay tasks are discarded)
-                            return;
-                        }
+                    keyCount = selector.keys().size();
+                    state = keyCount | SHUTDOWN;
+                    if (keyCount == 0 && workQueue.isEmpty()) {
+                        // no keys or tasks left, shut down (delay tasks are discarded)
+                        return;
                     }
                     synchronized (selector) {
                         final Set<SelectionKey> keySet = selector.keys();
@@ -511,25 +540,26 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                 }
                 // clear interrupt status
                 Thread.interrupted();
+                // tasks may have registered channels, and we may be about to block for a while
+                updateKeyLoad(selector);
                 // perform select
+                selectStart = nanoTime();
                 try {
                     if ((oldState & SHUTDOWN) != 0) {
                         selectorLog.tracef("Beginning select on %s (shutdown in progress)", selector);
                         selector.selectNow();
+                    } else if (spinLimit > 0 && spin(selector, workQueue)) {
+                        selectorLog.tracef("Found work on %s while spinning", selector);
                     } else if (delayTime == Long.MAX_VALUE) {
                         selectorLog.tracef("Beginning select on %s", selector);
                         polling = true;
                         try {
-                            Runnable item = null;
-                            synchronized (lock) {
-                               item =  workQueue.peek();
-                            }
-                            if (item != null) {
+                            if (! workQueue.isEmpty()) {
                                 log.tracef("SelectNow, queue is not empty");
                                 selector.selectNow();
                             } else {
                                 log.tracef("Select, queue is empty");
-                                selector.select();
+                                countSelect(selector.select());
                             }
                         } finally {
                             polling = false;
@@ -539,16 +569,12 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                         selectorLog.tracef("Beginning select on %s (with timeout)", selector);
                         polling = true;
                         try {
-                            Runnable item = null;
-                            synchronized (lock) {
-                               item =  workQueue.peek();
-                            }
-                            if (item != null) {
+                            if (! workQueue.isEmpty()) {
                                 log.tracef("SelectNow, queue is not empty");
                                 selector.selectNow();
                             } else {
                                 log.tracef("Select, queue is empty");
-                                selector.select(millis);
+                                countSelect(selector.select(millis));
                             }
                         } finally {
                             polling = false;
@@ -561,42 +587,41 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                     selectorLog.selectionError(e);
                     // hopefully transient; should never happen
                 }
+                selectEnd = nanoTime();
                 selectorLog.tracef("Selected on %s", selector);
                 // iterate the ready key set
-                synchronized (selector) {
-                    selectedKeys = selector.selectedKeys();
-                    synchronized (selectedKeys) {
-                        // copy so that handlers can safely cancel keys
-                        keys = selectedKeys.toArray(keys);
-                        Arrays.fill(keys, selectedKeys.size(), keys.length, null);
-                        selectedKeys.clear();
+                if (selectedKeySet != null) {
+                    // only this thread ever touches the flat key set, so there is nothing to copy or lock
+                    selectedCount = selectedKeySet.size();
+                    final SelectionKey[] selected = selectedKeySet.flip();
+                    for (int i = 0; i < selectedCount; i++) {
+                        final SelectionKey key = selected[i];
+                        selected[i] = null;
+                        handleSelectedKey(key);
                     }
-                }
-                for (int i = 0; i < keys.length; i++) {
-                    final SelectionKey key = keys[i];
-                    if (key == null) break; //end of list
-                    keys[i] = null;
-                    final int ops;
-                    try {
-                        ops = key.interestOps();
-                        if (ops != 0) {
-                            selectorLog.tracef("Selected key %s for %s", key, key.channel());
-                            final NioHandle handle = (NioHandle) key.attachment();
-                            if (handle == null) {
-                                cancelKey(key);
-                            } else {
-                                // clear interrupt status
-                                Thread.interrupted();
-                                selectorLog.tracef("Calling handleReady key %s for %s", key.readyOps(), key.channel());
-                                handle.handleReady(key.readyOps());
-                            }
+                } else {
+                    synchronized (selector) {
+                        selectedKeys = selector.selectedKeys();
+                        synchronized (selectedKeys) {
+                            // copy so that handlers can safely cancel keys
+                            keys = selectedKeys.toArray(keys);
+                            Arrays.fill(keys, selectedKeys.size(), keys.length, null);
+                            selectedKeys.clear();
                         }
-                    } catch (CancelledKeyException ignored) {
-                        selectorLog.tracef("Skipping selection of cancelled key %s", key);
-                    } catch (Throwable t) {
-                        selectorLog.tracef(t, "Unexpected failure of selection of key %s", key);
+                    }
+                    selectedCount = 0;
+                    for (int i = 0; i < keys.length; i++) {
+                        final SelectionKey key = keys[i];
+                        if (key == null) break; //end of list
+                        keys[i] = null;
+                        handleSelectedKey(key);
+                        selectedCount ++;
                     }
                 }
+                final long taskTime = selectStart - loopStart;
+                final long handlerTime = selectedCount == 0 ? 0L : nanoTime() - selectEnd;
+                metrics.recordLoop(taskCount, taskTime, selectEnd - selectStart, selectedCount, handlerTime);
+                updateLoopLoad(taskTime + handlerTime);
                 // all selected keys invoked; loop back to run tasks
             }
         } finally {
@@ -606,6 +631,124 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         }
     }
 
+    /**
+     * Poll the selector and task queue without blocking, up to the current spin budget.  The budget doubles (up to the
+     * configured limit) each time spinning finds work and halves each time it does not, so an idle thread quickly
+     * falls back to blocking while a busy one keeps avoiding selector wakeups.  The second half of the budget yields
+     * between polls to give other runnable threads a chance.
+     *
+     * @param selector the selector
+     * @param workQueue the task queue
+     * @return {@code true} if the loop should go around again instead of blocking, {@code false} if the thread should
+     *      block
+     * @throws IOException if the selector failed
+     */
+    private boolean spin(final Selector selector, final TaskQueue workQueue) throws IOException {
+        final int budget = spinBudget;
+        final int yieldAt = budget >> 1;
+        for (int i = 0; i < budget; i ++) {
+            // selectNow() consumes any pending wakeup, so shutdown and timer changes must be checked for explicitly
+            if (! workQueue.isEmpty() || (state & SHUTDOWN) != 0 || delayChanged || selector.selectNow() > 0) {
+                spinCount += i + 1;
+                spinBudget = Math.min(spinLimit, budget << 1);
+                return true;
+            }
+            if (i >= yieldAt) {
+                Thread.yield();
+            }
+        }
+        spinCount += budget;
+        spinBudget = Math.max(1, budget >> 1);
+        return false;
+    }
+
+    private void countSelect(final int selected) {
+        selectWakeupCount ++;
+        if (selected == 0) {
+            emptySelectCount ++;
+        }
+    }
+
+    private void updateLoopLoad(final long busyTime) {
+        // exponentially weighted moving average over roughly the last eight loops
+        final long loopLoad = this.loopLoad;
+        this.loopLoad = loopLoad + ((busyTime - loopLoad) >> 3);
+    }
+
+    private void updateKeyLoad(final Selector selector) {
+        final int keys = selector.keys().size();
+        if (keys != registeredKeys) {
+            registeredKeys = keys;
+        }
+        // assignments made up to now are either registered by now or about to be
+        final int pending = pendingAssignments;
+        if (pending != 0) {
+            pendingAssignmentsUpdater.addAndGet(this, -pending);
+        }
+    }
+
+    /**
+     * Get the number of channels registered with this thread, including ones which have been assigned to it but may
+     * not be registered yet.
+     *
+     * @return the key load estimate
+     */
+    int getKeyLoad() {
+        return registeredKeys + pendingAssignments;
+    }
+
+    /**
+     * Get the recent average time spent per loop running tasks and handlers, in nanoseconds.
+     *
+     * @return the loop load estimate
+     */
+    long getLoopLoad() {
+        return loopLoad;
+    }
+
+    void assigned() {
+        pendingAssignmentsUpdater.incrementAndGet(this);
+    }
+
+    NioIoThreadMetrics getMetrics() {
+        return metrics;
+    }
+
+    long getSpinCount() {
+        return spinCount;
+    }
+
+    long getSelectWakeupCount() {
+        return selectWakeupCount;
+    }
+
+    long getEmptySelectCount() {
+        return emptySelectCount;
+    }
+
+    private void handleSelectedKey(final SelectionKey key) {
+        final int ops;
+        try {
+            ops = key.interestOps();
+            if (ops != 0) {
+                selectorLog.tracef("Selected key %s for %s", key, key.channel());
+                final NioHandle handle = (NioHandle) key.attachment();
+                if (handle == null) {
+                    cancelKey(key);
+                } else {
+                    // clear interrupt status
+                    Thread.interrupted();
+                    selectorLog.tracef("Calling handleReady key %s for %s", key.readyOps(), key.channel());
+                    handle.handleReady(key.readyOps());
+                }
+            }
+        } catch (CancelledKeyException ignored) {
+            selectorLog.tracef("Skipping selection of cancelled key %s", key);
+        } catch (Throwable t) {
+            selectorLog.tracef(t, "Unexpected failure of selection of key %s", key);
+        }
+    }
+
     private static void safeRun(final Runnable command) {
         if (command != null) try {
             log.tracef("Running task %s", command);
@@ -619,10 +762,8 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         if ((state & SHUTDOWN) != 0) {
             throw log.threadExiting();
         }
-        synchronized (workLock) {
-            selectorWorkQueue.add(command);
-            log.tracef("Added task " + command);
-        }
+        selectorWorkQueue.add(command);
+        log.tracef("Added task %s", command);
         if (polling) { // flag is always false if we're the same thread
             selector.wakeup();
         } else {
@@ -653,13 +794,13 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             execute(command);
             return Key.IMMEDIATE;
         }
-        final long deadline = (nanoTime() - START_TIME) + Math.min(millis, LONGEST_DELAY) * 1000000L;
+        final long now = nanoTime() - START_TIME;
+        final long deadline = now + Math.min(millis, LONGEST_DELAY) * 1000000L;
         final TimeKey key = new TimeKey(deadline, command);
         synchronized (workLock) {
-            final TreeSet<TimeKey> queue = delayWorkQueue;
-            queue.add(key);
-            if (queue.iterator().next() == key) {
-                // we're the next one up; poke the selector to update its delay time
+            if (delayWorkQueue.add(key, now)) {
+                // we might be the next one up; poke the selector to update its delay time
+                delayChanged = true;
                 if (polling) { // flag is always false if we're the same thread
                     selector.wakeup();
                 }
@@ -736,9 +877,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
     }
 
     void queueTask(final Runnable task) {
-        synchronized (workLock) {
-            selectorWorkQueue.add(task);
-        }
+        selectorWorkQueue.add(task);
     }
 
     void cancelKey(final SelectionKey key) {
@@ -846,16 +985,10 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         return identityHashCode(this);
     }
 
-    static final AtomicLong seqGen = new AtomicLong();
-
-    final class TimeKey implements XnioExecutor.Key, Comparable<TimeKey> {
-        private final long deadline;
-        private final long seq = seqGen.incrementAndGet();
-        private final Runnable command;
+    final class TimeKey extends TimerWheel.Timeout implements XnioExecutor.Key {
 
         TimeKey(final long deadline, final Runnable command) {
-            this.deadline = deadline;
-            this.command = command;
+            super(deadline, command);
         }
 
         public boolean remove() {
@@ -863,12 +996,6 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                 return delayWorkQueue.remove(this);
             }
         }
-
-        public int compareTo(final TimeKey o) {
-            int r = Long.signum(deadline - o.deadline);
-            if (r == 0) r = Long.signum(seq - o.seq);
-            return r;
-        }
     }
 
     final class SynchTask implements Runnable {
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.management.XnioServerMXBean;
+
+/**
+ * Test for accepting connections in batches with {@link Options#ACCEPT_BATCH_SIZE}, and for queueing them with
+ * {@link Options#ACCEPT_QUEUE_CAPACITY}.
+ */
+public class AcceptBatchTestCase {
+
+    private static final int CONNECTIONS = 20;
+    private static final int BATCH_SIZE = 4;
+
+    @Test
+    public void acceptInBatches() throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 2));
+        final List<Socket> clients = new ArrayList<>();
+        final List<StreamConnection> accepted = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(CONNECTIONS);
+        try {
+            final AcceptingChannel<StreamConnection> server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), channel -> {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                        latch.countDown();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, OptionMap.builder().set(Options.ACCEPT_BATCH_SIZE, BATCH_SIZE).set(Options.TCP_NODELAY, true).getMap());
+            try {
+                assertEquals(Integer.valueOf(BATCH_SIZE), server.getOption(Options.ACCEPT_BATCH_SIZE));
+                // let the connections pile up in the backlog, so that they must be drained in several batches
+                final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+                for (int i = 0; i < CONNECTIONS; i++) {
+                    clients.add(new Socket(address.getAddress(), address.getPort()));
+                }
+                server.resumeAccepts();
+                assertTrue(latch.await(10L, TimeUnit.SECONDS));
+                for (StreamConnection connection : accepted) {
+                    // applied from the socket option template
+                    assertEquals(Boolean.TRUE, connection.getOption(Options.TCP_NODELAY));
+                }
+                final XnioServerMXBean serverMetrics = worker.getMXBean().getServerMXBeans().iterator().next();
+                // the statistics are updated just after each batch is handed over
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+                while (serverMetrics.getAcceptedConnectionCount() < CONNECTIONS && System.nanoTime() < deadline) {
+                    Thread.sleep(10L);
+                }
+                assertEquals(CONNECTIONS, serverMetrics.getAcceptedConnectionCount());
+                assertTrue(serverMetrics.getAcceptBatchCount() >= CONNECTIONS / BATCH_SIZE);
+                assertTrue(serverMetrics.getMaxAcceptBatchSize() >= 1);
+                assertTrue(serverMetrics.getMaxAcceptBatchSize() <= BATCH_SIZE);
+                assertTrue(serverMetrics.getAcceptLatencyMax() > 0L);
+                assertTrue(serverMetrics.getAcceptLatencyMedian() <= serverMetrics.getAcceptLatency99thPercentile());
+                assertTrue(serverMetrics.getAcceptLatency99thPercentile() <= serverMetrics.getAcceptLatencyMax());
+                // each connection is published after it is accepted, so its hand-off cannot take longer
+                assertTrue(serverMetrics.getAcceptHandOffLatencyMax() <= serverMetrics.getAcceptLatencyMax());
+                assertTrue(serverMetrics.getAcceptHandOffLatencyMedian() <= serverMetrics.getAcceptHandOffLatency99thPercentile());
+                assertEquals(0, serverMetrics.getAcceptQueueSize());
+                assertTrue(serverMetrics.getAcceptQueuePeakSize() >= 1);
+                assertTrue(serverMetrics.getAcceptQueuePeakSize() <= serverMetrics.getAcceptQueueCapacity());
+                assertEquals(0L, serverMetrics.getAcceptQueueFullCount());
+
+                assertEquals(Integer.valueOf(BATCH_SIZE), server.setOption(Options.ACCEPT_BATCH_SIZE, 64));
+                assertEquals(Integer.valueOf(64), server.getOption(Options.ACCEPT_BATCH_SIZE));
+                try {
+                    server.setOption(Options.ACCEPT_BATCH_SIZE, 0);
+                    fail("Expected IllegalArgumentException");
+                } catch (IllegalArgumentException expected) {
+                }
+            } finally {
+                for (StreamConnection connection : accepted) {
+                    IoUtils.safeClose(connection);
+                }
+                IoUtils.safeClose(server);
+            }
+        } finally {
+            for (Socket client : clients) {
+                IoUtils.safeClose(client);
+            }
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void fullAcceptQueue() throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1));
+        final List<Socket> clients = new ArrayList<>();
+        final List<StreamConnection> accepted = new CopyOnWriteArrayList<>();
+        final AtomicBoolean accepting = new AtomicBoolean();
+        try {
+            // the listener does not accept at first, so the queue fills up and the server must stop accepting
+            final AcceptingChannel<StreamConnection> server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), channel -> {
+                if (! accepting.get()) {
+                    return;
+                }
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                        connection.getSinkChannel().write(ByteBuffer.wrap(new byte[] { 42 }));
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, OptionMap.builder().set(Options.ACCEPT_BATCH_SIZE, BATCH_SIZE).set(Options.ACCEPT_QUEUE_CAPACITY, 3).getMap());
+            try {
+                // rounded up to a power of two
+                assertEquals(Integer.valueOf(4), server.getOption(Options.ACCEPT_QUEUE_CAPACITY));
+                final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+                for (int i = 0; i < CONNECTIONS; i++) {
+                    final Socket client = new Socket(address.getAddress(), address.getPort());
+                    client.setSoTimeout(10000);
+                    clients.add(client);
+                }
+                server.resumeAccepts();
+                final XnioServerMXBean serverMetrics = worker.getMXBean().getServerMXBeans().iterator().next();
+                assertEquals(4, serverMetrics.getAcceptQueueCapacity());
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+                while (serverMetrics.getAcceptQueueFullCount() < 1L && System.nanoTime() < deadline) {
+                    Thread.sleep(10L);
+                }
+                // give a server which kept accepting the chance to show it
+                Thread.sleep(200L);
+                assertEquals(1L, serverMetrics.getAcceptQueueFullCount());
+                assertEquals(4, serverMetrics.getAcceptedConnectionCount());
+                assertEquals(4, serverMetrics.getAcceptQueueSize());
+                accepting.set(true);
+                // every connection is handed over in the end, and none was closed on the way
+                for (Socket client : clients) {
+                    assertEquals(42, client.getInputStream().read());
+                }
+                assertEquals(CONNECTIONS, accepted.size());
+            } finally {
+                for (StreamConnection connection : accepted) {
+                    IoUtils.safeClose(connection);
+                }
+                IoUtils.safeClose(server);
+            }
+        } finally {
+            for (Socket client : clients) {
+                IoUtils.safeClose(client);
+            }
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.IoUtils;
+
+/**
+ * Test for {@link AcceptQueue}.
+ */
+public class AcceptQueueTestCase {
+
+    private static final SocketChannel[] channels = new SocketChannel[4];
+
+    @BeforeClass
+    public static void openChannels() throws IOException {
+        for (int i = 0; i < channels.length; i++) {
+            // never connected; the queue only cares about identity
+            channels[i] = SocketChannel.open();
+        }
+    }
+
+    @AfterClass
+    public static void closeChannels() {
+        for (SocketChannel channel : channels) {
+            IoUtils.safeClose(channel);
+        }
+    }
+
+    @Test
+    public void stageAndPublish() {
+        final AcceptQueue queue = new AcceptQueue(3);
+        assertEquals(4, queue.capacity());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertTrue(queue.stage(channels[0], 10L));
+        assertTrue(queue.stage(channels[1], 11L));
+        // staged channels are invisible until published
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        assertEquals(2, queue.publish(20L));
+        assertEquals(0, queue.publish(21L));
+        assertEquals(2, queue.size());
+        assertFalse(queue.isEmpty());
+        assertSame(channels[0], queue.poll());
+        assertEquals(10L, queue.getLastAcceptTime());
+        assertEquals(20L, queue.getLastPublishTime());
+        assertSame(channels[1], queue.poll());
+        assertEquals(11L, queue.getLastAcceptTime());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void fullAndWrapAround() {
+        final AcceptQueue queue = new AcceptQueue(4);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < channels.length; i++) {
+                assertTrue(queue.stage(channels[i], i));
+            }
+            assertFalse(queue.stage(channels[0], -1L));
+            assertEquals(4, queue.publish(round));
+            assertFalse(queue.stage(channels[0], -1L));
+            assertSame(channels[0], queue.poll());
+            // a slot freed by the consumer can be reused
+            assertTrue(queue.stage(channels[0], 4L));
+            assertEquals(1, queue.publish(round));
+            for (int i = 1; i < channels.length; i++) {
+                assertSame(channels[i], queue.poll());
+            }
+            assertSame(channels[0], queue.poll());
+            assertEquals(4L, queue.getLastAcceptTime());
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void scheduledFlag() {
+        final AcceptQueue queue = new AcceptQueue(4);
+        assertTrue(queue.markScheduled());
+        assertFalse(queue.markScheduled());
+        queue.clearScheduled();
+        assertTrue(queue.markScheduled());
+    }
+
+    @Test
+    public void concurrentHandOff() throws InterruptedException {
+        final AcceptQueue queue = new AcceptQueue(64);
+        final int count = 200000;
+        final Thread producer = new Thread(() -> {
+            long next = 0;
+            while (next < count) {
+                // publish in batches of varying size, like the accept thread does
+                final long end = Math.min(count, next + 1 + next % 7);
+                while (next < end && queue.stage(channels[(int) (next % channels.length)], next)) {
+                    next ++;
+                }
+                if (queue.publish(System.nanoTime()) == 0) {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        long expected = 0;
+        while (expected < count) {
+            final SocketChannel channel = queue.poll();
+            if (channel == null) {
+                Thread.yield();
+                continue;
+            }
+            assertSame(channels[(int) (expected % channels.length)], channel);
+            assertEquals(expected, queue.getLastAcceptTime());
+            expected ++;
+        }
+        producer.join();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.IoThreadAssignment;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioExecutor;
+import org.xnio.management.XnioIoThreadMXBean;
+
+/**
+ * A skewed-load benchmark for the I/O thread assignment strategies; not run as part of the test suite.
+ * <p>
+ * Simulated connections arrive one at a time and are assigned by the strategy under test.  Each one registers a
+ * channel with its thread and then does a fixed amount of work on that thread every millisecond.  Connection weights
+ * follow a Zipf-like distribution, so that a few connections are much heavier than the rest.  The benchmark reports
+ * how evenly the busy time ended up spread over the threads, and the worst 99th percentile scheduling delay.
+ * <p>
+ * Usage: {@code IoThreadAssignmentBenchmark [threads] [connections] [seconds]}
+ */
+public final class IoThreadAssignmentBenchmark {
+
+    private IoThreadAssignmentBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int connections = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        // must be set before the first I/O thread is created
+        System.setProperty("xnio.nio.scheduling-delay-metrics", "true");
+        System.out.printf("%d threads, %d connections, %d seconds per strategy%n", threads, connections, seconds);
+        System.out.printf("%-22s %12s %12s %16s%n", "strategy", "max/mean", "max busy %", "worst p99 delay");
+        for (IoThreadAssignment assignment : IoThreadAssignment.values()) {
+            run(assignment, threads, connections, seconds);
+        }
+    }
+
+    private static void run(final IoThreadAssignment assignment, final int threads, final int connections, final int seconds) throws Exception {
+        final NioXnioWorker worker = (NioXnioWorker) Xnio.getInstance("nio").createWorker(OptionMap.builder()
+                .set(Options.WORKER_IO_THREADS, threads)
+                .set(Options.WORKER_IO_THREAD_ASSIGNMENT, assignment)
+                .getMap());
+        final List<Pipe> pipes = new ArrayList<>();
+        final List<XnioExecutor.Key> keys = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                final WorkerThread thread = worker.chooseThread(i);
+                final Pipe pipe = Pipe.open();
+                pipes.add(pipe);
+                pipe.source().configureBlocking(false);
+                thread.registerChannel(pipe.source());
+                // the heaviest connection burns about 200us per millisecond
+                final long work = TimeUnit.MICROSECONDS.toNanos(200L) / (i % 50 + 1);
+                keys.add(thread.executeAtInterval(() -> spin(work), 1L, TimeUnit.MILLISECONDS));
+                // connections arrive over time, so load-aware strategies can see the load they created
+                Thread.sleep(2L);
+            }
+            final long[] startBusy = new long[threads];
+            for (int i = 0; i < threads; i++) {
+                startBusy[i] = busyTime(worker.getIoThread(i).getMetrics());
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            long max = 0L;
+            long total = 0L;
+            long worstDelay = 0L;
+            for (int i = 0; i < threads; i++) {
+                final XnioIoThreadMXBean metrics = worker.getIoThread(i).getMetrics();
+                final long busy = busyTime(metrics) - startBusy[i];
+                max = Math.max(max, busy);
+                total += busy;
+                worstDelay = Math.max(worstDelay, metrics.getSchedulingDelay99thPercentile());
+            }
+            final double mean = (double) total / threads;
+            System.out.printf("%-22s %12.2f %12.1f %13dus%n", assignment, max / mean, 100.0 * max / TimeUnit.SECONDS.toNanos(seconds), TimeUnit.NANOSECONDS.toMicros(worstDelay));
+        } finally {
+            for (XnioExecutor.Key key : keys) {
+                key.remove();
+            }
+            for (Pipe pipe : pipes) {
+                IoUtils.safeClose(pipe.source());
+                IoUtils.safeClose(pipe.sink());
+            }
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long busyTime(final XnioIoThreadMXBean metrics) {
+        return metrics.getTaskTime() + metrics.getHandlerTime();
+    }
+
+    private static void spin(final long nanos) {
+        final long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            // busy
+        }
+    }
+}
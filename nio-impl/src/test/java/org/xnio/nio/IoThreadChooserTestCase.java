@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.IoThreadAssignment;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+
+/**
+ * Test for {@link IoThreadChooser}.
+ */
+public class IoThreadChooserTestCase {
+
+    @Test
+    public void roundRobin() throws Exception {
+        final NioXnioWorker worker = createWorker(IoThreadAssignment.ROUND_ROBIN, 4);
+        try {
+            assertEquals(IoThreadAssignment.ROUND_ROBIN, worker.getOption(Options.WORKER_IO_THREAD_ASSIGNMENT));
+            final WorkerThread first = worker.chooseThread();
+            final Set<WorkerThread> seen = new HashSet<>();
+            seen.add(first);
+            for (int i = 1; i < 4; i++) {
+                seen.add(worker.chooseThread(i));
+            }
+            assertEquals(4, seen.size());
+            assertSame(first, worker.chooseThread());
+        } finally {
+            shutdown(worker);
+        }
+    }
+
+    @Test
+    public void leastKeys() throws Exception {
+        final NioXnioWorker worker = createWorker(IoThreadAssignment.LEAST_KEYS, 3);
+        final List<Pipe> pipes = new ArrayList<>();
+        try {
+            final WorkerThread busy = loadThread(worker, pipes);
+            final WorkerThread first = worker.chooseThread();
+            final WorkerThread second = worker.chooseThread();
+            assertNotSame(busy, first);
+            assertNotSame(busy, second);
+            // the first assignment counts until the thread has caught up
+            assertNotSame(first, second);
+        } finally {
+            closePipes(pipes);
+            shutdown(worker);
+        }
+    }
+
+    @Test
+    public void powerOfTwoChoices() throws Exception {
+        final NioXnioWorker worker = createWorker(IoThreadAssignment.POWER_OF_TWO_CHOICES, 2);
+        final List<Pipe> pipes = new ArrayList<>();
+        try {
+            final WorkerThread busy = loadThread(worker, pipes);
+            // with two threads, both are always candidates
+            for (int i = 0; i < 3; i++) {
+                assertNotSame(busy, worker.chooseThread(i));
+            }
+        } finally {
+            closePipes(pipes);
+            shutdown(worker);
+        }
+    }
+
+    @Test
+    public void randomUsesHashForAccepts() throws Exception {
+        final NioXnioWorker worker = createWorker(IoThreadAssignment.RANDOM, 4);
+        try {
+            for (int i = 0; i < 8; i++) {
+                assertSame(worker.getIoThread(i), worker.chooseThread(i));
+            }
+        } finally {
+            shutdown(worker);
+        }
+    }
+
+    private static NioXnioWorker createWorker(final IoThreadAssignment assignment, final int threads) throws Exception {
+        return (NioXnioWorker) Xnio.getInstance("nio").createWorker(OptionMap.builder()
+                .set(Options.WORKER_IO_THREADS, threads)
+                .set(Options.WORKER_IO_THREAD_ASSIGNMENT, assignment)
+                .getMap());
+    }
+
+    private static WorkerThread loadThread(final NioXnioWorker worker, final List<Pipe> pipes) throws Exception {
+        final WorkerThread busy = worker.getIoThread(0);
+        for (int i = 0; i < 5; i++) {
+            final Pipe pipe = Pipe.open();
+            pipes.add(pipe);
+            pipe.source().configureBlocking(false);
+            busy.registerChannel(pipe.source());
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (busy.getKeyLoad() < 5 && System.nanoTime() < deadline) {
+            busy.execute(() -> {});
+            Thread.sleep(10L);
+        }
+        assertTrue(busy.getKeyLoad() >= 5);
+        return busy;
+    }
+
+    private static void closePipes(final List<Pipe> pipes) {
+        for (Pipe pipe : pipes) {
+            IoUtils.safeClose(pipe.source());
+            IoUtils.safeClose(pipe.sink());
+        }
+    }
+
+    private static void shutdown(final NioXnioWorker worker) throws InterruptedException {
+        worker.shutdown();
+        assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTestCase {
+
+    @Test
+    public void bucketBounds() {
+        assertEquals(0, LatencyHistogram.index(0L));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.index(Long.MAX_VALUE));
+        final long[] bounds = LatencyHistogram.getBucketBounds();
+        assertEquals(LatencyHistogram.BUCKET_COUNT, bounds.length);
+        for (int i = 0; i < bounds.length; i++) {
+            // each bound maps back to its own bucket, and the value just below it to the previous one
+            assertEquals(i, LatencyHistogram.index(bounds[i]));
+            if (i > 0) {
+                assertTrue(bounds[i] > bounds[i - 1]);
+                assertEquals(i - 1, LatencyHistogram.index(bounds[i] - 1));
+            }
+        }
+        // relative bucket width is at most one eighth
+        for (int i = 9; i < bounds.length; i++) {
+            assertTrue(bounds[i] - bounds[i - 1] <= bounds[i - 1] / 8);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getPercentile(99.0));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5L);
+        assertEquals(1001L, histogram.getCount());
+        assertEquals(1000000L, histogram.getMax());
+        assertEquals(1L, histogram.getCounts()[0]);
+        final long median = histogram.getPercentile(50.0);
+        assertTrue(median >= 500000L && median <= 500000L * 9 / 8);
+        final long p99 = histogram.getPercentile(99.0);
+        assertTrue(p99 >= 990000L && p99 <= 1000000L);
+        assertEquals(1000000L, histogram.getPercentile(100.0));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.management.XnioIoThreadMXBean;
+
+/**
+ * Test for {@link NioIoThreadMetrics}.
+ */
+public class NioIoThreadMetricsTestCase {
+
+    @Test
+    public void recordTasks() throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.builder()
+                .set(Options.WORKER_NAME, "metrics-test")
+                .set(Options.WORKER_IO_THREADS, 2)
+                .getMap());
+        try {
+            final Set<XnioIoThreadMXBean> beans = worker.getMXBean().getIoThreadMXBeans();
+            assertEquals(2, beans.size());
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName pattern = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"metrics-test\",thread=*");
+            assertEquals(2, server.queryNames(pattern, null).size());
+            final int count = 200;
+            final CountDownLatch latch = new CountDownLatch(count);
+            final WorkerThread thread = (WorkerThread) worker.getIoThread(0);
+            for (int i = 0; i < count; i++) {
+                thread.execute(latch::countDown);
+            }
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            // the loop totals are published after the select following the tasks
+            thread.execute(() -> {});
+            final XnioIoThreadMXBean metrics = thread.getMetrics();
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+            while (metrics.getTaskCount() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertTrue(metrics.getTaskCount() >= count);
+            assertTrue(metrics.getLoopCount() > 0L);
+            assertTrue(metrics.getTasksPerLoop() > 0.0);
+            long recorded = 0L;
+            for (long c : metrics.getTaskExecutionTimeHistogram()) {
+                recorded += c;
+            }
+            assertTrue(recorded >= count);
+            assertEquals(metrics.getHistogramBucketBounds().length, metrics.getSchedulingDelayHistogram().length);
+            assertTrue(metrics.getTaskExecutionTimeMedian() <= metrics.getTaskExecutionTime99thPercentile());
+            assertTrue(metrics.getTaskExecutionTime99thPercentile() <= metrics.getTaskExecutionTimeMax());
+            // scheduling delays are only recorded when xnio.nio.scheduling-delay-metrics is set
+            assertEquals(0L, metrics.getSchedulingDelayMax());
+            assertEquals("metrics-test", metrics.getWorkerName());
+        } finally {
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+        }
+        final ObjectName pattern = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"metrics-test\",thread=*");
+        assertFalse(ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).iterator().hasNext());
+    }
+}
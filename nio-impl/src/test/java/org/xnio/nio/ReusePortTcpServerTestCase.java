@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.management.XnioServerMXBean;
+
+/**
+ * Test for TCP servers bound with {@link Options#REUSE_PORT}.  Where the platform does not support
+ * {@code SO_REUSEPORT}, this checks that the server falls back to a working shared socket.
+ */
+public class ReusePortTcpServerTestCase {
+
+    private static final int CONNECTIONS = 32;
+
+    @Test
+    public void acceptAndCount() throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 4));
+        final List<Socket> clients = new ArrayList<>();
+        final List<StreamConnection> accepted = new CopyOnWriteArrayList<>();
+        final List<Thread> acceptingThreads = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(CONNECTIONS);
+        try {
+            final AcceptingChannel<StreamConnection> server = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0), channel -> {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                        acceptingThreads.add(Thread.currentThread());
+                        latch.countDown();
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, OptionMap.create(Options.REUSE_PORT, true));
+            try {
+                final boolean reusePort = Boolean.TRUE.equals(server.getOption(Options.REUSE_PORT));
+                server.resumeAccepts();
+                final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+                for (int i = 0; i < CONNECTIONS; i++) {
+                    clients.add(new Socket(address.getAddress(), address.getPort()));
+                }
+                assertTrue(latch.await(10L, TimeUnit.SECONDS));
+                if (reusePort) {
+                    // each connection stays on the thread whose socket accepted it
+                    for (int i = 0; i < CONNECTIONS; i++) {
+                        assertSame(acceptingThreads.get(i), accepted.get(i).getIoThread());
+                    }
+                }
+                final XnioServerMXBean serverMetrics = worker.getMXBean().getServerMXBeans().iterator().next();
+                assertEquals(CONNECTIONS, serverMetrics.getConnectionCount());
+                for (StreamConnection connection : accepted) {
+                    connection.close();
+                }
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+                while (serverMetrics.getConnectionCount() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(10L);
+                }
+                assertEquals(0, serverMetrics.getConnectionCount());
+            } finally {
+                IoUtils.safeClose(server);
+            }
+        } finally {
+            for (Socket client : clients) {
+                IoUtils.safeClose(client);
+            }
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link SelectedKeySet}.
+ */
+public class SelectedKeySetTestCase {
+
+    @Test
+    public void flip() throws Exception {
+        final SelectedKeySet keySet = new SelectedKeySet();
+        final Selector selector = Selector.open();
+        try {
+            final Pipe pipe = Pipe.open();
+            try {
+                pipe.source().configureBlocking(false);
+                final SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+                // grow past the initial capacity
+                for (int i = 0; i < 1000; i++) {
+                    assertTrue(keySet.add(key));
+                }
+                assertFalse(keySet.add(null));
+                assertEquals(1000, keySet.size());
+                assertFalse(keySet.contains(key));
+                final Iterator<SelectionKey> iterator = keySet.iterator();
+                assertTrue(iterator.hasNext());
+                assertSame(key, iterator.next());
+                final SelectionKey[] batch = keySet.flip();
+                assertEquals(0, keySet.size());
+                assertFalse(keySet.iterator().hasNext());
+                for (int i = 0; i < 1000; i++) {
+                    assertSame(key, batch[i]);
+                    batch[i] = null;
+                }
+                // keys added during processing go to the other array
+                keySet.add(key);
+                final SelectionKey[] next = keySet.flip();
+                assertFalse(next == batch);
+                assertSame(key, next[0]);
+                next[0] = null;
+                assertSame(batch, keySet.flip());
+            } finally {
+                pipe.source().close();
+                pipe.sink().close();
+            }
+        } finally {
+            selector.close();
+        }
+    }
+
+    @Test
+    public void installAndSelect() throws Exception {
+        final Selector selector = Selector.open();
+        try {
+            final SelectedKeySet keySet = SelectedKeySet.install(selector);
+            // not all selector implementations or JDK versions allow replacing the key set
+            assumeNotNull(keySet);
+            assertSame(keySet, selector.selectedKeys());
+            final Pipe pipe = Pipe.open();
+            try {
+                pipe.source().configureBlocking(false);
+                final SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+                assertEquals(0, selector.selectNow());
+                pipe.sink().write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+                assertEquals(1, selector.select(5000L));
+                assertEquals(1, keySet.size());
+                final SelectionKey[] batch = keySet.flip();
+                assertSame(key, batch[0]);
+                assertNull(batch[1]);
+                assertTrue(key.isReadable());
+            } finally {
+                pipe.source().close();
+                pipe.sink().close();
+            }
+        } finally {
+            selector.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.ssl.SslConnection;
+import org.xnio.ssl.XnioSsl;
+
+/**
+ * Measures the direct memory held by idle TLS connections, with and without {@link Options#SSL_LAZY_BUFFERS}; not run
+ * as part of the test suite.  Each mode runs in a fresh JVM, as the SSL buffer pool never gives memory back.  The
+ * client and the server ends of every connection complete a handshake and exchange one message, and then sit idle
+ * while the direct memory in use is sampled.
+ * <p>
+ * Usage: {@code SslIdleMemoryBenchmark [connections]}
+ */
+public final class SslIdleMemoryBenchmark {
+
+    private static final byte[] PING = { 'p', 'i', 'n', 'g' };
+
+    private SslIdleMemoryBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1) {
+            run(Boolean.parseBoolean(args[0]), Integer.parseInt(args[1]));
+            return;
+        }
+        final int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        System.out.printf("%d idle TLS connections (%d sockets) per mode%n", connections, connections * 2);
+        fork(false, connections);
+        fork(true, connections);
+    }
+
+    private static void fork(final boolean lazyBuffers, final int connections) throws Exception {
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SslIdleMemoryBenchmark.class.getName());
+        command.add(Boolean.toString(lazyBuffers));
+        command.add(Integer.toString(connections));
+        final int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (status != 0) {
+            System.out.printf("benchmark JVM exited with status %d%n", status);
+        }
+    }
+
+    private static void run(final boolean lazyBuffers, final int connections) throws Exception {
+        final URL keyStore = SslIdleMemoryBenchmark.class.getClassLoader().getResource("keystore.jks");
+        System.setProperty("javax.net.ssl.keyStore", keyStore.getFile());
+        System.setProperty("javax.net.ssl.keyStorePassword", "jboss-remoting-test");
+        System.setProperty("javax.net.ssl.trustStore", keyStore.getFile());
+        System.setProperty("javax.net.ssl.trustStorePassword", "jboss-remoting-test");
+        final Xnio xnio = Xnio.getInstance("nio");
+        final XnioSsl xnioSsl = xnio.getSslProvider(OptionMap.EMPTY);
+        final XnioWorker worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 4));
+        final OptionMap optionMap = OptionMap.create(Options.SSL_LAZY_BUFFERS, lazyBuffers);
+        final List<SslConnection> open = new CopyOnWriteArrayList<>();
+        final CountDownLatch pinged = new CountDownLatch(connections);
+        try {
+            final AcceptingChannel<SslConnection> server = xnioSsl.createSslConnectionServer(worker, new InetSocketAddress("127.0.0.1", 0), channel -> {
+                try {
+                    SslConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        open.add(connection);
+                        final SslConnection accepted = connection;
+                        final ByteBuffer buffer = ByteBuffer.allocate(PING.length);
+                        connection.getSourceChannel().setReadListener(source -> {
+                            try {
+                                int res;
+                                while ((res = source.read(buffer)) > 0) {
+                                    if (! buffer.hasRemaining()) {
+                                        buffer.clear();
+                                        pinged.countDown();
+                                    }
+                                }
+                                if (res == -1) {
+                                    IoUtils.safeClose(accepted);
+                                }
+                            } catch (IOException e) {
+                                IoUtils.safeClose(accepted);
+                            }
+                        });
+                        connection.getSourceChannel().resumeReads();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, optionMap);
+            try {
+                server.resumeAccepts();
+                final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+                final long before = getDirectMemoryUsed();
+                for (int i = 0; i < connections; i++) {
+                    final SslConnection connection = xnioSsl.openSslConnection(worker, address, null, optionMap).get();
+                    open.add(connection);
+                    final ByteBuffer discard = ByteBuffer.allocate(64);
+                    connection.getSourceChannel().setReadListener(source -> {
+                        try {
+                            while (source.read(discard) > 0) {
+                                discard.clear();
+                            }
+                        } catch (IOException e) {
+                            IoUtils.safeClose(connection);
+                        }
+                    });
+                    final ByteBuffer ping = ByteBuffer.wrap(PING);
+                    connection.getSinkChannel().setWriteListener(sink -> {
+                        try {
+                            while (ping.hasRemaining() && sink.write(ping) > 0) {
+                            }
+                            if (! ping.hasRemaining() && sink.flush()) {
+                                sink.suspendWrites();
+                            }
+                        } catch (IOException e) {
+                            IoUtils.safeClose(connection);
+                        }
+                    });
+                    connection.getSourceChannel().resumeReads();
+                    connection.getSinkChannel().resumeWrites();
+                }
+                if (! pinged.await(60L, TimeUnit.SECONDS)) {
+                    System.out.printf("only %d of %d connections completed%n", connections - pinged.getCount(), connections);
+                }
+                // let the connections settle into idleness
+                Thread.sleep(1000L);
+                final long used = getDirectMemoryUsed() - before;
+                System.out.printf("%-13s %10d KB direct memory, %6d bytes per idle TLS socket%n", lazyBuffers ? "lazy buffers" : "eager buffers", used / 1024, used / (2L * connections));
+            } finally {
+                for (SslConnection connection : open) {
+                    // close from the connection's own thread, so that its listeners do not race with the close
+                    connection.getIoThread().execute(() -> IoUtils.safeClose(connection));
+                }
+                IoUtils.safeClose(server);
+            }
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long getDirectMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0L;
+    }
+}
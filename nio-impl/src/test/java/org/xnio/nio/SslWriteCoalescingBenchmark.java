@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.ssl.SslConnection;
+import org.xnio.ssl.XnioSsl;
+
+/**
+ * Measures TLS throughput and CPU time per byte for streams of small writes, with and without
+ * {@link Options#SSL_WRITE_COALESCING_SIZE}; not run as part of the test suite.  For each message size, a client
+ * writes a fixed amount of data one message at a time, flushing only at the end, while the server reads and discards
+ * it.  CPU time is that of the whole process, so it includes both ends of the connection.
+ * <p>
+ * Usage: {@code SslWriteCoalescingBenchmark [megabytes]}
+ */
+public final class SslWriteCoalescingBenchmark {
+
+    private static final int[] MESSAGE_SIZES = { 64, 256, 1024, 4096, 16384 };
+
+    private SslWriteCoalescingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long total = (args.length > 0 ? Long.parseLong(args[0]) : 64L) * 1024L * 1024L;
+        final URL keyStore = SslWriteCoalescingBenchmark.class.getClassLoader().getResource("keystore.jks");
+        System.setProperty("javax.net.ssl.keyStore", keyStore.getFile());
+        System.setProperty("javax.net.ssl.keyStorePassword", "jboss-remoting-test");
+        System.setProperty("javax.net.ssl.trustStore", keyStore.getFile());
+        System.setProperty("javax.net.ssl.trustStorePassword", "jboss-remoting-test");
+        final Xnio xnio = Xnio.getInstance("nio");
+        final XnioSsl xnioSsl = xnio.getSslProvider(OptionMap.EMPTY);
+        final XnioWorker worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 2));
+        try {
+            System.out.printf("%d MB per run%n", total / (1024L * 1024L));
+            // warm up
+            run(xnioSsl, worker, 1024, 0, total / 4);
+            run(xnioSsl, worker, 1024, 16384, total / 4);
+            for (int size : MESSAGE_SIZES) {
+                report(size, 0, run(xnioSsl, worker, size, 0, total), total);
+                report(size, 16384, run(xnioSsl, worker, size, 16384, total), total);
+            }
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void report(final int size, final int coalescingSize, final long[] times, final long total) {
+        final double seconds = times[0] / 1e9;
+        System.out.printf("%5d byte messages, %-14s %8.1f MB/s, %6.2f ns CPU per byte%n", size, coalescingSize == 0 ? "no coalescing" : "coalescing", total / seconds / (1024 * 1024), (double) times[1] / total);
+    }
+
+    /**
+     * Transfer the given amount of data.
+     *
+     * @return the elapsed time and the process CPU time, in nanoseconds
+     */
+    private static long[] run(final XnioSsl xnioSsl, final XnioWorker worker, final int size, final int coalescingSize, final long total) throws Exception {
+        final OptionMap optionMap = OptionMap.create(Options.SSL_WRITE_COALESCING_SIZE, coalescingSize);
+        final AtomicLong received = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AcceptingChannel<SslConnection> server = xnioSsl.createSslConnectionServer(worker, new InetSocketAddress("127.0.0.1", 0), channel -> {
+            try {
+                final SslConnection connection = channel.accept();
+                if (connection == null) {
+                    return;
+                }
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+                connection.getSourceChannel().setReadListener(source -> {
+                    try {
+                        int res;
+                        while ((res = source.read(buffer)) > 0) {
+                            buffer.clear();
+                            if (received.addAndGet(res) >= total) {
+                                done.countDown();
+                            }
+                        }
+                        if (res == -1) {
+                            IoUtils.safeClose(connection);
+                        }
+                    } catch (IOException e) {
+                        IoUtils.safeClose(connection);
+                    }
+                });
+                connection.getSourceChannel().resumeReads();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, optionMap);
+        try {
+            server.resumeAccepts();
+            final SslConnection connection = xnioSsl.openSslConnection(worker, server.getLocalAddress(InetSocketAddress.class), null, optionMap).get();
+            try {
+                final ByteBuffer message = ByteBuffer.allocate(size);
+                final AtomicLong sent = new AtomicLong();
+                final long cpuStart = getProcessCpuTime();
+                final long start = System.nanoTime();
+                connection.getSinkChannel().setWriteListener(sink -> {
+                    try {
+                        while (sent.get() < total) {
+                            if (sink.write(message) == 0) {
+                                return;
+                            }
+                            if (! message.hasRemaining()) {
+                                sent.addAndGet(size);
+                                message.clear();
+                            }
+                        }
+                        if (sink.flush()) {
+                            sink.suspendWrites();
+                        }
+                    } catch (IOException e) {
+                        IoUtils.safeClose(connection);
+                    }
+                });
+                connection.getSinkChannel().resumeWrites();
+                if (! done.await(5L, TimeUnit.MINUTES)) {
+                    System.out.printf("only %d of %d bytes received%n", received.get(), total);
+                }
+                return new long[] { System.nanoTime() - start, getProcessCpuTime() - cpuStart };
+            } finally {
+                connection.getIoThread().execute(() -> IoUtils.safeClose(connection));
+            }
+        } finally {
+            IoUtils.safeClose(server);
+        }
+    }
+
+    private static long getProcessCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+}
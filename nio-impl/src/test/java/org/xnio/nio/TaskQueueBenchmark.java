@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A throughput benchmark for the I/O thread's {@link TaskQueue}; not run as part of the test suite.
+ * <p>
+ * A number of producer threads each add their share of the tasks while a single consumer polls and runs them, as
+ * the I/O thread does.  The lock-free queue is compared with the {@code ArrayDeque} guarded by a lock which the I/O
+ * thread used before.  Each queue is run for 1 to 64 producers, doubling each time, after a warm-up round.
+ * <p>
+ * Usage: {@code TaskQueueBenchmark [tasks] [rounds]}
+ */
+public final class TaskQueueBenchmark {
+
+    private static final Runnable TASK = () -> {};
+
+    private TaskQueueBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        System.out.printf("%d tasks, best of %d rounds%n", tasks, rounds);
+        System.out.printf("%10s %18s %18s%n", "producers", "TaskQueue ops/s", "locked ops/s");
+        // warm up both paths
+        run(new LockFreeQueue(), 4, tasks);
+        run(new LockedQueue(), 4, tasks);
+        for (int producers = 1; producers <= 64; producers <<= 1) {
+            long lockFree = 0L;
+            long locked = 0L;
+            for (int i = 0; i < rounds; i ++) {
+                lockFree = Math.max(lockFree, run(new LockFreeQueue(), producers, tasks));
+                locked = Math.max(locked, run(new LockedQueue(), producers, tasks));
+            }
+            System.out.printf("%10d %18d %18d%n", producers, lockFree, locked);
+        }
+    }
+
+    /**
+     * Run one round.
+     *
+     * @return the number of tasks run per second
+     */
+    private static long run(final WorkQueue queue, final int producers, final int tasks) throws InterruptedException {
+        final int perProducer = tasks / producers;
+        final int total = perProducer * producers;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i ++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < perProducer; j ++) {
+                    queue.add(TASK);
+                }
+            });
+            threads[i].start();
+        }
+        final long startTime = System.nanoTime();
+        start.countDown();
+        int ran = 0;
+        while (ran < total) {
+            final Runnable task = queue.poll();
+            if (task != null) {
+                task.run();
+                ran ++;
+            }
+        }
+        final long elapsed = System.nanoTime() - startTime;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return total * TimeUnit.SECONDS.toNanos(1L) / Math.max(1L, elapsed);
+    }
+
+    interface WorkQueue {
+        void add(Runnable task);
+
+        Runnable poll();
+    }
+
+    static final class LockFreeQueue implements WorkQueue {
+        private final TaskQueue queue = new TaskQueue();
+
+        public void add(final Runnable task) {
+            queue.add(task);
+        }
+
+        public Runnable poll() {
+            return queue.poll();
+        }
+    }
+
+    /**
+     * The work queue as it was before {@link TaskQueue}: an {@code ArrayDeque} guarded by the thread's work lock.
+     */
+    static final class LockedQueue implements WorkQueue {
+        private final Object lock = new Object();
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+        public void add(final Runnable task) {
+            synchronized (lock) {
+                queue.add(task);
+            }
+        }
+
+        public Runnable poll() {
+            synchronized (lock) {
+                return queue.poll();
+            }
+        }
+    }
+}
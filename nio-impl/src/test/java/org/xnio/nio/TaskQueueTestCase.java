@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link TaskQueue}.
+ */
+public class TaskQueueTestCase {
+
+    @Test
+    public void fifoOrder() {
+        final TaskQueue queue = new TaskQueue();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        final Runnable[] tasks = new Runnable[10];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new CountingTask();
+            queue.add(tasks[i]);
+        }
+        assertFalse(queue.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            assertSame(tasks[i], queue.poll());
+        }
+        // tasks added mid-batch are run after the current batch
+        final Runnable late = new CountingTask();
+        queue.add(late);
+        for (int i = 5; i < tasks.length; i++) {
+            assertSame(tasks[i], queue.poll());
+        }
+        assertFalse(queue.isEmpty());
+        assertSame(late, queue.poll());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void sizeAndEnqueueTime() {
+        final TaskQueue queue = new TaskQueue(true);
+        assertTrue(queue.isTrackingEnqueueTime());
+        assertEquals(0, queue.size());
+        final long before = System.nanoTime();
+        queue.add(new CountingTask());
+        queue.add(new CountingTask());
+        final long after = System.nanoTime();
+        assertEquals(2, queue.size());
+        queue.poll();
+        assertEquals(1, queue.size());
+        assertTrue(queue.getLastEnqueueTime() - before >= 0L);
+        assertTrue(after - queue.getLastEnqueueTime() >= 0L);
+        queue.poll();
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void sizeWithoutEnqueueTime() {
+        final TaskQueue queue = new TaskQueue();
+        assertFalse(queue.isTrackingEnqueueTime());
+        for (int i = 0; i < 3; i++) {
+            queue.add(new CountingTask());
+        }
+        assertEquals(3, queue.size());
+        queue.poll();
+        assertEquals(0L, queue.getLastEnqueueTime());
+        // tasks added mid-batch are counted on top of what is left of the batch
+        queue.add(new CountingTask());
+        queue.add(new CountingTask());
+        assertEquals(4, queue.size());
+        while (queue.poll() != null) {
+            assertTrue(queue.size() >= 0);
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void multipleProducers() throws InterruptedException {
+        final TaskQueue queue = new TaskQueue();
+        final int producers = 8;
+        final int tasksPerProducer = 50000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[producers];
+        final CountingTask[][] tasks = new CountingTask[producers][tasksPerProducer];
+        for (int i = 0; i < producers; i++) {
+            final CountingTask[] mine = tasks[i];
+            for (int j = 0; j < tasksPerProducer; j++) {
+                mine[j] = new CountingTask(i, j);
+            }
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (CountingTask task : mine) {
+                    queue.add(task);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        final int[] lastSeen = new int[producers];
+        Arrays.fill(lastSeen, -1);
+        int received = 0;
+        final int total = producers * tasksPerProducer;
+        while (received < total) {
+            final Runnable task = queue.poll();
+            if (task == null) {
+                Thread.yield();
+                continue;
+            }
+            final CountingTask countingTask = (CountingTask) task;
+            // per-producer ordering must be preserved
+            assertEquals(lastSeen[countingTask.producer] + 1, countingTask.sequence);
+            lastSeen[countingTask.producer] = countingTask.sequence;
+            task.run();
+            received ++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+        for (CountingTask[] producerTasks : tasks) {
+            for (CountingTask task : producerTasks) {
+                assertEquals(1, task.runs);
+            }
+        }
+    }
+
+    static final class CountingTask implements Runnable {
+        final int producer;
+        final int sequence;
+        int runs;
+
+        CountingTask() {
+            this(0, 0);
+        }
+
+        CountingTask(final int producer, final int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+
+        public void run() {
+            runs ++;
+        }
+    }
+}
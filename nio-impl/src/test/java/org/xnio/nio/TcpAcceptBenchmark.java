@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.management.XnioServerMXBean;
+
+/**
+ * An accept-rate benchmark comparing a TCP server with one shared listening socket against one bound with
+ * {@link Options#REUSE_PORT}; not run as part of the test suite.  Client threads open and close connections in a
+ * tight loop, and the server accepts and immediately closes them.
+ * <p>
+ * Usage: {@code TcpAcceptBenchmark [ioThreads] [clientThreads] [seconds]}
+ */
+public final class TcpAcceptBenchmark {
+
+    private TcpAcceptBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int ioThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        System.out.printf("%d I/O threads, %d client threads, %d seconds per mode%n", ioThreads, clients, seconds);
+        run("shared socket", OptionMap.EMPTY, ioThreads, clients, seconds);
+        run("SO_REUSEPORT", OptionMap.create(Options.REUSE_PORT, true), ioThreads, clients, seconds);
+    }
+
+    private static void run(final String mode, final OptionMap serverOptions, final int ioThreads, final int clients, final int seconds) throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, ioThreads));
+        final LongAdder accepted = new LongAdder();
+        final AtomicLong failures = new AtomicLong();
+        try {
+            final AcceptingChannel<StreamConnection> server = worker.createStreamConnectionServer(new InetSocketAddress("127.0.0.1", 0), channel -> {
+                try {
+                    StreamConnection connection;
+                    while ((connection = channel.accept()) != null) {
+                        accepted.increment();
+                        IoUtils.safeClose(connection);
+                    }
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+            }, serverOptions);
+            try {
+                if (serverOptions.contains(Options.REUSE_PORT) && ! Boolean.TRUE.equals(server.getOption(Options.REUSE_PORT))) {
+                    System.out.printf("%-14s not supported on this platform%n", mode);
+                    return;
+                }
+                server.resumeAccepts();
+                final InetSocketAddress address = server.getLocalAddress(InetSocketAddress.class);
+                final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+                final Thread[] threads = new Thread[clients];
+                for (int i = 0; i < clients; i++) {
+                    threads[i] = new Thread(() -> {
+                        while (System.nanoTime() < end) {
+                            try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+                                socket.setSoLinger(true, 0);
+                            } catch (IOException e) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    });
+                    threads[i].start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                System.out.printf("%-14s %10.0f accepts/s (%d failures)%n", mode, accepted.sum() / (double) seconds, failures.get());
+                for (XnioServerMXBean metrics : worker.getMXBean().getServerMXBeans()) {
+                    if (metrics.getAcceptBatchCount() > 0L) {
+                        System.out.printf("%-14s %10.1f mean batch, %d max batch, %dus p99 accept latency%n", "", (double) metrics.getAcceptedConnectionCount() / metrics.getAcceptBatchCount(), metrics.getMaxAcceptBatchSize(), TimeUnit.NANOSECONDS.toMicros(metrics.getAcceptLatency99thPercentile()));
+                    }
+                }
+            } finally {
+                IoUtils.safeClose(server);
+            }
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A benchmark for the I/O thread's {@link TimerWheel}; not run as part of the test suite.
+ * <p>
+ * Millions of timeouts are scheduled with deadlines spread over the next 30 seconds, nine in ten of them are
+ * cancelled again, as idle and request timeouts usually are, and the clock is then advanced one millisecond at a
+ * time until the rest have expired.  The wheel is compared with the {@code TreeSet} ordered by deadline which the
+ * I/O thread used before.  The clock is simulated, so the benchmark does not take 30 seconds per round.
+ * <p>
+ * Usage: {@code TimerWheelBenchmark [timers] [rounds]}
+ */
+public final class TimerWheelBenchmark {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1L);
+    private static final long SPREAD = TimeUnit.SECONDS.toNanos(30L);
+    private static final Runnable TASK = () -> {};
+
+    private TimerWheelBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        final int timers = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final long[] deadlines = new long[timers];
+        final Random random = new Random(42);
+        for (int i = 0; i < timers; i ++) {
+            deadlines[i] = 1L + (long) (random.nextDouble() * SPREAD);
+        }
+        System.out.printf("%d timers, 1 in 10 left to expire, best of %d rounds%n", timers, rounds);
+        System.out.printf("%-10s %16s %16s %16s%n", "queue", "schedule ns/op", "cancel ns/op", "expire ns/op");
+        // warm up both paths
+        runWheel(deadlines);
+        runTree(deadlines);
+        long[] wheel = null;
+        long[] tree = null;
+        for (int i = 0; i < rounds; i ++) {
+            wheel = best(wheel, runWheel(deadlines));
+            tree = best(tree, runTree(deadlines));
+        }
+        print("TimerWheel", wheel, timers);
+        print("TreeSet", tree, timers);
+    }
+
+    /**
+     * Run one round against the timer wheel.
+     *
+     * @return the nanoseconds taken to schedule, to cancel, and to expire the timers
+     */
+    private static long[] runWheel(final long[] deadlines) {
+        final int timers = deadlines.length;
+        final TimerWheel wheel = new TimerWheel(TICK);
+        final TaskQueue expired = new TaskQueue();
+        final TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[timers];
+        long start = System.nanoTime();
+        for (int i = 0; i < timers; i ++) {
+            wheel.add(timeouts[i] = new TimerWheel.Timeout(deadlines[i], TASK), 0L);
+        }
+        final long schedule = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < timers; i ++) {
+            if (i % 10 != 0) {
+                wheel.remove(timeouts[i]);
+            }
+        }
+        final long cancel = System.nanoTime() - start;
+        start = System.nanoTime();
+        int count = 0;
+        for (long now = TICK; ! wheel.isEmpty(); now += TICK) {
+            wheel.expire(now, expired);
+            while (expired.poll() != null) {
+                count ++;
+            }
+        }
+        final long expire = System.nanoTime() - start;
+        check(count, timers);
+        return new long[] { schedule, cancel, expire };
+    }
+
+    /**
+     * Run one round against a deadline-ordered {@code TreeSet}, expired the way the I/O thread used to.
+     *
+     * @return the nanoseconds taken to schedule, to cancel, and to expire the timers
+     */
+    private static long[] runTree(final long[] deadlines) {
+        final int timers = deadlines.length;
+        final TreeSet<TreeKey> queue = new TreeSet<>();
+        final TreeKey[] keys = new TreeKey[timers];
+        long start = System.nanoTime();
+        for (int i = 0; i < timers; i ++) {
+            queue.add(keys[i] = new TreeKey(deadlines[i], i));
+        }
+        final long schedule = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < timers; i ++) {
+            if (i % 10 != 0) {
+                queue.remove(keys[i]);
+            }
+        }
+        final long cancel = System.nanoTime() - start;
+        start = System.nanoTime();
+        int count = 0;
+        for (long now = TICK; ! queue.isEmpty(); now += TICK) {
+            while (! queue.isEmpty() && queue.first().deadline <= now) {
+                queue.pollFirst().command.run();
+                count ++;
+            }
+        }
+        final long expire = System.nanoTime() - start;
+        check(count, timers);
+        return new long[] { schedule, cancel, expire };
+    }
+
+    private static void check(final int count, final int timers) {
+        final int expected = (timers + 9) / 10;
+        if (count != expected) {
+            throw new IllegalStateException("Expected " + expected + " timers to expire, got " + count);
+        }
+    }
+
+    private static long[] best(final long[] best, final long[] times) {
+        if (best == null) {
+            return times;
+        }
+        for (int i = 0; i < best.length; i ++) {
+            best[i] = Math.min(best[i], times[i]);
+        }
+        return best;
+    }
+
+    private static void print(final String name, final long[] times, final int timers) {
+        final int expired = (timers + 9) / 10;
+        System.out.printf("%-10s %16.1f %16.1f %16.1f%n", name, (double) times[0] / timers, (double) times[1] / Math.max(1, timers - expired), (double) times[2] / expired);
+    }
+
+    static final class TreeKey implements Comparable<TreeKey> {
+        final long deadline;
+        final long seq;
+        final Runnable command = TASK;
+
+        TreeKey(final long deadline, final long seq) {
+            this.deadline = deadline;
+            this.seq = seq;
+        }
+
+        public int compareTo(final TreeKey o) {
+            final int res = Long.compare(deadline, o.deadline);
+            return res != 0 ? res : Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link TimerWheel}.
+ */
+public class TimerWheelTestCase {
+
+    private static final long TICK = 1000L;
+
+    @Test
+    public void expireInOrder() {
+        final TimerWheel wheel = new TimerWheel(TICK);
+        final TaskQueue queue = new TaskQueue();
+        assertEquals(Long.MAX_VALUE, wheel.nextDelay(0L));
+        final TimerWheel.Timeout late = timeout(5500L);
+        final TimerWheel.Timeout early = timeout(2000L);
+        assertTrue(wheel.add(late, 0L));
+        assertTrue(wheel.add(early, 0L));
+        assertEquals(2, wheel.size());
+        assertEquals(2000L, wheel.nextDelay(0L));
+        // nothing fires early
+        wheel.expire(1999L, queue);
+        assertNull(queue.poll());
+        wheel.expire(2000L, queue);
+        assertSame(early.command, queue.poll());
+        assertNull(queue.poll());
+        // deadlines are rounded up to the next tick
+        wheel.expire(5999L, queue);
+        assertNull(queue.poll());
+        wheel.expire(6000L, queue);
+        assertSame(late.command, queue.poll());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void remove() {
+        final TimerWheel wheel = new TimerWheel(TICK);
+        final TaskQueue queue = new TaskQueue();
+        final TimerWheel.Timeout first = timeout(3000L);
+        final TimerWheel.Timeout second = timeout(3000L);
+        final TimerWheel.Timeout third = timeout(3000L);
+        wheel.add(first, 0L);
+        wheel.add(second, 0L);
+        wheel.add(third, 0L);
+        assertTrue(wheel.remove(second));
+        assertFalse(wheel.remove(second));
+        assertEquals(2, wheel.size());
+        wheel.expire(3000L, queue);
+        final Runnable a = queue.poll();
+        final Runnable b = queue.poll();
+        assertNull(queue.poll());
+        assertTrue(a == first.command && b == third.command || a == third.command && b == first.command);
+        assertFalse(wheel.remove(first));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void multipleRotations() {
+        final TimerWheel wheel = new TimerWheel(TICK);
+        final TaskQueue queue = new TaskQueue();
+        // same bucket, different rotations
+        final TimerWheel.Timeout near = timeout(10 * TICK);
+        final TimerWheel.Timeout far = timeout((10 + 3 * TimerWheel.WHEEL_SIZE) * TICK);
+        wheel.add(far, 0L);
+        wheel.add(near, 0L);
+        wheel.expire(10 * TICK, queue);
+        assertSame(near.command, queue.poll());
+        assertNull(queue.poll());
+        wheel.expire((10 + TimerWheel.WHEEL_SIZE) * TICK, queue);
+        assertNull(queue.poll());
+        assertTrue(wheel.nextDelay((10 + TimerWheel.WHEEL_SIZE) * TICK) <= TimerWheel.WHEEL_SIZE * TICK);
+        // a long stall expires everything due in one pass
+        wheel.expire((20 + 5 * TimerWheel.WHEEL_SIZE) * TICK, queue);
+        assertSame(far.command, queue.poll());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void addAfterIdle() {
+        final TimerWheel wheel = new TimerWheel(TICK);
+        final TaskQueue queue = new TaskQueue();
+        final long now = 1000000L * TICK;
+        final TimerWheel.Timeout timeout = timeout(now + 2 * TICK);
+        assertTrue(wheel.add(timeout, now));
+        assertEquals(2 * TICK, wheel.nextDelay(now));
+        wheel.expire(now + TICK, queue);
+        assertNull(queue.poll());
+        wheel.expire(now + 2 * TICK, queue);
+        assertSame(timeout.command, queue.poll());
+    }
+
+    @Test
+    public void manyTimeouts() {
+        final TimerWheel wheel = new TimerWheel(TICK);
+        final TaskQueue queue = new TaskQueue();
+        final int count = 100000;
+        final TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[count];
+        for (int i = 0; i < count; i++) {
+            timeouts[i] = timeout(1 + (i * 7919L) % (4000 * TICK));
+            wheel.add(timeouts[i], 0L);
+        }
+        // cancel every other timeout
+        for (int i = 0; i < count; i += 2) {
+            assertTrue(wheel.remove(timeouts[i]));
+        }
+        assertEquals(count / 2, wheel.size());
+        int fired = 0;
+        for (long now = 0; ! wheel.isEmpty(); now += TICK) {
+            wheel.expire(now, queue);
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                task.run();
+                fired ++;
+            }
+        }
+        assertEquals(count / 2, fired);
+    }
+
+    private static TimerWheel.Timeout timeout(final long deadline) {
+        return new TimerWheel.Timeout(deadline, new Runnable() {
+            public void run() {
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+import org.xnio.management.XnioWorkerMXBean;
+
+/**
+ * Test for the adaptive spinning of {@link WorkerThread}.
+ */
+public class WorkerThreadSpinTestCase {
+
+    @Test
+    public void spinAndCount() throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.builder()
+                .set(Options.WORKER_IO_THREADS, 1)
+                .set(Options.WORKER_IO_SPIN_COUNT, 64)
+                .getMap());
+        try {
+            assertEquals(Integer.valueOf(64), worker.getOption(Options.WORKER_IO_SPIN_COUNT));
+            final XnioIoThread thread = worker.getIoThread();
+            for (int i = 0; i < 100; i++) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                thread.execute(latch::countDown);
+                assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            }
+            final XnioWorkerMXBean metrics = worker.getMXBean();
+            assertTrue(metrics.getIoThreadSpinCount() > 0L);
+            assertTrue(metrics.getIoThreadEmptySelectCount() <= metrics.getIoThreadSelectWakeupCount());
+        } finally {
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void spinDisabledByDefault() throws Exception {
+        final XnioWorker worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1));
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            worker.getIoThread().execute(latch::countDown);
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            assertEquals(0L, worker.getMXBean().getIoThreadSpinCount());
+        } finally {
+            worker.shutdown();
+            assertTrue(worker.awaitTermination(5L, TimeUnit.SECONDS));
+        }
+    }
+}
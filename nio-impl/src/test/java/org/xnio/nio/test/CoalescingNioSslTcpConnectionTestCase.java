@@ -0,0 +1,34 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio.test;
+
+import org.junit.Before;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+/**
+ * Runs NioSslTcpConnectionTestCase with {@link Options#SSL_WRITE_COALESCING_SIZE} set on both sides.
+ */
+public class CoalescingNioSslTcpConnectionTestCase extends NioSslTcpConnectionTestCase {
+
+    @Before
+    public void setWriteCoalescing() {
+        super.setServerOptionMap(OptionMap.create(Options.REUSE_ADDRESSES, Boolean.TRUE, Options.SSL_WRITE_COALESCING_SIZE, 16384));
+        super.setClientOptionMap(OptionMap.create(Options.SSL_WRITE_COALESCING_SIZE, 16384));
+    }
+}
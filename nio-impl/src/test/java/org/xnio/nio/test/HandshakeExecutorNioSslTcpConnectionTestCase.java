@@ -0,0 +1,32 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2018 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xnio.nio.test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+/**
+ * Runs NioSslTcpConnectionTestCase with the delegated tasks of the SSL engines run by the handshake executor, as set
+ * by {@link Options#SSL_HANDSHAKE_THREADS}.
+ */
+public class HandshakeExecutorNioSslTcpConnectionTestCase extends NioSslTcpConnectionTestCase {
+
+    @Override
+    protected OptionMap getSslProviderOptionMap() {
+        return OptionMap.create(Options.SSL_HANDSHAKE_THREADS, 2);
+    }
+}
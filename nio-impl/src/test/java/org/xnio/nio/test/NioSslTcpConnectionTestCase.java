@@ -111,7 +111,14 @@ public class NioSslTcpConnectionTestCase extends AbstractNioSslTcpTest<SslConnec
 
     @Override
     protected void doConnectionTest(final Runnable body, final ChannelListener<? super SslConnection> clientHandler, final ChannelListener<? super SslConnection> serverHandler) throws Exception {
-        xnioSsl = Xnio.getInstance("nio", NioSslTcpChannelTestCase.class.getClassLoader()).getSslProvider(OptionMap.EMPTY);
+        xnioSsl = Xnio.getInstance("nio", NioSslTcpChannelTestCase.class.getClassLoader()).getSslProvider(getSslProviderOptionMap());
         super.doConnectionTest(body,  clientHandler, serverHandler);
     }
+
+    /**
+     * Returns the option map given to the SSL provider.
+     */
+    protected OptionMap getSslProviderOptionMap() {
+        return OptionMap.EMPTY;
+    }
 }